@@ -6,6 +6,15 @@ CREATE DATABASE IF NOT EXISTS `smartdoc` CHARACTER SET utf8mb4 COLLATE utf8mb4_g
 USE `smartdoc`;
 
 -- 2. 清理旧表 (初始化用)
+DROP TABLE IF EXISTS `stat_recurring_payment`;
+DROP TABLE IF EXISTS `stat_distinct_sketch`;
+DROP TABLE IF EXISTS `stat_heavy_hitter`;
+DROP TABLE IF EXISTS `stat_spend_digest`;
+DROP TABLE IF EXISTS `stat_spend_cube`;
+DROP TABLE IF EXISTS `stat_forecast`;
+DROP TABLE IF EXISTS `ai_report_cache`;
+DROP TABLE IF EXISTS `stat_cluster_model`;
+DROP TABLE IF EXISTS `stat_monthly_spend`;
 DROP TABLE IF EXISTS `sys_operation_log`;
 DROP TABLE IF EXISTS `sys_budget`;
 DROP TABLE IF EXISTS `sys_chat_log`;
@@ -19,6 +28,7 @@ CREATE TABLE `sys_user` (
                             `password` varchar(100) NOT NULL COMMENT '密码',
                             `nickname` varchar(50) DEFAULT NULL COMMENT '用户昵称',
                             `role` varchar(20) DEFAULT 'user' COMMENT '角色权限 (admin/user)',
+                            `department` varchar(100) DEFAULT NULL COMMENT '所属部门 (管理员按部门汇总消费)',
                             PRIMARY KEY (`id`),
                             UNIQUE KEY `uk_username` (`username`) USING BTREE COMMENT '用户名唯一索引'
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='系统用户表';
@@ -30,16 +40,20 @@ CREATE TABLE `invoice_record` (
                                   `merchant_name` varchar(255) DEFAULT NULL COMMENT '商户名称',
                                   `item_name` varchar(255) DEFAULT NULL COMMENT '项目名称/商品明细',
                                   `invoice_code` varchar(50) DEFAULT NULL COMMENT '发票号码',
-                                  `amount` double(10,2) DEFAULT NULL COMMENT '金额',
-                                  `date` varchar(20) DEFAULT NULL COMMENT '开票日期',
+                                  `amount` double(10,2) DEFAULT NULL COMMENT '金额 (旧版，单位元，迁移期间双写，待删除)',
+                                  `amount_cents` bigint(20) DEFAULT NULL COMMENT '金额 (单位: 分)',
+                                  `date` varchar(20) DEFAULT NULL COMMENT '开票日期 (旧版字符串，迁移期间双写，待删除)',
+                                  `invoice_date` date DEFAULT NULL COMMENT '开票日期',
                                   `category` varchar(50) DEFAULT NULL COMMENT '智能分类',
                                   `status` tinyint(1) DEFAULT 0 COMMENT '审批状态 (0=草稿, 1=待审核, 2=已通过, 3=已驳回)',
                                   `audit_remark` varchar(255) DEFAULT NULL COMMENT '审批驳回原因',
                                   `is_anomaly` tinyint(1) DEFAULT 0 COMMENT '是否异常(0否 1是)',
                                   `is_deleted` tinyint(1) DEFAULT 0 COMMENT '逻辑删除标记(0=正常, 1=已删除)',
+                                  `org_cluster` int(11) DEFAULT NULL COMMENT '全库聚类归属 (全库 K-Means 模型的聚类索引)',
                                   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
                                   PRIMARY KEY (`id`),
-                                  INDEX `idx_user_invoice` (`user_id`)
+                                  INDEX `idx_user_invoice` (`user_id`),
+                                  INDEX `idx_user_date` (`user_id`, `invoice_date`) COMMENT '按用户 + 日期范围查询'
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='智能票据归档表';
 
 -- 5. AI对话记录表 (已包含 session_id)
@@ -60,7 +74,7 @@ CREATE TABLE `sys_budget` (
                               `id` bigint(20) NOT NULL AUTO_INCREMENT,
                               `user_id` bigint(20) NOT NULL COMMENT '用户ID',
                               `category` varchar(50) NOT NULL COMMENT '分类名称',
-                              `limit_amount` double(10,2) NOT NULL COMMENT '预算限额',
+                              `limit_cents` bigint(20) NOT NULL COMMENT '预算限额 (单位: 分)',
                               `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
                               PRIMARY KEY (`id`),
                               UNIQUE KEY `uk_user_category` (`user_id`, `category`) COMMENT '防止同一用户对同一分类设多条预算'
@@ -76,4 +90,150 @@ CREATE TABLE `sys_operation_log` (
                                      `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
                                      PRIMARY KEY (`id`),
                                      INDEX `idx_user_op` (`user_id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作审计日志';
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作审计日志';
+
+-- 8. 月度消费汇总表 (票据写入时增量维护，只统计未删除的票据)
+CREATE TABLE `stat_monthly_spend` (
+                                      `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                      `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                      `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                      `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                      `total_cents` bigint(20) NOT NULL DEFAULT 0 COMMENT '消费总额 (单位: 分)',
+                                      `invoice_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '票据笔数',
+                                      `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                      PRIMARY KEY (`id`),
+                                      UNIQUE KEY `uk_user_month_category` (`user_id`, `month`, `category`) COMMENT '汇总单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='月度消费汇总表';
+
+-- 9. 聚类模型表 (全库 Mini-Batch K-Means 训练结果，每次训练追加一行，最新一行生效)
+CREATE TABLE `stat_cluster_model` (
+                                      `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                      `scope` varchar(20) NOT NULL COMMENT '模型范围 (ORG=全库)',
+                                      `cluster_count` int(11) NOT NULL COMMENT '聚类数量 k',
+                                      `dim` int(11) NOT NULL COMMENT '特征维度',
+                                      `centroids` text NOT NULL COMMENT '聚类中心 (JSON 数组，行优先)',
+                                      `counts` text NOT NULL COMMENT '各聚类累计样本数 (JSON 数组)',
+                                      `sample_count` bigint(20) DEFAULT NULL COMMENT '参与训练的票据数',
+                                      `epochs` int(11) DEFAULT NULL COMMENT '训练轮数',
+                                      `cost_millis` bigint(20) DEFAULT NULL COMMENT '训练耗时 (毫秒)',
+                                      `trained_at` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '训练完成时间',
+                                      PRIMARY KEY (`id`),
+                                      INDEX `idx_scope` (`scope`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聚类模型表';
+
+-- 10. AI 报告缓存表 (键为提示词指纹，按 TTL 过期)
+CREATE TABLE `ai_report_cache` (
+                                   `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                   `cache_key` char(64) NOT NULL COMMENT '输入指纹 (SHA-256)',
+                                   `model` varchar(50) DEFAULT NULL COMMENT '生成报告的模型',
+                                   `content` mediumtext NOT NULL COMMENT '报告内容 (Markdown)',
+                                   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '生成时间',
+                                   `expire_time` datetime NOT NULL COMMENT '过期时间',
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_cache_key` (`cache_key`) COMMENT '缓存键唯一索引',
+                                   INDEX `idx_expire_time` (`expire_time`) COMMENT '清理过期数据'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI 报告缓存表';
+
+-- 11. 消费预测表 (ForecastJob 定时计算的 (用户, 分类) 下月预测)
+CREATE TABLE `stat_forecast` (
+                                 `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                 `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                 `category` varchar(50) NOT NULL COMMENT '分类名称 (全部=全部分类合计)',
+                                 `target_month` char(7) NOT NULL COMMENT '预测月份 (yyyy-MM)',
+                                 `prediction_cents` bigint(20) NOT NULL COMMENT '预测值 (单位: 分)',
+                                 `lower_cents` bigint(20) DEFAULT NULL COMMENT '95% 预测区间下限 (单位: 分)',
+                                 `upper_cents` bigint(20) DEFAULT NULL COMMENT '95% 预测区间上限 (单位: 分)',
+                                 `sample_months` int(11) NOT NULL COMMENT '参与回归的月份数',
+                                 `compute_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '计算时间',
+                                 PRIMARY KEY (`id`),
+                                 UNIQUE KEY `uk_user_category` (`user_id`, `category`) COMMENT '预测单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费预测表';
+
+-- 12. 消费立方体表 ((用户, 月份, 分类, 商户) 预聚合，供上卷 / 下钻查询)
+CREATE TABLE `stat_spend_cube` (
+                                   `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                   `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                   `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                   `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                   `merchant` varchar(255) NOT NULL COMMENT '商户名称 (为空时记为 未知商户)',
+                                   `total_cents` bigint(20) NOT NULL DEFAULT 0 COMMENT '消费总额 (单位: 分)',
+                                   `invoice_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '票据笔数',
+                                   `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_user_month_category_merchant` (`user_id`, `month`, `category`, `merchant`) COMMENT '立方体单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费立方体表';
+
+-- 13. 消费分布草图表 ((用户, 月份, 分类) 单笔金额的 t-digest，供分位数查询)
+CREATE TABLE `stat_spend_digest` (
+                                     `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                     `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                     `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                     `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                     `digest` blob NOT NULL COMMENT '单笔金额 (分) 的 t-digest 草图',
+                                     `sample_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '草图中的票据笔数',
+                                     `stale` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否需要从明细重建',
+                                     `revision` bigint(20) NOT NULL DEFAULT 0 COMMENT '变更序号',
+                                     `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                     PRIMARY KEY (`id`),
+                                     UNIQUE KEY `uk_user_month_category` (`user_id`, `month`, `category`) COMMENT '草图单元唯一键',
+                                     INDEX `idx_stale` (`stale`, `id`) COMMENT '定时重建'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费分布草图表';
+
+-- 14. 高频商户草图表 (全库 Space-Saving 草图的定时快照)
+CREATE TABLE `stat_heavy_hitter` (
+                                     `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                     `scope` varchar(32) NOT NULL COMMENT '草图范围 (global=全库)',
+                                     `capacity` int(11) NOT NULL COMMENT '计数器数量',
+                                     `sketch` mediumblob NOT NULL COMMENT '序列化的 Space-Saving 草图',
+                                     `update_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '写回时间',
+                                     PRIMARY KEY (`id`),
+                                     UNIQUE KEY `uk_scope` (`scope`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='高频商户草图表';
+
+-- 15. 去重计数草图表 ((月份, 分类) 的商户 / 用户 HyperLogLog，供去重计数查询)
+CREATE TABLE `stat_distinct_sketch` (
+                                        `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                        `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                        `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                        `merchants` blob NOT NULL COMMENT '商户名称的 HyperLogLog 草图',
+                                        `users` blob NOT NULL COMMENT '用户ID的 HyperLogLog 草图',
+                                        `stale` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否需要从明细重建',
+                                        `revision` bigint(20) NOT NULL DEFAULT 0 COMMENT '变更序号',
+                                        `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (`id`),
+                                        UNIQUE KEY `uk_month_category` (`month`, `category`) COMMENT '草图单元唯一键',
+                                        INDEX `idx_stale` (`stale`, `id`) COMMENT '定时重建'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='去重计数草图表';
+
+-- 16. 重复支出表 (后台任务识别的 (用户, 商户) 周期性消费)
+CREATE TABLE `stat_recurring_payment` (
+                                          `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                          `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                          `merchant` varchar(255) NOT NULL COMMENT '商户名称',
+                                          `category` varchar(50) DEFAULT NULL COMMENT '分类名称 (该商户最常见的分类)',
+                                          `period` varchar(20) NOT NULL COMMENT '周期 (WEEKLY/BIWEEKLY/MONTHLY/BIMONTHLY/QUARTERLY/HALF_YEARLY/YEARLY)',
+                                          `score` double NOT NULL COMMENT '周期得分 (间隔落在该周期上的比例)',
+                                          `confidence` double NOT NULL COMMENT '置信度 (结合金额稳定性)',
+                                          `occurrences` int(11) NOT NULL COMMENT '消费次数 (同一天合并)',
+                                          `typical_cents` bigint(20) NOT NULL COMMENT '典型金额 (中位数，单位: 分)',
+                                          `amount_variation` double NOT NULL COMMENT '金额变异系数',
+                                          `first_date` date NOT NULL COMMENT '第一次消费日期',
+                                          `last_date` date NOT NULL COMMENT '最近一次消费日期',
+                                          `next_date` date NOT NULL COMMENT '预计下一次消费日期',
+                                          `active` tinyint(1) NOT NULL DEFAULT 1 COMMENT '是否仍在持续',
+                                          `compute_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '计算时间',
+                                          PRIMARY KEY (`id`),
+                                          UNIQUE KEY `uk_user_merchant` (`user_id`, `merchant`) COMMENT '重复支出单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='重复支出表';
+
+-- 17. 去重计数待合并表 (票据写入时登记，由定时任务批量合并到去重计数草图)
+CREATE TABLE `stat_distinct_pending` (
+                                         `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                         `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                         `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                         `merchant` varchar(255) DEFAULT NULL COMMENT '商户名称 (删除记录为空)',
+                                         `user_id` bigint(20) DEFAULT NULL COMMENT '用户ID',
+                                         `removed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否为删除 (对应单元需要重建)',
+                                         `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                         PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='去重计数待合并表';
@@ -186,4 +186,60 @@ INSERT INTO `invoice_record` (`user_id`, `merchant_name`, `item_name`, `invoice_
 
 -- 4. 统一修正状态
 -- 根据 modify.sql 的逻辑，将所有导入的历史数据设为 "已通过" (status=2)
-UPDATE `invoice_record` SET `status` = 2 WHERE `status` = 0;
\ No newline at end of file
+UPDATE `invoice_record` SET `status` = 2 WHERE `status` = 0;
+-- 5. 同步新列 (上面的数据只写了旧版 date / amount 列)
+-- 5.1 日期转换为 DATE 类型的 invoice_date
+UPDATE `invoice_record` SET `invoice_date` = STR_TO_DATE(`date`, '%Y-%m-%d')
+WHERE `invoice_date` IS NULL AND STR_TO_DATE(`date`, '%Y-%m-%d') IS NOT NULL;
+-- 5.2 金额由元换算为分
+UPDATE `invoice_record` SET `amount_cents` = ROUND(`amount` * 100)
+WHERE `amount_cents` IS NULL AND `amount` IS NOT NULL;
+-- 6. 重建汇总表 (上面的数据直接写入 invoice_record，需要同步到各汇总表)
+-- 直接向 invoice_record 导入数据后 (如 insert.sql)，也需要重新执行第 5、6 段 (6.1 ~ 6.4)
+-- 6.1 月度汇总表
+DELETE FROM `stat_monthly_spend`;
+INSERT INTO `stat_monthly_spend` (`user_id`, `month`, `category`, `total_cents`, `invoice_count`)
+SELECT `user_id`,
+       DATE_FORMAT(`invoice_date`, '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他'),
+       SUM(`amount_cents`),
+       COUNT(*)
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `invoice_date` IS NOT NULL AND `amount_cents` IS NOT NULL
+GROUP BY `user_id`, m, COALESCE(NULLIF(`category`, ''), '其他');
+-- 6.2 消费立方体 (同时是全库高频商户草图的重建来源)
+DELETE FROM `stat_spend_cube`;
+INSERT INTO `stat_spend_cube` (`user_id`, `month`, `category`, `merchant`, `total_cents`, `invoice_count`)
+SELECT `user_id`,
+       DATE_FORMAT(`invoice_date`, '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       COALESCE(NULLIF(`merchant_name`, ''), '未知商户') AS mc,
+       SUM(`amount_cents`),
+       COUNT(*)
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `invoice_date` IS NOT NULL AND `amount_cents` IS NOT NULL
+GROUP BY `user_id`, m, c, mc;
+-- 6.3 消费分布草图: 只建立标记为 stale 的行，草图内容由应用的定时任务从票据明细重建
+DELETE FROM `stat_spend_digest`;
+INSERT INTO `stat_spend_digest` (`user_id`, `month`, `category`, `digest`, `sample_count`, `stale`)
+SELECT `user_id`,
+       DATE_FORMAT(`invoice_date`, '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       '',
+       COUNT(*),
+       1
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `invoice_date` IS NOT NULL AND `amount_cents` IS NOT NULL
+GROUP BY `user_id`, m, c;
+-- 6.4 去重计数草图: 只建立标记为 stale 的行，草图内容由应用的定时任务从票据明细重建
+DELETE FROM `stat_distinct_pending`;
+DELETE FROM `stat_distinct_sketch`;
+INSERT INTO `stat_distinct_sketch` (`month`, `category`, `merchants`, `users`, `stale`)
+SELECT DATE_FORMAT(`invoice_date`, '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       '',
+       '',
+       1
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `invoice_date` IS NOT NULL
+GROUP BY m, c;
@@ -73,3 +73,277 @@ ALTER TABLE `invoice_record` ADD COLUMN `audit_remark` VARCHAR(255) DEFAULT NULL
 -- 3. 初始化旧数据为 "已通过" (假设旧数据都有效)
 UPDATE `invoice_record` SET `status` = 2 WHERE `status` = 0;
 
+USE `smartdoc`;
+
+-- 1. 创建月度消费汇总表 (票据写入时由应用增量维护)
+CREATE TABLE `stat_monthly_spend` (
+                                      `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                      `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                      `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                      `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                      `total_amount` decimal(14,2) NOT NULL DEFAULT 0 COMMENT '消费总额',
+                                      `invoice_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '票据笔数',
+                                      `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                      PRIMARY KEY (`id`),
+                                      UNIQUE KEY `uk_user_month_category` (`user_id`, `month`, `category`) COMMENT '汇总单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='月度消费汇总表';
+
+-- 2. 用现有票据回填汇总表 (只统计未删除、有金额、日期为严格 yyyy-MM-dd 的票据，
+--    与应用 MonthlyStatsService.monthOf 的口径一致；其他写法由开票日期回填任务计入)
+INSERT INTO `stat_monthly_spend` (`user_id`, `month`, `category`, `total_amount`, `invoice_count`)
+SELECT `user_id`,
+       DATE_FORMAT(STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他'),
+       SUM(`amount`),
+       COUNT(*)
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `amount` IS NOT NULL
+  AND TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$' AND STR_TO_DATE(TRIM(`date`), '%Y-%m-%d') IS NOT NULL
+GROUP BY `user_id`, m, COALESCE(NULLIF(`category`, ''), '其他');
+
+USE `smartdoc`;
+
+-- 开票日期从 VARCHAR 迁移到 DATE (在线迁移: expand → backfill → contract)
+-- 1. expand: 新增 DATE 列和联合索引 (INPLACE + LOCK=NONE，执行期间不阻塞读写)
+ALTER TABLE `invoice_record`
+    ADD COLUMN `invoice_date` DATE DEFAULT NULL COMMENT '开票日期',
+    ALGORITHM=INPLACE, LOCK=NONE;
+ALTER TABLE `invoice_record`
+    ADD INDEX `idx_user_date` (`user_id`, `invoice_date`) COMMENT '按用户 + 日期范围查询',
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+-- 2. backfill: 部署新版本后由 InvoiceDateBackfillJob 在启动时分段并行回填，无需手动执行。
+--    回填完成后可用以下语句检查剩余的无法识别的日期:
+-- SELECT id, `date` FROM `invoice_record` WHERE `invoice_date` IS NULL AND `date` IS NOT NULL;
+
+-- 3. contract: 确认无需保留旧数据、且旧版本应用全部下线后，再删除旧列
+--    (同时去掉 InvoiceData.legacyDate 字段)
+-- ALTER TABLE `invoice_record` DROP COLUMN `date`, ALGORITHM=INPLACE, LOCK=NONE;
+
+USE `smartdoc`;
+
+-- 金额从 DOUBLE (元) 迁移到 BIGINT (分)，求和不再有浮点误差
+-- 1. 票据金额: 新增 amount_cents 并回填 (应用在迁移期间双写 amount，旧版本仍可读取)
+ALTER TABLE `invoice_record`
+    ADD COLUMN `amount_cents` BIGINT(20) DEFAULT NULL COMMENT '金额 (单位: 分)',
+    ALGORITHM=INPLACE, LOCK=NONE;
+UPDATE `invoice_record` SET `amount_cents` = ROUND(`amount` * 100)
+WHERE `amount_cents` IS NULL AND `amount` IS NOT NULL;
+
+-- 2. 预算上限: 新增 limit_cents 并回填；旧列改为可空，新版本应用不再写入
+ALTER TABLE `sys_budget` ADD COLUMN `limit_cents` BIGINT(20) NOT NULL DEFAULT 0 COMMENT '预算限额 (单位: 分)';
+UPDATE `sys_budget` SET `limit_cents` = ROUND(`limit_amount` * 100);
+ALTER TABLE `sys_budget` MODIFY `limit_amount` DOUBLE(10,2) DEFAULT NULL COMMENT '预算限额 (旧版，待删除)';
+
+-- 3. 月度汇总: 新增 total_cents 并由 total_amount 换算
+ALTER TABLE `stat_monthly_spend` ADD COLUMN `total_cents` BIGINT(20) NOT NULL DEFAULT 0 COMMENT '消费总额 (单位: 分)';
+UPDATE `stat_monthly_spend` SET `total_cents` = ROUND(`total_amount` * 100);
+
+-- 4. contract: 旧版本应用全部下线后再删除旧列 (同时去掉 InvoiceData.legacyAmount 字段)
+-- ALTER TABLE `invoice_record` DROP COLUMN `amount`, ALGORITHM=INPLACE, LOCK=NONE;
+-- ALTER TABLE `sys_budget` DROP COLUMN `limit_amount`;
+-- ALTER TABLE `stat_monthly_spend` DROP COLUMN `total_amount`;
+
+USE `smartdoc`;
+
+-- 全库聚类: 票据新增聚类归属列，模型持久化到 stat_cluster_model
+ALTER TABLE `invoice_record`
+    ADD COLUMN `org_cluster` INT(11) DEFAULT NULL COMMENT '全库聚类归属 (全库 K-Means 模型的聚类索引)',
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+CREATE TABLE `stat_cluster_model` (
+                                      `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                      `scope` varchar(20) NOT NULL COMMENT '模型范围 (ORG=全库)',
+                                      `cluster_count` int(11) NOT NULL COMMENT '聚类数量 k',
+                                      `dim` int(11) NOT NULL COMMENT '特征维度',
+                                      `centroids` text NOT NULL COMMENT '聚类中心 (JSON 数组，行优先)',
+                                      `counts` text NOT NULL COMMENT '各聚类累计样本数 (JSON 数组)',
+                                      `sample_count` bigint(20) DEFAULT NULL COMMENT '参与训练的票据数',
+                                      `epochs` int(11) DEFAULT NULL COMMENT '训练轮数',
+                                      `cost_millis` bigint(20) DEFAULT NULL COMMENT '训练耗时 (毫秒)',
+                                      `trained_at` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '训练完成时间',
+                                      PRIMARY KEY (`id`),
+                                      INDEX `idx_scope` (`scope`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聚类模型表';
+
+USE `smartdoc`;
+
+-- AI 分析报告缓存: 提示词不变时复用上次的报告，重启后仍然有效
+CREATE TABLE `ai_report_cache` (
+                                   `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                   `cache_key` char(64) NOT NULL COMMENT '输入指纹 (SHA-256)',
+                                   `model` varchar(50) DEFAULT NULL COMMENT '生成报告的模型',
+                                   `content` mediumtext NOT NULL COMMENT '报告内容 (Markdown)',
+                                   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '生成时间',
+                                   `expire_time` datetime NOT NULL COMMENT '过期时间',
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_cache_key` (`cache_key`) COMMENT '缓存键唯一索引',
+                                   INDEX `idx_expire_time` (`expire_time`) COMMENT '清理过期数据'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI 报告缓存表';
+
+USE `smartdoc`;
+
+-- 消费预测: 后台任务为每个 (用户, 分类) 预先计算下月预测及预测区间
+CREATE TABLE `stat_forecast` (
+                                 `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                 `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                 `category` varchar(50) NOT NULL COMMENT '分类名称 (全部=全部分类合计)',
+                                 `target_month` char(7) NOT NULL COMMENT '预测月份 (yyyy-MM)',
+                                 `prediction_cents` bigint(20) NOT NULL COMMENT '预测值 (单位: 分)',
+                                 `lower_cents` bigint(20) DEFAULT NULL COMMENT '95% 预测区间下限 (单位: 分)',
+                                 `upper_cents` bigint(20) DEFAULT NULL COMMENT '95% 预测区间上限 (单位: 分)',
+                                 `sample_months` int(11) NOT NULL COMMENT '参与回归的月份数',
+                                 `compute_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '计算时间',
+                                 PRIMARY KEY (`id`),
+                                 UNIQUE KEY `uk_user_category` (`user_id`, `category`) COMMENT '预测单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费预测表';
+
+USE `smartdoc`;
+
+-- 消费立方体: 按 (用户, 月份, 分类, 商户) 预聚合，票据写入时增量维护
+-- 1. 创建立方体表
+CREATE TABLE `stat_spend_cube` (
+                                   `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                   `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                   `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                   `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                   `merchant` varchar(255) NOT NULL COMMENT '商户名称 (为空时记为 未知商户)',
+                                   `total_cents` bigint(20) NOT NULL DEFAULT 0 COMMENT '消费总额 (单位: 分)',
+                                   `invoice_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '票据笔数',
+                                   `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_user_month_category_merchant` (`user_id`, `month`, `category`, `merchant`) COMMENT '立方体单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费立方体表';
+
+-- 2. 用现有票据回填立方体 (只统计未删除、有金额的票据；开票日期尚未回填时只识别严格的 yyyy-MM-dd，
+--    与应用 MonthlyStatsService.monthOf 的口径一致)
+INSERT INTO `stat_spend_cube` (`user_id`, `month`, `category`, `merchant`, `total_cents`, `invoice_count`)
+SELECT `user_id`,
+       DATE_FORMAT(COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)), '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       COALESCE(NULLIF(`merchant_name`, ''), '未知商户') AS mc,
+       SUM(`amount_cents`),
+       COUNT(*)
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `amount_cents` IS NOT NULL
+  AND COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)) IS NOT NULL
+GROUP BY `user_id`, m, c, mc;
+
+USE `smartdoc`;
+
+-- 消费分布草图: 按 (用户, 月份, 分类) 保存单笔金额的 t-digest，用于中位数 / p90 等分位数查询
+-- 1. 创建草图表
+CREATE TABLE `stat_spend_digest` (
+                                     `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                     `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                     `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                     `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                     `digest` blob NOT NULL COMMENT '单笔金额 (分) 的 t-digest 草图',
+                                     `sample_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '草图中的票据笔数',
+                                     `stale` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否需要从明细重建',
+                                     `revision` bigint(20) NOT NULL DEFAULT 0 COMMENT '变更序号',
+                                     `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                     PRIMARY KEY (`id`),
+                                     UNIQUE KEY `uk_user_month_category` (`user_id`, `month`, `category`) COMMENT '草图单元唯一键',
+                                     INDEX `idx_stale` (`stale`, `id`) COMMENT '定时重建'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消费分布草图表';
+
+-- 2. 为现有数据建立草图行 (标记为 stale，草图内容由应用的定时任务从票据明细重建)
+--    执行本脚本时开票日期通常尚未回填，与消费立方体一样按严格 yyyy-MM-dd 识别旧日期
+INSERT INTO `stat_spend_digest` (`user_id`, `month`, `category`, `digest`, `sample_count`, `stale`)
+SELECT `user_id`,
+       DATE_FORMAT(COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)), '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       '',
+       COUNT(*),
+       1
+FROM `invoice_record`
+WHERE `is_deleted` = 0 AND `user_id` IS NOT NULL AND `amount_cents` IS NOT NULL
+  AND COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)) IS NOT NULL
+GROUP BY `user_id`, m, c;
+
+USE `smartdoc`;
+
+-- 高频商户: 全库 Space-Saving 草图定时写回本表，重启后直接加载 (表中没有时由消费立方体构建)
+CREATE TABLE `stat_heavy_hitter` (
+                                     `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                     `scope` varchar(32) NOT NULL COMMENT '草图范围 (global=全库)',
+                                     `capacity` int(11) NOT NULL COMMENT '计数器数量',
+                                     `sketch` mediumblob NOT NULL COMMENT '序列化的 Space-Saving 草图',
+                                     `update_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '写回时间',
+                                     PRIMARY KEY (`id`),
+                                     UNIQUE KEY `uk_scope` (`scope`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='高频商户草图表';
+
+USE `smartdoc`;
+
+-- 全库统计: 用户所属部门，管理员按部门汇总消费 (为空时归入 "未分配部门")
+ALTER TABLE `sys_user` ADD COLUMN `department` varchar(100) DEFAULT NULL COMMENT '所属部门 (管理员按部门汇总消费)';
+
+USE `smartdoc`;
+
+-- 去重计数: 按 (月份, 分类) 维护商户与用户的 HyperLogLog 草图
+-- 1. 建表
+CREATE TABLE `stat_distinct_sketch` (
+                                        `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                        `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                        `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                        `merchants` blob NOT NULL COMMENT '商户名称的 HyperLogLog 草图',
+                                        `users` blob NOT NULL COMMENT '用户ID的 HyperLogLog 草图',
+                                        `stale` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否需要从明细重建',
+                                        `revision` bigint(20) NOT NULL DEFAULT 0 COMMENT '变更序号',
+                                        `update_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (`id`),
+                                        UNIQUE KEY `uk_month_category` (`month`, `category`) COMMENT '草图单元唯一键',
+                                        INDEX `idx_stale` (`stale`, `id`) COMMENT '定时重建'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='去重计数草图表';
+
+-- 2. 为现有数据建立草图行 (标记为 stale，草图内容由应用的定时任务从票据明细重建)
+--    执行本脚本时开票日期通常尚未回填，与消费立方体一样按严格 yyyy-MM-dd 识别旧日期
+INSERT INTO `stat_distinct_sketch` (`month`, `category`, `merchants`, `users`, `stale`)
+SELECT DATE_FORMAT(COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)), '%Y-%m') AS m,
+       COALESCE(NULLIF(`category`, ''), '其他') AS c,
+       '',
+       '',
+       1
+FROM `invoice_record`
+WHERE `is_deleted` = 0
+  AND COALESCE(`invoice_date`, IF(TRIM(`date`) REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', STR_TO_DATE(TRIM(`date`), '%Y-%m-%d'), NULL)) IS NOT NULL
+GROUP BY m, c;
+
+USE `smartdoc`;
+
+-- 重复支出: RecurringPaymentJob 识别的周期性消费 (启动后第一次运行会全量计算)
+CREATE TABLE `stat_recurring_payment` (
+                                          `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                          `user_id` bigint(20) NOT NULL COMMENT '用户ID',
+                                          `merchant` varchar(255) NOT NULL COMMENT '商户名称',
+                                          `category` varchar(50) DEFAULT NULL COMMENT '分类名称 (该商户最常见的分类)',
+                                          `period` varchar(20) NOT NULL COMMENT '周期 (WEEKLY/BIWEEKLY/MONTHLY/BIMONTHLY/QUARTERLY/HALF_YEARLY/YEARLY)',
+                                          `score` double NOT NULL COMMENT '周期得分 (间隔落在该周期上的比例)',
+                                          `confidence` double NOT NULL COMMENT '置信度 (结合金额稳定性)',
+                                          `occurrences` int(11) NOT NULL COMMENT '消费次数 (同一天合并)',
+                                          `typical_cents` bigint(20) NOT NULL COMMENT '典型金额 (中位数，单位: 分)',
+                                          `amount_variation` double NOT NULL COMMENT '金额变异系数',
+                                          `first_date` date NOT NULL COMMENT '第一次消费日期',
+                                          `last_date` date NOT NULL COMMENT '最近一次消费日期',
+                                          `next_date` date NOT NULL COMMENT '预计下一次消费日期',
+                                          `active` tinyint(1) NOT NULL DEFAULT 1 COMMENT '是否仍在持续',
+                                          `compute_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '计算时间',
+                                          PRIMARY KEY (`id`),
+                                          UNIQUE KEY `uk_user_merchant` (`user_id`, `merchant`) COMMENT '重复支出单元唯一键'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='重复支出表';
+
+USE `smartdoc`;
+
+-- 去重计数: 票据写入时只登记待合并记录，由 DistinctCountService 定时批量合并到草图 (不在保存事务内锁定草图行)
+CREATE TABLE `stat_distinct_pending` (
+                                         `id` bigint(20) NOT NULL AUTO_INCREMENT,
+                                         `month` char(7) NOT NULL COMMENT '月份 (yyyy-MM)',
+                                         `category` varchar(50) NOT NULL COMMENT '分类名称',
+                                         `merchant` varchar(255) DEFAULT NULL COMMENT '商户名称 (删除记录为空)',
+                                         `user_id` bigint(20) DEFAULT NULL COMMENT '用户ID',
+                                         `removed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否为删除 (对应单元需要重建)',
+                                         `create_time` datetime DEFAULT CURRENT_TIMESTAMP,
+                                         PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='去重计数待合并表';
@@ -2,6 +2,7 @@ package com.example.smartdoc;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * SmartDoc 智能票据归档助手 - Spring Boot 应用程序入口类
@@ -21,6 +22,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @see org.springframework.boot.autoconfigure.SpringBootApplication
  */
 @SpringBootApplication  // 组合注解，包含 @Configuration, @EnableAutoConfiguration, @ComponentScan
+@EnableScheduling  // 启用定时任务 (如消费预测任务)
 public class SmartDocApplication {
 
 	/**
@@ -0,0 +1,380 @@
+package com.example.smartdoc.controller;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.smartdoc.model.User;
+import com.example.smartdoc.service.ClusterModelService;
+import com.example.smartdoc.service.DistinctCountService;
+import com.example.smartdoc.service.HeavyHitterService;
+import com.example.smartdoc.service.MerchantGraphService;
+import com.example.smartdoc.service.OrgAnalyticsService;
+import com.example.smartdoc.service.SpendDigestService;
+
+/**
+ * 管理员分析控制器 - 提供跨用户的全库统计分析
+ *
+ * <p>与 {@link StatsController} 只分析当前用户自己的数据不同，
+ * 本控制器的接口面向全库数据，仅管理员 (role=admin) 可以调用。</p>
+ *
+ * <h3>API 接口:</h3>
+ * <ul>
+ *   <li>POST /api/admin/clustering/train - 在后台启动全库 Mini-Batch K-Means 训练</li>
+ *   <li>GET /api/admin/clustering - 当前全库聚类模型 (中心点、各簇样本数、训练状态)</li>
+ *   <li>GET /api/admin/top-merchants - 全库消费金额最高的商户 (Space-Saving 草图，附误差上下界)</li>
+ *   <li>POST /api/admin/top-merchants/rebuild - 由消费立方体重新构建全库高频商户草图</li>
+ *   <li>GET /api/admin/percentiles - 全库各分类单笔金额的分位数 (合并所有用户的草图)</li>
+ *   <li>GET /api/admin/distinct-counts - 每月去重商户数、各分类活跃用户数 (HyperLogLog 估计)</li>
+ *   <li>GET /api/admin/org-stats - 按部门 / 用户 / 分类 / 月份汇总的全库消费、异常率与审批统计</li>
+ *   <li>GET /api/admin/merchant-graph - 商户共现图中 PageRank 排名靠前的商户</li>
+ *   <li>GET /api/admin/merchant-graph/neighbors - 与某个商户共同消费最多的商户</li>
+ *   <li>POST /api/admin/merchant-graph/rebuild - 在后台重新构建商户共现图</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see ClusterModelService
+ * @see SpendDigestService
+ * @see HeavyHitterService
+ * @see OrgAnalyticsService
+ * @see DistinctCountService
+ * @see MerchantGraphService
+ */
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminAnalyticsController {
+
+    /** 全库聚类模型服务 */
+    @Autowired
+    private ClusterModelService clusterModelService;
+
+    /** 消费分布服务 - 跨用户合并 t-digest 草图 */
+    @Autowired
+    private SpendDigestService spendDigestService;
+
+    /** 高频商户服务 - 全库 Space-Saving 草图 */
+    @Autowired
+    private HeavyHitterService heavyHitterService;
+
+    /** 全库统计服务 - 按用户分区并行扫描 */
+    @Autowired
+    private OrgAnalyticsService orgAnalyticsService;
+
+    /** 去重计数服务 - 按 (月份, 分类) 维护的 HyperLogLog 草图 */
+    @Autowired
+    private DistinctCountService distinctCountService;
+
+    /** 商户共现图服务 - 内存中的 CSR 图及 PageRank 排名 */
+    @Autowired
+    private MerchantGraphService merchantGraphService;
+
+    /**
+     * 【管理员】启动全库聚类训练
+     *
+     * <p>训练在后台线程中按主键分页流式读取全部票据，接口立即返回；
+     * 训练完成后新模型自动生效，并回写已有票据的聚类归属。
+     * 同一时刻只允许一个训练任务。</p>
+     *
+     * @param token 用户登录凭证
+     * @return 响应结果
+     *         - code=200: 已启动
+     *         - code=409: 已有训练任务在运行
+     *         - code=403: 权限不足
+     */
+    @PostMapping("/clustering/train")
+    public Map<String, Object> trainClustering(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        if (!clusterModelService.startTraining()) {
+            return Map.of("code", 409, "msg", "已有训练任务在运行");
+        }
+        return Map.of("code", 200, "msg", "训练已启动");
+    }
+
+    /**
+     * 【管理员】获取全库聚类模型
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "training": false,
+     *     "model": {
+     *       "id": 3, "k": 3, "sampleCount": 1200000, "epochs": 3, "trainedAt": "...",
+     *       "clusters": [{"index": 0, "day": 3.2, "amount": 2980.5, "count": 410000}, ...]
+     *     }
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @return 模型信息，从未训练过时 model 为 null
+     */
+    @GetMapping("/clustering")
+    public Map<String, Object> getClustering(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        return Map.of("code", 200, "data", clusterModelService.describe());
+    }
+
+    /**
+     * 【管理员】获取全库消费金额分布
+     *
+     * <p>合并所有用户在范围内的 t-digest 草图，返回结构与 {@code /api/stats/percentiles} 相同。</p>
+     *
+     * @param token    用户登录凭证
+     * @param category 只看某个分类 (可选)
+     * @param from     起始月份 yyyy-MM (含，可选)
+     * @param to       结束月份 yyyy-MM (含，可选)
+     * @return 各分类的分布统计
+     */
+    @GetMapping("/percentiles")
+    public Map<String, Object> getPercentiles(@RequestHeader("Authorization") String token,
+                                              @RequestParam(required = false) String category,
+                                              @RequestParam(required = false) String from,
+                                              @RequestParam(required = false) String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        YearMonth fromMonth;
+        YearMonth toMonth;
+        try {
+            fromMonth = from == null ? null : YearMonth.parse(from);
+            toMonth = to == null ? null : YearMonth.parse(to);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "月份格式错误，应为 yyyy-MM");
+        }
+
+        return Map.of("code", 200, "data", spendDigestService.distributionOfAll(
+                fromMonth == null ? null : fromMonth.toString(),
+                toMonth == null ? null : toMonth.toString(),
+                category == null || category.isEmpty() ? null : category));
+    }
+
+    /**
+     * 【管理员】全库消费金额最高的商户
+     *
+     * <p>返回结构与 {@code /api/stats/top-merchants} 相同，数据来自全库草图。</p>
+     *
+     * @param token 用户登录凭证
+     * @param k     返回的商户数 (默认 20，不超过草图容量)
+     * @return 前 k 名商户及误差信息
+     */
+    @GetMapping("/top-merchants")
+    public Map<String, Object> getTopMerchants(@RequestHeader("Authorization") String token,
+                                               @RequestParam(defaultValue = "20") int k) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+        if (k < 1) {
+            return Map.of("code", 400, "msg", "k 必须为正整数");
+        }
+
+        return Map.of("code", 200, "data", heavyHitterService.topGlobal(k));
+    }
+
+    /**
+     * 【管理员】重新构建全库高频商户草图
+     *
+     * <p>全库草图定时写回数据库，应用异常退出时最后一段增量会丢失；
+     * 本接口由消费立方体按商户重新汇总，修正这部分偏差。</p>
+     *
+     * @param token 用户登录凭证
+     * @return 响应结果
+     *         - code=200: 已重建
+     *         - code=409: 构建期间一直有票据写入，稍后重试
+     *         - code=403: 权限不足
+     */
+    @PostMapping("/top-merchants/rebuild")
+    public Map<String, Object> rebuildTopMerchants(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        if (!heavyHitterService.rebuildGlobal()) {
+            return Map.of("code", 409, "msg", "重建期间有票据写入，请稍后重试");
+        }
+        return Map.of("code", 200, "msg", "重建完成");
+    }
+
+    /**
+     * 【管理员】全库统计报告
+     *
+     * <p>按部门、用户、分类、月份汇总消费金额、笔数和异常率，并给出各审批状态的票据数
+     * 与每月审批处理量。首次调用全量扫描，之后只重新扫描有数据变化的用户分区。</p>
+     *
+     * @param token    用户登录凭证
+     * @param topUsers 返回消费额最高的用户数 (默认 20)
+     * @return 响应结果
+     *         - code=200: summary / departments / users / categories / months / audit / partitions
+     *         - code=403: 权限不足
+     */
+    @GetMapping("/org-stats")
+    public Map<String, Object> getOrgStats(@RequestHeader("Authorization") String token,
+                                           @RequestParam(defaultValue = "20") int topUsers) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+        if (topUsers < 0) {
+            return Map.of("code", 400, "msg", "topUsers 不能为负数");
+        }
+
+        return Map.of("code", 200, "data", orgAnalyticsService.report(topUsers));
+    }
+
+    /**
+     * 【管理员】去重商户数与活跃用户数
+     *
+     * <p>合并范围内各 (月份, 分类) 的 HyperLogLog 草图，不扫描票据明细。
+     * 结果为估计值，相对标准误差见返回的 relativeError (%)。</p>
+     *
+     * @param token 用户登录凭证
+     * @param from  起始月份 yyyy-MM (含，可选)
+     * @param to    结束月份 yyyy-MM (含，可选)
+     * @return 响应结果
+     *         - code=200: months / categories / total / relativeError
+     *         - code=400: 月份格式错误
+     *         - code=403: 权限不足
+     */
+    @GetMapping("/distinct-counts")
+    public Map<String, Object> getDistinctCounts(@RequestHeader("Authorization") String token,
+                                                 @RequestParam(required = false) String from,
+                                                 @RequestParam(required = false) String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        YearMonth fromMonth;
+        YearMonth toMonth;
+        try {
+            fromMonth = from == null ? null : YearMonth.parse(from);
+            toMonth = to == null ? null : YearMonth.parse(to);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "月份格式错误，应为 yyyy-MM");
+        }
+
+        return Map.of("code", 200, "data", distinctCountService.report(
+                fromMonth == null ? null : fromMonth.toString(),
+                toMonth == null ? null : toMonth.toString()));
+    }
+
+    /**
+     * 【管理员】商户共现图排名
+     *
+     * <p>同一用户同一天消费的商户之间有边，边权为共同出现的天数；
+     * 按 PageRank 返回处于关系网中心的商户。图每天离线重建一次，接口只读内存快照。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "building": false,
+     *     "graph": {
+     *       "merchantCount": 5230, "edgeCount": 41800, "basketCount": 126000,
+     *       "iterations": 38, "costMillis": 2100, "builtAt": "...",
+     *       "merchants": [{"rank": 1, "merchant": "滴滴出行", "score": 12.5, "degree": 640, "strength": 3810}, ...]
+     *     }
+     *   }
+     * }
+     * </pre>
+     * <p>score 为 PageRank × 商户数 (平均值为 1)；degree 为共同消费过的商户数，strength 为边权之和。</p>
+     *
+     * @param token 用户登录凭证
+     * @param k     返回的商户数 (默认 20)
+     * @return 排名信息，尚未构建时 graph 为 null
+     */
+    @GetMapping("/merchant-graph")
+    public Map<String, Object> getMerchantGraph(@RequestHeader("Authorization") String token,
+                                                @RequestParam(defaultValue = "20") int k) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+        if (k < 1) {
+            return Map.of("code", 400, "msg", "k 必须为正整数");
+        }
+
+        return Map.of("code", 200, "data", merchantGraphService.ranking(k));
+    }
+
+    /**
+     * 【管理员】与某个商户共同消费最多的商户
+     *
+     * @param token    用户登录凭证
+     * @param merchant 商户名称 (忽略首尾空格、大小写和重音)
+     * @param k        返回的邻居数 (默认 10，按边权降序)
+     * @return 响应结果
+     *         - code=200: 商户的排名信息及 neighbors (每项附 weight)
+     *         - code=404: 图尚未构建，或商户不在图中 (回看期内没有达到最小边权的共同消费)
+     *         - code=403: 权限不足
+     */
+    @GetMapping("/merchant-graph/neighbors")
+    public Map<String, Object> getMerchantNeighbors(@RequestHeader("Authorization") String token,
+                                                    @RequestParam String merchant,
+                                                    @RequestParam(defaultValue = "10") int k) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+        if (k < 1) {
+            return Map.of("code", 400, "msg", "k 必须为正整数");
+        }
+        if (!merchantGraphService.isReady()) {
+            return Map.of("code", 404, "msg", "商户共现图尚未构建，请稍后重试");
+        }
+
+        Map<String, Object> data = merchantGraphService.neighbors(merchant, k);
+        if (data == null) {
+            return Map.of("code", 404, "msg", "商户不在共现图中");
+        }
+        return Map.of("code", 200, "data", data);
+    }
+
+    /**
+     * 【管理员】重新构建商户共现图
+     *
+     * <p>构建在后台线程中进行，接口立即返回；构建期间查询继续使用旧的图。</p>
+     *
+     * @param token 用户登录凭证
+     * @return 响应结果
+     *         - code=200: 已启动
+     *         - code=409: 已有构建任务在运行
+     *         - code=403: 权限不足
+     */
+    @PostMapping("/merchant-graph/rebuild")
+    public Map<String, Object> rebuildMerchantGraph(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null || !"admin".equals(user.getRole())) {
+            return Map.of("code", 403, "msg", "无权访问");
+        }
+
+        if (!merchantGraphService.startRebuild()) {
+            return Map.of("code", 409, "msg", "已有构建任务在运行");
+        }
+        return Map.of("code", 200, "msg", "构建已启动");
+    }
+}
@@ -18,6 +18,7 @@ import com.example.smartdoc.model.OperationLog;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.InvoiceRepository;
 import com.example.smartdoc.repository.OperationLogRepository;
+import com.example.smartdoc.service.InvoiceChangeService;
 
 import jakarta.transaction.Transactional;
 
@@ -71,6 +72,10 @@ public class AuditController {
     @Autowired 
     private OperationLogRepository logRepo;
 
+    /** 票据变更服务 - 审批状态变化后使相关缓存失效 */
+    @Autowired
+    private InvoiceChangeService invoiceChangeService;
+
     /**
      * 【用户】提交审核申请
      * 
@@ -102,6 +107,7 @@ public class AuditController {
             data.setAuditRemark(null);
             // 6. 保存更新
             invoiceRepository.save(data);
+            invoiceChangeService.onTouched(data.getUserId());
             return Map.of("code", 200, "msg", "已提交申请");
         }
         
@@ -174,6 +180,7 @@ public class AuditController {
         if (data != null) {
             data.setStatus(2);  // 状态改为已通过
             invoiceRepository.save(data);
+            invoiceChangeService.onTouched(data.getUserId());
             
             // 3. 记录操作审计日志
             logRepo.save(new OperationLog(user.getId(), "审核通过", "单号:" + id));
@@ -222,6 +229,7 @@ public class AuditController {
             data.setStatus(3);  // 状态改为已驳回
             data.setAuditRemark(body.get("reason"));  // 保存驳回原因
             invoiceRepository.save(data);
+            invoiceChangeService.onTouched(data.getUserId());
             
             // 3. 记录操作审计日志 (包含驳回原因)
             logRepo.save(new OperationLog(user.getId(), "审核驳回", 
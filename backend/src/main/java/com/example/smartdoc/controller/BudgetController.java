@@ -17,7 +17,8 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.smartdoc.model.Budget;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.BudgetRepository;
-import com.example.smartdoc.repository.InvoiceRepository;
+import com.example.smartdoc.service.BudgetRiskService;
+import com.example.smartdoc.service.MonthlyStatsService;
 
 /**
  * 预算管理控制器 - 处理用户消费预算的增删改查
@@ -34,19 +35,21 @@ import com.example.smartdoc.repository.InvoiceRepository;
  * 
  * <h3>预算进度计算逻辑:</h3>
  * <pre>
- * 已使用金额 = SUM(该用户该分类下所有发票的 amount)
+ * 已使用金额 = SUM(该用户该分类在月度汇总表中的各月总额)
  * 使用进度% = 已使用金额 / 预算上限 × 100%
  * </pre>
  * 
  * <h3>API 接口:</h3>
  * <ul>
  *   <li>GET /api/budget/list - 获取预算列表 (含进度)</li>
+ *   <li>GET /api/budget/risk - 各预算本月的超支概率 (蒙特卡洛模拟)</li>
  *   <li>POST /api/budget/save - 新增/更新预算</li>
  *   <li>DELETE /api/budget/delete/{id} - 删除预算</li>
  * </ul>
  * 
  * @author SmartDoc Team
  * @see Budget
+ * @see BudgetRiskService
  */
 @RestController  // 标记为 RESTful 控制器
 @RequestMapping("/api/budget")  // 配置请求路径前缀
@@ -57,9 +60,13 @@ public class BudgetController {
     @Autowired
     private BudgetRepository budgetRepository;
 
-    /** 票据数据仓库 - 用于统计各分类消费金额 */
+    /** 月度消费汇总服务 - 用于统计各分类消费金额 */
     @Autowired
-    private InvoiceRepository invoiceRepository;
+    private MonthlyStatsService monthlyStatsService;
+
+    /** 预算风险服务 - 模拟本月剩余天数的消费 */
+    @Autowired
+    private BudgetRiskService budgetRiskService;
 
     /**
      * 获取预算列表 (带使用进度计算)
@@ -75,8 +82,10 @@ public class BudgetController {
      *     {
      *       "id": 1,
      *       "category": "餐饮美食",
-     *       "limitAmount": 3000.00,    // 预算上限
-     *       "usedAmount": 2350.50      // 已使用金额 (实时计算)
+     *       "limitAmount": 3000.00,    // 预算上限 (元)
+     *       "limitCents": 300000,      // 预算上限 (分)
+     *       "usedAmount": 2350.50,     // 已使用金额 (实时计算)
+     *       "usedCents": 235050
      *     },
      *     ...
      *   ]
@@ -99,17 +108,59 @@ public class BudgetController {
 
         // 3. 核心逻辑: 遍历每个预算，实时计算已使用金额
         for (Budget b : budgets) {
-            // 调用 InvoiceRepository 的聚合查询方法
-            // SQL: SELECT SUM(amount) FROM invoice_record WHERE user_id=? AND category=?
-            Double used = invoiceRepository.sumAmountByUserIdAndCategory(user.getId(), b.getCategory());
+            // 从月度汇总表累加，只需读取该分类的 O(月份数) 行
+            // SQL: SELECT SUM(total_cents) FROM stat_monthly_spend WHERE user_id=? AND category=?
+            long used = monthlyStatsService.sumByCategory(user.getId(), b.getCategory());
             
             // 将计算结果设置到 @Transient 字段 (不会存入数据库)
-            b.setUsedAmount(used);
+            b.setUsedCents(used);
         }
 
         return Map.of("code", 200, "data", budgets);
     }
 
+    /**
+     * 获取各预算本月的超支风险
+     *
+     * <p>按该分类最近的日消费情况，对本月剩余天数模拟上万条消费路径，
+     * 给出 "本月超出预算" 的概率和月底总额的估计。没有新票据时直接返回缓存的结果。</p>
+     *
+     * <h4>返回数据示例:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": [
+     *     {
+     *       "category": "餐饮美食",
+     *       "limitAmount": 3000.00,
+     *       "spentAmount": 1820.50,     // 本月已消费
+     *       "remainingDays": 12,
+     *       "historyDays": 90,          // 参与抽样的历史天数
+     *       "probability": 0.274,       // 超支概率 (历史不足 14 天时为 null，已超支时为 1)
+     *       "expectedAmount": 2790.30,  // 月底总额的期望
+     *       "p50Amount": 2765.00,
+     *       "p90Amount": 3180.40,
+     *       "paths": 10000
+     *     },
+     *     ...
+     *   ]
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @return 各预算的超支风险
+     */
+    @GetMapping("/risk")
+    public Map<String, Object> getRisk(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+
+        List<Budget> budgets = budgetRepository.findByUserId(user.getId());
+        return Map.of("code", 200, "data", budgetRiskService.risk(user.getId(), budgets));
+    }
+
     /**
      * 设置或更新预算
      * 
@@ -148,7 +199,7 @@ public class BudgetController {
         
         if (exist != null) {
             // 3a. 已存在: 更新预算金额
-            exist.setLimitAmount(budget.getLimitAmount());
+            exist.setLimitCents(budget.getLimitCents());
             budgetRepository.save(exist);
         } else {
             // 3b. 不存在: 绑定用户 ID 后新增
@@ -43,11 +43,11 @@ import jakarta.websocket.server.ServerEndpoint;
  * <pre>
  * 1. 用户发送问题: "这个月餐饮花了多少钱？"
  *                    ↓
- * 2. AI 生成 SQL: SELECT SUM(amount) FROM invoice_record 
+ * 2. AI 生成 SQL: SELECT SUM(amount_cents) / 100 AS total_yuan FROM invoice_record 
  *                 WHERE user_id=1 AND category='餐饮美食' 
- *                 AND date LIKE '2025-12%'
+ *                 AND invoice_date >= '2025-12-01' AND invoice_date < '2026-01-01'
  *                    ↓
- * 3. 执行 SQL 获取结果: [{"SUM(amount)": 1523.50}]
+ * 3. 执行 SQL 获取结果: [{"total_yuan": 1523.5000}]
  *                    ↓
  * 4. AI 生成自然语言回答: "本月您的餐饮消费共计 1523.50 元"
  * </pre>
@@ -304,9 +304,27 @@ public class ChatServer {
             - user_id (INT): 用户ID (当前用户ID为 %d)
             - merchant_name (VARCHAR): 商户名称
             - item_name (VARCHAR): 项目名称
-            - amount (DOUBLE): 金额
-            - date (VARCHAR): 日期 (格式 'YYYY-MM-DD')
+            - amount_cents (BIGINT): 金额，单位为分 (换算为元需除以 100)
+            - invoice_date (DATE): 开票日期 (与 user_id 建有联合索引)
             - category (VARCHAR): 分类 (可选值: %s)
+            - is_deleted (TINYINT): 删除标记 (0=正常, 1=回收站)
+
+            表名: stat_monthly_spend (月度汇总表，由系统实时维护，已排除回收站数据)
+            字段:
+            - user_id (INT): 用户ID
+            - month (CHAR): 月份 (格式 'YYYY-MM')
+            - category (VARCHAR): 分类
+            - total_cents (BIGINT): 该月该分类消费总额，单位为分 (换算为元需除以 100)
+            - invoice_count (INT): 该月该分类票据笔数
+
+            表名: stat_spend_cube (消费立方体，按月份+分类+商户汇总，由系统实时维护，已排除回收站数据)
+            字段:
+            - user_id (INT): 用户ID
+            - month (CHAR): 月份 (格式 'YYYY-MM')
+            - category (VARCHAR): 分类
+            - merchant (VARCHAR): 商户名称 (商户为空的票据记为 '未知商户')
+            - total_cents (BIGINT): 该月该分类该商户消费总额，单位为分 (换算为元需除以 100)
+            - invoice_count (INT): 该月该分类该商户票据笔数
             """, currentUserId, validCategories);
 
         // 3. 构建 System Prompt (核心 Prompt 工程)
@@ -315,9 +333,10 @@ public class ChatServer {
             
             【重要上下文】：
             **今天是：%s** (请根据此日期推算相对时间)
-            - 如果用户问"本月/这个月"，请匹配 date LIKE 'YYYY-MM-%%' (使用当前月份)
-            - 如果用户问"上个月"，请自行推算上个月份
-            - 如果用户问"今年"，请匹配 date LIKE 'YYYY-%%'
+            - 如果用户问"本月/这个月"，请匹配 invoice_date >= 'YYYY-MM-01' AND invoice_date < '下个月-01' (使用当前月份)
+            - 如果用户问"上个月"，请自行推算上个月份，同样使用半开区间
+            - 如果用户问"今年"，请匹配 invoice_date >= 'YYYY-01-01' AND invoice_date < '下一年-01-01'
+            - 日期条件不要使用 LIKE 或对 invoice_date 套函数，否则无法走索引
             
             %s
             
@@ -325,7 +344,12 @@ public class ChatServer {
             1. **语义映射**：用户用简称时(如"吃饭")，请映射到最接近的 category。
             2. **模糊查询**：商户或项目名请务必使用 LIKE。
             3. **安全限制**：必须在 WHERE 子句中包含 user_id = %d。
-            4. **输出格式**：只返回 SQL 语句本身，不要 Markdown，不要解释。
+            4. **优先汇总**：只问按月/按分类的总额或笔数时，查询 stat_monthly_spend (如 month = 'YYYY-MM')；
+               按商户汇总 (如某商户的月度总额、消费最多的商户) 时查询 stat_spend_cube，商户名同样使用 LIKE，
+               并加 invoice_count > 0 (排除票据已全部删除的单元)；
+               需要项目、单张票据等明细时才查询 invoice_record，且 invoice_record 必须加 is_deleted = 0。
+            5. **金额单位**：金额列以分存储，返回金额时请除以 100 换算为元 (如 SUM(amount_cents) / 100)。
+            6. **输出格式**：只返回 SQL 语句本身，不要 Markdown，不要解释。
             """, todayDate, tableSchema, currentUserId);
 
         // 4. 调用 DeepSeek API
@@ -20,14 +20,17 @@ import org.springframework.web.multipart.MultipartFile;
 import com.example.smartdoc.model.InvoiceData;
 import com.example.smartdoc.model.User;
 import com.example.smartdoc.repository.InvoiceRepository;
+import com.example.smartdoc.service.ClusterModelService;
+import com.example.smartdoc.service.ExportCacheService;
+import com.example.smartdoc.service.InvoiceChangeService;
 import com.example.smartdoc.service.OcrService;
 import com.example.smartdoc.utils.AnomalyDetectionUtil;
+import com.example.smartdoc.utils.FileTransferUtil;
+import com.example.smartdoc.utils.MoneyUtil;
 
-import cn.hutool.poi.excel.ExcelUtil;
-import cn.hutool.poi.excel.ExcelWriter;
-import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.transaction.Transactional;
 
 /**
  * 票据文档控制器 - 处理票据的上传识别、存储管理和导出功能
@@ -81,6 +84,18 @@ public class DocController {
     @Autowired
     private InvoiceRepository invoiceRepository;
 
+    /** 票据变更服务 - 维护汇总表并使相关缓存失效 */
+    @Autowired
+    private InvoiceChangeService invoiceChangeService;
+
+    /** Excel 导出缓存服务 */
+    @Autowired
+    private ExportCacheService exportCacheService;
+
+    /** 全库聚类模型服务 - 保存时计算票据的聚类归属 */
+    @Autowired
+    private ClusterModelService clusterModelService;
+
     /** HTTP 请求对象 - 用于获取请求头中的 Token */
     @Autowired
     private HttpServletRequest request;
@@ -136,10 +151,15 @@ public class DocController {
      *   <li>如果 Z-Score > 2.0，标记为异常 (约前 5% 极端值)</li>
      * </ol>
      * 
+     * <h4>汇总表维护:</h4>
+     * <p>保存与月度汇总表的增量更新在同一事务中完成。
+     * 修改已有票据时，先扣除旧值再计入新值。</p>
+     * 
      * @param data 待保存的票据数据 (从请求体 JSON 解析)
      * @return "success" 表示保存成功，"error: not login" 表示未登录
      */
     @PostMapping("/save")
+    @Transactional  // 票据与汇总表同时提交或回滚
     public String saveDoc(@RequestBody InvoiceData data) {
         // 1. 获取当前登录用户
         User currentUser = getCurrentUser();
@@ -150,22 +170,30 @@ public class DocController {
         // 2. 绑定用户 ID (数据隔离的关键)
         data.setUserId(currentUser.getId());
 
+        // 修改已有票据时保留旧值快照 (save 会覆盖托管实体)，并校验归属
+        InvoiceData before = null;
+        if (data.getId() != null) {
+            InvoiceData existing = invoiceRepository.findById(data.getId()).orElse(null);
+            if (existing != null) {
+                if (!existing.getUserId().equals(currentUser.getId())) {
+                    return "fail: permission denied";
+                }
+                before = invoiceChangeService.snapshot(existing);
+            }
+        }
+
         // ========== 3. 异常检测算法核心逻辑 ==========
         try {
-            // 3.1 获取该用户、该分类下的所有历史消费记录
+            // 3.1 获取该用户、该分类下的所有历史消费金额 (单位: 分)
             // 只与同类别的数据比较，如餐饮只跟餐饮比
-            List<InvoiceData> historyList = invoiceRepository.findByUserIdAndCategoryOrderByIdDesc(
+            // 3.2 拆箱为 long[] 作为训练数据，后续计算不再分配对象
+            long[] historyAmounts = MoneyUtil.toArray(invoiceRepository.findAmountCentsByUserIdAndCategory(
                     currentUser.getId(),
                     data.getCategory()
-            );
-
-            // 3.2 提取历史金额列表作为训练数据
-            List<Double> historyAmounts = historyList.stream()
-                    .map(InvoiceData::getAmount)
-                    .toList();  // JDK 16+ 写法
+            ));
 
             // 3.3 样本量检查: 至少需要 5 条历史数据才能进行统计分析
-            if (historyAmounts.size() >= 5) {
+            if (historyAmounts.length >= 5) {
                 // 计算均值 (Mean)
                 double mean = AnomalyDetectionUtil.calculateMean(historyAmounts);
                 
@@ -173,15 +201,10 @@ public class DocController {
                 double stdDev = AnomalyDetectionUtil.calculateStdDev(historyAmounts, mean);
 
                 // 3.4 使用 Z-Score 算法判定是否异常
-                boolean isWeird = AnomalyDetectionUtil.isAnomaly(data.getAmount(), mean, stdDev);
+                boolean isWeird = AnomalyDetectionUtil.isAnomaly(data.getAmountCents(), mean, stdDev);
 
                 // 3.5 打标: 0=正常, 1=异常
                 data.setIsAnomaly(isWeird ? 1 : 0);
-
-                // 输出日志方便调试
-                if (isWeird) {
-                    System.out.println("⚠️ 发现异常消费！金额: " + data.getAmount() + ", 均值: " + mean);
-                }
             } else {
                 // 样本不足，默认标记为正常
                 data.setIsAnomaly(0);
@@ -192,8 +215,21 @@ public class DocController {
         }
         // ============================================
 
-        // 4. 保存到数据库
-        invoiceRepository.save(data);
+        // 4. 全库聚类归属: 用已训练的模型计算最近中心，O(k)，模型未训练时为 null
+        try {
+            data.setOrgCluster(clusterModelService.assign(data));
+        } catch (Exception e) {
+            e.printStackTrace();
+            data.setOrgCluster(null);
+        }
+
+        // 5. 保存到数据库
+        InvoiceData saved = invoiceRepository.save(data);
+        if (before != null) {
+            invoiceChangeService.onUpdated(before, saved);
+        } else {
+            invoiceChangeService.onAdded(saved);
+        }
         return "success";
     }
 
@@ -238,6 +274,7 @@ public class DocController {
      * @return "success" 或 "fail: permission denied"
      */
     @DeleteMapping("/delete/{id}")
+    @Transactional  // 票据与汇总表同时提交或回滚
     public String deleteDoc(@PathVariable Long id) {
         // 1. 获取当前用户
         User currentUser = getCurrentUser();
@@ -249,6 +286,7 @@ public class DocController {
         if (data != null && data.getUserId().equals(currentUser.getId())) {
             // 执行删除 (由于 @SQLDelete 注解，实际是软删除)
             invoiceRepository.deleteById(id);
+            invoiceChangeService.onRemoved(data);
             return "success";
         } else {
             return "fail: permission denied";  // 没权限删别人的
@@ -275,7 +313,8 @@ public class DocController {
      * 导出票据为 Excel 文件
      * 
      * <p>该接口将当前用户的所有票据数据导出为 .xlsx 格式的 Excel 文件，
-     * 方便用户离线查看和存档。使用 Hutool 的 ExcelUtil 实现导出功能。</p>
+     * 方便用户离线查看和存档。报表由 {@link ExportCacheService} 生成并缓存在磁盘上，
+     * 只有当用户的票据数据发生变化时才会重新生成。</p>
      * 
      * <h4>导出列:</h4>
      * <ul>
@@ -289,52 +328,43 @@ public class DocController {
      *   <li>创建时间 (createTime)</li>
      * </ul>
      * 
+     * <h4>缓存与断点续传:</h4>
+     * <ul>
+     *   <li>响应带 ETag，客户端携带 If-None-Match 且数据未变时返回 304</li>
+     *   <li>支持 Range / If-Range 请求头，返回 206 部分内容</li>
+     *   <li>文件内容通过 FileChannel.transferTo 发送，不经过堆内存</li>
+     *   <li>不使用容器 sendfile: 容器在本方法返回后才打开文件，那时租约已释放，文件可能已被清理</li>
+     * </ul>
+     * 
      * @param response HTTP 响应对象，用于输出文件流
      * @param token    用户登录凭证
      */
     @GetMapping("/export")
     public void export(HttpServletResponse response, @RequestHeader("Authorization") String token) {
+        ExportCacheService.ExportFile file = null;
         try {
             // 1. 身份验证
             User user = UserController.tokenMap.get(token);
             if (user == null) return;
 
-            // 2. 查询该用户的所有票据数据
-            List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-
-            // 3. 使用 Hutool 创建 Excel Writer
-            // 参数 true 表示创建 xlsx 格式 (Excel 2007+)
-            ExcelWriter writer = ExcelUtil.getWriter(true);
-
-            // 4. 配置表头别名 (将英文字段名映射为中文)
-            writer.addHeaderAlias("id", "编号");
-            writer.addHeaderAlias("merchantName", "商户名称");
-            writer.addHeaderAlias("itemName", "项目名称");
-            writer.addHeaderAlias("amount", "金额");
-            writer.addHeaderAlias("date", "开票日期");
-            writer.addHeaderAlias("category", "分类");
-            writer.addHeaderAlias("invoiceCode", "发票号码");
-            writer.addHeaderAlias("createTime", "创建时间");
+            // 2. 获取当前数据版本对应的导出文件 (不存在时生成)
+            file = exportCacheService.getExportFile(user.getId());
 
-            // 5. 只导出配置了别名的列，忽略 userId 等内部字段
-            writer.setOnlyAlias(true);
-
-            // 6. 写入数据 (第二个参数 true 表示写入表头)
-            writer.write(list, true);
-
-            // 7. 设置响应头，告诉浏览器这是一个下载文件
+            // 3. 设置响应头，告诉浏览器这是一个下载文件
             response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet;charset=utf-8");
             String fileName = URLEncoder.encode("发票归档报表", StandardCharsets.UTF_8);
             response.setHeader("Content-Disposition", "attachment;filename=" + fileName + ".xlsx");
 
-            // 8. 将 Excel 写入响应输出流
-            ServletOutputStream out = response.getOutputStream();
-            writer.flush(out, true);  // flush 并关闭 writer
-            writer.close();
-            out.close();
+            // 4. 在租约内同步发送文件 (处理 ETag / Range)
+            FileTransferUtil.sendFile(request, response, file.getPath(), file.getEtag(), false);
 
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            // 5. 释放文件租约 (发送期间文件不会被清理)
+            if (file != null) {
+                exportCacheService.release(file);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package com.example.smartdoc.controller;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,6 +14,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.smartdoc.model.User;
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.service.InvoiceChangeService;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -67,6 +70,10 @@ public class RecycleBinController {
     @PersistenceContext
     private EntityManager entityManager;
 
+    /** 票据变更服务 - 维护汇总表并使相关缓存失效 */
+    @Autowired
+    private InvoiceChangeService invoiceChangeService;
+
     /**
      * 获取回收站列表
      * 
@@ -110,11 +117,19 @@ public class RecycleBinController {
     @PostMapping("/restore/{id}")
     @Transactional  // 开启事务，确保数据一致性
     public Map<String, Object> restore(@PathVariable Long id) {
+        InvoiceData row = findIncludingDeleted(id);
+
         // 执行原生 UPDATE 语句
         String sql = "UPDATE invoice_record SET is_deleted = 0 WHERE id = :id";
         entityManager.createNativeQuery(sql)
                 .setParameter("id", id)
                 .executeUpdate();
+
+        // 只有确实从回收站还原的票据才计入汇总
+        if (row != null && Integer.valueOf(1).equals(row.getIsDeleted())) {
+            row.setIsDeleted(0);
+            invoiceChangeService.onAdded(row);
+        }
         
         return Map.of("code", 200, "msg", "还原成功");
     }
@@ -134,11 +149,18 @@ public class RecycleBinController {
     @DeleteMapping("/destroy/{id}")
     @Transactional  // 开启事务
     public Map<String, Object> destroy(@PathVariable Long id) {
+        InvoiceData row = findIncludingDeleted(id);
+
         // 执行原生 DELETE 语句 (真正的物理删除)
         String sql = "DELETE FROM invoice_record WHERE id = :id";
         entityManager.createNativeQuery(sql)
                 .setParameter("id", id)
                 .executeUpdate();
+
+        // 回收站中的票据已不在汇总中，onRemoved 只会扣除仍有效的票据
+        if (row != null) {
+            invoiceChangeService.onRemoved(row);
+        }
         
         return Map.of("code", 200, "msg", "已彻底粉碎");
     }
@@ -166,7 +188,26 @@ public class RecycleBinController {
         entityManager.createNativeQuery(sql)
                 .setParameter("uid", user.getId())
                 .executeUpdate();
+        invoiceChangeService.onTouched(user.getId());
         
         return Map.of("code", 200, "msg", "回收站已清空");
     }
+
+    /**
+     * 辅助方法: 查询票据 (包含已软删除的记录)
+     * 
+     * <p>返回的实体会被 detach，后续原生 UPDATE/DELETE 不会与其状态冲突。</p>
+     * 
+     * @param id 票据主键 ID
+     * @return 票据数据，不存在返回 null
+     */
+    private InvoiceData findIncludingDeleted(Long id) {
+        List<?> rows = entityManager.createNativeQuery("SELECT * FROM invoice_record WHERE id = :id", InvoiceData.class)
+                .setParameter("id", id)
+                .getResultList();
+        if (rows.isEmpty()) return null;
+        InvoiceData row = (InvoiceData) rows.get(0);
+        entityManager.detach(row);
+        return row;
+    }
 }
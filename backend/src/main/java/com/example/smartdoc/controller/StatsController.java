@@ -2,10 +2,10 @@ package com.example.smartdoc.controller;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,14 +14,28 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.model.Forecast;
+import com.example.smartdoc.model.RecurringPayment;
 import com.example.smartdoc.model.User;
-import com.example.smartdoc.repository.InvoiceRepository;
-import com.example.smartdoc.service.DeepSeekService;
+import com.example.smartdoc.repository.ForecastRepository;
+import com.example.smartdoc.repository.RecurringPaymentRepository;
+import com.example.smartdoc.service.AiReportCacheService;
+import com.example.smartdoc.service.ClusteringService;
+import com.example.smartdoc.service.DashboardService;
+import com.example.smartdoc.service.HeavyHitterService;
+import com.example.smartdoc.service.KnowledgeGraphService;
+import com.example.smartdoc.service.MonthlyStatsService;
+import com.example.smartdoc.service.SpendCubeService;
+import com.example.smartdoc.service.SpendDigestService;
+import com.example.smartdoc.service.SpendIndexService;
+import com.example.smartdoc.utils.GridBinningUtil;
 import com.example.smartdoc.utils.KMeansUtil;
 import com.example.smartdoc.utils.LinearRegressionUtil;
+import com.example.smartdoc.utils.MoneyUtil;
+import com.example.smartdoc.utils.PeriodicityUtil;
 
 /**
  * 统计分析控制器 - 提供消费数据的智能分析和可视化
@@ -57,9 +71,17 @@ import com.example.smartdoc.utils.LinearRegressionUtil;
  * 
  * <h3>API 接口:</h3>
  * <ul>
+ *   <li>GET /api/stats/dashboard - 仪表盘 (趋势、图谱、聚类、预算并行计算，超时组件单独标记)</li>
  *   <li>GET /api/stats/trend - 消费趋势及预测</li>
- *   <li>GET /api/stats/graph - 知识图谱数据</li>
- *   <li>GET /api/stats/clustering - K-Means 聚类结果</li>
+ *   <li>GET /api/stats/forecast - 各分类下月消费预测及预测区间 (后台任务预先计算)</li>
+ *   <li>GET /api/stats/recurring - 话费、房租、订阅等周期性重复支出 (后台任务预先识别)</li>
+ *   <li>GET /api/stats/range - 任意日期区间的消费额 (合计及各分类)</li>
+ *   <li>GET /api/stats/compare - 日期区间与上一个等长区间的消费对比</li>
+ *   <li>GET /api/stats/cube - 按 年/月 × 分类/商户 上卷或下钻的消费汇总</li>
+ *   <li>GET /api/stats/percentiles - 各分类单笔金额的分位数 (中位数、p90 等)</li>
+ *   <li>GET /api/stats/top-merchants - 消费金额最高的商户 (附误差上下界)</li>
+ *   <li>GET /api/stats/graph - 知识图谱数据 (支持 from / to / topN 参数裁剪)</li>
+ *   <li>GET /api/stats/clustering - K-Means 聚类结果 (k 可为固定值或 auto，mode=grid 返回网格分箱)</li>
  *   <li>GET /api/stats/analyze-clustering - AI 聚类分析报告</li>
  * </ul>
  * 
@@ -72,13 +94,90 @@ import com.example.smartdoc.utils.LinearRegressionUtil;
 @CrossOrigin(origins = "*")  // 允许跨域
 public class StatsController {
 
-    /** 票据数据仓库 */
+    /** 知识图谱每个分类最多保留的商户数 (保证响应体积有上限) */
+    private static final int GRAPH_MAX_TOP_N = 100;
+
+    /** 固定聚类数量的上限 */
+    private static final int CLUSTER_MAX_K = 10;
+
+    /** 聚类网格模式每个轴最多的格子数 (保证响应体积有上限) */
+    private static final int GRID_MAX_BINS = 100;
+
+    /** 月度消费汇总服务 - 趋势预测直接读取预聚合数据 */
+    @Autowired
+    private MonthlyStatsService monthlyStatsService;
+
+    /** 消费预测仓库 - 读取 ForecastJob 预先计算的结果 */
+    @Autowired
+    private ForecastRepository forecastRepository;
+
+    /** 重复支出仓库 - 读取 RecurringPaymentJob 预先识别的结果 */
+    @Autowired
+    private RecurringPaymentRepository recurringPaymentRepository;
+
+    /** 日消费索引服务 - 任意日期区间的 O(log n) 求和 */
+    @Autowired
+    private SpendIndexService spendIndexService;
+
+    /** 消费立方体服务 - 按月份 / 分类 / 商户上卷与下钻 */
+    @Autowired
+    private SpendCubeService spendCubeService;
+
+    /** 消费分布服务 - 合并 t-digest 草图求分位数 */
     @Autowired
-    private InvoiceRepository invoiceRepository;
+    private SpendDigestService spendDigestService;
 
-    /** DeepSeek AI 服务 - 用于生成聚类分析报告 */
+    /** 高频商户服务 - Space-Saving 草图 */
     @Autowired
-    private DeepSeekService deepSeekService;
+    private HeavyHitterService heavyHitterService;
+
+    /** 知识图谱服务 - 聚合构建并按数据版本缓存 */
+    @Autowired
+    private KnowledgeGraphService knowledgeGraphService;
+
+    /** 个人聚类服务 - 固定 k 或并行自动选择 k */
+    @Autowired
+    private ClusteringService clusteringService;
+
+    /** AI 报告缓存服务 - 调用 DeepSeek 生成聚类分析报告，提示词不变时复用缓存 */
+    @Autowired
+    private AiReportCacheService aiReportCacheService;
+
+    /** 仪表盘服务 - 并行计算全部组件 */
+    @Autowired
+    private DashboardService dashboardService;
+
+    /**
+     * 获取仪表盘全部组件
+     *
+     * <p>一次请求返回 {@code /trend}、{@code /graph} (默认参数)、{@code /clustering} (k=3)
+     * 与 {@code /api/budget/list} 的数据。四个组件并行计算，各有独立的超时时间；
+     * 超时 (timeout)、失败 (error) 或线程池繁忙未执行 (busy) 的组件数据为 null，在 status 中标明，其余组件正常返回。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "trend": {...}, "graph": {...}, "clustering": {"data": {...}, "k": 3}, "budgets": [...],
+     *     "status": {"trend": "ok", "graph": "ok", "clustering": "timeout", "budgets": "ok"},
+     *     "partial": true
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @return 各组件数据及状态
+     */
+    @GetMapping("/dashboard")
+    public Map<String, Object> getDashboard(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+
+        return Map.of("code", 200, "data", dashboardService.build(user));
+    }
 
     /**
      * 获取消费趋势预测数据
@@ -88,7 +187,7 @@ public class StatsController {
      * 
      * <h4>算法原理:</h4>
      * <pre>
-     * 1. 获取近12个月的月度消费总额
+     * 1. 从月度汇总表获取近12个月的消费总额 (只读 O(月份数) 行)
      * 2. 将月份映射为 x 轴 (1, 2, 3, ..., 12)
      * 3. 使用最小二乘法计算回归方程 y = ax + b
      * 4. 预测 x = 13 时的 y 值
@@ -100,8 +199,10 @@ public class StatsController {
      *   "code": 200,
      *   "data": {
      *     "months": ["2025-01", "2025-02", ...],  // 月份列表
-     *     "amounts": [1500.0, 2300.0, ...],       // 消费金额列表
-     *     "prediction": 2150.50,                  // 预测值
+     *     "amounts": [1500.00, 2300.00, ...],     // 消费金额列表 (元)
+     *     "amountsCents": [150000, 230000, ...],  // 消费金额列表 (分)
+     *     "prediction": 2150.50,                  // 预测值 (元)
+     *     "predictionCents": 215050,              // 预测值 (分)
      *     "nextMonthLabel": "2026-01 (预测)"     // 预测月份标签
      *   }
      * }
@@ -118,53 +219,405 @@ public class StatsController {
             return Map.of("code", 401);
         }
 
-        // 2. 获取月度统计数据
-        // 注意: SQL 返回的是按月倒序的数据 (最新的在前)
-        List<Object[]> rawData = invoiceRepository.findMonthlyStatsByUserId(user.getId());
+        // 2. 读取月度汇总表并做线性回归预测
+        Map<String, Object> data = monthlyStatsService.getTrend(user.getId());
 
-        // 3. 关键步骤: 反转数据使其变为正序 (2025-01 → 2025-12)
-        // 线性回归需要时间正序的数据
-        Collections.reverse(rawData);
-
-        // 4. 提取月份和金额到独立列表
-        List<String> months = new ArrayList<>();
-        List<Double> amounts = new ArrayList<>();
+        return Map.of("code", 200, "data", data);
+    }
 
-        for (Object[] row : rawData) {
-            months.add(row[0].toString());  // 月份字符串
-            amounts.add(Double.parseDouble(row[1].toString()));  // 金额
+    /**
+     * 获取各分类的下月消费预测
+     *
+     * <p>预测由 {@link com.example.smartdoc.job.ForecastJob} 在后台定时计算，本接口只读取结果。
+     * 票据变化后的几分钟内可能仍是旧预测。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": [
+     *     {"category": "全部", "targetMonth": "2025-07", "prediction": 5230.00,
+     *      "lower": 3980.50, "upper": 6479.50, "sampleMonths": 12, "computeTime": "..."},
+     *     {"category": "餐饮", ...}
+     *   ]
+     * }
+     * </pre>
+     * <p>"全部" 为全部分类合计；样本不足 3 个月时 lower / upper 为 null。</p>
+     *
+     * @param token 用户登录凭证
+     * @return 预测列表，尚未计算时为空列表
+     */
+    @GetMapping("/forecast")
+    public Map<String, Object> getForecast(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
         }
 
-        // 5. 使用线性回归预测下月消费
-        Double nextMonthPrediction = 0.0;
-        String nextMonthLabel = "下月预测";
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Forecast f : forecastRepository.findByUserIdOrderByCategoryAsc(user.getId())) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("category", f.getCategory());
+            item.put("targetMonth", f.getTargetMonth());
+            item.put("prediction", MoneyUtil.toYuan(f.getPredictionCents()));
+            item.put("lower", MoneyUtil.toYuan(f.getLowerCents()));
+            item.put("upper", MoneyUtil.toYuan(f.getUpperCents()));
+            item.put("sampleMonths", f.getSampleMonths());
+            item.put("computeTime", f.getComputeTime());
+            list.add(item);
+        }
+        return Map.of("code", 200, "data", list);
+    }
 
-        if (!amounts.isEmpty()) {
-            // 调用线性回归工具类
-            nextMonthPrediction = LinearRegressionUtil.predictNext(amounts);
+    /**
+     * 获取周期性重复支出
+     *
+     * <p>由 {@link com.example.smartdoc.job.RecurringPaymentJob} 在后台对每个商户的消费日期做周期检测，
+     * 本接口只读取结果。票据变化后的几分钟内可能仍是旧结果。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "items": [
+     *       {"merchant": "中国移动", "category": "通讯网络", "period": "MONTHLY", "periodLabel": "每月",
+     *        "typicalAmount": 99.00, "occurrences": 26, "confidence": 0.95, "amountVariation": 0.02,
+     *        "firstDate": "2023-05-12", "lastDate": "2025-06-12", "nextDate": "2025-07-12", "active": true},
+     *       ...
+     *     ],
+     *     "monthlyTotal": 3299.00
+     *   }
+     * }
+     * </pre>
+     * <p>items 中持续中的在前，同类按预计下一次消费日期排序；
+     * monthlyTotal 为持续中的重复支出折算到每月的合计金额。</p>
+     *
+     * @param token 用户登录凭证
+     * @return 重复支出列表，尚未计算时为空列表
+     */
+    @GetMapping("/recurring")
+    public Map<String, Object> getRecurring(@RequestHeader("Authorization") String token) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
 
-            // 自动计算下个月的具体日期字符串
-            try {
-                String lastMonthStr = months.get(months.size() - 1);
-                DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM");
-                YearMonth lastMonth = YearMonth.parse(lastMonthStr, fmt);
-                YearMonth nextMonth = lastMonth.plusMonths(1);
-                nextMonthLabel = nextMonth.format(fmt) + " (预测)";
-            } catch (Exception e) {
-                nextMonthLabel = "下月预测";
+        List<Map<String, Object>> active = new ArrayList<>();
+        List<Map<String, Object>> stopped = new ArrayList<>();
+        double monthlyCents = 0;
+        for (RecurringPayment r : recurringPaymentRepository.findByUserIdOrderByNextDateAsc(user.getId())) {
+            PeriodicityUtil.Period period = PeriodicityUtil.Period.valueOf(r.getPeriod());
+            Map<String, Object> item = new HashMap<>();
+            item.put("merchant", r.getMerchant());
+            item.put("category", r.getCategory());
+            item.put("period", r.getPeriod());
+            item.put("periodLabel", period.label());
+            item.put("typicalAmount", MoneyUtil.toYuan(r.getTypicalCents()));
+            item.put("occurrences", r.getOccurrences());
+            item.put("confidence", Math.round(r.getConfidence() * 100) / 100.0);
+            item.put("amountVariation", Math.round(r.getAmountVariation() * 100) / 100.0);
+            item.put("firstDate", r.getFirstDate());
+            item.put("lastDate", r.getLastDate());
+            item.put("nextDate", r.getNextDate());
+            item.put("active", r.getActive());
+            if (Boolean.TRUE.equals(r.getActive())) {
+                active.add(item);
+                monthlyCents += r.getTypicalCents() * (365.2425 / 12) / period.nominalDays();
+            } else {
+                stopped.add(item);
             }
         }
+        active.addAll(stopped);
+        return Map.of("code", 200, "data", Map.of(
+                "items", active,
+                "monthlyTotal", MoneyUtil.toYuan(Math.round(monthlyCents))));
+    }
 
-        // 6. 封装返回数据
-        Map<String, Object> data = new HashMap<>();
-        data.put("months", months);           // 月份列表 (X轴)
-        data.put("amounts", amounts);         // 消费金额 (Y轴)
-        data.put("prediction", nextMonthPrediction);  // 预测值
-        data.put("nextMonthLabel", nextMonthLabel);   // 预测月份标签
+    /**
+     * 获取任意日期区间的消费额
+     *
+     * <p>由内存中的按天树状数组回答，与区间长度和票据数量无关，单次查询 O(分类数 × log 天数)。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "from": "2025-03-01", "to": "2025-03-31",
+     *     "total": 3820.50, "totalCents": 382050,
+     *     "categories": {"餐饮": 1210.00, "交通": 350.50, ...}
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @param from  起始日期 yyyy-MM-dd (含)
+     * @param to    结束日期 yyyy-MM-dd (含)
+     * @return 区间合计及各分类金额 (元)
+     */
+    @GetMapping("/range")
+    public Map<String, Object> getRangeSpend(@RequestHeader("Authorization") String token,
+                                             @RequestParam String from,
+                                             @RequestParam String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+
+        // 接口的 to 为闭区间，查询时转换为半开区间 [from, to+1)
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to).plusDays(1);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "日期格式错误，应为 yyyy-MM-dd");
+        }
+        if (!fromDate.isBefore(toDate)) {
+            return Map.of("code", 400, "msg", "结束日期不能早于起始日期");
+        }
+
+        SpendIndexService.RangeSum sum = spendIndexService.rangeSum(user.getId(), fromDate, toDate);
+        return Map.of("code", 200, "data", toRangeData(sum, fromDate, toDate));
+    }
+
+    /**
+     * 对比日期区间与上一个等长区间的消费额
+     *
+     * <p>上期为紧邻本期之前、天数相同的区间。例如本期为 2025-03-01 ~ 2025-03-31 (31 天)，
+     * 上期为 2025-01-29 ~ 2025-02-28。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "current":  {"from": "...", "to": "...", "total": 3820.50, "totalCents": 382050, "categories": {...}},
+     *     "previous": {"from": "...", "to": "...", "total": 3100.00, "totalCents": 310000, "categories": {...}},
+     *     "change": 720.50,
+     *     "changeRate": 23.24       // 环比变化 (%)，上期为 0 时为 null
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @param from  本期起始日期 yyyy-MM-dd (含)
+     * @param to    本期结束日期 yyyy-MM-dd (含)
+     * @return 本期、上期及变化
+     */
+    @GetMapping("/compare")
+    public Map<String, Object> comparePeriods(@RequestHeader("Authorization") String token,
+                                              @RequestParam String from,
+                                              @RequestParam String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
 
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to).plusDays(1);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "日期格式错误，应为 yyyy-MM-dd");
+        }
+        if (!fromDate.isBefore(toDate)) {
+            return Map.of("code", 400, "msg", "结束日期不能早于起始日期");
+        }
+
+        SpendIndexService.RangeSum[] sums = spendIndexService.compare(user.getId(), fromDate, toDate);
+        LocalDate previousFrom = fromDate.minusDays(toDate.toEpochDay() - fromDate.toEpochDay());
+        long current = sums[0].totalCents();
+        long previous = sums[1].totalCents();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("current", toRangeData(sums[0], fromDate, toDate));
+        data.put("previous", toRangeData(sums[1], previousFrom, fromDate));
+        data.put("change", MoneyUtil.toYuan(current - previous));
+        data.put("changeRate", previous == 0 ? null : Math.round((current - previous) * 10000.0 / previous) / 100.0);
         return Map.of("code", 200, "data", data);
     }
 
+    /**
+     * 组装区间消费额的返回数据 (日期以闭区间展示)
+     */
+    private static Map<String, Object> toRangeData(SpendIndexService.RangeSum sum, LocalDate from, LocalDate toExclusive) {
+        Map<String, Object> categories = new LinkedHashMap<>();
+        sum.categories().forEach((category, cents) -> categories.put(category, MoneyUtil.toYuan(cents)));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("from", from.toString());
+        data.put("to", toExclusive.minusDays(1).toString());
+        data.put("total", MoneyUtil.toYuan(sum.totalCents()));
+        data.put("totalCents", sum.totalCents());
+        data.put("categories", categories);
+        return data;
+    }
+
+    /**
+     * 多维消费分析 (上卷 / 下钻)
+     *
+     * <p>读取预聚合的 (月份, 分类, 商户) 消费立方体，按指定粒度汇总。
+     * 时间轴可取 all / year / month，分类轴可取 all / category / merchant，
+     * 传入 category 时只看该分类 (下钻到商户)。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "cells": [
+     *       {"period": "2025", "category": "餐饮美食", "merchant": "全部", "amount": 5820.50, "amountCents": 582050, "count": 83},
+     *       ...
+     *     ],
+     *     "scanned": 312     // 扫描的立方体单元数
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token    用户登录凭证
+     * @param time     时间粒度 all / year / month (默认 month)
+     * @param level    分类粒度 all / category / merchant (默认 category)
+     * @param category 只看某个分类 (可选)
+     * @param from     起始月份 yyyy-MM (含，可选)
+     * @param to       结束月份 yyyy-MM (含，可选)
+     * @return 汇总后的单元，按时间升序、同一时间内按金额降序
+     */
+    @GetMapping("/cube")
+    public Map<String, Object> getCube(@RequestHeader("Authorization") String token,
+                                       @RequestParam(defaultValue = "month") String time,
+                                       @RequestParam(defaultValue = "category") String level,
+                                       @RequestParam(required = false) String category,
+                                       @RequestParam(required = false) String from,
+                                       @RequestParam(required = false) String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+
+        SpendCubeService.TimeLevel timeLevel;
+        SpendCubeService.CategoryLevel categoryLevel;
+        try {
+            timeLevel = SpendCubeService.TimeLevel.valueOf(time.toUpperCase());
+            categoryLevel = SpendCubeService.CategoryLevel.valueOf(level.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Map.of("code", 400, "msg", "time 应为 all / year / month，level 应为 all / category / merchant");
+        }
+        YearMonth fromMonth;
+        YearMonth toMonth;
+        try {
+            fromMonth = from == null ? null : YearMonth.parse(from);
+            toMonth = to == null ? null : YearMonth.parse(to);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "月份格式错误，应为 yyyy-MM");
+        }
+        if (fromMonth != null && toMonth != null && toMonth.isBefore(fromMonth)) {
+            return Map.of("code", 400, "msg", "结束月份不能早于起始月份");
+        }
+
+        return Map.of("code", 200, "data", spendCubeService.query(user.getId(),
+                fromMonth == null ? null : fromMonth.toString(),
+                toMonth == null ? null : toMonth.toString(),
+                timeLevel, categoryLevel, category == null || category.isEmpty() ? null : category));
+    }
+
+    /**
+     * 消费金额分布 (分位数)
+     *
+     * <p>合并范围内各月份的 t-digest 草图，返回每个分类单笔金额的中位数、p90 等分位数。
+     * 与均值相比，分位数不受少数大额票据影响，更能代表 "一般花多少"。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": [
+     *     {"category": "全部", "count": 320, "min": 1.50, "p25": 18.00, "p50": 35.00, "p75": 88.00,
+     *      "p90": 260.00, "p95": 520.00, "p99": 2980.00, "max": 8800.00, "mean": 96.20},
+     *     {"category": "餐饮美食", ...}
+     *   ]
+     * }
+     * </pre>
+     *
+     * @param token    用户登录凭证
+     * @param category 只看某个分类 (可选)
+     * @param from     起始月份 yyyy-MM (含，可选)
+     * @param to       结束月份 yyyy-MM (含，可选)
+     * @return 各分类的分布统计，合计在最前，其余按笔数降序
+     */
+    @GetMapping("/percentiles")
+    public Map<String, Object> getPercentiles(@RequestHeader("Authorization") String token,
+                                              @RequestParam(required = false) String category,
+                                              @RequestParam(required = false) String from,
+                                              @RequestParam(required = false) String to) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+
+        YearMonth fromMonth;
+        YearMonth toMonth;
+        try {
+            fromMonth = from == null ? null : YearMonth.parse(from);
+            toMonth = to == null ? null : YearMonth.parse(to);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "月份格式错误，应为 yyyy-MM");
+        }
+        if (fromMonth != null && toMonth != null && toMonth.isBefore(fromMonth)) {
+            return Map.of("code", 400, "msg", "结束月份不能早于起始月份");
+        }
+
+        return Map.of("code", 200, "data", spendDigestService.distribution(user.getId(),
+                fromMonth == null ? null : fromMonth.toString(),
+                toMonth == null ? null : toMonth.toString(),
+                category == null || category.isEmpty() ? null : category));
+    }
+
+    /**
+     * 消费金额最高的商户
+     *
+     * <p>读取增量维护的 Space-Saving 草图，不扫描票据。每个商户返回金额的上界 (amount)
+     * 与下界 (minAmount)；guaranteed=true 表示该商户一定属于真实的前 k 名。
+     * 商户数没有超过草图容量时结果是精确的 (exact=true，error 全部为 0)。</p>
+     *
+     * <h4>返回数据结构:</h4>
+     * <pre>
+     * {
+     *   "code": 200,
+     *   "data": {
+     *     "merchants": [
+     *       {"merchant": "盒马鲜生", "amount": 3820.50, "amountCents": 382050, "minAmount": 3820.50, "error": 0.00, "guaranteed": true},
+     *       ...
+     *     ],
+     *     "total": 25800.00,         // 全部商户的消费总额
+     *     "capacity": 50, "tracked": 50,
+     *     "untrackedMax": 120.00,    // 未出现在草图中的商户，金额不超过该值
+     *     "errorBound": 516.00,      // 理论误差上限 total / capacity
+     *     "exact": false
+     *   }
+     * }
+     * </pre>
+     *
+     * @param token 用户登录凭证
+     * @param k     返回的商户数 (默认 10，不超过草图容量)
+     * @return 前 k 名商户及误差信息
+     */
+    @GetMapping("/top-merchants")
+    public Map<String, Object> getTopMerchants(@RequestHeader("Authorization") String token,
+                                               @RequestParam(defaultValue = "10") int k) {
+        User user = UserController.tokenMap.get(token);
+        if (user == null) {
+            return Map.of("code", 401);
+        }
+        if (k < 1) {
+            return Map.of("code", 400, "msg", "k 必须为正整数");
+        }
+
+        return Map.of("code", 200, "data", heavyHitterService.topForUser(user.getId(), k));
+    }
+
     /**
      * 获取知识图谱数据
      * 
@@ -190,92 +643,49 @@ public class StatsController {
      * <h4>节点大小:</h4>
      * <p>节点大小与该分类/商户的消费金额成对数关系</p>
      * 
+     * <h4>性能:</h4>
+     * <p>在用户快照 (与聚类、区间消费共用，不再单独查询数据库) 上按 (分类, 商户) 一次遍历聚合，
+     * 用哈希表构建图谱；结果按用户缓存到其票据数据下次变化为止。</p>
+     * 
+     * <h4>规模控制:</h4>
+     * <p>每个分类只保留消费额最高的 topN 个商户，其余折叠为一个 "其他商户" 节点，
+     * 节点数不超过 1 + 分类数 × (topN + 2)，与历史数据量无关。</p>
+     * 
+     * <h4>请求示例:</h4>
+     * <pre>
+     * GET /api/stats/graph?from=2025-01-01&amp;to=2025-12-31&amp;topN=10
+     * </pre>
+     * 
      * @param token 用户登录凭证
+     * @param from  起始日期 yyyy-MM-dd (含)，可选
+     * @param to    结束日期 yyyy-MM-dd (含)，可选
+     * @param topN  每个分类保留的商户数，默认 20，最大 {@value #GRAPH_MAX_TOP_N}
      * @return 知识图谱数据 (nodes + links)
      */
     @GetMapping("/graph")
-    public Map<String, Object> getKnowledgeGraph(@RequestHeader("Authorization") String token) {
+    public Map<String, Object> getKnowledgeGraph(@RequestHeader("Authorization") String token,
+                                                 @RequestParam(required = false) String from,
+                                                 @RequestParam(required = false) String to,
+                                                 @RequestParam(defaultValue = "20") int topN) {
         // 1. 身份验证
         User user = UserController.tokenMap.get(token);
         if (user == null) {
             return Map.of("code", 401);
         }
 
-        // 2. 获取该用户的所有票据
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-
-        // 3. 初始化图谱数据结构
-        List<Map<String, Object>> nodes = new ArrayList<>();  // 节点列表
-        List<Map<String, Object>> links = new ArrayList<>();  // 边列表
-        List<String> addedCategories = new ArrayList<>();     // 已添加的分类 (去重)
-        List<String> addedMerchants = new ArrayList<>();      // 已添加的商户 (去重)
-
-        // 4. 创建根节点 (用户)
-        Map<String, Object> rootNode = new HashMap<>();
-        rootNode.put("id", "ROOT");
-        rootNode.put("name", user.getNickname());
-        rootNode.put("symbolSize", 60);  // 根节点最大
-        rootNode.put("category", 0);     // 类别 0 = 用户
-        nodes.add(rootNode);
-
-        // 5. 统计各分类和商户的总消费金额 (用于计算节点大小)
-        Map<String, Double> categoryAmountMap = new HashMap<>();
-        Map<String, Double> merchantAmountMap = new HashMap<>();
-
-        for (InvoiceData item : list) {
-            // 累加分类金额
-            categoryAmountMap.merge(item.getCategory(), item.getAmount(), Double::sum);
-            // 累加商户金额
-            merchantAmountMap.merge(item.getMerchantName(), item.getAmount(), Double::sum);
-        }
-
-        // 6. 遍历票据构建图谱
-        for (InvoiceData item : list) {
-            String cat = item.getCategory();
-            String merch = item.getMerchantName();
-
-            // 6.1 添加分类节点 (去重)
-            if (!addedCategories.contains(cat)) {
-                Map<String, Object> catNode = new HashMap<>();
-                catNode.put("id", "CAT_" + cat);
-                catNode.put("name", cat);
-                // 节点大小: 基础值 + 对数缩放 (避免金额差异过大导致显示问题)
-                double size = 20 + Math.log(categoryAmountMap.get(cat) + 1) * 5;
-                catNode.put("symbolSize", Math.min(size, 50));  // 最大50
-                catNode.put("category", 1);  // 类别 1 = 分类
-                nodes.add(catNode);
-                addedCategories.add(cat);
-
-                // 创建边: 用户 → 分类
-                Map<String, Object> link = new HashMap<>();
-                link.put("source", "ROOT");
-                link.put("target", "CAT_" + cat);
-                links.add(link);
-            }
-
-            // 6.2 添加商户节点 (去重)
-            if (!addedMerchants.contains(merch)) {
-                Map<String, Object> merchNode = new HashMap<>();
-                merchNode.put("id", "MER_" + merch);
-                merchNode.put("name", merch);
-                double size = 10 + Math.log(merchantAmountMap.get(merch) + 1) * 3;
-                merchNode.put("symbolSize", Math.min(size, 30));  // 最大30
-                merchNode.put("category", 2);  // 类别 2 = 商户
-                nodes.add(merchNode);
-                addedMerchants.add(merch);
-
-                // 创建边: 分类 → 商户
-                Map<String, Object> link = new HashMap<>();
-                link.put("source", "CAT_" + cat);
-                link.put("target", "MER_" + merch);
-                links.add(link);
-            }
+        // 2. 解析日期窗口 (接口的 to 为闭区间，查询时转换为半开区间 [from, to+1))
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = (from == null || from.isBlank()) ? null : LocalDate.parse(from);
+            toDate = (to == null || to.isBlank()) ? null : LocalDate.parse(to).plusDays(1);
+        } catch (DateTimeParseException e) {
+            return Map.of("code", 400, "msg", "日期格式错误，应为 yyyy-MM-dd");
         }
 
-        // 7. 封装返回结果
-        Map<String, Object> result = new HashMap<>();
-        result.put("nodes", nodes);
-        result.put("links", links);
+        // 3. 按 (分类, 商户) 聚合构建图谱，数据未变化时直接返回缓存
+        int n = Math.max(1, Math.min(topN, GRAPH_MAX_TOP_N));
+        Map<String, Object> result = knowledgeGraphService.getGraph(user.getId(), user.getNickname(), fromDate, toDate, n);
 
         return Map.of("code", 200, "data", result);
     }
@@ -284,7 +694,7 @@ public class StatsController {
      * 获取 K-Means 聚类分析结果
      * 
      * <p>该接口使用 K-Means 算法对用户的消费数据进行聚类分析，
-     * 将消费记录分为 K=3 个群体。返回的数据适合绑定 ECharts 散点图。</p>
+     * 默认将消费记录分为 K=3 个群体。返回的数据适合绑定 ECharts 散点图。</p>
      * 
      * <h4>特征维度:</h4>
      * <ul>
@@ -292,6 +702,20 @@ public class StatsController {
      *   <li>Y 轴: 消费金额</li>
      * </ul>
      * 
+     * <h4>聚类数量 (k 参数):</h4>
+     * <ul>
+     *   <li>k=1 ~ {@value #CLUSTER_MAX_K}: 使用固定的聚类数量 (默认 3)</li>
+     *   <li>k=auto: 并行评估多个 k，按抽样轮廓系数选出最佳结果，
+     *       在 budgetMs 毫秒内返回 (超时的候选不参与比较)</li>
+     * </ul>
+     * 
+     * <h4>返回模式 (mode 参数):</h4>
+     * <ul>
+     *   <li>mode=points (默认): 返回每个数据点及其聚类标记</li>
+     *   <li>mode=grid: 把散点聚合为 xBins × yBins 的网格，只返回各聚类的非空格子、
+     *       总密度热力图和聚类中心，响应大小与票据数无关</li>
+     * </ul>
+     * 
      * <h4>聚类解读示例:</h4>
      * <ul>
      *   <li>群体1 (月初高额): 可能是房租/固定支出</li>
@@ -299,45 +723,62 @@ public class StatsController {
      *   <li>群体3 (月末中额): 突发性采购</li>
      * </ul>
      * 
-     * @param token 用户登录凭证
-     * @return 聚类结果 (数据点 + 聚类中心)
+     * @param token    用户登录凭证
+     * @param k        聚类数量或 "auto"
+     * @param budgetMs 自动选择的时间预算 (毫秒)，可选
+     * @param mode     返回模式: points / grid
+     * @param xBins    网格模式下日期轴的格子数 (默认 31，即每天一格)
+     * @param yBins    网格模式下金额轴的格子数 (默认 20)
+     * @return 聚类结果 (数据点或网格 + 聚类中心)，以及实际的 k 和各候选得分
      */
     @GetMapping("/clustering")
-    public Map<String, Object> getClustering(@RequestHeader("Authorization") String token) {
+    public Map<String, Object> getClustering(@RequestHeader("Authorization") String token,
+                                             @RequestParam(defaultValue = "3") String k,
+                                             @RequestParam(required = false) Long budgetMs,
+                                             @RequestParam(defaultValue = "points") String mode,
+                                             @RequestParam(defaultValue = "31") int xBins,
+                                             @RequestParam(defaultValue = "20") int yBins) {
         // 1. 身份验证
         User user = UserController.tokenMap.get(token);
         if (user == null) {
             return Map.of("code", 401);
         }
 
-        // 2. 获取该用户的所有票据
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-        
-        // 3. 构建二维数据点 (日期, 金额)
-        List<KMeansUtil.Point> points = new ArrayList<>();
-
-        for (InvoiceData item : list) {
-            try {
-                // 提取消费日期中的"几号"作为 X 坐标
-                int day = LocalDate.parse(item.getDate()).getDayOfMonth();
-                // 金额作为 Y 坐标，初始聚类标记为 -1
-                points.add(new KMeansUtil.Point(day, item.getAmount(), -1));
-            } catch (Exception e) {
-                // 日期解析失败，跳过该数据点
-            }
+        // 2. 解析聚类数量
+        Integer fixedK = parseK(k);
+        if (fixedK != null && fixedK <= 0) {
+            return Map.of("code", 400, "msg", "k 应为 1 ~ " + CLUSTER_MAX_K + " 的整数或 auto");
+        }
+        boolean grid = "grid".equals(mode);
+        if (!grid && !"points".equals(mode)) {
+            return Map.of("code", 400, "msg", "mode 应为 points 或 grid");
         }
 
-        // 4. 执行 K-Means 聚类 (K=3, 最大迭代100次)
-        KMeansUtil.ClusterResult result = KMeansUtil.fit(points, 3, 100);
-        
-        return Map.of("code", 200, "data", result);
+        // 3. 执行 K-Means 聚类 (最大迭代100次，数据未变化时复用缓存)
+        ClusteringService.Clustering clustering = clusteringService.getClustering(user.getId(), fixedK, budgetMs);
+
+        // 4. 网格模式: 一次遍历原始数组完成分箱，只返回非空格子和中心点
+        Object data = clustering.result();
+        if (grid) {
+            int xs = Math.max(1, Math.min(xBins, GRID_MAX_BINS));
+            int ys = Math.max(1, Math.min(yBins, GRID_MAX_BINS));
+            Map<String, Object> binned = clustering.labels() == null
+                    ? GridBinningUtil.bin(new double[0], new int[0], clustering.k(), xs, ys)
+                    : GridBinningUtil.bin(clustering.data(), clustering.labels(), clustering.k(), xs, ys);
+            binned.put("centroids", clustering.result().getCentroids());
+            data = binned;
+        }
+
+        return Map.of("code", 200, "data", data, "k", clustering.k(),
+                "scores", clustering.scores(), "partial", clustering.partial());
     }
 
     /**
      * AI 聚类分析报告
      * 
      * <p>该接口首先执行 K-Means 聚类，然后将聚类中心数据发送给 DeepSeek AI，
-     * 由 AI 生成通俗易懂的消费习惯分析报告和理财建议。</p>
+     * 由 AI 生成通俗易懂的消费习惯分析报告和理财建议。
+     * k / budgetMs 参数与 {@code /clustering} 相同。</p>
      * 
      * <h4>AI 分析内容:</h4>
      * <ul>
@@ -346,39 +787,36 @@ public class StatsController {
      *   <li>提供针对性的理财建议</li>
      * </ul>
      * 
-     * @param token 用户登录凭证
+     * @param token    用户登录凭证
+     * @param k        聚类数量或 "auto"
+     * @param budgetMs 自动选择的时间预算 (毫秒)，可选
      * @return AI 生成的分析报告 (Markdown 格式)
      */
     @GetMapping("/analyze-clustering")
-    public Map<String, Object> analyzeClustering(@RequestHeader("Authorization") String token) {
+    public Map<String, Object> analyzeClustering(@RequestHeader("Authorization") String token,
+                                                 @RequestParam(defaultValue = "3") String k,
+                                                 @RequestParam(required = false) Long budgetMs) {
         // 1. 身份验证
         User user = UserController.tokenMap.get(token);
         if (user == null) {
             return Map.of("code", 401);
         }
 
-        // 2. 重新计算聚类以获取中心点
-        List<InvoiceData> list = invoiceRepository.findByUserIdOrderByIdDesc(user.getId());
-        List<KMeansUtil.Point> points = new ArrayList<>();
-        
-        for (InvoiceData item : list) {
-            try {
-                int day = LocalDate.parse(item.getDate()).getDayOfMonth();
-                points.add(new KMeansUtil.Point(day, item.getAmount(), -1));
-            } catch (Exception e) {
-                // 跳过解析失败的数据
-            }
+        Integer fixedK = parseK(k);
+        if (fixedK != null && fixedK <= 0) {
+            return Map.of("code", 400, "msg", "k 应为 1 ~ " + CLUSTER_MAX_K + " 的整数或 auto");
         }
 
-        // 3. 数据量检查
-        if (points.size() < 3) {
+        // 2. 获取聚类中心 (与 /clustering 共用缓存，AI 描述的中心点与散点图一致)
+        ClusteringService.Clustering clustering = clusteringService.getClustering(user.getId(), fixedK, budgetMs);
+        KMeansUtil.ClusterResult result = clustering.result();
+
+        // 3. 数据量检查 (点数少于 k 时没有聚类中心)
+        if (result.getCentroids().isEmpty()) {
             return Map.of("code", 200, "data", "数据量不足，暂无法生成分析报告。");
         }
 
-        // 4. 执行聚类
-        KMeansUtil.ClusterResult result = KMeansUtil.fit(points, 3, 50);
-
-        // 5. 构建 AI Prompt
+        // 4. 构建 AI Prompt
         StringBuilder dataDesc = new StringBuilder();
         List<KMeansUtil.Point> centers = result.getCentroids();
 
@@ -391,10 +829,10 @@ public class StatsController {
             ));
         }
 
-        // 6. 调用 DeepSeek AI 生成分析报告
+        // 5. 调用 DeepSeek AI 生成分析报告
         String systemPrompt = "你是一个专业的财务数据分析师。请根据用户的消费聚类中心数据，用通俗易懂的语言分析用户的消费习惯。";
         String userPrompt = String.format("""
-            我的消费数据被 K-Means 算法聚类为以下 3 类：
+            我的消费数据被 K-Means 算法聚类为以下 %d 类：
             %s
             
             请帮我分析：
@@ -404,11 +842,29 @@ public class StatsController {
             4. 给出一句简短的理财建议。
             
             请直接给出分析结果，不要啰嗦，使用 Markdown 格式。
-            """, dataDesc.toString());
+            """, centers.size(), dataDesc.toString());
 
-        // 7. 获取 AI 回复
-        String analysis = deepSeekService.callAi(systemPrompt, userPrompt);
+        // 6. 获取 AI 回复 (聚类中心不变时提示词相同，直接返回缓存的报告)
+        String analysis = aiReportCacheService.analyze(systemPrompt, userPrompt);
 
         return Map.of("code", 200, "data", analysis);
     }
-}
\ No newline at end of file
+
+    /**
+     * 解析聚类数量参数
+     *
+     * @param k 请求参数
+     * @return null 表示自动选择；0 表示参数非法；否则为固定的聚类数量
+     */
+    private Integer parseK(String k) {
+        if ("auto".equalsIgnoreCase(k)) {
+            return null;
+        }
+        try {
+            int value = Integer.parseInt(k.trim());
+            return (value >= 1 && value <= CLUSTER_MAX_K) ? value : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
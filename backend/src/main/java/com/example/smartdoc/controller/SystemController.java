@@ -3,7 +3,6 @@ package com.example.smartdoc.controller;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +23,7 @@ import com.example.smartdoc.repository.BudgetRepository;
 import com.example.smartdoc.repository.ChatLogRepository;
 import com.example.smartdoc.repository.InvoiceRepository;
 import com.example.smartdoc.repository.OperationLogRepository;
+import com.example.smartdoc.service.InvoiceChangeService;
 
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.json.JSONUtil;
@@ -83,6 +83,10 @@ public class SystemController {
     @Autowired 
     private OperationLogRepository opLogRepo;
 
+    /** 票据变更服务 - 恢复票据后维护汇总表并使相关缓存失效 */
+    @Autowired
+    private InvoiceChangeService invoiceChangeService;
+
     /**
      * 获取操作审计日志
      * 
@@ -206,20 +210,32 @@ public class SystemController {
 
             // 3. 恢复票据数据
             if (data.containsKey("invoices")) {
-                List<InvoiceData> list = JSONUtil.toList(data.getJSONArray("invoices"), InvoiceData.class);
-                for (InvoiceData item : list) {
+                cn.hutool.json.JSONArray array = data.getJSONArray("invoices");
+                for (int i = 0; i < array.size(); i++) {
+                    cn.hutool.json.JSONObject obj = array.getJSONObject(i);
+                    InvoiceData item = obj.toBean(InvoiceData.class);
+                    // 兼容旧版备份: 金额以元保存在 amount 字段
+                    if (item.getAmountCents() == null && obj.containsKey("amount")) {
+                        item.setAmount(obj.getBigDecimal("amount"));
+                    }
                     // 置空 ID，让数据库自动生成新 ID (避免主键冲突)
                     item.setId(null);
                     // 绑定当前用户 ID (确保数据归属)
                     item.setUserId(user.getId());
-                    invoiceRepo.save(item);
+                    invoiceChangeService.onAdded(invoiceRepo.save(item));
                 }
             }
 
             // 4. 恢复预算数据
             if (data.containsKey("budgets")) {
-                List<Budget> list = JSONUtil.toList(data.getJSONArray("budgets"), Budget.class);
-                for (Budget item : list) {
+                cn.hutool.json.JSONArray array = data.getJSONArray("budgets");
+                for (int i = 0; i < array.size(); i++) {
+                    cn.hutool.json.JSONObject obj = array.getJSONObject(i);
+                    Budget item = obj.toBean(Budget.class);
+                    // 兼容旧版备份: 预算上限以元保存在 limitAmount 字段
+                    if (item.getLimitCents() == null && obj.containsKey("limitAmount")) {
+                        item.setLimitAmount(obj.getBigDecimal("limitAmount"));
+                    }
                     item.setId(null);
                     item.setUserId(user.getId());
                     
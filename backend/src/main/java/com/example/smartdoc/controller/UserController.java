@@ -183,7 +183,7 @@ public class UserController {
 
     /**
      * 更新用户信息
-     * <p>允许用户修改自己的昵称和密码。
+     * <p>允许用户修改自己的昵称、部门和密码。
      * 更新后会同步刷新内存中的用户信息。</p>
      * 
      * @param user  包含更新字段的用户对象
@@ -200,6 +200,7 @@ public class UserController {
         if (dbUser != null) {
             // 更新非空字段
             if (user.getNickname() != null) dbUser.setNickname(user.getNickname());
+            if (user.getDepartment() != null) dbUser.setDepartment(user.getDepartment());
             if (user.getPassword() != null && !user.getPassword().isEmpty()) {
                 dbUser.setPassword(user.getPassword()); // 实际建议加密
             }
@@ -0,0 +1,174 @@
+package com.example.smartdoc.job;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.smartdoc.model.Forecast;
+import com.example.smartdoc.utils.LinearRegressionUtil;
+
+/**
+ * 消费预测任务 - 为所有用户的每个分类预先计算下月消费预测
+ *
+ * <p>趋势接口只在请求时对用户合计做一次回归。本任务在后台为每个 (用户, 分类) 序列
+ * 以及用户合计序列计算预测值和 95% 预测区间，写入 stat_forecast 表，前端直接读取。</p>
+ *
+ * <h3>计算流程:</h3>
+ * <pre>
+ * 1. 确定待计算的用户 (全量: stat_monthly_spend 中的全部用户；增量: 上次运行后数据有变化的用户)
+ * 2. 按 partition-size 把用户切分为若干分区
+ * 3. 在独立的 ForkJoinPool 中并行处理各分区:
+ *    一次查询读出分区内用户的月度汇总 → 每个序列取最近 12 个有消费的月份
+ *    → LinearRegressionUtil.forecast → 同一事务内删除分区用户的旧预测并批量插入新预测
+ * </pre>
+ * <p>序列取数口径与 {@code /api/stats/trend} 一致 (只计有消费的月份)，
+ * 因此 "全部" 分类的预测值与趋势接口的预测值相同。</p>
+ *
+ * <h3>调度:</h3>
+ * <ul>
+ *   <li>全量: 每天凌晨执行一次 (月份滚动后预测月份随之更新)；应用启动后的第一次运行也是全量</li>
+ *   <li>增量: 按固定间隔执行，只重算 {@link com.example.smartdoc.service.DataVersionService#changedSince} 返回的用户</li>
+ * </ul>
+ * <p>两种运行不会重叠。某次运行失败时不推进变更序号，下次增量运行会重新处理这些用户。
+ * 调度与分区并行由 {@link PartitionedUserJob} 实现。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.forecast.cron=0 30 2 * * *            (默认值，全量)
+ * smartdoc.forecast.incremental-delay-ms=300000  (默认值)
+ * smartdoc.forecast.initial-delay-ms=60000       (默认值)
+ * smartdoc.forecast.partition-size=500           (默认值，每个分区的用户数)
+ * smartdoc.forecast.parallelism=4                (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see LinearRegressionUtil#forecast
+ * @see com.example.smartdoc.model.Forecast
+ */
+@Component
+public class ForecastJob extends PartitionedUserJob {
+
+    /** 参与回归的最近月份数 (与趋势接口一致) */
+    private static final int HISTORY_MONTHS = 12;
+
+    /** 每个分区的用户数 */
+    @Value("${smartdoc.forecast.partition-size:500}")
+    private int partitionSize;
+
+    /** 并行处理的分区数 */
+    @Value("${smartdoc.forecast.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 全量计算
+     */
+    @Scheduled(cron = "${smartdoc.forecast.cron:0 30 2 * * *}")
+    public void runFull() {
+        execute(true);
+    }
+
+    /**
+     * 增量计算 (本进程内尚未完成全量计算时执行全量)
+     */
+    @Scheduled(initialDelayString = "${smartdoc.forecast.initial-delay-ms:60000}",
+            fixedDelayString = "${smartdoc.forecast.incremental-delay-ms:300000}")
+    public void runIncremental() {
+        execute(fullRunPending());
+    }
+
+    @Override
+    protected String jobName() {
+        return "计算消费预测";
+    }
+
+    @Override
+    protected String resultTable() {
+        return "stat_forecast";
+    }
+
+    @Override
+    protected int partitionSize() {
+        return partitionSize;
+    }
+
+    @Override
+    protected int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 计算一个分区内所有用户的预测并替换旧数据
+     *
+     * @param userIds 分区内的用户 ID
+     * @param now     计算时间
+     * @return 写入的预测条数
+     */
+    @Override
+    protected int computePartition(List<Long> userIds, LocalDateTime now) {
+        String in = String.join(",", Collections.nCopies(userIds.size(), "?"));
+
+        // 1. 读取月度汇总: 用户 → 分类 → (月份 → 金额)，月份有序
+        Map<Long, Map<String, TreeMap<String, Long>>> series = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT user_id, category, month, total_cents FROM stat_monthly_spend " +
+                "WHERE user_id IN (" + in + ") AND invoice_count > 0",
+                (RowCallbackHandler) rs -> {
+                    Map<String, TreeMap<String, Long>> byCategory =
+                            series.computeIfAbsent(rs.getLong(1), id -> new HashMap<>());
+                    String month = rs.getString(3);
+                    long cents = rs.getLong(4);
+                    byCategory.computeIfAbsent(rs.getString(2), c -> new TreeMap<>()).merge(month, cents, Long::sum);
+                    byCategory.computeIfAbsent(Forecast.TOTAL, c -> new TreeMap<>()).merge(month, cents, Long::sum);
+                },
+                userIds.toArray());
+
+        // 2. 逐个序列回归
+        Timestamp computeTime = Timestamp.valueOf(now);
+        List<Object[]> rows = new ArrayList<>();
+        series.forEach((userId, byCategory) -> byCategory.forEach((category, months) -> {
+            long[] amounts = recent(months);
+            LinearRegressionUtil.Forecast forecast = LinearRegressionUtil.forecast(amounts);
+            if (forecast == null) return;  // 少于 2 个月无法预测
+            String targetMonth = YearMonth.parse(months.lastKey()).plusMonths(1).toString();
+            rows.add(new Object[]{userId, category, targetMonth, forecast.prediction(),
+                    forecast.lower(), forecast.upper(), amounts.length, computeTime});
+        }));
+
+        // 3. 替换分区用户的旧预测
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM stat_forecast WHERE user_id IN (" + in + ")", userIds.toArray());
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO stat_forecast (user_id, category, target_month, prediction_cents, " +
+                        "lower_cents, upper_cents, sample_months, compute_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                        rows);
+            }
+        });
+        return rows.size();
+    }
+
+    /**
+     * 取最近 {@value #HISTORY_MONTHS} 个月的金额 (按时间正序)
+     */
+    private static long[] recent(TreeMap<String, Long> months) {
+        int n = Math.min(months.size(), HISTORY_MONTHS);
+        long[] amounts = new long[n];
+        Iterator<Long> it = months.descendingMap().values().iterator();
+        for (int i = n - 1; i >= 0; i--) {
+            amounts[i] = it.next();
+        }
+        return amounts;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.smartdoc.job;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.service.InvoiceChangeService;
+import com.example.smartdoc.service.MerchantGraphService;
+import com.example.smartdoc.utils.DateParseUtil;
+
+/**
+ * 开票日期回填任务 - 将旧版 VARCHAR 日期迁移到 DATE 类型的 invoice_date 列
+ *
+ * <p>在线迁移分三步 (expand → backfill → contract):</p>
+ * <ol>
+ *   <li>expand: modify.sql 在线新增 invoice_date 列和 (user_id, invoice_date) 索引，
+ *       新写入的数据由实体同时写新旧两列</li>
+ *   <li>backfill: 本任务在应用启动后于后台线程中回填历史数据</li>
+ *   <li>contract: 确认 invoice_date 为空而 date 非空的行只剩无法识别的脏数据后，删除旧列</li>
+ * </ol>
+ *
+ * <h3>回填流程:</h3>
+ * <pre>
+ * 1. 查出待回填数据的 id 范围 [minId, maxId]
+ * 2. 按 chunk-size 切分为若干 id 区间
+ * 3. 在独立的 ForkJoinPool 中并行处理各区间，区间内逐行执行一个短事务:
+ *    SELECT ... FOR UPDATE (仍未回填才处理) → DateParseUtil.parse → UPDATE
+ *    → InvoiceChangeService.onUpdated(回填前, 回填后)
+ * 4. 有数据被回填时，重新构建商户共现图 (离线构建，不是变更监听器)
+ * </pre>
+ * <p>回填与用户修改票据走同一条通知路径: 各汇总表、草图和内存索引由监听器在同一事务内修正
+ * (回填前只识别严格 yyyy-MM-dd 的旧日期，其他写法在此时才计入)，
+ * 事务提交后递增用户的数据版本号，使快照、导出文件和增量任务感知到变化。</p>
+ * <p>每行一个事务，不会长时间持有行锁，也不会与其他区间或用户写入在汇总行上交叉加锁；
+ * 行锁下重新检查 invoice_date IS NULL，不会覆盖回填期间用户新保存的日期。
+ * 单行失败只跳过该行，任务可重复执行，重启后只处理仍未回填的行。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.backfill.chunk-size=5000   (默认值)
+ * smartdoc.backfill.parallelism=4     (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.utils.DateParseUtil
+ * @see InvoiceChangeService
+ */
+@Component
+public class InvoiceDateBackfillJob {
+
+    /** 每个区间包含的 id 数量 */
+    @Value("${smartdoc.backfill.chunk-size:5000}")
+    private int chunkSize;
+
+    /** 并行处理的区间数 */
+    @Value("${smartdoc.backfill.parallelism:4}")
+    private int parallelism;
+
+    /** JDBC 模板 - 回填绕过 JPA，只读取统计需要的列 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 事务模板 - 每行的更新与统计修正在同一事务内 */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /** 票据变更服务 - 通知监听器并递增数据版本号 */
+    @Autowired
+    private InvoiceChangeService invoiceChangeService;
+
+    /** 商户共现图服务 - 回填后重新构建 */
+    @Autowired
+    private MerchantGraphService merchantGraphService;
+
+    /**
+     * 应用启动完成后在后台线程中执行回填
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        Thread worker = new Thread(this::run, "invoice-date-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 执行回填
+     */
+    public void run() {
+        try {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                    "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM invoice_record " +
+                    "WHERE invoice_date IS NULL AND date IS NOT NULL");
+            if (bounds.get("min_id") == null) {
+                return;  // 没有待回填的数据
+            }
+            long minId = ((Number) bounds.get("min_id")).longValue();
+            long maxId = ((Number) bounds.get("max_id")).longValue();
+
+            System.out.println("🔄 开始回填开票日期, id 范围: " + minId + " ~ " + maxId);
+            long start = System.currentTimeMillis();
+
+            AtomicLong updated = new AtomicLong();
+            AtomicLong skipped = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            long chunks = (maxId - minId) / chunkSize + 1;
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> LongStream.range(0, chunks).parallel().forEach(i -> {
+                    long from = minId + i * chunkSize;
+                    long to = Math.min(from + chunkSize - 1, maxId);
+                    int[] result = backfillChunk(from, to);
+                    updated.addAndGet(result[0]);
+                    skipped.addAndGet(result[1]);
+                    failed.addAndGet(result[2]);
+                })).get();
+            } finally {
+                pool.shutdown();
+            }
+
+            System.out.println("✅ 开票日期回填完成: 更新 " + updated.get() + " 条, 无法识别 "
+                    + skipped.get() + " 条, 失败 " + failed.get() + " 条 (下次启动重试), 耗时 "
+                    + (System.currentTimeMillis() - start) + "ms");
+            if (updated.get() > 0) {
+                merchantGraphService.startRebuild();
+            }
+        } catch (Exception e) {
+            System.err.println("❌ 开票日期回填失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 回填一个 id 区间
+     *
+     * @param fromId 起始 id (含)
+     * @param toId   结束 id (含)
+     * @return [更新条数, 无法识别的条数, 失败条数]
+     */
+    private int[] backfillChunk(long fromId, long toId) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM invoice_record " +
+                "WHERE id BETWEEN ? AND ? AND invoice_date IS NULL AND date IS NOT NULL",
+                Long.class, fromId, toId);
+
+        int[] result = new int[3];
+        for (Long id : ids) {
+            try {
+                Boolean done = transactionTemplate.execute(status -> backfillRow(id));
+                if (done != null) {
+                    result[done ? 0 : 1]++;
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ 开票日期回填失败, id=" + id + ": " + e.getMessage());
+                result[2]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在当前事务内回填一行，并通知监听器修正统计
+     *
+     * @param id 票据 id
+     * @return true=已回填, false=日期无法识别, null=已被其他写入处理
+     */
+    private Boolean backfillRow(long id) {
+        List<InvoiceData> rows = jdbcTemplate.query(
+                "SELECT id, user_id, date, amount_cents, category, merchant_name, is_deleted FROM invoice_record " +
+                "WHERE id = ? AND invoice_date IS NULL AND date IS NOT NULL FOR UPDATE",
+                (rs, i) -> {
+                    InvoiceData row = new InvoiceData();
+                    row.setId(rs.getLong("id"));
+                    row.setUserId(rs.getObject("user_id", Long.class));
+                    row.setLegacyDate(rs.getString("date"));
+                    row.setAmountCents(rs.getObject("amount_cents", Long.class));
+                    row.setCategory(rs.getString("category"));
+                    row.setMerchantName(rs.getString("merchant_name"));
+                    row.setIsDeleted(rs.getObject("is_deleted", Integer.class));
+                    return row;
+                }, id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        InvoiceData before = rows.get(0);
+        LocalDate date = DateParseUtil.parse(before.getLegacyDate());
+        if (date == null) {
+            return false;
+        }
+
+        jdbcTemplate.update("UPDATE invoice_record SET invoice_date = ? WHERE id = ?", java.sql.Date.valueOf(date), id);
+        if (before.getUserId() == null) {
+            return true;  // 无归属的数据不参与任何统计
+        }
+        InvoiceData after = invoiceChangeService.snapshot(before);
+        after.setDate(date);
+        invoiceChangeService.onUpdated(before, after);
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.smartdoc.job;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.smartdoc.service.DataVersionService;
+
+/**
+ * 按用户分区并行计算的后台任务基类 - 全量 / 增量切换、分区并行与进度输出
+ *
+ * <p>子类只负责一个分区的计算与结果替换 ({@link #computePartition})，
+ * 以及用各自的配置项声明调度 (全量调用 {@code execute(true)}，
+ * 增量调用 {@code execute(fullRunPending())})。</p>
+ *
+ * <h3>执行流程:</h3>
+ * <pre>
+ * 1. 确定待计算的用户 (全量: stat_monthly_spend 中的全部用户，并删除已没有汇总数据的用户的结果；
+ *    增量: {@link DataVersionService#changedSince} 返回的用户)
+ * 2. 按 partitionSize 把用户切分为若干分区
+ * 3. 在独立的 ForkJoinPool (parallelism 个线程) 中并行调用 computePartition
+ * </pre>
+ * <p>同一个任务的两次运行不会重叠。变更序号在读取数据之前获取，只有全部分区成功后才推进；
+ * 某次运行失败时下次增量运行会重新处理这些用户。本进程内尚未完成过全量计算时，增量运行按全量执行。</p>
+ *
+ * @author SmartDoc Team
+ * @see ForecastJob
+ * @see RecurringPaymentJob
+ */
+public abstract class PartitionedUserJob {
+
+    /** JDBC 模板 */
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    /** 事务模板 - 子类在一个事务内替换分区用户的旧结果 */
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    /** 数据版本服务 - 提供上次运行后有变化的用户 */
+    @Autowired
+    protected DataVersionService dataVersionService;
+
+    /** 是否有运行中的任务 */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /** 上次成功运行开始时的变更序号；-1 表示本进程内尚未完成过全量计算 */
+    private volatile long lastSequence = -1;
+
+    /** 任务名称 (用于日志，如 "消费预测") */
+    protected abstract String jobName();
+
+    /** 结果表名 (全量运行时删除已没有汇总数据的用户) */
+    protected abstract String resultTable();
+
+    /** 每个分区的用户数 */
+    protected abstract int partitionSize();
+
+    /** 并行处理的分区数 */
+    protected abstract int parallelism();
+
+    /**
+     * 计算一个分区内所有用户的结果并替换旧数据
+     *
+     * @param userIds 分区内的用户 ID (升序)
+     * @param now     本次运行的计算时间
+     * @return 写入的条数
+     */
+    protected abstract int computePartition(List<Long> userIds, LocalDateTime now);
+
+    /**
+     * 本进程内是否尚未完成过全量计算
+     */
+    protected boolean fullRunPending() {
+        return lastSequence < 0;
+    }
+
+    /**
+     * 执行一次计算 (已有运行中的任务时直接返回)
+     *
+     * @param full true=全部用户, false=上次运行后有变化的用户
+     */
+    protected void execute(boolean full) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // 序号在读取数据之前获取: 计算期间发生的变化留给下一次增量运行
+            long sequence = dataVersionService.currentSequence();
+            List<Long> userIds;
+            if (full) {
+                userIds = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT user_id FROM stat_monthly_spend ORDER BY user_id", Long.class);
+                // 已没有任何汇总数据的用户
+                jdbcTemplate.update(
+                        "DELETE FROM " + resultTable() + " WHERE user_id NOT IN (SELECT DISTINCT user_id FROM stat_monthly_spend)");
+            } else {
+                userIds = dataVersionService.changedSince(lastSequence);
+                Collections.sort(userIds);
+            }
+            if (userIds.isEmpty()) {
+                lastSequence = sequence;
+                return;
+            }
+
+            System.out.println("🔄 开始" + jobName() + " (" + (full ? "全量" : "增量") + "), 用户数: " + userIds.size());
+            long start = System.currentTimeMillis();
+            LocalDateTime now = LocalDateTime.now();
+
+            AtomicLong written = new AtomicLong();
+            int size = partitionSize();
+            int partitions = (userIds.size() + size - 1) / size;
+            List<Long> users = userIds;
+            ForkJoinPool pool = new ForkJoinPool(parallelism());
+            try {
+                pool.submit(() -> IntStream.range(0, partitions).parallel().forEach(i -> {
+                    List<Long> partition = users.subList(i * size, Math.min((i + 1) * size, users.size()));
+                    written.addAndGet(computePartition(partition, now));
+                })).get();
+            } finally {
+                pool.shutdown();
+            }
+            lastSequence = sequence;
+
+            System.out.println("✅ " + jobName() + "完成: 写入 " + written.get() + " 条, 耗时 "
+                    + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("❌ " + jobName() + "失败: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            running.set(false);
+        }
+    }
+}
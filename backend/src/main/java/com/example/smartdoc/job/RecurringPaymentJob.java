@@ -0,0 +1,198 @@
+package com.example.smartdoc.job;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.smartdoc.utils.MerchantNameUtil;
+import com.example.smartdoc.utils.PeriodicityUtil;
+
+/**
+ * 重复支出识别任务 - 为所有用户找出按固定周期发生的消费 (话费、房租、订阅等)
+ *
+ * <p>{@code /api/stats/clustering} 只按 "每月几号" 聚类，能提示哪些日子常有消费，
+ * 但分不出是哪个商户、周期多长。本任务对每个 (用户, 商户) 的消费日期序列做周期检测，
+ * 结果写入 stat_recurring_payment 表，前端直接读取。</p>
+ *
+ * <h3>计算流程:</h3>
+ * <pre>
+ * 1. 确定待计算的用户 (全量: stat_monthly_spend 中的全部用户；增量: 上次运行后数据有变化的用户)
+ * 2. 按 partition-size 把用户切分为若干分区
+ * 3. 在独立的 ForkJoinPool 中并行处理各分区:
+ *    一次查询按 (用户, 日期) 顺序流式读出分区内的票据 → 同一用户按商户 (忽略大小写、重音和首尾空格) 分组
+ *    → 用户读完即对每个商户序列调用 PeriodicityUtil.detect → 同一事务内删除分区用户的旧结果并批量插入新结果
+ * </pre>
+ * <p>只统计有开票日期、金额和商户名称的票据。内存中只保留当前用户的序列，
+ * 多年的历史也只需一次顺序扫描。</p>
+ *
+ * <h3>调度:</h3>
+ * <ul>
+ *   <li>全量: 每天凌晨执行一次 (是否仍在持续与当天日期有关)；应用启动后的第一次运行也是全量</li>
+ *   <li>增量: 按固定间隔执行，只重算 {@link com.example.smartdoc.service.DataVersionService#changedSince} 返回的用户</li>
+ * </ul>
+ * <p>两种运行不会重叠。某次运行失败时不推进变更序号，下次增量运行会重新处理这些用户。
+ * 调度与分区并行由 {@link PartitionedUserJob} 实现。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.recurring.cron=0 45 2 * * *             (默认值，全量)
+ * smartdoc.recurring.incremental-delay-ms=300000   (默认值)
+ * smartdoc.recurring.initial-delay-ms=90000        (默认值)
+ * smartdoc.recurring.partition-size=200            (默认值，每个分区的用户数)
+ * smartdoc.recurring.parallelism=4                 (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see PeriodicityUtil#detect
+ * @see com.example.smartdoc.model.RecurringPayment
+ */
+@Component
+public class RecurringPaymentJob extends PartitionedUserJob {
+
+    /** 每个分区的用户数 */
+    @Value("${smartdoc.recurring.partition-size:200}")
+    private int partitionSize;
+
+    /** 并行处理的分区数 */
+    @Value("${smartdoc.recurring.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 正在读取的一个 (用户, 商户) 序列
+     */
+    private static class Series {
+        final long userId;
+        final String merchant;
+        final List<LocalDate> dates = new ArrayList<>();
+        final List<Long> amounts = new ArrayList<>();
+        final Map<String, Integer> categories = new HashMap<>();
+
+        Series(long userId, String merchant) {
+            this.userId = userId;
+            this.merchant = merchant;
+        }
+    }
+
+    /**
+     * 全量计算
+     */
+    @Scheduled(cron = "${smartdoc.recurring.cron:0 45 2 * * *}")
+    public void runFull() {
+        execute(true);
+    }
+
+    /**
+     * 增量计算 (本进程内尚未完成全量计算时执行全量)
+     */
+    @Scheduled(initialDelayString = "${smartdoc.recurring.initial-delay-ms:90000}",
+            fixedDelayString = "${smartdoc.recurring.incremental-delay-ms:300000}")
+    public void runIncremental() {
+        execute(fullRunPending());
+    }
+
+    @Override
+    protected String jobName() {
+        return "识别重复支出";
+    }
+
+    @Override
+    protected String resultTable() {
+        return "stat_recurring_payment";
+    }
+
+    @Override
+    protected int partitionSize() {
+        return partitionSize;
+    }
+
+    @Override
+    protected int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 识别一个分区内所有用户的重复支出并替换旧结果
+     *
+     * @param userIds 分区内的用户 ID
+     * @param now     计算时间
+     * @return 写入的条数
+     */
+    @Override
+    protected int computePartition(List<Long> userIds, LocalDateTime now) {
+        String in = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        Timestamp computeTime = Timestamp.valueOf(now);
+        LocalDate today = now.toLocalDate();
+        List<Object[]> rows = new ArrayList<>();
+
+        // 1. 按 (用户, 日期) 顺序流式读取，同一用户的票据按商户分组，读完一个用户立即检测
+        //    (不按 merchant_name 排序: 数据库排序规则认为相同的写法在 Java 中不一定相等，顺序比较会把同一商户拆成多个序列)
+        //    按 MerchantNameUtil.key 分组，不比 uk_user_merchant 的排序规则更严格，写出的 (用户, 商户) 不会违反唯一键
+        long[] currentUser = {-1};
+        Map<String, Series> byMerchant = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT user_id, merchant_name, invoice_date, amount_cents, category FROM invoice_record " +
+                "WHERE user_id IN (" + in + ") AND is_deleted = 0 AND invoice_date IS NOT NULL AND amount_cents IS NOT NULL " +
+                "AND merchant_name IS NOT NULL AND TRIM(merchant_name) <> '' " +
+                "ORDER BY user_id, invoice_date",
+                (RowCallbackHandler) rs -> {
+                    long userId = rs.getLong(1);
+                    if (userId != currentUser[0]) {
+                        byMerchant.values().forEach(series -> detect(series, today, computeTime, rows));
+                        byMerchant.clear();
+                        currentUser[0] = userId;
+                    }
+                    String merchant = rs.getString(2).trim();
+                    Series series = byMerchant.computeIfAbsent(MerchantNameUtil.key(merchant), k -> new Series(userId, merchant));
+                    series.dates.add(rs.getDate(3).toLocalDate());
+                    series.amounts.add(rs.getLong(4));
+                    String category = rs.getString(5);
+                    series.categories.merge(category == null || category.isEmpty() ? "其他" : category, 1, Integer::sum);
+                },
+                userIds.toArray());
+        byMerchant.values().forEach(series -> detect(series, today, computeTime, rows));
+
+        // 2. 替换分区用户的旧结果
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM stat_recurring_payment WHERE user_id IN (" + in + ")", userIds.toArray());
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO stat_recurring_payment (user_id, merchant, category, period, score, confidence, " +
+                        "occurrences, typical_cents, amount_variation, first_date, last_date, next_date, active, compute_time) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                        rows);
+            }
+        });
+        return rows.size();
+    }
+
+    /**
+     * 检测一个读完的序列，是重复支出时加入待写入的行
+     */
+    private static void detect(Series series, LocalDate today, Timestamp computeTime, List<Object[]> rows) {
+        if (series.dates.size() < PeriodicityUtil.MIN_OCCURRENCES) return;
+        PeriodicityUtil.Result result = PeriodicityUtil.detect(
+                series.dates.toArray(new LocalDate[0]),
+                series.amounts.stream().mapToLong(Long::longValue).toArray());
+        if (result == null) return;
+
+        String category = Collections.max(series.categories.entrySet(), Map.Entry.comparingByValue()).getKey();
+        // 超过预计日期加容差仍没有新的消费，视为已停止
+        long grace = (long) Math.ceil(result.period().toleranceDays());
+        boolean active = !today.isAfter(result.nextDate().plusDays(grace));
+        rows.add(new Object[]{series.userId, series.merchant, category, result.period().name(),
+                result.score(), result.confidence(), result.occurrences(), result.typicalCents(),
+                result.amountVariation(), Date.valueOf(result.firstDate()), Date.valueOf(result.lastDate()),
+                Date.valueOf(result.nextDate()), active, computeTime});
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * AI 报告缓存实体类 - 持久化 AI 生成的分析报告
+ *
+ * <p>以 "模型参数 + 系统提示词 + 用户提示词" 的 SHA-256 摘要为唯一键。
+ * 提示词完全相同说明输入数据 (如聚类中心) 没有变化，可以直接返回上次的报告，
+ * 不必再次调用大模型。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.AiReportCacheService
+ */
+@Data
+@Entity
+@Table(name = "ai_report_cache")
+public class AiReportCache {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 缓存键 - 输入指纹的 SHA-256 (64 位十六进制) */
+    private String cacheKey;
+
+    /** 生成报告的模型名称 */
+    private String model;
+
+    /** 报告内容 (Markdown) */
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String content;
+
+    /** 生成时间 */
+    private LocalDateTime createTime;
+
+    /** 过期时间 */
+    private LocalDateTime expireTime;
+}
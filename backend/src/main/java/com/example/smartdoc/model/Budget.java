@@ -1,7 +1,11 @@
 package com.example.smartdoc.model;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import com.example.smartdoc.utils.MoneyUtil;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -20,10 +24,13 @@ import lombok.Data;
  * <h3>业务场景:</h3>
  * <ul>
  *   <li>用户设置类别预算上限</li>
- *   <li>查看预算使用进度（usedAmount 由查询时计算填充）</li>
+ *   <li>查看预算使用进度（usedCents 由查询时计算填充）</li>
  *   <li>发票保存时检查是否超预算</li>
  * </ul>
  * 
+ * <p>金额以 "分" 为单位的 long 整数存储；JSON 中的 limitAmount / usedAmount
+ * 是按分换算的两位小数 (元)，客户端仍按元提交 limitAmount。</p>
+ * 
  * @author SmartDoc Team
  * @see com.example.smartdoc.controller.BudgetController
  */
@@ -43,16 +50,18 @@ public class Budget {
     /** 消费类别名称 (如: 餐饮、交通、办公用品) */
     private String category;
     
-    /** 预算上限金额 */
-    private Double limitAmount;
+    /** 预算上限金额，单位: 分 */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long limitCents;
 
     /**
-     * 已使用金额 (不持久化)
+     * 已使用金额，单位: 分 (不持久化)
      * <p>此字段不存入数据库，仅在查询时动态计算并填充，
      * 用于前端展示预算使用进度条。</p>
      */
     @Transient
-    private Double usedAmount;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long usedCents;
 
     /** 创建时间 */
     private LocalDateTime createTime;
@@ -64,4 +73,34 @@ public class Budget {
     public void prePersist() {
         this.createTime = LocalDateTime.now();
     }
+
+    /**
+     * 获取以元为单位的预算上限 (JSON 字段 limitAmount)
+     * 
+     * @return 两位小数的预算上限
+     */
+    @JsonProperty("limitAmount")
+    public BigDecimal getLimitAmount() {
+        return MoneyUtil.toYuan(limitCents);
+    }
+
+    /**
+     * 按元设置预算上限 (JSON 字段 limitAmount)
+     * 
+     * @param limitAmount 以元为单位的预算上限
+     */
+    @JsonProperty("limitAmount")
+    public void setLimitAmount(BigDecimal limitAmount) {
+        this.limitCents = MoneyUtil.toCents(limitAmount);
+    }
+
+    /**
+     * 获取以元为单位的已使用金额 (JSON 字段 usedAmount)
+     * 
+     * @return 两位小数的已使用金额
+     */
+    @JsonProperty("usedAmount")
+    public BigDecimal getUsedAmount() {
+        return MoneyUtil.toYuan(usedCents);
+    }
 }
@@ -0,0 +1,76 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 聚类模型实体类 - 持久化全库 Mini-Batch K-Means 的训练结果
+ *
+ * <p>每次训练追加一行，最新一行即当前生效的模型；应用重启后从本表加载，
+ * 新票据保存时直接用中心点计算归属，无需重新训练。</p>
+ *
+ * <h3>特征 (与个人聚类一致):</h3>
+ * <pre>
+ * x = 开票日期的 "几号" (1 ~ 31)
+ * y = 金额 (元)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.ClusterModelService
+ * @see com.example.smartdoc.utils.MiniBatchKMeans
+ */
+@Data
+@Entity
+@Table(name = "stat_cluster_model")
+public class ClusterModel {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 模型范围 - 目前只有全库模型 "ORG" */
+    private String scope;
+
+    /** 聚类数量 k */
+    private Integer clusterCount;
+
+    /** 特征维度 */
+    private Integer dim;
+
+    /** 聚类中心 - JSON 数组，行优先存放，如 [x0, y0, x1, y1, ...] */
+    @Column(columnDefinition = "TEXT")
+    private String centroids;
+
+    /** 每个聚类累计吸收的样本数 - JSON 数组 */
+    @Column(columnDefinition = "TEXT")
+    private String counts;
+
+    /** 参与训练的票据数 (单轮) */
+    private Long sampleCount;
+
+    /** 训练轮数 */
+    private Integer epochs;
+
+    /** 训练耗时 (毫秒) */
+    private Long costMillis;
+
+    /** 训练完成时间 */
+    private LocalDateTime trainedAt;
+
+    /**
+     * JPA 生命周期回调 - 保存前自动设置训练完成时间
+     */
+    @PrePersist
+    public void prePersist() {
+        this.trainedAt = LocalDateTime.now();
+    }
+}
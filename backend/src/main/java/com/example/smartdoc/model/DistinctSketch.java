@@ -0,0 +1,64 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 去重计数草图实体类 - 按 (月份, 分类) 保存的 HyperLogLog
+ *
+ * <p>每行保存全库该月该分类票据的两个草图: 出现过的商户、有消费的用户。
+ * 跨月份合并得到分类的活跃用户数，跨分类合并得到月度去重商户数，
+ * 查询代价只与草图数有关，与票据数无关。</p>
+ *
+ * <h3>维护规则:</h3>
+ * <ul>
+ *   <li>票据进入有效状态: 商户和用户加入草图 (重复加入不改变草图，无需写回)</li>
+ *   <li>票据离开有效状态: 草图无法删除元素，标记为 stale，
+ *       由后台任务或下一次查询从票据明细重建</li>
+ * </ul>
+ * <p>每次写回都会递增 revision，重建只在 revision 未变化时写回，避免覆盖重建期间的新数据。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.DistinctCountService
+ * @see com.example.smartdoc.utils.HyperLogLog
+ */
+@Data
+@Entity
+@Table(name = "stat_distinct_sketch")
+public class DistinctSketch {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 月份 - 格式 "yyyy-MM" */
+    private String month;
+
+    /** 消费分类 */
+    private String category;
+
+    /** 商户名称的 HyperLogLog (见 HyperLogLog.toBytes) */
+    @Column(columnDefinition = "BLOB")
+    private byte[] merchants;
+
+    /** 用户 ID 的 HyperLogLog */
+    @Column(columnDefinition = "BLOB")
+    private byte[] users;
+
+    /** 是否需要重建 (有票据离开了有效状态) */
+    private Boolean stale;
+
+    /** 变更序号 - 每次变更加 1 */
+    private Long revision;
+
+    /** 最后更新时间 */
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,60 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 消费预测实体类 - 后台任务预先计算的 (用户, 分类) 下月消费预测
+ *
+ * <p>由 ForecastJob 根据 stat_monthly_spend 最近 12 个有消费的月份做线性回归得到，
+ * 前端直接读取，不必在请求中临时计算。分类为 {@value #TOTAL} 的行是用户全部分类合计的预测。</p>
+ *
+ * <p>(user_id, category) 唯一，每次重算整体替换该用户的全部预测行。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.job.ForecastJob
+ * @see com.example.smartdoc.utils.LinearRegressionUtil#forecast
+ */
+@Data
+@Entity
+@Table(name = "stat_forecast")
+public class Forecast {
+
+    /** 全部分类合计的分类名 */
+    public static final String TOTAL = "全部";
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 用户 ID */
+    private Long userId;
+
+    /** 消费分类 (全部分类合计时为 "全部") */
+    private String category;
+
+    /** 预测的月份 - 格式 "yyyy-MM" (最后一个有消费的月份的下一个月) */
+    private String targetMonth;
+
+    /** 预测值，单位: 分 */
+    private Long predictionCents;
+
+    /** 95% 预测区间下限，单位: 分 (样本不足 3 个月时为空) */
+    private Long lowerCents;
+
+    /** 95% 预测区间上限，单位: 分 (样本不足 3 个月时为空) */
+    private Long upperCents;
+
+    /** 参与回归的月份数 */
+    private Integer sampleMonths;
+
+    /** 计算时间 */
+    private LocalDateTime computeTime;
+}
@@ -1,15 +1,23 @@
 package com.example.smartdoc.model;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import org.hibernate.annotations.SQLDelete;
 import org.hibernate.annotations.Where;
 
+import com.example.smartdoc.utils.MoneyUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import lombok.Data;
@@ -37,6 +45,16 @@ import lombok.Data;
  *   <li>1 - 异常发票（通过 Z-Score 算法检测）</li>
  * </ul>
  * 
+ * <h3>开票日期 (date):</h3>
+ * <p>映射 DATE 类型的 invoice_date 列，并与 user_id 建立联合索引，
+ * 按日期范围查询可以走索引范围扫描。旧的 VARCHAR 列 date 在迁移期间双写，
+ * 由 {@link com.example.smartdoc.job.InvoiceDateBackfillJob} 回填历史数据后即可删除。</p>
+ * 
+ * <h3>金额 (amountCents):</h3>
+ * <p>以 "分" 为单位的 long 整数存储在 amount_cents 列，求和、比较都是精确的整数运算。
+ * JSON 中同时输出 amountCents (只读) 和按分换算的两位小数 amount；
+ * 客户端提交时只需传 amount (元)，由 {@link #setAmount(BigDecimal)} 换算为分。</p>
+ * 
  * @author SmartDoc Team
  * @see com.example.smartdoc.controller.DocController
  * @see com.example.smartdoc.utils.AnomalyDetectionUtil
@@ -59,11 +77,29 @@ public class InvoiceData {
     /** 项目名称 - 发票上的商品或服务名称 */
     private String itemName;
     
-    /** 开票日期 - 格式如 "2024-01-15" */
-    private String date;
+    /** 开票日期 - JSON 格式如 "2024-01-15"，无法识别时为 null */
+    @Column(name = "invoice_date")
+    private LocalDate date;
+
+    /**
+     * 旧版开票日期字符串 (迁移期间双写)
+     * <p>保存时由 {@link #date} 同步写入，保证回填任务完成前旧列仍然可用。</p>
+     */
+    @JsonIgnore
+    @Column(name = "date")
+    private String legacyDate;
     
-    /** 金额 - 发票总金额（含税） */
-    private Double amount;
+    /** 金额 - 发票总金额（含税），单位: 分 */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long amountCents;
+
+    /**
+     * 旧版金额 (元，迁移期间双写)
+     * <p>保存时由 {@link #amountCents} 同步写入，旧版本应用下线后随 amount 列一起删除。</p>
+     */
+    @JsonIgnore
+    @Column(name = "amount")
+    private Double legacyAmount;
     
     /** 发票号码 - 发票的唯一编号 */
     private String invoiceCode;
@@ -86,6 +122,14 @@ public class InvoiceData {
     /** 审批备注 - 审核人填写的说明 */
     private String auditRemark;
 
+    /**
+     * 全库聚类归属 - 全库 Mini-Batch K-Means 模型给出的聚类索引
+     * <p>保存时由当前模型在 O(k) 内计算，模型重新训练后由训练任务批量回写；
+     * 模型尚未训练或缺少日期、金额时为 null。</p>
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer orgCluster;
+
     /**
      * 原始图片 URL (不持久化)
      * <p>发票原图的临时访问路径，用于前端预览。</p>
@@ -102,5 +146,44 @@ public class InvoiceData {
     @PrePersist
     public void prePersist() {
         this.createTime = LocalDateTime.now();
+        syncLegacyColumns();
+    }
+
+    /**
+     * JPA 生命周期回调 - 更新前同步旧版日期、金额列
+     */
+    @PreUpdate
+    public void preUpdate() {
+        syncLegacyColumns();
+    }
+
+    /**
+     * 获取以元为单位的金额 (JSON 输出字段 amount)
+     * 
+     * @return 两位小数的金额，未识别时为 null
+     */
+    @JsonProperty("amount")
+    public BigDecimal getAmount() {
+        return MoneyUtil.toYuan(amountCents);
+    }
+
+    /**
+     * 按元设置金额 (JSON 输入字段 amount)
+     * 
+     * @param amount 以元为单位的金额
+     */
+    @JsonProperty("amount")
+    public void setAmount(BigDecimal amount) {
+        this.amountCents = MoneyUtil.toCents(amount);
+    }
+
+    /**
+     * 双写: 将新列的值同步到旧的 date / amount 列
+     */
+    private void syncLegacyColumns() {
+        if (this.date != null) {
+            this.legacyDate = this.date.toString();
+        }
+        this.legacyAmount = this.amountCents == null ? null : MoneyUtil.toYuanDouble(this.amountCents);
     }
 }
\ No newline at end of file
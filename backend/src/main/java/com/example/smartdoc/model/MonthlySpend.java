@@ -0,0 +1,58 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 月度消费汇总实体类 - 按 (用户, 月份, 分类) 预聚合的消费数据
+ * 
+ * <p>这是 invoice_record 的物化汇总表，在票据写入时同步增量维护，
+ * 趋势预测、预算进度、AI 助手等统计场景直接读取本表，
+ * 只需扫描 O(月份数 × 分类数) 行，而不必扫描用户的全部票据。</p>
+ * 
+ * <h3>维护规则:</h3>
+ * <ul>
+ *   <li>票据进入有效状态 (新增、还原、备份恢复): 金额 +amountCents，笔数 +1</li>
+ *   <li>票据离开有效状态 (软删除、修改前的旧值): 金额 -amountCents，笔数 -1</li>
+ *   <li>已在回收站中的票据被彻底删除: 不影响汇总</li>
+ * </ul>
+ * 
+ * <p>只统计未删除 (is_deleted = 0) 的票据，与 InvoiceData 上的 @Where 过滤口径一致。</p>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.MonthlyStatsService
+ */
+@Data
+@Entity
+@Table(name = "stat_monthly_spend")
+public class MonthlySpend {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 用户 ID */
+    private Long userId;
+
+    /** 月份 - 格式 "yyyy-MM" */
+    private String month;
+
+    /** 消费分类 */
+    private String category;
+
+    /** 该月该分类的消费总额，单位: 分 */
+    private Long totalCents;
+
+    /** 该月该分类的票据笔数 */
+    private Long invoiceCount;
+
+    /** 最后更新时间 */
+    private LocalDateTime updateTime;
+}
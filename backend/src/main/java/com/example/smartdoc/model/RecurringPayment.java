@@ -0,0 +1,76 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 重复支出实体类 - 后台任务识别出的 (用户, 商户) 周期性消费
+ *
+ * <p>由 RecurringPaymentJob 对每个用户每个商户的消费日期序列做间隔直方图检测得到，
+ * 例如每月的话费、房租、每年续费的软件订阅。前端直接读取，不必在请求中扫描历史票据。</p>
+ *
+ * <p>(user_id, merchant) 唯一，每次重算整体替换该用户的全部行。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.job.RecurringPaymentJob
+ * @see com.example.smartdoc.utils.PeriodicityUtil
+ */
+@Data
+@Entity
+@Table(name = "stat_recurring_payment")
+public class RecurringPayment {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 用户 ID */
+    private Long userId;
+
+    /** 商户名称 */
+    private String merchant;
+
+    /** 消费分类 (该商户票据中最常见的分类) */
+    private String category;
+
+    /** 周期 - PeriodicityUtil.Period 的枚举名 (MONTHLY / YEARLY ...) */
+    private String period;
+
+    /** 周期得分 [0, 1] - 消费间隔落在该周期上的比例 */
+    private Double score;
+
+    /** 置信度 [0, 1] - 周期得分结合金额稳定性 */
+    private Double confidence;
+
+    /** 消费次数 (同一天合并后) */
+    private Integer occurrences;
+
+    /** 典型金额 (单次金额的中位数)，单位: 分 */
+    private Long typicalCents;
+
+    /** 金额变异系数 - 越小金额越固定 */
+    private Double amountVariation;
+
+    /** 第一次消费日期 */
+    private LocalDate firstDate;
+
+    /** 最近一次消费日期 */
+    private LocalDate lastDate;
+
+    /** 预计下一次消费日期 */
+    private LocalDate nextDate;
+
+    /** 是否仍在持续 (计算时尚未超过预计日期加容差) */
+    private Boolean active;
+
+    /** 计算时间 */
+    private LocalDateTime computeTime;
+}
@@ -0,0 +1,59 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 消费立方体实体类 - 按 (用户, 月份, 分类, 商户) 预聚合的消费数据
+ *
+ * <p>比 {@link MonthlySpend} 多一个商户维度，是最细粒度的汇总单元。
+ * 时间轴可上卷到年、全部，分类轴可上卷到分类、全部，下钻则反之；
+ * 任何一种组合都只需扫描该用户的立方体单元 (通常几百个)，不必扫描票据明细。</p>
+ *
+ * <h3>维护规则 (与月度汇总表相同):</h3>
+ * <ul>
+ *   <li>票据进入有效状态: 金额 +amountCents，笔数 +1</li>
+ *   <li>票据离开有效状态: 金额 -amountCents，笔数 -1</li>
+ * </ul>
+ * <p>分类为空时记为 "其他"，商户为空时记为 "未知商户"。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.SpendCubeService
+ */
+@Data
+@Entity
+@Table(name = "stat_spend_cube")
+public class SpendCube {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 用户 ID */
+    private Long userId;
+
+    /** 月份 - 格式 "yyyy-MM" */
+    private String month;
+
+    /** 消费分类 */
+    private String category;
+
+    /** 商户名称 */
+    private String merchant;
+
+    /** 消费总额，单位: 分 */
+    private Long totalCents;
+
+    /** 票据笔数 */
+    private Long invoiceCount;
+
+    /** 最后更新时间 */
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,66 @@
+package com.example.smartdoc.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 消费分布草图实体类 - 按 (用户, 月份, 分类) 保存的 t-digest
+ *
+ * <p>每行是该用户该月该分类全部票据金额 (单位: 分) 的分位数草图，
+ * 可以跨月份、跨分类、跨用户合并后再求中位数、p90 等分位数，
+ * 查询代价只与草图大小有关，与票据数无关。</p>
+ *
+ * <h3>维护规则:</h3>
+ * <ul>
+ *   <li>票据进入有效状态: 金额直接加入草图</li>
+ *   <li>票据离开有效状态: 草图无法删除数据点，标记为 stale，
+ *       由后台任务或下一次查询从票据明细重建</li>
+ * </ul>
+ * <p>每次变更都会递增 revision，重建只在 revision 未变化时写回，避免覆盖重建期间的新数据。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.SpendDigestService
+ * @see com.example.smartdoc.utils.TDigest
+ */
+@Data
+@Entity
+@Table(name = "stat_spend_digest")
+public class SpendDigest {
+
+    /** 主键 ID */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** 用户 ID */
+    private Long userId;
+
+    /** 月份 - 格式 "yyyy-MM" */
+    private String month;
+
+    /** 消费分类 */
+    private String category;
+
+    /** 序列化的 t-digest (见 TDigest.toBytes) */
+    @Column(columnDefinition = "BLOB")
+    private byte[] digest;
+
+    /** 草图中的票据笔数 */
+    private Long sampleCount;
+
+    /** 是否需要重建 (有票据离开了有效状态) */
+    private Boolean stale;
+
+    /** 变更序号 - 每次变更加 1 */
+    private Long revision;
+
+    /** 最后更新时间 */
+    private LocalDateTime updateTime;
+}
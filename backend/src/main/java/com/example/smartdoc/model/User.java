@@ -56,4 +56,10 @@ public class User {
      * </ul>
      */
     private String role;
+
+    /**
+     * 所属部门
+     * <p>用于管理员按部门汇总消费，为空时归入 "未分配部门"。</p>
+     */
+    private String department;
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.example.smartdoc.repository;
+
+import java.time.LocalDateTime;
+
+import com.example.smartdoc.model.AiReportCache;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import jakarta.transaction.Transactional;
+
+/**
+ * AI 报告缓存数据访问接口
+ *
+ * <p>ai_report_cache 表以 cache_key 为唯一键，另有 expire_time 索引用于清理过期数据。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.AiReportCache
+ * @see com.example.smartdoc.service.AiReportCacheService
+ */
+public interface AiReportCacheRepository extends JpaRepository<AiReportCache, Long> {
+
+    /**
+     * 按缓存键查询
+     *
+     * @param cacheKey 输入指纹
+     * @return 缓存记录，不存在时为 null
+     */
+    AiReportCache findByCacheKey(String cacheKey);
+
+    /**
+     * 写入或覆盖一条缓存
+     * <p>利用唯一键 + ON DUPLICATE KEY UPDATE，并发写入同一个键时不会报错。</p>
+     *
+     * @return 影响行数
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ai_report_cache (cache_key, model, content, create_time, expire_time) " +
+            "VALUES (:cacheKey, :model, :content, :createTime, :expireTime) " +
+            "ON DUPLICATE KEY UPDATE model = VALUES(model), content = VALUES(content), " +
+            "create_time = VALUES(create_time), expire_time = VALUES(expire_time)", nativeQuery = true)
+    int upsert(String cacheKey, String model, String content, LocalDateTime createTime, LocalDateTime expireTime);
+
+    /**
+     * 删除已过期的缓存
+     *
+     * @param now 当前时间
+     * @return 删除条数
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM ai_report_cache WHERE expire_time < :now", nativeQuery = true)
+    int deleteExpired(LocalDateTime now);
+
+    /**
+     * 只保留最近写入的 maxEntries 条缓存，删除更早的记录
+     * <p>按 create_time 而不是 id 排序: upsert 覆盖已有键时沿用原来的 id，但会刷新 create_time。
+     * 写入时间相同的记录再按 id 区分。表的行数被本方法限制在 maxEntries 左右，排序开销很小。</p>
+     *
+     * @param maxEntries 保留条数
+     * @return 删除条数
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM ai_report_cache WHERE (create_time, id) <= (" +
+            "SELECT create_time, id FROM (SELECT create_time, id FROM ai_report_cache " +
+            "ORDER BY create_time DESC, id DESC LIMIT 1 OFFSET :maxEntries) t)",
+            nativeQuery = true)
+    int trimTo(int maxEntries);
+}
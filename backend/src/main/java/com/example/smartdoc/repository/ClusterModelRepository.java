@@ -0,0 +1,22 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.ClusterModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * 聚类模型数据访问接口
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.ClusterModel
+ * @see com.example.smartdoc.service.ClusterModelService
+ */
+public interface ClusterModelRepository extends JpaRepository<ClusterModel, Long> {
+
+    /**
+     * 查询指定范围最新的模型
+     *
+     * @param scope 模型范围
+     * @return 最新模型，从未训练过时为 null
+     */
+    ClusterModel findTopByScopeOrderByIdDesc(String scope);
+}
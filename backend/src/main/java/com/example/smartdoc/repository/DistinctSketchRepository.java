@@ -0,0 +1,45 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.DistinctSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+/**
+ * 去重计数草图数据访问接口
+ *
+ * <p>stat_distinct_sketch 表以 (month, category) 为唯一键。
+ * 草图内容的读取与写回需要行锁和二进制列，由 DistinctCountService 通过 JdbcTemplate 完成。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.DistinctSketch
+ * @see com.example.smartdoc.service.DistinctCountService
+ */
+public interface DistinctSketchRepository extends JpaRepository<DistinctSketch, Long> {
+
+    /**
+     * 确保草图行存在并递增变更序号 (同时对该行加锁，直到事务结束)
+     *
+     * @param month    月份 "yyyy-MM"
+     * @param category 消费分类
+     * @param empty    空草图 (行不存在时写入)
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stat_distinct_sketch (month, category, merchants, users, stale, revision, update_time) " +
+            "VALUES (:month, :category, :empty, :empty, 0, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE revision = revision + 1", nativeQuery = true)
+    int touch(String month, String category, byte[] empty);
+
+    /**
+     * 标记草图需要重建
+     *
+     * @param month    月份 "yyyy-MM"
+     * @param category 消费分类
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "UPDATE stat_distinct_sketch SET stale = 1, revision = revision + 1, update_time = NOW() " +
+            "WHERE month = :month AND category = :category", nativeQuery = true)
+    int markStale(String month, String category);
+}
@@ -0,0 +1,26 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.Forecast;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * 消费预测数据访问接口
+ *
+ * <p>stat_forecast 表由 ForecastJob 通过 JdbcTemplate 批量写入，本接口只负责读取。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.Forecast
+ * @see com.example.smartdoc.job.ForecastJob
+ */
+public interface ForecastRepository extends JpaRepository<Forecast, Long> {
+
+    /**
+     * 查询用户全部分类的预测
+     *
+     * @param userId 用户 ID
+     * @return 预测列表 (按分类排序)
+     */
+    List<Forecast> findByUserIdOrderByCategoryAsc(Long userId);
+}
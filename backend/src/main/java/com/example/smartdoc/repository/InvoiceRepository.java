@@ -49,25 +49,20 @@ public interface InvoiceRepository extends JpaRepository<InvoiceData, Long> {
      * 
      * @param userId   用户 ID
      * @param category 消费类别
-     * @return 该类别的消费总额
+     * @return 该类别的消费总额 (分)
      */
-    @Query("SELECT COALESCE(SUM(i.amount), 0) FROM InvoiceData i WHERE i.userId = :userId AND i.category = :category")
-    Double sumAmountByUserIdAndCategory(Long userId, String category);
+    @Query("SELECT COALESCE(SUM(i.amountCents), 0) FROM InvoiceData i WHERE i.userId = :userId AND i.category = :category")
+    Long sumCentsByUserIdAndCategory(Long userId, String category);
 
     /**
-     * 获取用户近 12 个月的月度消费统计
-     * <p>使用原生 SQL 按月份分组汇总金额，用于趋势预测分析。
-     * 返回格式: [[月份, 总额], ...] 如 [["2024-01", 1234.56], ...]</p>
+     * 查询用户某类别的全部金额 (只取金额列，不加载整行)
+     * <p>用于异常检测时计算历史均值和标准差。</p>
      * 
-     * @param userId 用户 ID
-     * @return 月度统计数据（最新月份在前）
+     * @param userId   用户 ID
+     * @param category 消费类别
+     * @return 金额列表 (分)
      */
-    @Query(value = "SELECT DATE_FORMAT(date, '%Y-%m') as month, SUM(amount) " +
-            "FROM invoice_record " +
-            "WHERE user_id = :userId " +
-            "GROUP BY month " +
-            "ORDER BY month DESC " +
-            "LIMIT 12", nativeQuery = true)
-    List<Object[]> findMonthlyStatsByUserId(Long userId);
+    @Query("SELECT i.amountCents FROM InvoiceData i WHERE i.userId = :userId AND i.category = :category AND i.amountCents IS NOT NULL")
+    List<Long> findAmountCentsByUserIdAndCategory(Long userId, String category);
 }
 
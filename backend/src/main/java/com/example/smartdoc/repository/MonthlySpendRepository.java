@@ -0,0 +1,66 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.MonthlySpend;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * 月度消费汇总数据访问接口
+ * 
+ * <p>stat_monthly_spend 表以 (user_id, month, category) 为唯一键，
+ * 所有查询都能走该联合索引的前缀范围扫描。</p>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.MonthlySpend
+ * @see com.example.smartdoc.service.MonthlyStatsService
+ */
+public interface MonthlySpendRepository extends JpaRepository<MonthlySpend, Long> {
+
+    /**
+     * 增量累加某个汇总单元 (不存在则插入)
+     * <p>利用 MySQL 的 ON DUPLICATE KEY UPDATE 实现原子的 upsert，
+     * 并发写入同一单元时由行锁保证不丢失更新。</p>
+     * 
+     * @param userId      用户 ID
+     * @param month       月份 "yyyy-MM"
+     * @param category    消费分类
+     * @param centsDelta  金额增量，单位: 分 (删除时为负数)
+     * @param countDelta  笔数增量 (+1 或 -1)
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stat_monthly_spend (user_id, month, category, total_cents, invoice_count, update_time) " +
+            "VALUES (:userId, :month, :category, :centsDelta, :countDelta, NOW()) " +
+            "ON DUPLICATE KEY UPDATE total_cents = total_cents + VALUES(total_cents), " +
+            "invoice_count = invoice_count + VALUES(invoice_count), update_time = NOW()", nativeQuery = true)
+    int upsertDelta(Long userId, String month, String category, Long centsDelta, Long countDelta);
+
+    /**
+     * 获取用户近 12 个月的月度消费总额
+     * <p>返回格式: [[月份, 总额(分)], ...] 如 [["2024-01", 123456], ...]</p>
+     * 
+     * @param userId 用户 ID
+     * @return 月度统计数据（最新月份在前）
+     */
+    @Query(value = "SELECT month, SUM(total_cents) " +
+            "FROM stat_monthly_spend " +
+            "WHERE user_id = :userId " +
+            "GROUP BY month " +
+            "HAVING SUM(invoice_count) > 0 " +
+            "ORDER BY month DESC " +
+            "LIMIT 12", nativeQuery = true)
+    List<Object[]> findRecentMonthlyTotals(Long userId);
+
+    /**
+     * 统计用户某类别的消费总额 (全部月份)
+     * 
+     * @param userId   用户 ID
+     * @param category 消费类别
+     * @return 该类别的消费总额 (分)，无数据返回 0
+     */
+    @Query("SELECT COALESCE(SUM(m.totalCents), 0) FROM MonthlySpend m WHERE m.userId = :userId AND m.category = :category")
+    Long sumCentsByUserIdAndCategory(Long userId, String category);
+}
@@ -0,0 +1,26 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.RecurringPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * 重复支出数据访问接口
+ *
+ * <p>stat_recurring_payment 表由 RecurringPaymentJob 通过 JdbcTemplate 批量写入，本接口只负责读取。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.RecurringPayment
+ * @see com.example.smartdoc.job.RecurringPaymentJob
+ */
+public interface RecurringPaymentRepository extends JpaRepository<RecurringPayment, Long> {
+
+    /**
+     * 查询用户的全部重复支出
+     *
+     * @param userId 用户 ID
+     * @return 重复支出列表 (按预计下一次消费日期排序)
+     */
+    List<RecurringPayment> findByUserIdOrderByNextDateAsc(Long userId);
+}
@@ -0,0 +1,36 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.SpendCube;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+/**
+ * 消费立方体数据访问接口
+ *
+ * <p>stat_spend_cube 表以 (user_id, month, category, merchant) 为唯一键。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.SpendCube
+ * @see com.example.smartdoc.service.SpendCubeService
+ */
+public interface SpendCubeRepository extends JpaRepository<SpendCube, Long> {
+
+    /**
+     * 增量累加某个立方体单元 (不存在则插入)
+     *
+     * @param userId     用户 ID
+     * @param month      月份 "yyyy-MM"
+     * @param category   消费分类
+     * @param merchant   商户名称
+     * @param centsDelta 金额增量，单位: 分 (删除时为负数)
+     * @param countDelta 笔数增量 (+1 或 -1)
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stat_spend_cube (user_id, month, category, merchant, total_cents, invoice_count, update_time) " +
+            "VALUES (:userId, :month, :category, :merchant, :centsDelta, :countDelta, NOW()) " +
+            "ON DUPLICATE KEY UPDATE total_cents = total_cents + VALUES(total_cents), " +
+            "invoice_count = invoice_count + VALUES(invoice_count), update_time = NOW()", nativeQuery = true)
+    int upsertDelta(Long userId, String month, String category, String merchant, Long centsDelta, Long countDelta);
+}
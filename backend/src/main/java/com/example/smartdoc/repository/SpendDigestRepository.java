@@ -0,0 +1,47 @@
+package com.example.smartdoc.repository;
+
+import com.example.smartdoc.model.SpendDigest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+/**
+ * 消费分布草图数据访问接口
+ *
+ * <p>stat_spend_digest 表以 (user_id, month, category) 为唯一键。
+ * 草图内容的读取与写回需要行锁和二进制列，由 SpendDigestService 通过 JdbcTemplate 完成。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.SpendDigest
+ * @see com.example.smartdoc.service.SpendDigestService
+ */
+public interface SpendDigestRepository extends JpaRepository<SpendDigest, Long> {
+
+    /**
+     * 确保草图行存在并递增变更序号 (同时对该行加锁，直到事务结束)
+     *
+     * @param userId   用户 ID
+     * @param month    月份 "yyyy-MM"
+     * @param category 消费分类
+     * @param empty    空草图 (行不存在时写入)
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stat_spend_digest (user_id, month, category, digest, sample_count, stale, revision, update_time) " +
+            "VALUES (:userId, :month, :category, :empty, 0, 0, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE revision = revision + 1", nativeQuery = true)
+    int touch(Long userId, String month, String category, byte[] empty);
+
+    /**
+     * 标记草图需要重建
+     *
+     * @param userId   用户 ID
+     * @param month    月份 "yyyy-MM"
+     * @param category 消费分类
+     * @return 影响行数
+     */
+    @Modifying
+    @Query(value = "UPDATE stat_spend_digest SET stale = 1, revision = revision + 1, update_time = NOW() " +
+            "WHERE user_id = :userId AND month = :month AND category = :category", nativeQuery = true)
+    int markStale(Long userId, String month, String category);
+}
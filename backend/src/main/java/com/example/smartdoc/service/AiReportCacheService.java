@@ -0,0 +1,185 @@
+package com.example.smartdoc.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.AiReportCache;
+import com.example.smartdoc.repository.AiReportCacheRepository;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+/**
+ * AI 报告缓存服务 - 相同输入的 AI 分析报告只生成一次
+ *
+ * <p>大模型调用耗时数秒到数十秒，且消耗调用额度。分析报告完全由提示词决定，
+ * 因此以输入指纹作为缓存键：提示词不变 (如聚类中心没有变化) 时直接返回上次的报告。</p>
+ *
+ * <h3>缓存键:</h3>
+ * <pre>
+ * SHA-256(模型名称 + 温度 + 系统提示词 + 用户提示词)
+ * </pre>
+ *
+ * <h3>两级缓存:</h3>
+ * <ul>
+ *   <li>内存: 按访问顺序淘汰的 LRU，最多 max-entries 条，命中时毫秒级返回</li>
+ *   <li>数据库: ai_report_cache 表，重启后仍然有效；写入时顺带清理过期数据，
+ *       并只保留最新的 max-entries 条</li>
+ * </ul>
+ * <p>两级缓存都按 TTL 过期。调用失败 (网络异常、接口报错) 的结果不缓存，下次请求会重试。
+ * 同一个键的并发请求只调用一次大模型。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.ai-cache.ttl-hours=24     (默认值)
+ * smartdoc.ai-cache.max-entries=1000 (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see DeepSeekService
+ */
+@Service
+public class AiReportCacheService {
+
+    /** 缓存有效期 (小时) */
+    @Value("${smartdoc.ai-cache.ttl-hours:24}")
+    private long ttlHours;
+
+    /** 缓存条数上限 (内存与数据库各自的上限) */
+    @Value("${smartdoc.ai-cache.max-entries:1000}")
+    private int maxEntries;
+
+    /** DeepSeek AI 服务 */
+    @Autowired
+    private DeepSeekService deepSeekService;
+
+    /** AI 报告缓存仓库 */
+    @Autowired
+    private AiReportCacheRepository aiReportCacheRepository;
+
+    /** 内存 LRU (访问顺序)，所有访问都在 synchronized (memory) 内进行 */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /** 正在调用大模型的键 → 结果 (合并同一个键的并发请求) */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 内存缓存条目
+     */
+    private record Entry(String content, LocalDateTime expireTime) {
+    }
+
+    /**
+     * 获取 AI 分析报告，输入未变化时直接返回缓存
+     *
+     * @param systemPrompt 系统提示词
+     * @param userPrompt   用户提示词
+     * @return AI 生成的报告，调用失败时返回错误提示 (不缓存)
+     */
+    public String analyze(String systemPrompt, String userPrompt) {
+        String key = fingerprint(systemPrompt, userPrompt);
+
+        // 1. 内存缓存
+        String hit = getFromMemory(key);
+        if (hit != null) {
+            return hit;
+        }
+
+        // 2. 数据库缓存 / 调用大模型 (同一个键只有一个请求真正执行)
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inflight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            String report = load(key, systemPrompt, userPrompt);
+            mine.complete(report);
+            return report;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 查数据库，仍未命中时调用大模型并写入两级缓存
+     */
+    private String load(String key, String systemPrompt, String userPrompt) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            AiReportCache row = aiReportCacheRepository.findByCacheKey(key);
+            if (row != null && row.getExpireTime().isAfter(now)) {
+                putToMemory(key, new Entry(row.getContent(), row.getExpireTime()));
+                return row.getContent();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();  // 缓存不可用时直接调用大模型
+        }
+
+        String report;
+        try {
+            report = deepSeekService.chat(systemPrompt, userPrompt);
+        } catch (DeepSeekService.AiException e) {
+            return "AI 服务响应错误: " + e.getMessage();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "分析服务暂时不可用";
+        }
+
+        LocalDateTime expireTime = now.plusHours(ttlHours);
+        putToMemory(key, new Entry(report, expireTime));
+        try {
+            aiReportCacheRepository.upsert(key, DeepSeekService.MODEL, report, now, expireTime);
+            aiReportCacheRepository.deleteExpired(now);
+            aiReportCacheRepository.trimTo(maxEntries);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return report;
+    }
+
+    private String getFromMemory(String key) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.expireTime().isAfter(LocalDateTime.now())) {
+                memory.remove(key);
+                return null;
+            }
+            return entry.content();
+        }
+    }
+
+    private void putToMemory(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+    }
+
+    /**
+     * 计算输入指纹
+     *
+     * <p>各部分之间用 \0 分隔，避免不同的拆分方式拼出相同的字符串。</p>
+     */
+    private static String fingerprint(String systemPrompt, String userPrompt) {
+        String input = DeepSeekService.MODEL + '\0' + DeepSeekService.TEMPERATURE + '\0'
+                + systemPrompt + '\0' + userPrompt;
+        return DigestUtil.sha256Hex(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
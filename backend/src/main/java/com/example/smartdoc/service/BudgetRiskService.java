@@ -0,0 +1,183 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.Budget;
+import com.example.smartdoc.utils.BudgetSimulator;
+import com.example.smartdoc.utils.MoneyUtil;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 预算风险服务 - 用蒙特卡洛模拟估计各分类预算本月超支的概率
+ *
+ * <h3>计算流程 (每个预算):</h3>
+ * <pre>
+ * 1. 从用户快照取该分类的票据，按天汇总:
+ *    本月已消费 = 本月 1 日至今天的合计
+ *    历史日消费 = 最近 lookback-days 天 (不含今天，从首张票据开始) 每天的合计，没有消费的日子为 0
+ * 2. BudgetSimulator 对本月剩余天数 (不含今天) 模拟 paths 条路径，得到超支概率和月底总额的分布
+ * </pre>
+ * <p>历史不足 {@value #MIN_HISTORY_DAYS} 天时不做模拟，只返回已消费金额。
+ * 分类为空的票据归入 "其他"，与月度汇总的口径一致。</p>
+ *
+ * <h3>缓存:</h3>
+ * <p>结果按用户缓存，记录快照的数据版本和计算日期；用户有新票据 (版本变化) 或跨天后重算，
+ * 预算上限变化时只重算该预算。随机种子由用户、分类、版本和日期决定，同样的数据得到同样的结果。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.budget-risk.paths=10000        (默认值)
+ * smartdoc.budget-risk.lookback-days=90   (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see BudgetSimulator
+ * @see com.example.smartdoc.controller.BudgetController#getRisk
+ */
+@Service
+public class BudgetRiskService {
+
+    /** 至少需要的历史天数 */
+    private static final int MIN_HISTORY_DAYS = 14;
+
+    /** 模拟路径数 */
+    @Value("${smartdoc.budget-risk.paths:10000}")
+    private int paths;
+
+    /** 历史日消费的回看天数 */
+    @Value("${smartdoc.budget-risk.lookback-days:90}")
+    private int lookbackDays;
+
+    /** 用户快照服务 - 各统计接口共用的列式数据 */
+    @Autowired
+    private UserSnapshotService userSnapshotService;
+
+    /** 用户 ID → 缓存的模拟结果 */
+    private final ConcurrentHashMap<Long, CachedRisk> cache = new ConcurrentHashMap<>();
+
+    /** 模拟路径的并行计算线程池 (与公共池隔离，不影响其他并行流) */
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 一个用户的缓存
+     *
+     * @param version 快照的数据版本
+     * @param date    计算日期
+     * @param risks   "分类|上限" → 结果 (不可变)
+     */
+    private record CachedRisk(long version, LocalDate date, Map<String, Map<String, Object>> risks) {
+    }
+
+    /**
+     * 计算用户各预算本月的超支风险
+     *
+     * @param userId  用户 ID
+     * @param budgets 用户的预算
+     * @return 每个预算一项 (顺序与 budgets 相同)
+     */
+    public List<Map<String, Object>> risk(Long userId, List<Budget> budgets) {
+        UserSnapshot snapshot = userSnapshotService.get(userId);
+        LocalDate today = LocalDate.now();
+        CachedRisk cached = cache.get(userId);
+        Map<String, Map<String, Object>> previous =
+                cached != null && cached.version() == snapshot.version && cached.date().equals(today)
+                        ? cached.risks() : Map.of();
+
+        Map<String, Map<String, Object>> risks = new HashMap<>();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Budget budget : budgets) {
+            long limit = budget.getLimitCents() == null ? 0 : budget.getLimitCents();
+            String key = budget.getCategory() + "|" + limit;
+            Map<String, Object> risk = previous.get(key);
+            if (risk == null) {
+                risk = simulate(userId, snapshot, budget.getCategory(), limit, today);
+            }
+            risks.put(key, risk);
+            result.add(risk);
+        }
+        cache.put(userId, new CachedRisk(snapshot.version, today, Map.copyOf(risks)));
+        return result;
+    }
+
+    /**
+     * 模拟一个预算
+     */
+    private Map<String, Object> simulate(Long userId, UserSnapshot snapshot, String category, long limit, LocalDate today) {
+        int todayDay = (int) today.toEpochDay();
+        int monthStart = (int) today.withDayOfMonth(1).toEpochDay();
+        int historyStart = todayDay - lookbackDays;
+        int remainingDays = today.lengthOfMonth() - today.getDayOfMonth();
+
+        // 1. 按天汇总: 本月已消费 + 历史窗口内每天的合计
+        String target = category == null || category.isEmpty() ? "其他" : category;
+        long[] daily = new long[lookbackDays];
+        long spent = 0;
+        int firstDay = Integer.MAX_VALUE;
+        for (int i = 0; i < snapshot.size; i++) {
+            int day = snapshot.days[i];
+            long amount = snapshot.amounts[i];
+            if (day == UserSnapshot.NO_DATE || amount == UserSnapshot.NO_AMOUNT) continue;
+            String c = snapshot.categories[snapshot.categoryIds[i]];
+            if (!target.equals(c == null || c.isEmpty() ? "其他" : c)) continue;
+
+            firstDay = Math.min(firstDay, day);
+            if (day >= monthStart && day <= todayDay) spent += amount;
+            if (day >= historyStart && day < todayDay) daily[day - historyStart] += amount;
+        }
+
+        Map<String, Object> risk = new HashMap<>();
+        risk.put("category", category);
+        risk.put("limitAmount", MoneyUtil.toYuan(limit));
+        risk.put("spentAmount", MoneyUtil.toYuan(spent));
+        risk.put("remainingDays", remainingDays);
+
+        // 历史窗口从首张票据开始，避免把使用本系统之前的日子当作 0 消费
+        int historyDays = firstDay == Integer.MAX_VALUE ? 0 : todayDay - Math.max(historyStart, firstDay);
+        risk.put("historyDays", Math.max(0, historyDays));
+        if (spent > limit) {
+            risk.put("probability", 1.0);  // 已经超支
+            risk.put("expectedAmount", null);
+            return risk;
+        }
+        if (historyDays < MIN_HISTORY_DAYS) {
+            risk.put("probability", null);  // 历史不足，无法估计
+            risk.put("expectedAmount", null);
+            return risk;
+        }
+
+        // 2. 并行模拟
+        long[] history = Arrays.copyOfRange(daily, lookbackDays - historyDays, lookbackDays);
+        long seed = Objects.hash(userId, target, snapshot.version, todayDay);
+        long spentSoFar = spent;
+        BudgetSimulator.Result sim = pool.submit(() ->
+                BudgetSimulator.simulate(history, spentSoFar, limit, remainingDays, paths, seed)).join();
+
+        risk.put("probability", Math.round(sim.probability() * 1000) / 1000.0);
+        risk.put("expectedAmount", MoneyUtil.toYuan(sim.mean()));
+        risk.put("p50Amount", MoneyUtil.toYuan(sim.p50()));
+        risk.put("p90Amount", MoneyUtil.toYuan(sim.p90()));
+        risk.put("paths", sim.paths());
+        return risk;
+    }
+
+    /**
+     * 应用关闭时释放线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
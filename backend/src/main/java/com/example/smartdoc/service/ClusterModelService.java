@@ -0,0 +1,331 @@
+package com.example.smartdoc.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.ClusterModel;
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.ClusterModelRepository;
+import com.example.smartdoc.utils.MiniBatchKMeans;
+import com.example.smartdoc.utils.MoneyUtil;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+
+/**
+ * 全库聚类模型服务 - 对全部票据的 (日期, 金额) 做流式 Mini-Batch K-Means
+ *
+ * <p>个人聚类 ({@code /api/stats/clustering}) 把单个用户的票据一次性加载到内存，
+ * 无法扩展到全库上百万张票据。本服务按主键分页流式读取 invoice_record，
+ * 每读一页就增量更新一次聚类中心，内存占用只与页大小有关。</p>
+ *
+ * <h3>训练流程:</h3>
+ * <pre>
+ * for epoch in 1..epochs:
+ *     lastId = 0
+ *     loop:
+ *         SELECT id, DAY(invoice_date), amount_cents ... WHERE id &gt; lastId ORDER BY id LIMIT batchSize
+ *         model.partialFit(本页数据)
+ * 保存模型 → 发布给 {@link #assign} → 按同样的分页方式回写 org_cluster
+ * </pre>
+ * <p>按主键的 keyset 分页每页都是一次索引范围扫描，不会像 OFFSET 分页那样越翻越慢。
+ * 查询只取三列原始值，不加载实体。</p>
+ *
+ * <h3>并发:</h3>
+ * <ul>
+ *   <li>同一时刻只允许一个训练任务，训练在后台守护线程中进行</li>
+ *   <li>训练期间 {@link #assign} 继续使用旧模型；训练完成后以 volatile 引用整体替换</li>
+ * </ul>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.cluster.k=3              (默认值)
+ * smartdoc.cluster.batch-size=10000 (默认值)
+ * smartdoc.cluster.epochs=3         (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see MiniBatchKMeans
+ * @see com.example.smartdoc.controller.AdminAnalyticsController
+ */
+@Service
+public class ClusterModelService {
+
+    /** 全库模型的范围标识 */
+    public static final String SCOPE_ORG = "ORG";
+
+    /** 特征维度: (几号, 金额元) */
+    private static final int DIM = 2;
+
+    /** 训练随机种子 (固定种子，相同数据训练结果可复现) */
+    private static final long SEED = 42L;
+
+    /** 聚类数量 */
+    @Value("${smartdoc.cluster.k:3}")
+    private int k;
+
+    /** 每页读取的票据数 (即 mini-batch 大小) */
+    @Value("${smartdoc.cluster.batch-size:10000}")
+    private int batchSize;
+
+    /** 全表扫描轮数 */
+    @Value("${smartdoc.cluster.epochs:3}")
+    private int epochs;
+
+    /** JDBC 模板 - 流式读取原始列，不加载实体 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 聚类模型仓库 */
+    @Autowired
+    private ClusterModelRepository clusterModelRepository;
+
+    /** 当前生效的模型；null 表示尚未训练或尚未从数据库加载 */
+    private volatile Snapshot current;
+
+    /** 是否已尝试从数据库加载 */
+    private volatile boolean loaded = false;
+
+    /** 训练任务是否正在运行 */
+    private final AtomicBoolean training = new AtomicBoolean(false);
+
+    /**
+     * 生效模型快照 (模型只读，与元数据一起整体替换)
+     */
+    private record Snapshot(MiniBatchKMeans model, ClusterModel meta) {
+    }
+
+    /**
+     * 计算票据所属的全库聚类，O(k)
+     *
+     * @param invoice 票据 (需有开票日期和金额)
+     * @return 聚类索引；模型未训练或票据缺少日期、金额时返回 null
+     */
+    public Integer assign(InvoiceData invoice) {
+        if (invoice.getDate() == null || invoice.getAmountCents() == null) {
+            return null;
+        }
+        Snapshot snapshot = currentSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.model().predict(new double[]{
+                invoice.getDate().getDayOfMonth(), MoneyUtil.toYuanDouble(invoice.getAmountCents())});
+    }
+
+    /**
+     * 在后台线程中启动一次训练
+     *
+     * @return true=已启动, false=已有训练任务在运行
+     */
+    public boolean startTraining() {
+        if (!training.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                train();
+            } catch (Exception e) {
+                System.err.println("❌ 全库聚类训练失败: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                training.set(false);
+            }
+        }, "org-cluster-train");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * 获取当前模型的概要信息
+     *
+     * @return 包含 training 标记和 model (未训练时为 null) 的数据
+     */
+    public Map<String, Object> describe() {
+        Snapshot snapshot = currentSnapshot();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("training", training.get());
+        if (snapshot == null) {
+            result.put("model", null);
+            return result;
+        }
+        MiniBatchKMeans model = snapshot.model();
+        ClusterModel meta = snapshot.meta();
+
+        double[] centroids = model.getCentroids();
+        long[] counts = model.getCounts();
+        List<Map<String, Object>> clusters = new ArrayList<>(model.getK());
+        for (int c = 0; c < model.getK(); c++) {
+            Map<String, Object> cluster = new HashMap<>();
+            cluster.put("index", c);
+            cluster.put("day", centroids[c * DIM]);
+            cluster.put("amount", centroids[c * DIM + 1]);
+            cluster.put("count", counts[c]);
+            clusters.add(cluster);
+        }
+
+        Map<String, Object> info = new HashMap<>();
+        info.put("id", meta.getId());
+        info.put("k", meta.getClusterCount());
+        info.put("sampleCount", meta.getSampleCount());
+        info.put("epochs", meta.getEpochs());
+        info.put("costMillis", meta.getCostMillis());
+        info.put("trainedAt", meta.getTrainedAt());
+        info.put("clusters", clusters);
+        result.put("model", info);
+        return result;
+    }
+
+    /**
+     * 执行训练 (调用方保证同一时刻只有一个线程执行)
+     */
+    void train() {
+        System.out.println("🔄 开始训练全库聚类模型, k=" + k + ", batchSize=" + batchSize + ", epochs=" + epochs);
+        long start = System.currentTimeMillis();
+
+        MiniBatchKMeans model = new MiniBatchKMeans(k, DIM);
+        SplittableRandom random = new SplittableRandom(SEED);
+        double[] batch = new double[batchSize * DIM];
+        long[] ids = new long[batchSize];
+        long samples = 0;
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            long lastId = 0;
+            long epochSamples = 0;
+            int n;
+            while ((n = fetchPage(lastId, batch, ids)) > 0) {
+                // 首批不足 k 个点时无法初始化，说明全库数据太少，直接放弃
+                if (!model.isFitted() && n < k) {
+                    System.out.println("⚠️ 全库有效票据不足 " + k + " 条，跳过聚类训练");
+                    return;
+                }
+                model.partialFit(batch, n, random);
+                epochSamples += n;
+                lastId = ids[n - 1];
+                if (n < batchSize) break;
+            }
+            samples = epochSamples;
+        }
+        if (!model.isFitted()) {
+            System.out.println("⚠️ 全库没有带日期和金额的票据，跳过聚类训练");
+            return;
+        }
+
+        // 保存并发布: 之后保存的票据立即使用新模型
+        ClusterModel meta = new ClusterModel();
+        meta.setScope(SCOPE_ORG);
+        meta.setClusterCount(k);
+        meta.setDim(DIM);
+        meta.setCentroids(JSONUtil.toJsonStr(model.getCentroids()));
+        meta.setCounts(JSONUtil.toJsonStr(model.getCounts()));
+        meta.setSampleCount(samples);
+        meta.setEpochs(epochs);
+        meta.setCostMillis(System.currentTimeMillis() - start);
+        meta = clusterModelRepository.save(meta);
+        current = new Snapshot(model.copy(), meta);
+
+        long relabeled = relabel(model, batch, ids);
+        System.out.println("✅ 全库聚类训练完成: 样本 " + samples + " 条, 回写 " + relabeled
+                + " 条, 耗时 " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 用新模型重新计算已有票据的 org_cluster
+     *
+     * @return 回写条数
+     */
+    private long relabel(MiniBatchKMeans model, double[] batch, long[] ids) {
+        long total = 0;
+        long lastId = 0;
+        double[] point = new double[DIM];
+        int n;
+        while ((n = fetchPage(lastId, batch, ids)) > 0) {
+            List<Object[]> args = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(batch, i * DIM, point, 0, DIM);
+                args.add(new Object[]{model.predict(point), ids[i]});
+            }
+            jdbcTemplate.batchUpdate("UPDATE invoice_record SET org_cluster = ? WHERE id = ?", args);
+            total += n;
+            lastId = ids[n - 1];
+            if (n < batchSize) break;
+        }
+        return total;
+    }
+
+    /**
+     * 读取 id &gt; lastId 的下一页有效票据
+     *
+     * @param lastId 上一页最后一条的 id
+     * @param batch  输出: 特征，行优先 [day, amount, ...]
+     * @param ids    输出: 对应的票据 id
+     * @return 本页条数
+     */
+    private int fetchPage(long lastId, double[] batch, long[] ids) {
+        int[] n = {0};
+        jdbcTemplate.query(
+                "SELECT id, DAY(invoice_date) AS d, amount_cents FROM invoice_record " +
+                "WHERE id > ? AND is_deleted = 0 AND invoice_date IS NOT NULL AND amount_cents IS NOT NULL " +
+                "ORDER BY id LIMIT ?",
+                (RowCallbackHandler) rs -> {
+                    int i = n[0]++;
+                    ids[i] = rs.getLong(1);
+                    batch[i * DIM] = rs.getInt(2);
+                    batch[i * DIM + 1] = MoneyUtil.toYuanDouble(rs.getLong(3));
+                },
+                lastId, batchSize);
+        return n[0];
+    }
+
+    /**
+     * 获取当前模型，首次调用时从数据库加载最新一次训练结果
+     */
+    private Snapshot currentSnapshot() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    try {
+                        ClusterModel meta = clusterModelRepository.findTopByScopeOrderByIdDesc(SCOPE_ORG);
+                        // 加载期间如果训练已经发布了新模型，以新模型为准
+                        if (meta != null && current == null) {
+                            current = new Snapshot(restore(meta), meta);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    loaded = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 由持久化的 JSON 恢复模型
+     */
+    private static MiniBatchKMeans restore(ClusterModel meta) {
+        JSONArray c = JSONUtil.parseArray(meta.getCentroids());
+        JSONArray w = JSONUtil.parseArray(meta.getCounts());
+        double[] centroids = new double[c.size()];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = c.getDouble(i);
+        }
+        long[] counts = new long[w.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = w.getLong(i);
+        }
+        return new MiniBatchKMeans(meta.getClusterCount(), meta.getDim(), centroids, counts);
+    }
+}
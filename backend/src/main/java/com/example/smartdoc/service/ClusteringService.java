@@ -0,0 +1,314 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.KMeansEngine;
+import com.example.smartdoc.utils.KMeansUtil;
+import com.example.smartdoc.utils.MoneyUtil;
+import com.example.smartdoc.utils.SilhouetteUtil;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 个人聚类服务 - 对用户的 (日期, 金额) 执行 K-Means，支持自动选择 k
+ *
+ * <h3>结果缓存:</h3>
+ * <p>{@code /clustering} (散点图) 与 {@code /analyze-clustering} (AI 报告) 共用同一份计算结果，
+ * 保证 AI 描述的中心点与用户刚看到的散点图完全一致。</p>
+ * <pre>
+ * 命中条件: 数据版本号与 k 参数 (固定值或 auto) 均与缓存一致，
+ *          且缓存的结果是完整的，或计算它时的时间预算不小于本次请求的预算
+ *          (小预算下被截断的结果不会提供给预算更大的请求)
+ * 每个用户只缓存最近一次的结果；票据写入使版本号前进，下次请求自动重算
+ * 随机种子固定 (smartdoc.clustering.seed)，相同数据重算的结果也相同
+ * 同一用户的并发请求只计算一次，后到的请求等待先到请求的结果
+ * </pre>
+ *
+ * <h3>自动选择 k:</h3>
+ * <pre>
+ * 1. 在独立的 ForkJoinPool 中为 k = kMin..kMax 各提交一个任务，并行执行 K-Means
+ * 2. 每个任务在同一个随机样本 (最多 {@value #SILHOUETTE_SAMPLE} 个点) 上计算轮廓系数，
+ *    评分复杂度 O(s²)，与票据数无关
+ * 3. 取得分最高的 k (得分相同取较小的 k)
+ * </pre>
+ *
+ * <h3>时间预算:</h3>
+ * <p>每次请求有一个截止时间。截止后尚未开始的候选直接跳过，尚未完成的候选不再等待，
+ * 只在已完成的候选中选择；kMin 一定会等待完成，保证总能返回结果。
+ * 响应中的 partial 标记说明是否有候选被跳过。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.clustering.k-min=2             (默认值)
+ * smartdoc.clustering.k-max=8             (默认值)
+ * smartdoc.clustering.budget-ms=2000      (默认值)
+ * smartdoc.clustering.max-budget-ms=10000 (默认值，请求可传入的上限)
+ * smartdoc.clustering.seed=42             (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see KMeansEngine
+ * @see SilhouetteUtil
+ * @see UserSnapshotService
+ * @see DataVersionService
+ */
+@Service
+public class ClusteringService {
+
+    /** 默认聚类数量 */
+    public static final int DEFAULT_K = 3;
+
+    /** 最大迭代次数 */
+    public static final int MAX_ITERATIONS = 100;
+
+    /** 轮廓系数的样本大小 */
+    private static final int SILHOUETTE_SAMPLE = 1000;
+
+    /** 缓存键中代表 "自动选择 k" 的值 */
+    private static final int AUTO_K = 0;
+
+    /** 自动选择时 k 的下限 (轮廓系数要求 k ≥ 2) */
+    @Value("${smartdoc.clustering.k-min:2}")
+    private int kMin;
+
+    /** 自动选择时 k 的上限 */
+    @Value("${smartdoc.clustering.k-max:8}")
+    private int kMax;
+
+    /** 默认时间预算 (毫秒) */
+    @Value("${smartdoc.clustering.budget-ms:2000}")
+    private long defaultBudgetMillis;
+
+    /** 时间预算上限 (毫秒) */
+    @Value("${smartdoc.clustering.max-budget-ms:10000}")
+    private long maxBudgetMillis;
+
+    /** k-means++ 初始化与轮廓系数抽样的随机种子 */
+    @Value("${smartdoc.clustering.seed:42}")
+    private long seed;
+
+    /** 用户快照服务 - 各统计接口共用的列式数据 */
+    @Autowired
+    private UserSnapshotService userSnapshotService;
+
+    /** 数据版本服务 - 判断缓存是否过期 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 用户 ID → 缓存的聚类结果 */
+    private final ConcurrentHashMap<Long, CachedClustering> cache = new ConcurrentHashMap<>();
+
+    /** 候选 k 的并行计算线程池 (与公共池隔离，不影响其他并行流) */
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 聚类结果
+     *
+     * @param result  数据点与聚类中心
+     * @param k       实际使用的聚类数量
+     * @param scores  各候选 k 的轮廓系数 (仅自动选择时有值)
+     * @param partial 是否因时间预算有候选未参与比较
+     * @param data    数据点的原始数组 [x0, y0, x1, y1, ...] (供网格分箱等一次遍历的计算使用)
+     * @param labels  每个点的聚类索引；点数少于 k 未能聚类时为 null
+     */
+    public record Clustering(KMeansUtil.ClusterResult result, int k, Map<Integer, Double> scores, boolean partial,
+                             double[] data, int[] labels) {
+    }
+
+    /**
+     * 缓存条目 (计算中的结果以未完成的 future 表示)
+     *
+     * @param budget 计算时使用的时间预算 (毫秒)，固定 k 时为 Long.MAX_VALUE
+     */
+    private record CachedClustering(long version, int k, long budget, CompletableFuture<Clustering> future) {
+
+        boolean matches(long version, int k, long budget) {
+            return this.version == version && this.k == k && (this.budget >= budget || complete());
+        }
+
+        /**
+         * 已成功完成且没有候选因时间预算被跳过
+         */
+        private boolean complete() {
+            return future.isDone() && !future.isCompletedExceptionally() && !future.join().partial();
+        }
+    }
+
+    /**
+     * 单个候选 k 的计算结果
+     */
+    private record Candidate(int k, KMeansEngine.Result model, double score) {
+    }
+
+    /**
+     * 获取聚类结果，数据未变化时直接返回缓存
+     *
+     * <p>返回的结果在多个请求之间共享，调用方不应修改。</p>
+     *
+     * @param userId       用户 ID
+     * @param k            聚类数量，为 null 时自动选择
+     * @param budgetMillis 自动选择的时间预算 (毫秒)，为 null 时使用默认值
+     * @return 聚类结果
+     */
+    public Clustering getClustering(Long userId, Integer k, Long budgetMillis) {
+        // 版本号在查询之前读取: 计算期间提交的写操作会让版本号前进，下次请求自然重算
+        long version = dataVersionService.getVersion(userId);
+        int key = k == null ? AUTO_K : k;
+        long budget = k != null ? Long.MAX_VALUE
+                : budgetMillis == null ? defaultBudgetMillis : Math.max(0, Math.min(budgetMillis, maxBudgetMillis));
+
+        CompletableFuture<Clustering> mine = new CompletableFuture<>();
+        CachedClustering entry = cache.compute(userId, (id, old) -> old != null && old.matches(version, key, budget)
+                ? old : new CachedClustering(version, key, budget, mine));
+        if (entry.future() == mine) {
+            try {
+                mine.complete(k == null ? autoCluster(userId, budget) : cluster(userId, k));
+            } catch (Throwable e) {
+                // 包括 Error (如 OutOfMemoryError): 否则等待同一 future 的请求会一直阻塞
+                cache.remove(userId, entry);  // 失败的结果不缓存
+                mine.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return entry.future().join();
+    }
+
+    /**
+     * 使用固定的 k 聚类
+     *
+     * @param userId 用户 ID
+     * @param k      聚类数量
+     * @return 聚类结果
+     */
+    private Clustering cluster(Long userId, int k) {
+        return fixed(loadPoints(userId), k);
+    }
+
+    /**
+     * 对已加载的数据点执行固定 k 的聚类
+     */
+    private Clustering fixed(List<KMeansUtil.Point> points, int k) {
+        double[] data = KMeansUtil.toArray(points);
+        if (points.size() < k) {
+            // 数据点数量不足时直接返回
+            return new Clustering(new KMeansUtil.ClusterResult(points, new ArrayList<>()), k, Map.of(), false, data, null);
+        }
+        KMeansEngine.Result model = KMeansEngine.fit(data, 2, k, MAX_ITERATIONS, new SplittableRandom(seed));
+        return new Clustering(KMeansUtil.toClusterResult(points, model), k, Map.of(), false, data, model.labels);
+    }
+
+    /**
+     * 在时间预算内自动选择 k 并聚类
+     *
+     * @param userId       用户 ID
+     * @param budget 时间预算 (毫秒)
+     * @return 得分最高的聚类结果
+     */
+    private Clustering autoCluster(Long userId, long budget) {
+        List<KMeansUtil.Point> points = loadPoints(userId);
+        int n = points.size();
+        int hi = Math.min(kMax, n - 1);
+        int lo = Math.max(2, kMin);
+        if (hi < lo) {
+            // 点数太少，无法比较不同的 k
+            return fixed(points, DEFAULT_K);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+
+        double[] data = KMeansUtil.toArray(points);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] sample = SilhouetteUtil.sample(n, SILHOUETTE_SAMPLE, random.split());
+
+        // 1. 为每个候选 k 提交任务 (kMin 不受截止时间限制)
+        List<ForkJoinTask<Candidate>> tasks = new ArrayList<>();
+        for (int k = lo; k <= hi; k++) {
+            int kk = k;
+            boolean mandatory = k == lo;
+            SplittableRandom r = random.split();
+            tasks.add(pool.submit(() -> {
+                if (!mandatory && System.nanoTime() - deadline > 0) {
+                    return null;  // 已超出预算，跳过
+                }
+                KMeansEngine.Result model = KMeansEngine.fit(data, 2, kk, MAX_ITERATIONS, r);
+                return new Candidate(kk, model, SilhouetteUtil.score(data, 2, model.labels, kk, sample));
+            }));
+        }
+
+        // 2. 按 k 从小到大收集结果，超时的候选取消
+        Candidate best = null;
+        Map<Integer, Double> scores = new TreeMap<>();
+        boolean partial = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            ForkJoinTask<Candidate> task = tasks.get(i);
+            Candidate c;
+            try {
+                c = (i == 0) ? task.join()
+                        : task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                task.cancel(true);
+                partial = true;
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                partial = true;
+                continue;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                partial = true;
+                continue;
+            }
+            if (c == null) {
+                partial = true;
+                continue;
+            }
+            scores.put(c.k(), c.score());
+            if (best == null || c.score() > best.score()) {
+                best = c;
+            }
+        }
+
+        return new Clustering(KMeansUtil.toClusterResult(points, best.model()), best.k(), scores, partial,
+                data, best.model().labels);
+    }
+
+    /**
+     * 从用户快照中取带日期和金额的票据，构建 (几号, 金额元) 数据点 (按开票日期升序)
+     */
+    private List<KMeansUtil.Point> loadPoints(Long userId) {
+        UserSnapshot snapshot = userSnapshotService.get(userId);
+        List<KMeansUtil.Point> points = new ArrayList<>(snapshot.size);
+        for (int i = 0; i < snapshot.size; i++) {
+            int day = snapshot.days[i];
+            long cents = snapshot.amounts[i];
+            if (day == UserSnapshot.NO_DATE || cents == UserSnapshot.NO_AMOUNT) continue;
+            points.add(new KMeansUtil.Point(LocalDate.ofEpochDay(day).getDayOfMonth(), MoneyUtil.toYuanDouble(cents), -1));
+        }
+        return points;
+    }
+
+    /**
+     * 应用关闭时释放线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
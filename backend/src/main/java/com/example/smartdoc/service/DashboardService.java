@@ -0,0 +1,240 @@
+package com.example.smartdoc.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.Budget;
+import com.example.smartdoc.model.User;
+import com.example.smartdoc.repository.BudgetRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 仪表盘服务 - 一次请求并行计算全部仪表盘组件
+ *
+ * <p>仪表盘原来分别调用 trend / graph / clustering / budget 四个接口，每个请求各自鉴权、查询、序列化。
+ * 本服务把四个组件作为四个任务同时提交到独立线程池，各自在自己的截止时间内完成:</p>
+ * <pre>
+ * t0 ─┬─ trend      (月度汇总表 + 线性回归)          截止 t0 + trend-timeout-ms
+ *     ├─ graph      (用户快照 → 知识图谱)            截止 t0 + graph-timeout-ms
+ *     ├─ clustering (用户快照 → K-Means, k=3)        截止 t0 + clustering-timeout-ms
+ *     └─ budgets    (预算 + 月度汇总表)              截止 t0 + budget-timeout-ms
+ * </pre>
+ * <p>graph 与 clustering 读取同一份 {@link UserSnapshot}：快照服务合并同一用户的并发构建，
+ * 票据数据只查询一次。</p>
+ *
+ * <h3>超时与失败:</h3>
+ * <ul>
+ *   <li>某个组件超过截止时间: 不再等待并中断其任务，组件状态为 timeout、数据为 null，其他组件照常返回</li>
+ *   <li>某个组件抛出异常: 组件状态为 error、数据为 null，异常写入日志</li>
+ *   <li>线程池队列已满: 组件不提交 (也不在请求线程上执行)，状态为 busy、数据为 null</li>
+ *   <li>任一组件不是 ok 时整体 partial = true，前端可单独重试对应的接口</li>
+ * </ul>
+ * <p>线程池的等待队列有界 (queue-capacity)，突发流量下多出的组件直接拒绝，
+ * 而不是在队列中越积越多、等到执行时请求早已超时。
+ * 超时的任务以中断方式取消，让工作线程尽快回到池中。快照、聚类等共享计算的等待方
+ * (CompletableFuture.join) 不响应中断；计算方被中断而失败时结果不会缓存，下次请求重新计算。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.dashboard.threads=8                    (默认值)
+ * smartdoc.dashboard.queue-capacity=64            (默认值，等待执行的组件数上限)
+ * smartdoc.dashboard.trend-timeout-ms=1000        (默认值)
+ * smartdoc.dashboard.graph-timeout-ms=2000        (默认值)
+ * smartdoc.dashboard.clustering-timeout-ms=3000   (默认值)
+ * smartdoc.dashboard.budget-timeout-ms=1000       (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.StatsController#getDashboard
+ */
+@Service
+public class DashboardService {
+
+    /** 仪表盘知识图谱每个分类保留的商户数 (与 /graph 的默认值一致) */
+    private static final int GRAPH_TOP_N = 20;
+
+    /** 组件状态 */
+    private static final String OK = "ok";
+    private static final String TIMEOUT = "timeout";
+    private static final String ERROR = "error";
+    private static final String BUSY = "busy";
+
+    /** 线程池大小 */
+    @Value("${smartdoc.dashboard.threads:8}")
+    private int threads;
+
+    /** 线程池等待队列的容量 */
+    @Value("${smartdoc.dashboard.queue-capacity:64}")
+    private int queueCapacity;
+
+    /** 各组件的超时时间 (毫秒) */
+    @Value("${smartdoc.dashboard.trend-timeout-ms:1000}")
+    private long trendTimeoutMillis;
+
+    @Value("${smartdoc.dashboard.graph-timeout-ms:2000}")
+    private long graphTimeoutMillis;
+
+    @Value("${smartdoc.dashboard.clustering-timeout-ms:3000}")
+    private long clusteringTimeoutMillis;
+
+    @Value("${smartdoc.dashboard.budget-timeout-ms:1000}")
+    private long budgetTimeoutMillis;
+
+    /** 月度消费汇总服务 - 趋势与预算已使用金额 */
+    @Autowired
+    private MonthlyStatsService monthlyStatsService;
+
+    /** 知识图谱服务 */
+    @Autowired
+    private KnowledgeGraphService knowledgeGraphService;
+
+    /** 个人聚类服务 */
+    @Autowired
+    private ClusteringService clusteringService;
+
+    /** 预算数据仓库 */
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    /** 组件计算线程池 (与请求线程池隔离) */
+    private ExecutorService executor;
+
+    /**
+     * 单个组件任务
+     *
+     * @param future 任务结果，线程池拒绝时为 null
+     */
+    private record Widget(String name, long timeoutMillis, Future<Object> future) {
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "dashboard-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 并行计算仪表盘的全部组件
+     *
+     * @param user 当前用户
+     * @return trend / graph / clustering / budgets 四个组件的数据、各组件状态 (status) 和 partial 标记
+     */
+    public Map<String, Object> build(User user) {
+        Long userId = user.getId();
+        long start = System.nanoTime();
+
+        // 1. 扇出: 四个组件同时开始计算
+        List<Widget> widgets = new ArrayList<>();
+        widgets.add(submit("trend", trendTimeoutMillis, () -> monthlyStatsService.getTrend(userId)));
+        widgets.add(submit("graph", graphTimeoutMillis,
+                () -> knowledgeGraphService.getGraph(userId, user.getNickname(), null, null, GRAPH_TOP_N)));
+        widgets.add(submit("clustering", clusteringTimeoutMillis, () -> clustering(userId)));
+        widgets.add(submit("budgets", budgetTimeoutMillis, () -> budgets(userId)));
+
+        // 2. 汇合: 每个组件最多等到自己的截止时间
+        Map<String, Object> result = new HashMap<>();
+        Map<String, String> status = new LinkedHashMap<>();
+        try {
+            for (Widget widget : widgets) {
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(widget.timeoutMillis());
+                Object data = null;
+                String state;
+                if (widget.future() == null) {
+                    state = BUSY;
+                } else {
+                    try {
+                        data = widget.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        state = OK;
+                    } catch (TimeoutException e) {
+                        widget.future().cancel(true);
+                        state = TIMEOUT;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        state = TIMEOUT;
+                    } catch (ExecutionException e) {
+                        System.err.println("❌ 仪表盘组件 " + widget.name() + " 计算失败, userId=" + userId
+                                + ": " + e.getCause().getMessage());
+                        e.getCause().printStackTrace();
+                        state = ERROR;
+                    }
+                }
+                result.put(widget.name(), data);
+                status.put(widget.name(), state);
+            }
+        } finally {
+            // 3. 收尾: 取消仍未完成的任务 (请求线程被中断提前退出时)
+            for (Widget widget : widgets) {
+                if (widget.future() != null) {
+                    widget.future().cancel(true);
+                }
+            }
+        }
+
+        result.put("status", status);
+        result.put("partial", status.values().stream().anyMatch(s -> !OK.equals(s)));
+        return result;
+    }
+
+    private Widget submit(String name, long timeoutMillis, Callable<Object> task) {
+        try {
+            return new Widget(name, timeoutMillis, executor.submit(task));
+        } catch (RejectedExecutionException e) {
+            System.err.println("⚠️ 仪表盘线程池已满, 组件 " + name + " 未执行");
+            return new Widget(name, timeoutMillis, null);
+        }
+    }
+
+    /**
+     * 聚类组件 (k=3，与 /clustering 的默认返回相同)
+     */
+    private Map<String, Object> clustering(Long userId) {
+        ClusteringService.Clustering clustering = clusteringService.getClustering(userId, ClusteringService.DEFAULT_K, null);
+        Map<String, Object> data = new HashMap<>();
+        data.put("data", clustering.result());
+        data.put("k", clustering.k());
+        return data;
+    }
+
+    /**
+     * 预算组件 (与 /api/budget/list 相同)
+     */
+    private List<Budget> budgets(Long userId) {
+        List<Budget> budgets = budgetRepository.findByUserId(userId);
+        for (Budget b : budgets) {
+            b.setUsedCents(monthlyStatsService.sumByCategory(userId, b.getCategory()));
+        }
+        return budgets;
+    }
+
+    /**
+     * 应用关闭时释放线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
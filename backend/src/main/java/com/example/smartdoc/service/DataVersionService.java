@@ -0,0 +1,122 @@
+package com.example.smartdoc.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.TransactionUtil;
+
+/**
+ * 数据版本服务 - 记录每个用户票据数据的版本号
+ *
+ * <p>用户的票据每发生一次写操作 (保存、删除、还原、粉碎、备份恢复、审批)，
+ * 其版本号就加 1。各类缓存 (如 Excel 导出文件) 以 "用户 + 版本号" 作为缓存键，
+ * 版本号不变即说明底层数据没有变化，可以直接复用缓存结果。</p>
+ *
+ * <h3>版本号格式:</h3>
+ * <pre>
+ * 计数器只保存在内存中，重启后会从 0 开始。
+ * 为避免重启后复用旧的磁盘缓存，对外的版本标签带上启动时间戳:
+ *   versionTag = 启动时间戳(36进制) + "-" + 计数器
+ *   例: "m3k2x9pq-17"
+ * </pre>
+ *
+ * <h3>事务处理:</h3>
+ * <p>如果在事务中调用 {@link #markChanged(Long)}，版本号会在事务提交之后才递增。
+ * 否则并发的读请求可能在提交前读到新版本号、却查到旧数据，把旧数据缓存在新版本下。</p>
+ *
+ * <h3>变更序号:</h3>
+ * <p>除了每个用户的版本号，还维护一个全局递增的变更序号，并记录每个用户最近一次变化时的序号。
+ * 后台任务 (如预测任务) 记下开始时的 {@link #currentSequence()}，
+ * 下次运行时用 {@link #changedSince(long)} 取出期间有变化的用户做增量处理，无需遍历全部用户。</p>
+ *
+ * @author SmartDoc Team
+ * @see ExportCacheService
+ * @see com.example.smartdoc.job.ForecastJob
+ */
+@Service
+public class DataVersionService {
+
+    /** 服务启动时间戳 - 区分不同进程生命周期内的版本号 */
+    private final long epoch = System.currentTimeMillis();
+
+    /** 用户 ID → 版本计数器 */
+    private final ConcurrentHashMap<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /** 全局变更序号 (只在 synchronized (this) 内递增) */
+    private long sequence = 0;
+
+    /** 用户 ID → 最近一次变化时的全局序号 */
+    private final ConcurrentHashMap<Long, Long> lastChanged = new ConcurrentHashMap<>();
+
+    /**
+     * 获取用户当前的数据版本号
+     *
+     * @param userId 用户 ID
+     * @return 版本号，从未写入过的用户返回 0
+     */
+    public long getVersion(Long userId) {
+        AtomicLong counter = versions.get(userId);
+        return counter == null ? 0L : counter.get();
+    }
+
+    /**
+     * 获取带启动时间戳的版本标签 (可用于磁盘缓存文件名和 ETag)
+     *
+     * @param userId 用户 ID
+     * @return 版本标签，如 "m3k2x9pq-17"
+     */
+    public String getVersionTag(Long userId) {
+        return Long.toString(epoch, 36) + "-" + getVersion(userId);
+    }
+
+    /**
+     * 获取当前的全局变更序号
+     *
+     * @return 序号，此前的所有变化都已能通过 {@link #changedSince(long)} 查到
+     */
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    /**
+     * 获取变更序号大于 sequence 的用户 (即在该序号之后有过变化的用户)
+     *
+     * @param sequence 上次处理时记下的 {@link #currentSequence()}
+     * @return 用户 ID 列表
+     */
+    public List<Long> changedSince(long sequence) {
+        List<Long> result = new ArrayList<>();
+        lastChanged.forEach((userId, seq) -> {
+            if (seq > sequence) result.add(userId);
+        });
+        return result;
+    }
+
+    /**
+     * 标记用户数据已变化
+     *
+     * <p>处于事务中时延迟到提交后递增版本号，事务回滚则不递增。</p>
+     *
+     * @param userId 用户 ID，为 null 时忽略
+     */
+    public void markChanged(Long userId) {
+        if (userId == null) return;
+        TransactionUtil.afterCommit(() -> bump(userId));
+    }
+
+    /**
+     * 立即递增版本号
+     *
+     * <p>序号递增与记录在同一个锁内完成，保证 {@link #currentSequence()} 返回的序号之前的变化都已记录。</p>
+     */
+    private void bump(Long userId) {
+        versions.computeIfAbsent(userId, k -> new AtomicLong()).incrementAndGet();
+        synchronized (this) {
+            lastChanged.put(userId, ++sequence);
+        }
+    }
+}
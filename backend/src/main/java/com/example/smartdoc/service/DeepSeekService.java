@@ -39,6 +39,12 @@ public class DeepSeekService {
     @Value("${deepseek.api.url}")
     private String apiUrl;
 
+    /** 对话模型名称 */
+    public static final String MODEL = "deepseek-chat";
+
+    /** 采样温度 - 分析类任务温度低一点，更理性 */
+    public static final double TEMPERATURE = 0.3;
+
     /**
      * 调用 DeepSeek AI 接口
      * 
@@ -51,41 +57,69 @@ public class DeepSeekService {
      */
     public String callAi(String systemPrompt, String userMessage) {
         try {
-            // 构建请求体
-            JSONObject body = new JSONObject();
-            body.put("model", "deepseek-chat");
-            body.put("temperature", 0.3); // 分析类任务温度低一点，更理性
+            return chat(systemPrompt, userMessage);
+        } catch (AiException e) {
+            return "AI 服务响应错误: " + e.getMessage();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "分析服务暂时不可用";
+        }
+    }
 
-            // 构建消息数组 (system + user)
-            JSONArray messages = new JSONArray();
-            messages.put(new JSONObject().put("role", "system").put("content", systemPrompt));
-            messages.put(new JSONObject().put("role", "user").put("content", userMessage));
-            body.put("messages", messages);
+    /**
+     * 调用 DeepSeek AI 接口，失败时抛出异常
+     * 
+     * <p>与 {@link #callAi} 相比，调用方可以区分正常回复和错误，
+     * 例如只缓存成功的回复。</p>
+     * 
+     * @param systemPrompt 系统提示词
+     * @param userMessage  用户输入的消息内容
+     * @return AI 生成的回复内容
+     * @throws AiException 接口返回错误信息时
+     * @throws Exception   网络或解析异常
+     */
+    public String chat(String systemPrompt, String userMessage) throws Exception {
+        // 构建请求体
+        JSONObject body = new JSONObject();
+        body.put("model", MODEL);
+        body.put("temperature", TEMPERATURE);
 
-            // 发送 POST 请求
-            String response = HttpRequest.post(apiUrl)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .body(body.toString())
-                    .timeout(60000) // 60秒超时
-                    .execute()
-                    .body();
+        // 构建消息数组 (system + user)
+        JSONArray messages = new JSONArray();
+        messages.put(new JSONObject().put("role", "system").put("content", systemPrompt));
+        messages.put(new JSONObject().put("role", "user").put("content", userMessage));
+        body.put("messages", messages);
 
-            // 解析响应
-            JSONObject jsonResponse = new JSONObject(response);
-            if (jsonResponse.has("error")) {
-                return "AI 服务响应错误: " + jsonResponse.getJSONObject("error").getString("message");
-            }
+        // 发送 POST 请求
+        String response = HttpRequest.post(apiUrl)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .body(body.toString())
+                .timeout(60000) // 60秒超时
+                .execute()
+                .body();
 
-            // 提取 AI 回复内容
-            return jsonResponse.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
+        // 解析响应
+        JSONObject jsonResponse = new JSONObject(response);
+        if (jsonResponse.has("error")) {
+            throw new AiException(jsonResponse.getJSONObject("error").getString("message"));
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "分析服务暂时不可用";
+        // 提取 AI 回复内容
+        return jsonResponse.getJSONArray("choices")
+                .getJSONObject(0)
+                .getJSONObject("message")
+                .getString("content");
+    }
+
+    /**
+     * AI 接口返回的业务错误 (如额度不足、参数错误)
+     */
+    public static class AiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public AiException(String message) {
+            super(message);
         }
     }
 }
@@ -0,0 +1,390 @@
+package com.example.smartdoc.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.DistinctSketchRepository;
+import com.example.smartdoc.utils.HyperLogLog;
+
+/**
+ * 去重计数服务 - 维护 (月份, 分类) 的 HyperLogLog 草图，估计去重商户数与活跃用户数
+ *
+ * <p>管理员报表中的 "每月去重商户数"、"各分类活跃用户数" 如果直接对 invoice_record 做
+ * COUNT(DISTINCT ...)，耗时随全表数据量增长。本服务按 (月份, 分类) 维护商户和用户两个草图，
+ * 查询时只需合并范围内的草图，代价与票据数无关。</p>
+ *
+ * <h3>草图维护 (事务外批量合并):</h3>
+ * <pre>
+ * 票据写入 (作为 {@link InvoiceChangeListener}，在票据写入的同一事务内):
+ *   只向 stat_distinct_pending 插入一行 (月份, 分类, 商户, 用户, 是否删除)，与票据同时提交或回滚
+ * 定时合并 (flush-ms，查询前也会先合并一次):
+ *   按 id 顺序读出一批待合并记录，按 (月份, 分类) 分组，每组一个短事务:
+ *     touch (不存在则插入空草图，递增 revision 并锁定该行)
+ *     组内有删除 → 标记 stale (HyperLogLog 不支持删除元素)
+ *     否则读出草图 → 加入全部商户和用户 → 有变化时写回 (stale 的草图跳过，重建时会从明细读到)
+ *     删除本组的待合并记录
+ * stale 的草图由 rebuild-delay-ms 定时任务或下一次查询从票据明细重建，
+ * 重建结果只在 revision 未变化时写回
+ * </pre>
+ * <p>全库共用一个 (月份, 分类) 单元。票据保存的事务只做一次小的 INSERT，
+ * 不再解码 / 编码两个 16 KB 的草图、也不在热点行上持有行锁；
+ * 一个单元的一批写入只读写一次草图。代价是草图最多滞后 flush-ms。
+ * 只统计有开票日期的票据；没有商户名称的票据只计入用户草图。</p>
+ *
+ * <h3>误差:</h3>
+ * <p>精度 p = 14，每个草图 16384 个寄存器，相对标准误差约 0.81%
+ * (约 95% 的估计在真实值 ±1.6% 以内)，见 {@link HyperLogLog}。
+ * 合并不会引入额外误差，合并后的估计与直接对整个范围建草图相同。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.distinct.rebuild-delay-ms=60000   (默认值)
+ * smartdoc.distinct.rebuild-batch=200        (默认值，每批重建的草图数)
+ * smartdoc.distinct.flush-ms=5000            (默认值，待合并记录的合并间隔)
+ * smartdoc.distinct.flush-batch=1000         (默认值，每批读取的待合并记录数)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see HyperLogLog
+ * @see com.example.smartdoc.model.DistinctSketch
+ */
+@Service
+public class DistinctCountService implements InvoiceChangeListener {
+
+    /** 全部分类 / 全部月份合并后的名称 */
+    private static final String ALL = "全部";
+
+    /** 空草图的序列化结果 */
+    private static final byte[] EMPTY = new HyperLogLog().toBytes();
+
+    /** 读出草图行 */
+    private static final RowMapper<Current> CURRENT_MAPPER = (rs, i) -> new Current(
+            rs.getLong("id"), rs.getBytes("merchants"), rs.getBytes("users"), rs.getBoolean("stale"));
+
+    /** 读出待合并记录 */
+    private static final RowMapper<Pending> PENDING_MAPPER = (rs, i) -> new Pending(
+            rs.getLong("id"), rs.getString("month"), rs.getString("category"), rs.getString("merchant"),
+            rs.getObject("user_id", Long.class), rs.getBoolean("removed"));
+
+    /** 定时重建时每批读取的草图数 */
+    @Value("${smartdoc.distinct.rebuild-batch:200}")
+    private int rebuildBatch;
+
+    /** 每批读取的待合并记录数 */
+    @Value("${smartdoc.distinct.flush-batch:1000}")
+    private int flushBatch;
+
+    /** 去重计数草图仓库 */
+    @Autowired
+    private DistinctSketchRepository distinctSketchRepository;
+
+    /** JDBC 模板 - 读写草图与重建 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 事务模板 - 每个单元的合并与待合并记录的删除在同一事务内 */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 读出的草图行
+     */
+    private record Current(long id, byte[] merchants, byte[] users, boolean stale) {
+    }
+
+    /**
+     * 需要重建的草图行
+     */
+    private record Row(long id, String month, String category, long revision) {
+    }
+
+    /**
+     * 待合并记录
+     */
+    private record Pending(long id, String month, String category, String merchant, Long userId, boolean removed) {
+    }
+
+    /**
+     * 一个维度值上合并后的两个草图
+     */
+    private record Pair(HyperLogLog merchants, HyperLogLog users) {
+
+        Pair() {
+            this(new HyperLogLog(), new HyperLogLog());
+        }
+
+        void merge(Pair other) {
+            merchants.merge(other.merchants());
+            users.merge(other.users());
+        }
+    }
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        enqueue(row, false);
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        enqueue(row, true);
+    }
+
+    /**
+     * 在票据写入的事务内登记一条待合并记录 (只插入，不读写草图行)
+     *
+     * <p>与重建口径一致，只登记有开票日期的票据；旧日期回填时 InvoiceChangeService 以修改后的新值再次回调 onInvoiceAdded。</p>
+     */
+    private void enqueue(InvoiceData row, boolean removed) {
+        if (row.getDate() == null) return;
+        String month = MonthlyStatsService.monthOf(row);
+        jdbcTemplate.update(
+                "INSERT INTO stat_distinct_pending (month, category, merchant, user_id, removed) VALUES (?, ?, ?, ?, ?)",
+                month, MonthlyStatsService.categoryOf(row), removed ? null : merchantOf(row), row.getUserId(), removed);
+    }
+
+    /**
+     * 定时合并待合并记录
+     */
+    @Scheduled(initialDelayString = "${smartdoc.distinct.flush-ms:5000}",
+            fixedDelayString = "${smartdoc.distinct.flush-ms:5000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 把已提交的待合并记录合并到草图
+     *
+     * @return 合并的记录数
+     */
+    public synchronized int flush() {
+        int applied = 0;
+        List<Pending> batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT id, month, category, merchant, user_id, removed FROM stat_distinct_pending ORDER BY id LIMIT ?",
+                    PENDING_MAPPER, flushBatch);
+            Map<String, List<Pending>> byCell = new LinkedHashMap<>();
+            for (Pending p : batch) {
+                byCell.computeIfAbsent(p.month() + "|" + p.category(), k -> new ArrayList<>()).add(p);
+            }
+            for (List<Pending> cell : byCell.values()) {
+                transactionTemplate.executeWithoutResult(status -> apply(cell));
+            }
+            applied += batch.size();
+        } while (batch.size() == flushBatch);
+        return applied;
+    }
+
+    /**
+     * 在当前事务内把一个单元的待合并记录合并到草图，并删除这些记录
+     */
+    private void apply(List<Pending> cell) {
+        String month = cell.get(0).month();
+        String category = cell.get(0).category();
+
+        // touch 在 stale 的行上也要执行，使进行中的重建作废
+        distinctSketchRepository.touch(month, category, EMPTY);
+        if (cell.stream().anyMatch(Pending::removed)) {
+            distinctSketchRepository.markStale(month, category);
+        } else {
+            Current current = jdbcTemplate.queryForObject(
+                    "SELECT id, merchants, users, stale FROM stat_distinct_sketch WHERE month = ? AND category = ? FOR UPDATE",
+                    CURRENT_MAPPER, month, category);
+            if (!current.stale()) {
+                HyperLogLog merchants = HyperLogLog.fromBytes(current.merchants());
+                HyperLogLog users = HyperLogLog.fromBytes(current.users());
+                boolean changed = false;
+                for (Pending p : cell) {
+                    changed |= add(merchants, users, p.merchant(), p.userId());
+                }
+                if (changed) {
+                    jdbcTemplate.update(
+                            "UPDATE stat_distinct_sketch SET merchants = ?, users = ?, update_time = NOW() WHERE id = ?",
+                            merchants.toBytes(), users.toBytes(), current.id());
+                }
+            }
+        }
+
+        jdbcTemplate.update(
+                "DELETE FROM stat_distinct_pending WHERE id IN (" + String.join(",", Collections.nCopies(cell.size(), "?")) + ")",
+                cell.stream().map(Pending::id).toArray());
+    }
+
+    /**
+     * 去重计数报告
+     *
+     * @param fromMonth 起始月份 "yyyy-MM" (含)，为 null 时不限
+     * @param toMonth   结束月份 "yyyy-MM" (含)，为 null 时不限
+     * @return months (每月去重商户数 / 活跃用户数，按月份升序) /
+     *         categories (各分类去重商户数 / 活跃用户数，按活跃用户数降序) /
+     *         total (整个范围) / relativeError (相对标准误差)
+     */
+    public Map<String, Object> report(String fromMonth, String toMonth) {
+        // 先合并已提交的写入，报告反映查询之前的全部变化
+        flush();
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (fromMonth != null) {
+            conditions.add("month >= ?");
+            args.add(fromMonth);
+        }
+        if (toMonth != null) {
+            conditions.add("month <= ?");
+            args.add(toMonth);
+        }
+        String sql = "SELECT id, month, category, merchants, users, stale, revision FROM stat_distinct_sketch"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+
+        // 1. 流式合并有效草图，stale 的草图留到读完后重建
+        Map<String, Pair> byMonth = new TreeMap<>();
+        Map<String, Pair> byCategory = new HashMap<>();
+        Pair total = new Pair();
+        List<Row> stale = new ArrayList<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            if (rs.getBoolean("stale")) {
+                stale.add(new Row(rs.getLong("id"), rs.getString("month"), rs.getString("category"), rs.getLong("revision")));
+                return;
+            }
+            Pair cell = new Pair(HyperLogLog.fromBytes(rs.getBytes("merchants")), HyperLogLog.fromBytes(rs.getBytes("users")));
+            byMonth.computeIfAbsent(rs.getString("month"), k -> new Pair()).merge(cell);
+            byCategory.computeIfAbsent(rs.getString("category"), k -> new Pair()).merge(cell);
+            total.merge(cell);
+        }, args.toArray());
+
+        // 2. 重建 stale 草图后合并
+        for (Row row : stale) {
+            Pair cell = rebuild(row);
+            byMonth.computeIfAbsent(row.month(), k -> new Pair()).merge(cell);
+            byCategory.computeIfAbsent(row.category(), k -> new Pair()).merge(cell);
+            total.merge(cell);
+        }
+
+        List<Map<String, Object>> months = new ArrayList<>();
+        byMonth.forEach((month, pair) -> months.add(describe("month", month, pair)));
+        List<Map<String, Object>> categories = new ArrayList<>();
+        byCategory.forEach((category, pair) -> categories.add(describe("category", category, pair)));
+        categories.sort((a, b) -> Long.compare((Long) b.get("users"), (Long) a.get("users")));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("months", months);
+        result.put("categories", categories);
+        result.put("total", describe("category", ALL, total));
+        result.put("relativeError", Math.round(total.users().relativeError() * 10000) / 100.0);
+        return result;
+    }
+
+    /**
+     * 定时重建被标记为 stale 的草图
+     */
+    @Scheduled(initialDelayString = "${smartdoc.distinct.rebuild-delay-ms:60000}",
+            fixedDelayString = "${smartdoc.distinct.rebuild-delay-ms:60000}")
+    public void rebuildStale() {
+        try {
+            long lastId = 0;
+            int rebuilt = 0;
+            List<Row> rows;
+            do {
+                rows = jdbcTemplate.query(
+                        "SELECT id, month, category, revision FROM stat_distinct_sketch " +
+                        "WHERE stale = 1 AND id > ? ORDER BY id LIMIT ?",
+                        (rs, i) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4)),
+                        lastId, rebuildBatch);
+                for (Row row : rows) {
+                    rebuild(row);
+                    lastId = row.id();
+                }
+                rebuilt += rows.size();
+            } while (rows.size() == rebuildBatch);
+            if (rebuilt > 0) {
+                System.out.println("📊 已重建去重计数草图: " + rebuilt + " 个");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 从票据明细重建一个单元的草图，revision 未变化时写回
+     *
+     * @return 重建后的草图
+     */
+    private Pair rebuild(Row row) {
+        YearMonth month = YearMonth.parse(row.month());
+        StringBuilder sql = new StringBuilder(
+                "SELECT DISTINCT user_id, merchant_name FROM invoice_record WHERE is_deleted = 0 " +
+                "AND invoice_date >= ? AND invoice_date < ?");
+        List<Object> args = new ArrayList<>(List.of(month.atDay(1), month.plusMonths(1).atDay(1)));
+        if ("其他".equals(row.category())) {
+            // 与 MonthlyStatsService.categoryOf 一致: 空分类归入 "其他"
+            sql.append(" AND (category IS NULL OR category = '' OR category = '其他')");
+        } else {
+            sql.append(" AND category = ?");
+            args.add(row.category());
+        }
+
+        Pair cell = new Pair();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            String merchant = rs.getString(2);
+            long userId = rs.getLong(1);
+            add(cell.merchants(), cell.users(), merchant == null ? null : merchant.trim(), rs.wasNull() ? null : userId);
+        }, args.toArray());
+        jdbcTemplate.update(
+                "UPDATE stat_distinct_sketch SET merchants = ?, users = ?, stale = 0, update_time = NOW() " +
+                "WHERE id = ? AND revision = ?",
+                cell.merchants().toBytes(), cell.users().toBytes(), row.id(), row.revision());
+        return cell;
+    }
+
+    /**
+     * 把一张票据的商户和用户加入草图
+     *
+     * @return 是否有寄存器发生变化
+     */
+    private static boolean add(HyperLogLog merchants, HyperLogLog users, String merchant, Long userId) {
+        boolean changed = false;
+        if (merchant != null && !merchant.isEmpty()) {
+            changed = merchants.add(merchant);
+        }
+        if (userId != null) {
+            changed |= users.add(userId);
+        }
+        return changed;
+    }
+
+    private static String merchantOf(InvoiceData row) {
+        String merchant = row.getMerchantName();
+        return merchant == null ? null : merchant.trim();
+    }
+
+    /**
+     * 组装一个维度值的去重计数
+     */
+    private static Map<String, Object> describe(String dimension, String value, Pair pair) {
+        Map<String, Object> item = new HashMap<>();
+        item.put(dimension, value);
+        item.put("merchants", pair.merchants().estimate());
+        item.put("users", pair.users().estimate());
+        return item;
+    }
+}
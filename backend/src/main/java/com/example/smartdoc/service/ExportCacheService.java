@@ -0,0 +1,253 @@
+package com.example.smartdoc.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.InvoiceRepository;
+
+import cn.hutool.poi.excel.ExcelUtil;
+import cn.hutool.poi.excel.ExcelWriter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Excel 导出缓存服务 - 将生成好的报表缓存在本地磁盘
+ *
+ * <p>审计期间财务人员会反复下载同一份报表，每次重新查询并生成 xlsx 代价很高。
+ * 本服务把生成结果以 "用户 ID + 数据版本标签" 命名保存到磁盘，
+ * 只要用户的票据没有写操作，后续下载直接读取已有文件。</p>
+ *
+ * <h3>缓存文件命名:</h3>
+ * <pre>
+ * {export.dir}/export_{userId}_{versionTag}.xlsx
+ * 例: exports/export_2_m3k2x9pq-17.xlsx
+ * </pre>
+ *
+ * <h3>生成流程:</h3>
+ * <ol>
+ *   <li>读取当前版本标签，对应文件已存在则直接返回</li>
+ *   <li>同一用户加锁，避免并发请求重复生成</li>
+ *   <li>先写入临时文件，再原子重命名为正式文件 (读者不会看到写了一半的文件)</li>
+ *   <li>清理该用户旧版本的导出文件</li>
+ * </ol>
+ *
+ * <h3>文件租约:</h3>
+ * <p>旧版本文件可能正被其他下载请求发送 (包括断点续传的后续分段)。
+ * {@link #getExportFile} 返回文件时登记一个租约，调用方发送完毕后必须调用 {@link #release}。
+ * 清理旧文件时跳过仍有租约的文件，只做标记，由最后一个租约释放时删除。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.export.dir=exports   (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see DataVersionService
+ * @see com.example.smartdoc.controller.DocController#export
+ */
+@Service
+public class ExportCacheService {
+
+    /** 导出文件缓存目录 */
+    @Value("${smartdoc.export.dir:exports}")
+    private String exportDir;
+
+    /** 票据数据仓库 */
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    /** 数据版本服务 - 提供缓存键中的版本标签 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 用户级生成锁 - 同一用户同时只生成一份报表 */
+    private final ConcurrentHashMap<Long, Object> locks = new ConcurrentHashMap<>();
+
+    /** 文件路径 → 未释放的租约数 (与 condemned 一起在 synchronized (leases) 内访问) */
+    private final Map<Path, Integer> leases = new HashMap<>();
+
+    /** 已过期、等待最后一个租约释放后删除的文件 */
+    private final Set<Path> condemned = new HashSet<>();
+
+    /**
+     * 导出文件描述
+     */
+    @Data
+    @AllArgsConstructor
+    public static class ExportFile {
+        /** 磁盘文件路径 */
+        private Path path;
+        /** 强校验 ETag (带双引号) */
+        private String etag;
+    }
+
+    /**
+     * 获取用户当前版本的导出文件，不存在时生成
+     *
+     * <p>返回的文件持有一个租约，使用完毕后必须调用 {@link #release} 释放。</p>
+     *
+     * @param userId 用户 ID
+     * @return 导出文件描述
+     * @throws IOException 文件读写失败
+     */
+    public ExportFile getExportFile(Long userId) throws IOException {
+        // 版本标签必须在查询数据之前读取:
+        // 查询之后才提交的写操作会让版本号前进，下次请求自然会重新生成
+        String tag = dataVersionService.getVersionTag(userId);
+        Path dir = Paths.get(exportDir);
+        Path target = dir.resolve("export_" + userId + "_" + tag + ".xlsx");
+        String etag = "\"" + userId + "-" + tag + "\"";
+
+        if (acquire(target)) {
+            return new ExportFile(target, etag);
+        }
+
+        synchronized (locks.computeIfAbsent(userId, k -> new Object())) {
+            // 双重检查: 等锁期间可能已被其他请求生成
+            if (acquire(target)) {
+                return new ExportFile(target, etag);
+            }
+
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "export_" + userId + "_", ".tmp");
+            try {
+                writeWorkbook(invoiceRepository.findByUserIdOrderByIdDesc(userId), tmp);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            synchronized (leases) {
+                leases.merge(target, 1, Integer::sum);
+            }
+
+            removeStaleFiles(dir, userId, target);
+        }
+        return new ExportFile(target, etag);
+    }
+
+    /**
+     * 释放导出文件的租约，文件已过期且这是最后一个租约时删除文件
+     *
+     * @param file {@link #getExportFile} 返回的文件
+     */
+    public void release(ExportFile file) {
+        Path path = file.getPath();
+        synchronized (leases) {
+            int remaining = leases.merge(path, -1, Integer::sum);
+            if (remaining > 0) return;
+            leases.remove(path);
+            if (!condemned.remove(path)) return;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // 删除失败的文件由下次生成时的清理再次尝试
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 文件存在时登记一个租约
+     *
+     * @return 文件不存在时返回 false
+     */
+    private boolean acquire(Path target) {
+        synchronized (leases) {
+            if (!Files.exists(target)) return false;
+            leases.merge(target, 1, Integer::sum);
+            return true;
+        }
+    }
+
+    /**
+     * 生成 Excel 报表并写入指定文件
+     *
+     * @param list 票据列表
+     * @param file 目标文件
+     */
+    private void writeWorkbook(List<InvoiceData> list, Path file) throws IOException {
+        // 参数 true 表示创建 xlsx 格式 (Excel 2007+)
+        ExcelWriter writer = ExcelUtil.getWriter(true);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            // 配置表头别名 (将英文字段名映射为中文)
+            writer.addHeaderAlias("id", "编号");
+            writer.addHeaderAlias("merchantName", "商户名称");
+            writer.addHeaderAlias("itemName", "项目名称");
+            writer.addHeaderAlias("amount", "金额");
+            writer.addHeaderAlias("date", "开票日期");
+            writer.addHeaderAlias("category", "分类");
+            writer.addHeaderAlias("invoiceCode", "发票号码");
+            writer.addHeaderAlias("createTime", "创建时间");
+
+            // 只导出配置了别名的列，忽略 userId 等内部字段
+            writer.setOnlyAlias(true);
+
+            // 写入数据 (第二个参数 true 表示写入表头)
+            writer.write(toRows(list), true);
+            writer.flush(out, true);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 将票据转换为导出行
+     * <p>金额由分精确换算为两位小数的元 (BigDecimal)，
+     * 日期输出为 "yyyy-MM-dd" 文本，与页面展示保持一致。</p>
+     */
+    private List<Map<String, Object>> toRows(List<InvoiceData> list) {
+        List<Map<String, Object>> rows = new ArrayList<>(list.size());
+        for (InvoiceData item : list) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", item.getId());
+            row.put("merchantName", item.getMerchantName());
+            row.put("itemName", item.getItemName());
+            row.put("amount", item.getAmount());
+            row.put("date", item.getDate() == null ? null : item.getDate().toString());
+            row.put("category", item.getCategory());
+            row.put("invoiceCode", item.getInvoiceCode());
+            row.put("createTime", item.getCreateTime());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 删除该用户其他版本的导出文件 (仍有租约的文件只做标记，由最后一个租约释放时删除)
+     */
+    private void removeStaleFiles(Path dir, Long userId, Path keep) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "export_" + userId + "_*.xlsx")) {
+            for (Path p : stream) {
+                if (p.equals(keep)) continue;
+                synchronized (leases) {
+                    if (leases.containsKey(p)) {
+                        condemned.add(p);
+                    } else {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 清理失败不影响本次导出，下次生成时会再次尝试
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.smartdoc.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.MoneyUtil;
+import com.example.smartdoc.utils.SpaceSaving;
+import com.example.smartdoc.utils.TransactionUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 高频商户服务 - 用 Space-Saving 草图跟踪消费金额最高的商户
+ *
+ * <p>每个用户一个草图 (user-capacity 个计数器)，全库一个草图 (global-capacity 个计数器)。
+ * 票据写入后按金额更新草图，O(log m)；查询前 k 名只需对 m 个计数器排序，与票据数无关，
+ * 并返回每个商户金额的上下界和未被跟踪商户的金额上限。</p>
+ *
+ * <h3>生命周期:</h3>
+ * <ul>
+ *   <li>用户草图: 第一次查询时由用户快照 ({@link UserSnapshot}) 按商户汇总后构建；
+ *       超过 idle-minutes 未被查询时由定时任务释放</li>
+ *   <li>全库草图: 启动时从 stat_heavy_hitter 表加载；表中没有、计数器数量已调整，
+ *       或写回时间不晚于消费立方体最近一次变化 (上次异常退出、未写回的增量丢失) 时由消费立方体按商户汇总构建；
+ *       有变化时每 persist-ms 写回一次，应用关闭时再写回一次</li>
+ *   <li>增量维护: 作为 {@link InvoiceChangeListener}，事务提交后把票据金额加减到两个草图</li>
+ * </ul>
+ * <p>只统计有金额的有效票据，商户为空时记为 "未知商户"。全库草图与消费立方体口径一致
+ * (开票日期尚未回填的旧数据按 {@code MonthlyStatsService.monthOf} 识别)，
+ * 用户草图与用户快照一致 (只统计有开票日期的票据)，开票日期回填时两者都能正确修正。</p>
+ *
+ * <h3>并发:</h3>
+ * <p>与 {@link SpendIndexService} 相同: 每个草图一个槽位，写操作在事务内登记 pending、事务结束后撤销；
+ * 构建期间有未结束或已完成的写操作时，构建结果只用于本次请求、不发布，避免之后的增量重复计入。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.heavy-hitters.user-capacity=50      (默认值)
+ * smartdoc.heavy-hitters.global-capacity=1000  (默认值)
+ * smartdoc.heavy-hitters.persist-ms=300000     (默认值)
+ * smartdoc.heavy-hitters.idle-minutes=30       (默认值)
+ * smartdoc.heavy-hitters.sweep-ms=60000        (默认值，淘汰检查间隔)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see SpaceSaving
+ */
+@Service
+public class HeavyHitterService implements InvoiceChangeListener {
+
+    /** 全库草图在 stat_heavy_hitter 表中的 scope */
+    private static final String GLOBAL_SCOPE = "global";
+
+    /** 全库草图重建时最多尝试的次数 (每次构建期间都有写操作时放弃) */
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    /** 用户草图的计数器数量 */
+    @Value("${smartdoc.heavy-hitters.user-capacity:50}")
+    private int userCapacity;
+
+    /** 全库草图的计数器数量 */
+    @Value("${smartdoc.heavy-hitters.global-capacity:1000}")
+    private int globalCapacity;
+
+    /** 用户草图的空闲淘汰时间 (分钟) */
+    @Value("${smartdoc.heavy-hitters.idle-minutes:30}")
+    private long idleMinutes;
+
+    /** 用户快照服务 - 构建用户草图 */
+    @Autowired
+    private UserSnapshotService userSnapshotService;
+
+    /** JDBC 模板 - 全库草图的加载、构建与写回 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 用户 ID → 槽位 */
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    /** 全库草图的槽位 (不会被淘汰) */
+    private final Slot global = new Slot();
+
+    /**
+     * 单个草图的槽位，所有字段在 synchronized (槽位) 内访问
+     */
+    private static final class Slot {
+        /** 已登记、尚未结束的写事务数 */
+        int pending;
+        /** 已提交的写操作数 */
+        long completed;
+        /** 上次写回时的 completed (仅全库草图使用) */
+        long persisted;
+        /** 草图，未加载或已淘汰时为 null */
+        SpaceSaving sketch;
+        /** 最近一次查询的时间 (毫秒) */
+        long lastAccess = System.currentTimeMillis();
+        /** 已从 slots 中移除 */
+        boolean removed;
+    }
+
+    /**
+     * 加载前记录的槽位状态
+     */
+    private record Ticket(Slot slot, boolean clean, long completed) {
+    }
+
+    /**
+     * 写回的全库草图及其写回时间
+     */
+    private record Stored(SpaceSaving sketch, Timestamp updateTime) {
+    }
+
+    /**
+     * 启动时加载全库草图
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            List<Stored> rows = jdbcTemplate.query(
+                    "SELECT sketch, update_time FROM stat_heavy_hitter WHERE scope = ?",
+                    (rs, i) -> new Stored(SpaceSaving.fromBytes(rs.getBytes(1)), rs.getTimestamp(2)), GLOBAL_SCOPE);
+            SpaceSaving stored = rows.isEmpty() ? null : rows.get(0).sketch();
+            // 表中没有、计数器数量已调整，或立方体在写回之后 (同一秒内也算) 还有变化时重新构建
+            boolean rebuild = stored == null || stored.capacity() != globalCapacity
+                    || outdated(rows.get(0).updateTime());
+            SpaceSaving sketch = rebuild ? buildGlobal() : stored;
+            synchronized (global) {
+                global.sketch = sketch;
+                global.persisted = rebuild ? -1 : global.completed;  // 新构建的草图在下次定时任务时写回
+            }
+            System.out.println("✅ 全库高频商户草图已加载: " + sketch.size() + " 个商户");
+        } catch (Exception e) {
+            System.err.println("⚠️ 全库高频商户草图加载失败，首次查询时重新构建: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写回的草图是否可能缺少立方体中的变化
+     *
+     * @param updateTime 草图的写回时间
+     * @return 立方体最近一次变化的时间不早于写回时间时返回 true
+     */
+    private boolean outdated(Timestamp updateTime) {
+        Timestamp cubeTime = jdbcTemplate.queryForObject("SELECT MAX(update_time) FROM stat_spend_cube", Timestamp.class);
+        if (cubeTime == null) return false;
+        return updateTime == null || !updateTime.after(cubeTime);
+    }
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        record(row, 1);
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        record(row, -1);
+    }
+
+    /**
+     * 用户消费金额最高的商户
+     *
+     * @param userId 用户 ID
+     * @param k      数量 (不超过 user-capacity)
+     * @return 前 k 名及误差信息
+     */
+    public Map<String, Object> topForUser(Long userId, int k) {
+        long now = System.currentTimeMillis();
+        Object hit = withSlot(userId, slot -> {
+            slot.lastAccess = now;
+            return slot.sketch != null ? describe(slot.sketch, k)
+                    : new Ticket(slot, slot.pending == 0, slot.completed);
+        });
+        if (!(hit instanceof Ticket ticket)) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> result = (Map<String, Object>) hit;
+            return result;
+        }
+
+        SpaceSaving loaded = buildUser(userId);
+        return withSlot(userId, slot -> {
+            // 加载期间没有任何写操作时才发布，否则只用于本次请求
+            if (slot == ticket.slot() && ticket.clean() && slot.pending == 0 && slot.completed == ticket.completed()) {
+                slot.sketch = loaded;
+            }
+            return describe(loaded, k);
+        });
+    }
+
+    /**
+     * 全库消费金额最高的商户
+     *
+     * @param k 数量 (不超过 global-capacity)
+     * @return 前 k 名及误差信息，全库草图尚未加载时先构建
+     */
+    public Map<String, Object> topGlobal(int k) {
+        synchronized (global) {
+            if (global.sketch != null) {
+                return describe(global.sketch, k);
+            }
+        }
+        rebuildGlobal();
+        synchronized (global) {
+            return global.sketch == null ? describe(new SpaceSaving(globalCapacity), k) : describe(global.sketch, k);
+        }
+    }
+
+    /**
+     * 由消费立方体重新构建全库草图 (修正异常退出时未写回的增量)
+     *
+     * @return 是否已发布新草图 (每次构建期间都有写操作时返回 false)
+     */
+    public boolean rebuildGlobal() {
+        for (int attempt = 0; attempt < REBUILD_ATTEMPTS; attempt++) {
+            boolean clean;
+            long completed;
+            synchronized (global) {
+                clean = global.pending == 0;
+                completed = global.completed;
+            }
+            SpaceSaving built = buildGlobal();
+            synchronized (global) {
+                if (clean && global.pending == 0 && global.completed == completed) {
+                    global.sketch = built;
+                    global.persisted = -1;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 有变化时写回全库草图
+     */
+    @Scheduled(initialDelayString = "${smartdoc.heavy-hitters.persist-ms:300000}",
+            fixedDelayString = "${smartdoc.heavy-hitters.persist-ms:300000}")
+    public void persist() {
+        byte[] bytes;
+        long completed;
+        synchronized (global) {
+            if (global.sketch == null || global.persisted == global.completed) return;
+            bytes = global.sketch.toBytes();
+            completed = global.completed;
+        }
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO stat_heavy_hitter (scope, capacity, sketch, update_time) VALUES (?, ?, ?, NOW()) " +
+                    "ON DUPLICATE KEY UPDATE capacity = VALUES(capacity), sketch = VALUES(sketch), update_time = NOW()",
+                    GLOBAL_SCOPE, globalCapacity, bytes);
+            synchronized (global) {
+                global.persisted = completed;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 应用关闭时写回全库草图
+     */
+    @PreDestroy
+    public void shutdown() {
+        persist();
+    }
+
+    /**
+     * 定时释放长时间未查询的用户草图
+     */
+    @Scheduled(fixedDelayString = "${smartdoc.heavy-hitters.sweep-ms:60000}")
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleMinutes * 60_000;
+        for (Long userId : slots.keySet()) {
+            slots.computeIfPresent(userId, (id, slot) -> {
+                synchronized (slot) {
+                    if (slot.lastAccess < deadline) {
+                        slot.sketch = null;
+                    }
+                    if (slot.sketch == null && slot.pending == 0) {
+                        slot.removed = true;
+                        return null;
+                    }
+                    return slot;
+                }
+            });
+        }
+    }
+
+    /**
+     * 在事务内登记写操作，事务提交后更新用户草图和全库草图
+     */
+    private void record(InvoiceData row, int sign) {
+        if (row.getAmountCents() == null) return;
+        boolean toUser = row.getDate() != null;
+        boolean toGlobal = MonthlyStatsService.monthOf(row) != null;
+        if (!toUser && !toGlobal) return;
+
+        String merchant = merchantOf(row.getMerchantName());
+        long cents = sign * row.getAmountCents();
+
+        // pending > 0 的槽位不会被淘汰，事务结束前可以直接持有引用
+        List<Slot> targets = new ArrayList<>(2);
+        if (toUser) {
+            targets.add(withSlot(row.getUserId(), s -> {
+                s.pending++;
+                return s;
+            }));
+        }
+        if (toGlobal) {
+            synchronized (global) {
+                global.pending++;
+            }
+            targets.add(global);
+        }
+        TransactionUtil.afterCompletion(committed -> {
+            for (Slot s : targets) {
+                synchronized (s) {
+                    s.pending--;
+                    if (!committed) continue;
+                    s.completed++;
+                    if (s.sketch != null) {
+                        s.sketch.offer(merchant, cents);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 在用户槽位的锁内执行操作 (槽位恰好被淘汰时重新获取)
+     */
+    private <T> T withSlot(Long userId, Function<Slot, T> action) {
+        while (true) {
+            Slot slot = slots.computeIfAbsent(userId, id -> new Slot());
+            synchronized (slot) {
+                if (!slot.removed) {
+                    return action.apply(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * 由用户快照按商户汇总后构建用户草图
+     */
+    private SpaceSaving buildUser(Long userId) {
+        UserSnapshot snapshot = userSnapshotService.get(userId);
+        long[] sums = new long[snapshot.merchants.length];
+        for (int i = 0; i < snapshot.size; i++) {
+            if (snapshot.days[i] == UserSnapshot.NO_DATE || snapshot.amounts[i] == UserSnapshot.NO_AMOUNT) continue;
+            sums[snapshot.merchantIds[i]] += snapshot.amounts[i];
+        }
+
+        // null 与空字符串都归入 "未知商户"
+        Map<String, Long> byMerchant = new HashMap<>();
+        for (int m = 0; m < sums.length; m++) {
+            if (sums[m] != 0) byMerchant.merge(merchantOf(snapshot.merchants[m]), sums[m], Long::sum);
+        }
+        SpaceSaving sketch = new SpaceSaving(userCapacity);
+        byMerchant.forEach((merchant, cents) -> {
+            if (cents > 0) sketch.offer(merchant, cents);
+        });
+        return sketch;
+    }
+
+    /**
+     * 由消费立方体按商户汇总后构建全库草图 (流式读取，不在内存中保存全部商户)
+     */
+    private SpaceSaving buildGlobal() {
+        SpaceSaving sketch = new SpaceSaving(globalCapacity);
+        jdbcTemplate.query(
+                "SELECT merchant, SUM(total_cents) FROM stat_spend_cube GROUP BY merchant HAVING SUM(total_cents) > 0",
+                (RowCallbackHandler) rs -> sketch.offer(rs.getString(1), rs.getLong(2)));
+        return sketch;
+    }
+
+    /**
+     * 组装前 k 名及误差信息 (金额单位: 元)
+     */
+    private static Map<String, Object> describe(SpaceSaving sketch, int k) {
+        List<Map<String, Object>> merchants = new ArrayList<>();
+        for (SpaceSaving.Entry e : sketch.top(k)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("merchant", e.key());
+            item.put("amount", MoneyUtil.toYuan(e.count()));
+            item.put("amountCents", e.count());
+            item.put("minAmount", MoneyUtil.toYuan(e.count() - e.error()));
+            item.put("error", MoneyUtil.toYuan(e.error()));
+            item.put("guaranteed", e.guaranteed());
+            merchants.add(item);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("merchants", merchants);
+        result.put("total", MoneyUtil.toYuan(sketch.total()));
+        result.put("capacity", sketch.capacity());
+        result.put("tracked", sketch.size());
+        // 未被跟踪的商户金额不超过 untrackedMax；计数器未满时结果是精确的
+        result.put("untrackedMax", MoneyUtil.toYuan(sketch.minCount()));
+        result.put("errorBound", MoneyUtil.toYuan(Math.max(0, sketch.total()) / sketch.capacity()));
+        result.put("exact", sketch.size() < sketch.capacity());
+        return result;
+    }
+
+    private static String merchantOf(String merchant) {
+        return merchant == null || merchant.isEmpty() ? SpendCubeService.UNKNOWN_MERCHANT : merchant;
+    }
+}
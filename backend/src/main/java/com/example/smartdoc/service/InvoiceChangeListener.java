@@ -0,0 +1,33 @@
+package com.example.smartdoc.service;
+
+import com.example.smartdoc.model.InvoiceData;
+
+/**
+ * 票据变更监听器 - 由需要随票据写入同步维护的组件实现
+ * 
+ * <p>{@link InvoiceChangeService} 会在票据进入或离开有效状态时
+ * 依次回调所有实现了本接口的 Spring Bean。回调发生在写操作所在的事务内，
+ * 因此数据库侧的维护 (如汇总表) 与票据写入同时提交或回滚。</p>
+ * 
+ * <p>只维护内存结构的实现应通过 {@link com.example.smartdoc.utils.TransactionUtil#afterCommit(Runnable)}
+ * 延迟到事务提交后再修改内存，避免事务回滚后内存与数据库不一致。</p>
+ * 
+ * @author SmartDoc Team
+ * @see InvoiceChangeService
+ */
+public interface InvoiceChangeListener {
+
+    /**
+     * 票据进入有效状态 (新增、从回收站还原、备份恢复、修改后的新值)
+     * 
+     * @param row 票据数据
+     */
+    void onInvoiceAdded(InvoiceData row);
+
+    /**
+     * 票据离开有效状态 (软删除、修改前的旧值、有效票据被物理删除)
+     * 
+     * @param row 票据数据
+     */
+    void onInvoiceRemoved(InvoiceData row);
+}
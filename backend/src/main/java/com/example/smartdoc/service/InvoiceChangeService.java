@@ -0,0 +1,112 @@
+package com.example.smartdoc.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+
+import cn.hutool.core.bean.BeanUtil;
+
+/**
+ * 票据变更服务 - 所有票据写操作的统一通知入口
+ * 
+ * <p>控制器在完成票据写入后调用本服务，由本服务负责:</p>
+ * <ol>
+ *   <li>回调所有 {@link InvoiceChangeListener} (如月度汇总表的增量维护)</li>
+ *   <li>在事务提交后递增用户的数据版本号，使各类缓存失效</li>
+ * </ol>
+ * 
+ * <h3>状态语义:</h3>
+ * <pre>
+ * 有效票据 = is_deleted = 0 的票据
+ * 
+ * 新增 / 还原 / 备份恢复  → onAdded(row)
+ * 软删除 / 物理删除有效票据 → onRemoved(row)
+ * 修改 (保存已有 ID)      → onUpdated(before, after) = onRemoved(before) + onAdded(after)
+ * 审批状态变化 / 清空回收站 → onTouched(userId)  (不影响金额统计，只更新版本号)
+ * </pre>
+ * 
+ * <p>处于回收站中 (is_deleted = 1) 的票据不会通知监听器。</p>
+ * 
+ * @author SmartDoc Team
+ * @see InvoiceChangeListener
+ * @see DataVersionService
+ */
+@Service
+public class InvoiceChangeService {
+
+    /** 所有票据变更监听器 (Spring 自动收集) */
+    @Autowired
+    private List<InvoiceChangeListener> listeners;
+
+    /** 数据版本服务 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /**
+     * 票据进入有效状态
+     * 
+     * @param row 票据数据
+     */
+    public void onAdded(InvoiceData row) {
+        if (isActive(row)) {
+            for (InvoiceChangeListener listener : listeners) {
+                listener.onInvoiceAdded(row);
+            }
+        }
+        dataVersionService.markChanged(row.getUserId());
+    }
+
+    /**
+     * 票据离开有效状态
+     * 
+     * @param row 票据数据 (离开前的状态)
+     */
+    public void onRemoved(InvoiceData row) {
+        if (isActive(row)) {
+            for (InvoiceChangeListener listener : listeners) {
+                listener.onInvoiceRemoved(row);
+            }
+        }
+        dataVersionService.markChanged(row.getUserId());
+    }
+
+    /**
+     * 票据被修改
+     * 
+     * @param before 修改前的票据快照 (必须是独立副本，不能是会被 save 覆盖的托管实体)
+     * @param after  修改后的票据
+     */
+    public void onUpdated(InvoiceData before, InvoiceData after) {
+        onRemoved(before);
+        onAdded(after);
+    }
+
+    /**
+     * 票据发生了不影响统计口径的变化 (审批状态、清空回收站等)
+     * 
+     * @param userId 用户 ID
+     */
+    public void onTouched(Long userId) {
+        dataVersionService.markChanged(userId);
+    }
+
+    /**
+     * 复制票据快照，用于在 save 覆盖托管实体之前保留修改前的值
+     * 
+     * @param row 票据数据
+     * @return 独立的副本
+     */
+    public InvoiceData snapshot(InvoiceData row) {
+        return BeanUtil.copyProperties(row, InvoiceData.class);
+    }
+
+    /**
+     * 判断票据是否处于有效状态 (未进入回收站)
+     */
+    private boolean isActive(InvoiceData row) {
+        return row.getIsDeleted() == null || row.getIsDeleted() == 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.KnowledgeGraphUtil;
+
+/**
+ * 知识图谱服务 - 构建并缓存用户的消费知识图谱
+ *
+ * <p>图谱由用户快照 ({@link UserSnapshot}) 按 (分类下标, 商户下标) 一次遍历聚合构建，
+ * 不再单独查询数据库；结果按用户缓存，直到该用户的票据数据发生写操作 (数据版本号变化) 为止。</p>
+ *
+ * <h3>查询参数:</h3>
+ * <ul>
+ *   <li>日期窗口 [from, to): 两端都为空时查询全部历史，只传一端时另一端不限</li>
+ *   <li>topN: 每个分类保留的商户数，其余折叠为 "其他商户" 节点</li>
+ * </ul>
+ *
+ * <h3>缓存规则:</h3>
+ * <pre>
+ * 命中条件: 版本号、根节点名称 (昵称)、日期窗口、topN 均与缓存一致
+ * 每个用户只缓存最近一次查询的结果
+ * 版本号在查询之前读取: 查询期间提交的写操作会让版本号前进，下次请求自然重建
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see KnowledgeGraphUtil
+ * @see UserSnapshotService
+ * @see DataVersionService
+ */
+@Service
+public class KnowledgeGraphService {
+
+    /** 用户快照服务 - 各统计接口共用的列式数据 */
+    @Autowired
+    private UserSnapshotService userSnapshotService;
+
+    /** 数据版本服务 - 判断缓存是否过期 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 用户 ID → 缓存的图谱 */
+    private final ConcurrentHashMap<Long, CachedGraph> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存条目 (不可变)
+     */
+    private record CachedGraph(long version, String rootName, LocalDate from, LocalDate to, int topN,
+                               Map<String, Object> graph) {
+
+        boolean matches(long version, String rootName, LocalDate from, LocalDate to, int topN) {
+            return this.version == version && this.topN == topN && Objects.equals(this.rootName, rootName)
+                    && Objects.equals(this.from, from) && Objects.equals(this.to, to);
+        }
+    }
+
+    /**
+     * 获取用户的知识图谱
+     *
+     * @param userId   用户 ID
+     * @param rootName 根节点名称 (用户昵称)
+     * @param from     起始日期 (含)，为 null 时不限制
+     * @param to       结束日期 (不含)，为 null 时不限制
+     * @param topN     每个分类保留的商户数
+     * @return 包含 nodes 和 links 的图谱数据
+     */
+    public Map<String, Object> getGraph(Long userId, String rootName, LocalDate from, LocalDate to, int topN) {
+        long version = dataVersionService.getVersion(userId);
+        CachedGraph cached = cache.get(userId);
+        if (cached != null && cached.matches(version, rootName, from, to, topN)) {
+            return cached.graph();
+        }
+
+        List<Object[]> rows = sumByCategoryAndMerchant(userSnapshotService.get(userId), from, to);
+        Map<String, Object> graph = KnowledgeGraphUtil.build(rootName, rows, topN);
+        cache.put(userId, new CachedGraph(version, rootName, from, to, topN, graph));
+        return graph;
+    }
+
+    /**
+     * 按 (分类, 商户) 汇总快照中日期窗口内的金额
+     *
+     * <p>两端都为空时包含没有开票日期的票据；指定了窗口时只统计日期在窗口内的票据。
+     * 金额缺失的票据计为 0 (与 SQL 的 SUM 忽略 NULL 一致)。</p>
+     *
+     * @return [[分类, 商户, 总额(分)], ...]，按组合首次出现的顺序
+     */
+    static List<Object[]> sumByCategoryAndMerchant(UserSnapshot snapshot, LocalDate from, LocalDate to) {
+        boolean all = from == null && to == null;
+        long lo = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        long hi = to == null ? Long.MAX_VALUE : to.toEpochDay();
+        int merchantCount = snapshot.merchants.length;
+
+        // (分类下标, 商户下标) → 金额
+        Map<Long, long[]> sums = new LinkedHashMap<>();
+        for (int i = 0; i < snapshot.size; i++) {
+            int day = snapshot.days[i];
+            if (!all && (day == UserSnapshot.NO_DATE || day < lo || day >= hi)) continue;
+            long cents = snapshot.amounts[i] == UserSnapshot.NO_AMOUNT ? 0 : snapshot.amounts[i];
+            long key = (long) snapshot.categoryIds[i] * merchantCount + snapshot.merchantIds[i];
+            sums.computeIfAbsent(key, k -> new long[1])[0] += cents;
+        }
+
+        List<Object[]> rows = new ArrayList<>(sums.size());
+        sums.forEach((key, cents) -> rows.add(new Object[]{
+                snapshot.categories[(int) (key / merchantCount)], snapshot.merchants[(int) (key % merchantCount)], cents[0]}));
+        return rows;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.smartdoc.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.CsrGraph;
+import com.example.smartdoc.utils.MerchantNameUtil;
+
+/**
+ * 商户共现图服务 - 全库商户的共同消费关系及 PageRank 排名
+ *
+ * <p>两个商户出现在同一个 "购物篮" (同一用户同一天的票据) 中，二者之间的边权加 1。
+ * 边权高说明这两个商户经常被一起消费 (如酒店与附近的餐厅、打车与机场)，
+ * PageRank 则给出在这张关系网中处于中心位置的商户，与按金额排名的高频商户互为补充。</p>
+ *
+ * <h3>构建流程 (离线，后台线程):</h3>
+ * <pre>
+ * 1. 按 (用户, 日期) 顺序流式读取最近 lookback-months 个月的票据 (只取三列，按 fetch-size 分批)
+ * 2. 商户名称按 MerchantNameUtil.key (忽略首尾空格、大小写和重音) 编号；一个购物篮读完即对其中的商户两两加边
+ *    商户数超过 max-basket 的购物篮 (批量补录) 跳过，避免一次产生大量无意义的边
+ * 3. 丢弃边权低于 min-weight 的边，转换为 CSR (每个商户的邻居按边权降序)
+ * 4. 在独立的 ForkJoinPool 中并行迭代 PageRank
+ * 5. 名称表、图、排名和排名顺序打包为不可变快照，以 volatile 引用整体替换
+ * </pre>
+ * <p>查询只读快照，不访问数据库: 排名为预先排好的顺序，邻居为 CSR 行的前 k 项。
+ * 构建期间查询继续使用旧快照。图只保存在内存中，应用启动后自动构建一次。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.merchant-graph.cron=0 15 3 * * *          (默认值)
+ * smartdoc.merchant-graph.lookback-months=12         (默认值)
+ * smartdoc.merchant-graph.max-basket=30              (默认值)
+ * smartdoc.merchant-graph.min-weight=2               (默认值)
+ * smartdoc.merchant-graph.damping=0.85               (默认值)
+ * smartdoc.merchant-graph.parallelism=4              (默认值)
+ * smartdoc.merchant-graph.fetch-size=1000            (默认值)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see CsrGraph
+ * @see com.example.smartdoc.controller.AdminAnalyticsController
+ */
+@Service
+public class MerchantGraphService {
+
+    /** PageRank 收敛阈值 (两轮之间排名的 L1 变化) */
+    private static final double TOLERANCE = 1e-9;
+
+    /** PageRank 最大迭代次数 */
+    private static final int MAX_ITERATIONS = 100;
+
+    private static final String SCAN_SQL =
+            "SELECT user_id, invoice_date, merchant_name FROM invoice_record " +
+            "WHERE is_deleted = 0 AND invoice_date >= ? AND merchant_name IS NOT NULL AND merchant_name <> '' " +
+            "ORDER BY user_id, invoice_date";
+
+    /** 回看月数 */
+    @Value("${smartdoc.merchant-graph.lookback-months:12}")
+    private int lookbackMonths;
+
+    /** 单个购物篮的最大商户数 */
+    @Value("${smartdoc.merchant-graph.max-basket:30}")
+    private int maxBasket;
+
+    /** 保留的最小边权 */
+    @Value("${smartdoc.merchant-graph.min-weight:2}")
+    private int minWeight;
+
+    /** PageRank 阻尼系数 */
+    @Value("${smartdoc.merchant-graph.damping:0.85}")
+    private double damping;
+
+    /** PageRank 并行线程数 */
+    @Value("${smartdoc.merchant-graph.parallelism:4}")
+    private int parallelism;
+
+    /** 流式读取的每批行数 */
+    @Value("${smartdoc.merchant-graph.fetch-size:1000}")
+    private int fetchSize;
+
+    /** JDBC 模板 - 流式读取原始列，不加载实体 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 当前生效的图；null 表示尚未构建 */
+    private volatile Snapshot current;
+
+    /** 构建任务是否正在运行 */
+    private final AtomicBoolean building = new AtomicBoolean(false);
+
+    /**
+     * 生效的图快照 (构建后不再修改)
+     *
+     * @param names      顶点 → 商户名称
+     * @param index      规范化的商户名称 → 顶点
+     * @param graph      共现图
+     * @param ranks      各顶点的 PageRank
+     * @param order      按 PageRank 降序排列的顶点
+     * @param position   顶点 → 名次 (从 1 开始)
+     * @param baskets    参与构建的购物篮数
+     * @param iterations PageRank 迭代次数
+     * @param costMillis 构建耗时
+     * @param builtAt    构建时间
+     */
+    private record Snapshot(String[] names, Map<String, Integer> index, CsrGraph graph, double[] ranks,
+                            int[] order, int[] position, long baskets, int iterations, long costMillis,
+                            LocalDateTime builtAt) {
+    }
+
+    /**
+     * 正在读取的购物篮
+     */
+    private static class Basket {
+        long userId = -1;
+        LocalDate date;
+        final List<Integer> merchants = new ArrayList<>();
+    }
+
+    /**
+     * 定时重建 (每天一次)
+     */
+    @Scheduled(cron = "${smartdoc.merchant-graph.cron:0 15 3 * * *}")
+    public void scheduledRebuild() {
+        startRebuild();
+    }
+
+    /**
+     * 应用启动完成后在后台线程中首次构建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        startRebuild();
+    }
+
+    /**
+     * 在后台线程中启动一次构建
+     *
+     * @return true=已启动, false=已有构建任务在运行
+     */
+    public boolean startRebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                build();
+            } catch (Exception e) {
+                System.err.println("❌ 商户共现图构建失败: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                building.set(false);
+            }
+        }, "merchant-graph-build");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * PageRank 排名前 k 的商户
+     *
+     * @param k 返回的商户数
+     * @return 包含 building 标记和 graph (尚未构建时为 null) 的数据
+     */
+    public Map<String, Object> ranking(int k) {
+        Snapshot snapshot = current;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("building", building.get());
+        if (snapshot == null) {
+            result.put("graph", null);
+            return result;
+        }
+
+        int n = snapshot.graph().vertices;
+        List<Map<String, Object>> merchants = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, n); i++) {
+            merchants.add(describeVertex(snapshot, snapshot.order()[i]));
+        }
+
+        Map<String, Object> info = describeGraph(snapshot);
+        info.put("merchants", merchants);
+        result.put("graph", info);
+        return result;
+    }
+
+    /**
+     * 与某个商户共同消费最多的商户
+     *
+     * @param merchant 商户名称 (忽略首尾空格、大小写和重音)
+     * @param k        返回的邻居数
+     * @return 商户本身的排名信息和 neighbors；图尚未构建或商户不在图中时返回 null
+     */
+    public Map<String, Object> neighbors(String merchant, int k) {
+        Snapshot snapshot = current;
+        if (snapshot == null) return null;
+        Integer v = snapshot.index().get(MerchantNameUtil.key(merchant));
+        if (v == null) return null;
+
+        CsrGraph graph = snapshot.graph();
+        List<Map<String, Object>> neighbors = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, graph.degree(v)); i++) {
+            Map<String, Object> neighbor = describeVertex(snapshot, graph.neighbor(v, i));
+            neighbor.put("weight", graph.weight(v, i));
+            neighbors.add(neighbor);
+        }
+
+        Map<String, Object> result = describeVertex(snapshot, v);
+        result.put("neighbors", neighbors);
+        result.put("builtAt", snapshot.builtAt());
+        return result;
+    }
+
+    /**
+     * 图是否已构建
+     */
+    public boolean isReady() {
+        return current != null;
+    }
+
+    /**
+     * 执行构建 (调用方保证同一时刻只有一个线程执行)
+     */
+    void build() {
+        System.out.println("🔄 开始构建商户共现图, 回看 " + lookbackMonths + " 个月");
+        long start = System.currentTimeMillis();
+        LocalDate since = LocalDate.now().minusMonths(lookbackMonths);
+
+        // 1. 流式读取，按购物篮累加边权
+        Map<String, Integer> index = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        Basket basket = new Basket();
+        long[] baskets = new long[1];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setDate(1, Date.valueOf(since));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            long userId = rs.getLong(1);
+            LocalDate date = rs.getDate(2).toLocalDate();
+            String name = rs.getString(3).trim();
+            if (name.isEmpty()) return;
+
+            if (userId != basket.userId || !date.equals(basket.date)) {
+                if (addBasket(builder, basket.merchants)) baskets[0]++;
+                basket.userId = userId;
+                basket.date = date;
+                basket.merchants.clear();
+            }
+            String key = MerchantNameUtil.key(name);
+            Integer id = index.get(key);
+            if (id == null) {
+                id = names.size();
+                index.put(key, id);
+                names.add(name);
+            }
+            if (!basket.merchants.contains(id)) {
+                basket.merchants.add(id);
+            }
+        });
+        if (addBasket(builder, basket.merchants)) baskets[0]++;
+
+        // 2. 转换为 CSR，只保留有边的商户
+        CsrGraph graph = builder.build(minWeight);
+        int n = graph.vertices;
+        String[] vertexNames = new String[n];
+        Map<String, Integer> vertexIndex = new HashMap<>(n * 2);
+        for (int v = 0; v < n; v++) {
+            vertexNames[v] = names.get(graph.originalId(v));
+            vertexIndex.put(MerchantNameUtil.key(vertexNames[v]), v);
+        }
+
+        // 3. 并行 PageRank
+        CsrGraph.PageRank pageRank;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pageRank = pool.submit(() -> graph.pageRank(damping, TOLERANCE, MAX_ITERATIONS)).join();
+        } finally {
+            pool.shutdown();
+        }
+        double[] ranks = pageRank.ranks();
+        int[] order = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> Double.compare(ranks[b], ranks[a]))
+                .mapToInt(Integer::intValue).toArray();
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i + 1;
+        }
+
+        long cost = System.currentTimeMillis() - start;
+        current = new Snapshot(vertexNames, vertexIndex, graph, ranks, order, position, baskets[0],
+                pageRank.iterations(), cost, LocalDateTime.now());
+        System.out.println("✅ 商户共现图构建完成: 商户 " + n + ", 边 " + graph.edges() + ", 购物篮 " + baskets[0]
+                + ", PageRank 迭代 " + pageRank.iterations() + " 次, 耗时 " + cost + "ms");
+    }
+
+    /**
+     * 购物篮内的商户两两加边
+     *
+     * @return 是否参与了构建
+     */
+    private boolean addBasket(CsrGraph.Builder builder, List<Integer> merchants) {
+        int size = merchants.size();
+        if (size < 2 || size > maxBasket) return false;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                builder.addEdge(merchants.get(i), merchants.get(j), 1);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 图的概要信息
+     */
+    private static Map<String, Object> describeGraph(Snapshot snapshot) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("merchantCount", snapshot.graph().vertices);
+        info.put("edgeCount", snapshot.graph().edges());
+        info.put("basketCount", snapshot.baskets());
+        info.put("iterations", snapshot.iterations());
+        info.put("costMillis", snapshot.costMillis());
+        info.put("builtAt", snapshot.builtAt());
+        return info;
+    }
+
+    /**
+     * 一个商户的排名信息
+     *
+     * <p>score 为 PageRank × 商户数，平均值为 1，不随图的规模变化。</p>
+     */
+    private static Map<String, Object> describeVertex(Snapshot snapshot, int v) {
+        CsrGraph graph = snapshot.graph();
+        Map<String, Object> item = new HashMap<>();
+        item.put("merchant", snapshot.names()[v]);
+        item.put("rank", snapshot.position()[v]);
+        item.put("score", Math.round(snapshot.ranks()[v] * graph.vertices * 1000) / 1000.0);
+        item.put("degree", graph.degree(v));
+        item.put("strength", graph.strength(v));
+        return item;
+    }
+}
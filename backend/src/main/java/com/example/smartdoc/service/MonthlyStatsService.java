@@ -0,0 +1,179 @@
+package com.example.smartdoc.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.MonthlySpendRepository;
+import com.example.smartdoc.utils.DateParseUtil;
+import com.example.smartdoc.utils.LinearRegressionUtil;
+import com.example.smartdoc.utils.MoneyUtil;
+
+/**
+ * 月度消费汇总服务 - 维护并查询 stat_monthly_spend 汇总表
+ * 
+ * <p>作为 {@link InvoiceChangeListener}，在票据写入的同一事务内
+ * 对 (用户, 月份, 分类) 汇总单元做增量 upsert，保证汇总表与明细表同时提交或回滚。</p>
+ * 
+ * <h3>读取方:</h3>
+ * <ul>
+ *   <li>StatsController.getTrendPrediction / 仪表盘 - 近 12 个月消费趋势</li>
+ *   <li>BudgetController.getList - 各分类已使用金额</li>
+ *   <li>ChatServer - AI 生成的月度/分类统计 SQL</li>
+ *   <li>ForecastJob - 各 (用户, 分类) 的下月消费预测</li>
+ * </ul>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.MonthlySpend
+ */
+@Service
+public class MonthlyStatsService implements InvoiceChangeListener {
+
+    /** 月度汇总数据仓库 */
+    @Autowired
+    private MonthlySpendRepository monthlySpendRepository;
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        apply(row, 1);
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        apply(row, -1);
+    }
+
+    /**
+     * 获取用户近 12 个月的月度消费总额
+     * 
+     * @param userId 用户 ID
+     * @return [[月份, 总额(分)], ...]（最新月份在前）
+     */
+    public List<Object[]> getRecentMonthlyTotals(Long userId) {
+        return monthlySpendRepository.findRecentMonthlyTotals(userId);
+    }
+
+    /**
+     * 计算近 12 个月的消费趋势及下月预测
+     * 
+     * <p>{@code /api/stats/trend} 与仪表盘接口共用。</p>
+     * 
+     * @param userId 用户 ID
+     * @return months / amounts / amountsCents / prediction / predictionCents / nextMonthLabel
+     */
+    public Map<String, Object> getTrend(Long userId) {
+        // 1. 获取月度统计数据 (来自写入时维护的 stat_monthly_spend 汇总表)
+        // 注意: SQL 返回的是按月倒序的数据 (最新的在前)
+        List<Object[]> rawData = getRecentMonthlyTotals(userId);
+
+        // 2. 关键步骤: 反转数据使其变为正序 (2025-01 → 2025-12)
+        // 线性回归需要时间正序的数据
+        Collections.reverse(rawData);
+
+        // 3. 提取月份和金额 (金额为分，直接放入 long 数组)
+        List<String> months = new ArrayList<>();
+        List<BigDecimal> amounts = new ArrayList<>();
+        long[] amountsCents = new long[rawData.size()];
+
+        for (int i = 0; i < rawData.size(); i++) {
+            Object[] row = rawData.get(i);
+            months.add(row[0].toString());  // 月份字符串
+            amountsCents[i] = ((Number) row[1]).longValue();  // 金额 (分)
+            amounts.add(MoneyUtil.toYuan(amountsCents[i]));
+        }
+
+        // 4. 使用线性回归预测下月消费
+        long nextMonthPrediction = 0;
+        String nextMonthLabel = "下月预测";
+
+        if (amountsCents.length > 0) {
+            // 调用线性回归工具类
+            nextMonthPrediction = LinearRegressionUtil.predictNext(amountsCents);
+
+            // 自动计算下个月的具体日期字符串
+            try {
+                String lastMonthStr = months.get(months.size() - 1);
+                DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM");
+                YearMonth lastMonth = YearMonth.parse(lastMonthStr, fmt);
+                YearMonth nextMonth = lastMonth.plusMonths(1);
+                nextMonthLabel = nextMonth.format(fmt) + " (预测)";
+            } catch (Exception e) {
+                nextMonthLabel = "下月预测";
+            }
+        }
+
+        // 5. 封装返回数据
+        Map<String, Object> data = new HashMap<>();
+        data.put("months", months);           // 月份列表 (X轴)
+        data.put("amounts", amounts);         // 消费金额 (Y轴，元)
+        data.put("amountsCents", amountsCents);
+        data.put("prediction", MoneyUtil.toYuan(nextMonthPrediction));  // 预测值 (元)
+        data.put("predictionCents", nextMonthPrediction);
+        data.put("nextMonthLabel", nextMonthLabel);   // 预测月份标签
+
+        return data;
+    }
+
+    /**
+     * 统计用户某分类的消费总额
+     * 
+     * @param userId   用户 ID
+     * @param category 消费分类
+     * @return 消费总额 (分)
+     */
+    public long sumByCategory(Long userId, String category) {
+        return monthlySpendRepository.sumCentsByUserIdAndCategory(userId, category);
+    }
+
+    /**
+     * 将一张票据的金额按方向累加到汇总单元
+     * 
+     * @param row  票据数据
+     * @param sign +1 表示计入，-1 表示扣除
+     */
+    private void apply(InvoiceData row, int sign) {
+        String month = monthOf(row);
+        // 日期无法识别的票据不参与月度统计 (与原 DATE_FORMAT 查询跳过非法日期的效果一致)
+        if (month == null || row.getAmountCents() == null) return;
+
+        monthlySpendRepository.upsertDelta(
+                row.getUserId(),
+                month,
+                categoryOf(row),
+                sign * row.getAmountCents(),
+                (long) sign
+        );
+    }
+
+    /**
+     * 获取票据所属的 "yyyy-MM" 月份
+     * <p>优先使用 DATE 类型的开票日期；回填任务尚未处理的旧数据只识别严格的 yyyy-MM-dd，
+     * 与 modify.sql 中各汇总表初始数据的口径一致 (其他写法在回填写入开票日期时才计入)。</p>
+     * 
+     * @param row 票据数据
+     * @return 月份，日期缺失或无法识别返回 null
+     */
+    static String monthOf(InvoiceData row) {
+        LocalDate date = row.getDate() != null ? row.getDate() : DateParseUtil.parseIso(row.getLegacyDate());
+        if (date == null) return null;
+        return String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+    }
+
+    /**
+     * 分类为空时归入 "其他" (唯一键中不允许出现 NULL 分类)
+     */
+    static String categoryOf(InvoiceData row) {
+        String category = row.getCategory();
+        return category == null || category.isEmpty() ? "其他" : category;
+    }
+}
@@ -2,6 +2,8 @@ package com.example.smartdoc.service;
 
 import com.baidu.aip.ocr.AipOcr;
 import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.DateParseUtil;
+import com.example.smartdoc.utils.MoneyUtil;
 import jakarta.annotation.PostConstruct;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.ImageType;
@@ -16,6 +18,7 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -164,8 +167,8 @@ public class OcrService {
                         // 未知类型使用通用提取
                         data.setMerchantName("票据类型: " + type);
                         data.setCategory("其他");
-                        data.setAmount(getDouble(content, "Amount", "TotalAmount", "total_fare", "fare", "money"));
-                        data.setDate(getValue(content, "Date", "date", "Time"));
+                        data.setAmountCents(getCents(content, "Amount", "TotalAmount", "total_fare", "fare", "money"));
+                        data.setDate(getDate(content, "Date", "date", "Time"));
                 }
 
                 postProcess(data);
@@ -225,8 +228,8 @@ public class OcrService {
         data.setItemName(itemName);
 
         data.setMerchantName("铁路客运");
-        data.setAmount(getDouble(r, "ticket_rates"));
-        data.setDate(getValue(r, "date"));
+        data.setAmountCents(getCents(r, "ticket_rates"));
+        data.setDate(getDate(r, "date"));
         data.setInvoiceCode(getValue(r, "ticket_num"));
     }
 
@@ -248,8 +251,8 @@ public class OcrService {
         if (start != null && end != null) itemName += " (" + start + "-" + end + ")";
         data.setItemName(itemName);
 
-        data.setAmount(getDouble(r, "ticket_rates", "fare", "TotalAmount"));
-        data.setDate(getValue(r, "date"));
+        data.setAmountCents(getCents(r, "ticket_rates", "fare", "TotalAmount"));
+        data.setDate(getDate(r, "date"));
         data.setInvoiceCode(getValue(r, "ticket_number"));
     }
 
@@ -261,8 +264,8 @@ public class OcrService {
         data.setCategory("交通出行");
         data.setItemName("出租车费");
         data.setMerchantName("出租车 " + getValue(r, "TaxiNum"));
-        data.setAmount(getDouble(r, "TotalFare", "Fare"));
-        data.setDate(getValue(r, "Date"));
+        data.setAmountCents(getCents(r, "TotalFare", "Fare"));
+        data.setDate(getDate(r, "Date"));
         data.setInvoiceCode(getValue(r, "InvoiceCode"));
     }
 
@@ -275,8 +278,8 @@ public class OcrService {
         String provider = getValue(r, "service_provider");
         data.setMerchantName(provider != null ? provider : "网约车");
         data.setItemName("网约车行程");
-        data.setAmount(getDouble(r, "total_fare"));
-        data.setDate(getValue(r, "application_date"));
+        data.setAmountCents(getCents(r, "total_fare"));
+        data.setDate(getDate(r, "application_date"));
     }
 
     /**
@@ -285,8 +288,8 @@ public class OcrService {
      */
     private void parseVatInvoice(JSONObject r, InvoiceData data) {
         data.setMerchantName(getValue(r, "SellerName"));
-        data.setAmount(getDouble(r, "TotalAmount", "AmountInFiguers"));
-        data.setDate(getValue(r, "InvoiceDate"));
+        data.setAmountCents(getCents(r, "TotalAmount", "AmountInFiguers"));
+        data.setDate(getDate(r, "InvoiceDate"));
         data.setInvoiceCode(getValue(r, "InvoiceNum"));
         if (data.getInvoiceCode() == null) data.setInvoiceCode(getValue(r, "InvoiceCode"));
         String item = getValue(r, "CommodityName");
@@ -299,7 +302,7 @@ public class OcrService {
      */
     private void parseQuotaInvoice(JSONObject r, InvoiceData data) {
         data.setCategory("餐饮美食");
-        data.setAmount(getDouble(r, "invoice_rate", "invoice_rate_in_figure"));
+        data.setAmountCents(getCents(r, "invoice_rate", "invoice_rate_in_figure"));
         data.setInvoiceCode(getValue(r, "invoice_number"));
         data.setMerchantName("定额发票");
         data.setItemName("定额消费");
@@ -319,24 +322,22 @@ public class OcrService {
             lines.add(words.getJSONObject(i).getString("words"));
         }
         
-        // 提取金额（找最大值，假设为总金额）
-        double maxAmount = 0.0;
+        // 提取金额（找最大值，假设为总金额，单位: 分）
+        long maxCents = 0;
         for (String line : lines) {
             Matcher m = Pattern.compile("(\\d{1,3}(,\\d{3})*\\.\\d{2})").matcher(line);
             while (m.find()) {
-                try {
-                    double v = Double.parseDouble(m.group(1).replace(",", ""));
-                    if (v > maxAmount && v < 1000000) maxAmount = v;
-                } catch (Exception e) {}
+                Long v = MoneyUtil.parseCents(m.group(1));
+                if (v != null && v > maxCents && v < 100000000L) maxCents = v;
             }
         }
-        if (maxAmount > 0) data.setAmount(maxAmount);
+        if (maxCents > 0) data.setAmountCents(maxCents);
         
         // 提取日期（匹配 202X年XX月XX日 或 202X-XX-XX 格式）
         for (String line : lines) {
             Matcher m = Pattern.compile("202\\d[-年/.]\\d{1,2}[-月/.]\\d{1,2}").matcher(line);
             if (m.find()) {
-                data.setDate(m.group().replaceAll("[年月/.]", "-"));
+                data.setDate(DateParseUtil.parse(m.group()));
                 break;
             }
         }
@@ -370,38 +371,38 @@ public class OcrService {
     }
 
     /**
-     * 从百度 OCR 返回的 JSON 结构中提取数值
-     * <p>自动清理非数字字符后解析为 Double。</p>
+     * 从百度 OCR 返回的 JSON 结构中提取日期
+     * <p>兼容 "2024年01月15日"、"2024/01/15" 等写法，统一解析为 LocalDate。</p>
      * 
      * @param obj  OCR 结果 JSON 对象
      * @param keys 可能的字段名
-     * @return 提取的数值，解析失败返回 0.0
+     * @return 解析后的日期，未找到或无法识别返回 null
      */
-    private Double getDouble(JSONObject obj, String... keys) {
-        String val = getValue(obj, keys);
-        if (val != null) {
-            try {
-                String numStr = val.replaceAll("[^0-9.]", "");
-                return Double.parseDouble(numStr);
-            } catch (Exception e) {}
-        }
-        return 0.0;
+    private LocalDate getDate(JSONObject obj, String... keys) {
+        return DateParseUtil.parse(getValue(obj, keys));
     }
 
     /**
-     * 数据后处理 - 标准化日期格式和补全默认值
-     * <p>将各种日期格式统一转换为 yyyy-MM-dd 格式，
-     * 并为缺失的类别设置默认值。</p>
+     * 从百度 OCR 返回的 JSON 结构中提取金额
+     * <p>自动清理非数字字符后按十进制精确换算为分，不经过 double。</p>
+     * 
+     * @param obj  OCR 结果 JSON 对象
+     * @param keys 可能的字段名
+     * @return 金额 (分)，解析失败返回 0
+     */
+    private Long getCents(JSONObject obj, String... keys) {
+        Long cents = MoneyUtil.parseCents(getValue(obj, keys));
+        return cents != null ? cents : 0L;
+    }
+
+    /**
+     * 数据后处理 - 补全默认值
+     * <p>日期已在提取时由 {@link DateParseUtil} 统一解析，
+     * 这里只为缺失的类别设置默认值。</p>
      * 
      * @param data 待处理的发票数据
      */
     private void postProcess(InvoiceData data) {
-        // 标准化日期格式
-        if (data.getDate() != null) {
-            String d = data.getDate().replaceAll("[年月/.]", "-").replace("日", "");
-            Matcher m = Pattern.compile("\\d{4}-\\d{1,2}-\\d{1,2}").matcher(d);
-            if (m.find()) data.setDate(m.group());
-        }
         // 默认类别为"其他"
         if (data.getCategory() == null) {
             data.setCategory("其他");
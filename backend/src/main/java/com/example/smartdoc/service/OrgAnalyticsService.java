@@ -0,0 +1,334 @@
+package com.example.smartdoc.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.utils.MoneyUtil;
+
+/**
+ * 全库统计服务 - 管理员视角的跨用户消费、异常率与审批统计
+ *
+ * <h3>计算方式:</h3>
+ * <pre>
+ * 1. 按用户 ID 把 invoice_record 切分为区间分区: 分区 p = [p × partition-size, (p+1) × partition-size)
+ * 2. 在独立的 ForkJoinPool 中并行扫描各分区 (走 idx_user_date 索引的范围扫描)，
+ *    按 fetch-size 分批流式读取，每个分区汇总为 用户 / 分类 / 月份 三张小表
+ * 3. 合并所有分区的汇总，再按用户所属部门汇总 (部门在合并时读取，修改部门后立即生效)
+ * </pre>
+ *
+ * <h3>增量刷新:</h3>
+ * <p>分区汇总缓存在内存中。每次请求通过 {@link DataVersionService#changedSince} 取得上次刷新后
+ * 数据有变化的用户 (包括审批状态变化)，只重新扫描这些用户所在的分区；
+ * 变更序号在扫描之前读取，扫描期间的变化留给下一次请求。扫描失败时不推进序号。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.org-analytics.partition-size=1000   (默认值，每个分区的用户 ID 跨度)
+ * smartdoc.org-analytics.parallelism=4         (默认值，同时扫描的分区数，不应超过连接池大小)
+ * smartdoc.org-analytics.fetch-size=1000       (默认值)
+ * </pre>
+ * <p>MySQL 驱动需要在连接串中开启 useCursorFetch=true 才会按 fetch-size 分批读取，
+ * 否则会把整个分区的结果一次读入内存。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.AdminAnalyticsController
+ */
+@Service
+public class OrgAnalyticsService {
+
+    /** 汇总数组的下标 */
+    private static final int CENTS = 0;
+    private static final int COUNT = 1;
+    private static final int ANOMALY = 2;
+    private static final int PENDING = 3;
+    private static final int APPROVED = 4;
+    private static final int REJECTED = 5;
+    private static final int FIELDS = 6;
+
+    /** 没有填写部门的用户 */
+    private static final String NO_DEPARTMENT = "未分配部门";
+
+    /** 分区扫描语句 (只读原始列，不加载实体) */
+    private static final String SCAN_SQL =
+            "SELECT user_id, invoice_date, amount_cents, category, is_anomaly, status FROM invoice_record " +
+            "WHERE is_deleted = 0 AND user_id >= ? AND user_id < ?";
+
+    /** 每个分区的用户 ID 跨度 */
+    @Value("${smartdoc.org-analytics.partition-size:1000}")
+    private long partitionSize;
+
+    /** 同时扫描的分区数 */
+    @Value("${smartdoc.org-analytics.parallelism:4}")
+    private int parallelism;
+
+    /** 流式读取的批大小 */
+    @Value("${smartdoc.org-analytics.fetch-size:1000}")
+    private int fetchSize;
+
+    /** JDBC 模板 - 分区扫描 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 数据版本服务 - 提供上次刷新后有变化的用户 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 分区号 → 分区汇总 (只在 synchronized (this) 内访问) */
+    private final Map<Long, PartitionStats> partitions = new HashMap<>();
+
+    /** 上次成功刷新开始时的变更序号；-1 表示尚未完成过全量扫描 */
+    private long lastSequence = -1;
+
+    /**
+     * 单个分区的汇总，各 long[] 按 CENTS / COUNT / ANOMALY / PENDING / APPROVED / REJECTED 存放
+     *
+     * @param users      用户 ID → 汇总
+     * @param categories 分类 → 汇总
+     * @param months     月份 "yyyy-MM" → 汇总 (没有开票日期的票据不计入)
+     */
+    private record PartitionStats(Map<Long, long[]> users, Map<String, long[]> categories, Map<String, long[]> months) {
+
+        PartitionStats() {
+            this(new HashMap<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        boolean isEmpty() {
+            return users.isEmpty();
+        }
+    }
+
+    /**
+     * 用户信息 (合并时读取)
+     */
+    private record UserInfo(String name, String department) {
+    }
+
+    /**
+     * 生成全库统计报告
+     *
+     * @param topUsers 返回消费额最高的用户数
+     * @return summary / departments / users / categories / months / audit / partitions
+     */
+    public synchronized Map<String, Object> report(int topUsers) {
+        // 序号在扫描之前读取: 扫描期间发生的变化留给下一次刷新
+        long sequence = dataVersionService.currentSequence();
+        Set<Long> dirty = new TreeSet<>();
+        boolean full = lastSequence < 0;
+        if (full) {
+            Map<String, Object> range = jdbcTemplate.queryForMap(
+                    "SELECT MIN(user_id) AS lo, MAX(user_id) AS hi FROM invoice_record WHERE is_deleted = 0");
+            if (range.get("lo") != null) {
+                long lo = ((Number) range.get("lo")).longValue() / partitionSize;
+                long hi = ((Number) range.get("hi")).longValue() / partitionSize;
+                for (long p = lo; p <= hi; p++) dirty.add(p);
+            }
+        } else {
+            for (Long userId : dataVersionService.changedSince(lastSequence)) {
+                dirty.add(userId / partitionSize);
+            }
+        }
+
+        // 并行扫描需要刷新的分区 (任何一个分区失败都不推进序号)
+        long start = System.currentTimeMillis();
+        Map<Long, PartitionStats> scanned = new ConcurrentHashMap<>();
+        if (!dirty.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> dirty.parallelStream().forEach(p -> scanned.put(p, scan(p)))).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (full) {
+            partitions.clear();
+        }
+        scanned.forEach((p, stats) -> {
+            if (stats.isEmpty()) partitions.remove(p); else partitions.put(p, stats);
+        });
+        lastSequence = sequence;
+
+        Map<String, Object> report = merge(topUsers);
+        report.put("partitions", Map.of(
+                "total", partitions.size(),
+                "refreshed", scanned.size(),
+                "costMillis", System.currentTimeMillis() - start));
+        return report;
+    }
+
+    /**
+     * 流式扫描一个分区
+     */
+    private PartitionStats scan(long partition) {
+        PartitionStats stats = new PartitionStats();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, partition * partitionSize);
+            ps.setLong(2, (partition + 1) * partitionSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            long userId = rs.getLong(1);
+            Date date = rs.getDate(2);
+            long cents = rs.getLong(3);
+            String category = rs.getString(4);
+            boolean anomaly = rs.getInt(5) == 1;
+            int status = rs.getInt(6);
+
+            long[] user = stats.users().computeIfAbsent(userId, k -> new long[FIELDS]);
+            long[] cat = stats.categories().computeIfAbsent(
+                    category == null || category.isEmpty() ? "其他" : category, k -> new long[FIELDS]);
+            long[] month = date == null ? null
+                    : stats.months().computeIfAbsent(date.toString().substring(0, 7), k -> new long[FIELDS]);
+            for (long[] target : new long[][]{user, cat, month}) {
+                if (target == null) continue;
+                target[CENTS] += cents;
+                target[COUNT]++;
+                if (anomaly) target[ANOMALY]++;
+                if (status == 1) target[PENDING]++;
+                else if (status == 2) target[APPROVED]++;
+                else if (status == 3) target[REJECTED]++;
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 合并所有分区的汇总并组装报告
+     */
+    private Map<String, Object> merge(int topUsers) {
+        Map<Long, long[]> users = new HashMap<>();
+        Map<String, long[]> categories = new HashMap<>();
+        Map<String, long[]> months = new TreeMap<>();
+        for (PartitionStats stats : partitions.values()) {
+            users.putAll(stats.users());  // 分区之间用户不重叠
+            stats.categories().forEach((k, v) -> add(categories.computeIfAbsent(k, x -> new long[FIELDS]), v));
+            stats.months().forEach((k, v) -> add(months.computeIfAbsent(k, x -> new long[FIELDS]), v));
+        }
+
+        Map<Long, UserInfo> infos = new HashMap<>();
+        jdbcTemplate.query("SELECT id, username, nickname, department FROM sys_user", (RowCallbackHandler) rs -> {
+            String nickname = rs.getString(3);
+            String department = rs.getString(4);
+            infos.put(rs.getLong(1), new UserInfo(
+                    nickname == null || nickname.isEmpty() ? rs.getString(2) : nickname,
+                    department == null || department.isEmpty() ? NO_DEPARTMENT : department));
+        });
+
+        long[] total = new long[FIELDS];
+        Map<String, long[]> departments = new HashMap<>();
+        Map<String, Integer> departmentUsers = new HashMap<>();
+        List<Map<String, Object>> userRows = new ArrayList<>();
+        users.forEach((userId, v) -> {
+            UserInfo info = infos.getOrDefault(userId, new UserInfo(null, NO_DEPARTMENT));
+            add(total, v);
+            add(departments.computeIfAbsent(info.department(), x -> new long[FIELDS]), v);
+            departmentUsers.merge(info.department(), 1, Integer::sum);
+
+            Map<String, Object> row = describe(v);
+            row.put("userId", userId);
+            row.put("name", info.name());
+            row.put("department", info.department());
+            userRows.add(row);
+        });
+        Comparator<Map<String, Object>> byAmount =
+                Comparator.comparing((Map<String, Object> m) -> (Long) m.get("amountCents")).reversed();
+        userRows.sort(byAmount);
+
+        List<Map<String, Object>> departmentRows = new ArrayList<>();
+        departments.forEach((name, v) -> {
+            Map<String, Object> row = describe(v);
+            row.put("department", name);
+            row.put("users", departmentUsers.get(name));
+            departmentRows.add(row);
+        });
+        departmentRows.sort(byAmount);
+
+        List<Map<String, Object>> categoryRows = new ArrayList<>();
+        categories.forEach((name, v) -> {
+            Map<String, Object> row = describe(v);
+            row.put("category", name);
+            categoryRows.add(row);
+        });
+        categoryRows.sort(byAmount);
+
+        List<Map<String, Object>> monthRows = new ArrayList<>();
+        months.forEach((month, v) -> {
+            Map<String, Object> row = describe(v);
+            row.put("month", month);
+            monthRows.add(row);
+        });
+
+        Map<String, Object> summary = describe(total);
+        summary.put("users", users.size());
+        summary.put("departments", departments.size());
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("summary", summary);
+        report.put("departments", departmentRows);
+        report.put("users", userRows.subList(0, Math.min(topUsers, userRows.size())));
+        report.put("categories", categoryRows);
+        report.put("months", monthRows);
+        report.put("audit", audit(total));
+        return report;
+    }
+
+    /**
+     * 审批统计: 当前各状态的票据数 + 每月审批处理量 (来自操作日志)
+     */
+    private Map<String, Object> audit(long[] total) {
+        Map<String, long[]> throughput = new TreeMap<>();
+        jdbcTemplate.query(
+                "SELECT DATE_FORMAT(create_time, '%Y-%m') AS m, operation, COUNT(*) FROM sys_operation_log " +
+                "WHERE operation IN ('审核通过', '审核驳回') AND create_time IS NOT NULL GROUP BY m, operation",
+                (RowCallbackHandler) rs -> {
+                    long[] counts = throughput.computeIfAbsent(rs.getString(1), k -> new long[2]);
+                    counts["审核通过".equals(rs.getString(2)) ? 0 : 1] += rs.getLong(3);
+                });
+        List<Map<String, Object>> monthly = new ArrayList<>();
+        throughput.forEach((month, counts) -> monthly.add(Map.of(
+                "month", month, "approved", counts[0], "rejected", counts[1], "processed", counts[0] + counts[1])));
+
+        Map<String, Object> audit = new HashMap<>();
+        audit.put("pending", total[PENDING]);
+        audit.put("approved", total[APPROVED]);
+        audit.put("rejected", total[REJECTED]);
+        long decided = total[APPROVED] + total[REJECTED];
+        audit.put("approvalRate", decided == 0 ? null : Math.round(total[APPROVED] * 10000.0 / decided) / 100.0);
+        audit.put("throughput", monthly);
+        return audit;
+    }
+
+    /**
+     * 汇总数组 → 返回数据 (金额单位: 元，异常率单位: %)
+     */
+    private static Map<String, Object> describe(long[] v) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("amount", MoneyUtil.toYuan(v[CENTS]));
+        row.put("amountCents", v[CENTS]);
+        row.put("count", v[COUNT]);
+        row.put("anomalyCount", v[ANOMALY]);
+        row.put("anomalyRate", v[COUNT] == 0 ? 0.0 : Math.round(v[ANOMALY] * 10000.0 / v[COUNT]) / 100.0);
+        return row;
+    }
+
+    private static void add(long[] target, long[] values) {
+        for (int i = 0; i < FIELDS; i++) target[i] += values[i];
+    }
+}
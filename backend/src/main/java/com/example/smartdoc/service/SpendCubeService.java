@@ -0,0 +1,349 @@
+package com.example.smartdoc.service;
+
+import java.nio.ByteBuffer;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.SpendCubeRepository;
+import com.example.smartdoc.utils.MoneyUtil;
+
+/**
+ * 消费立方体服务 - 维护 stat_spend_cube 并提供上卷 / 下钻查询
+ *
+ * <p>作为 {@link InvoiceChangeListener}，在票据写入的同一事务内对
+ * (用户, 月份, 分类, 商户) 单元做增量 upsert，与月度汇总表的维护方式相同。</p>
+ *
+ * <h3>上卷与下钻:</h3>
+ * <pre>
+ * 时间轴:   全部 ← 年 ← 月
+ * 分类轴:   全部 ← 分类 ← 商户
+ * 例: (年, 分类)  = 每年各分类的消费额
+ *     (月, 商户)  + category=餐饮美食 = 餐饮美食分类下每月各商户的消费额
+ * </pre>
+ * <p>查询只扫描该用户的立方体单元 (单元数 ≈ 月份数 × 该月出现过的分类-商户组合)，
+ * 与票据条数无关。</p>
+ *
+ * <h3>读缓存:</h3>
+ * <p>用户的全部单元按月份排序后编码进一个 ByteBuffer (默认为堆外直接内存，不占用 Java 堆)，
+ * 每个单元固定 {@value #CELL_BYTES} 字节:</p>
+ * <pre>
+ * [月份序号 int][分类下标 int][商户下标 int][金额(分) long][笔数 long]
+ * </pre>
+ * <p>分类与商户名称做字典编码保存在堆上。缓存以数据版本号判断是否过期，
+ * 缓冲区总字节数超过 cache-max-bytes 时按最近最少使用的顺序淘汰；
+ * 被淘汰的直接内存在缓冲区对象被回收时释放。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.cube.off-heap=true               (默认值，false 时使用堆内缓冲区)
+ * smartdoc.cube.cache-max-bytes=16777216    (默认值，16 MB)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.model.SpendCube
+ * @see DataVersionService
+ */
+@Service
+public class SpendCubeService implements InvoiceChangeListener {
+
+    /** 每个单元的字节数: 3 个 int + 2 个 long */
+    static final int CELL_BYTES = 4 * 3 + 8 * 2;
+
+    /** 商户为空时的名称 */
+    static final String UNKNOWN_MERCHANT = "未知商户";
+
+    /** 上卷后的维度值 */
+    private static final String ALL = "全部";
+
+    /** 时间轴粒度 */
+    public enum TimeLevel { ALL, YEAR, MONTH }
+
+    /** 分类轴粒度 */
+    public enum CategoryLevel { ALL, CATEGORY, MERCHANT }
+
+    /** 是否使用堆外缓冲区 */
+    @Value("${smartdoc.cube.off-heap:true}")
+    private boolean offHeap;
+
+    /** 缓存的缓冲区总字节数上限 */
+    @Value("${smartdoc.cube.cache-max-bytes:16777216}")
+    private long maxBytes;
+
+    /** 立方体数据仓库 */
+    @Autowired
+    private SpendCubeRepository spendCubeRepository;
+
+    /** JDBC 模板 - 读取立方体单元 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 数据版本服务 - 判断缓存是否过期 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 用户 ID → 立方体切片，按访问顺序 (LRU)；所有访问都在 synchronized (cache) 内进行 */
+    private final LinkedHashMap<Long, Slice> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** 已缓存切片的字节数之和 (由 cache 的锁保护) */
+    private long cachedBytes = 0;
+
+    /**
+     * 单个用户的立方体单元 (只读，使用绝对位置读取，可被多个线程同时访问)
+     *
+     * @param version    构建时读取的数据版本号
+     * @param cells      单元数据，按月份升序
+     * @param size       单元数
+     * @param categories 分类字典
+     * @param merchants  商户字典
+     */
+    private record Slice(long version, ByteBuffer cells, int size, String[] categories, String[] merchants) {
+
+        long bytes() {
+            return cells.capacity();
+        }
+
+        int month(int i) {
+            return cells.getInt(i * CELL_BYTES);
+        }
+
+        int category(int i) {
+            return cells.getInt(i * CELL_BYTES + 4);
+        }
+
+        int merchant(int i) {
+            return cells.getInt(i * CELL_BYTES + 8);
+        }
+
+        long cents(int i) {
+            return cells.getLong(i * CELL_BYTES + 12);
+        }
+
+        long count(int i) {
+            return cells.getLong(i * CELL_BYTES + 20);
+        }
+    }
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        apply(row, 1);
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        apply(row, -1);
+    }
+
+    /**
+     * 按指定粒度上卷 / 下钻
+     *
+     * @param userId        用户 ID
+     * @param fromMonth     起始月份 "yyyy-MM" (含)，为 null 时不限
+     * @param toMonth       结束月份 "yyyy-MM" (含)，为 null 时不限
+     * @param time          时间轴粒度
+     * @param level         分类轴粒度
+     * @param category      只看某个分类 (下钻)，为 null 时不过滤
+     * @return cells (period / category / merchant / amount / amountCents / count，按时间、金额降序)
+     *         与 scanned (扫描的单元数)
+     */
+    public Map<String, Object> query(Long userId, String fromMonth, String toMonth,
+                                     TimeLevel time, CategoryLevel level, String category) {
+        Slice slice = getSlice(userId);
+        int lo = fromMonth == null ? Integer.MIN_VALUE : monthIndex(fromMonth);
+        int hi = toMonth == null ? Integer.MAX_VALUE : monthIndex(toMonth);
+        int categoryFilter = -1;
+        if (category != null) {
+            categoryFilter = indexOf(slice.categories(), category);
+            if (categoryFilter < 0) {
+                return result(new ArrayList<>(), 0);
+            }
+        }
+
+        // 1. 二分定位起始月份 (单元按月份升序)
+        int start = 0;
+        int end = slice.size();
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (slice.month(mid) < lo) start = mid + 1; else end = mid;
+        }
+
+        // 2. 扫描区间内的单元，按 (时间, 分类, 商户) 分组累加；上卷的维度记为 -1
+        Map<Long, long[]> groups = new LinkedHashMap<>();
+        int scanned = 0;
+        for (int i = start; i < slice.size() && slice.month(i) <= hi; i++) {
+            scanned++;
+            int c = slice.category(i);
+            if (categoryFilter >= 0 && c != categoryFilter) continue;
+            int month = slice.month(i);
+            long period = switch (time) {
+                case ALL -> -1;
+                case YEAR -> month / 12;
+                case MONTH -> month;
+            };
+            long cat = level == CategoryLevel.ALL ? -1 : c;
+            long merchant = level == CategoryLevel.MERCHANT ? slice.merchant(i) : -1;
+            // 分类、商户下标各占 21 位
+            long key = ((period + 1) << 42) | ((cat + 1) << 21) | (merchant + 1);
+            long[] sum = groups.computeIfAbsent(key, k -> new long[2]);
+            sum[0] += slice.cents(i);
+            sum[1] += slice.count(i);
+        }
+
+        // 3. 输出 (去掉笔数为 0 的单元，例如票据全部删除后留下的空单元)
+        List<Map<String, Object>> cells = new ArrayList<>(groups.size());
+        for (Map.Entry<Long, long[]> e : groups.entrySet()) {
+            long[] sum = e.getValue();
+            if (sum[1] == 0) continue;
+            long key = e.getKey();
+            int period = (int) ((key >>> 42) - 1);
+            int cat = (int) (((key >>> 21) & 0x1FFFFF) - 1);
+            int merchant = (int) ((key & 0x1FFFFF) - 1);
+
+            Map<String, Object> cell = new HashMap<>();
+            cell.put("period", periodLabel(time, period));
+            cell.put("category", cat < 0 ? ALL : slice.categories()[cat]);
+            cell.put("merchant", merchant < 0 ? ALL : slice.merchants()[merchant]);
+            cell.put("amount", MoneyUtil.toYuan(sum[0]));
+            cell.put("amountCents", sum[0]);
+            cell.put("count", sum[1]);
+            cells.add(cell);
+        }
+        cells.sort(Comparator.comparing((Map<String, Object> m) -> (String) m.get("period"))
+                .thenComparing(m -> -(long) m.get("amountCents")));
+        return result(cells, scanned);
+    }
+
+    private static Map<String, Object> result(List<Map<String, Object>> cells, int scanned) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("cells", cells);
+        result.put("scanned", scanned);
+        return result;
+    }
+
+    /**
+     * 获取用户的立方体切片，数据未变化时直接返回缓存
+     */
+    private Slice getSlice(Long userId) {
+        // 版本号在查询之前读取: 查询期间提交的写操作会让版本号前进，下次读取自然重建
+        long version = dataVersionService.getVersion(userId);
+        synchronized (cache) {
+            Slice cached = cache.get(userId);
+            if (cached != null && cached.version() == version) {
+                return cached;
+            }
+        }
+
+        Slice slice = load(userId, version);
+        synchronized (cache) {
+            Slice old = cache.get(userId);
+            if (old == null || old.version() <= version) {
+                if (old != null) {
+                    cache.remove(userId);
+                    cachedBytes -= old.bytes();
+                }
+                if (slice.bytes() <= maxBytes) {
+                    cache.put(userId, slice);
+                    cachedBytes += slice.bytes();
+                    Iterator<Map.Entry<Long, Slice>> it = cache.entrySet().iterator();
+                    while (cachedBytes > maxBytes && it.hasNext()) {
+                        cachedBytes -= it.next().getValue().bytes();
+                        it.remove();
+                    }
+                }
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * 从立方体表读取用户的全部单元并编码进缓冲区
+     */
+    private Slice load(Long userId, long version) {
+        List<int[]> keys = new ArrayList<>();
+        List<long[]> values = new ArrayList<>();
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        Map<String, Integer> merchantIndex = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT month, category, merchant, total_cents, invoice_count FROM stat_spend_cube " +
+                "WHERE user_id = ? AND invoice_count <> 0 ORDER BY month",
+                (RowCallbackHandler) rs -> {
+                    keys.add(new int[]{
+                            monthIndex(rs.getString(1)),
+                            categoryIndex.computeIfAbsent(rs.getString(2), k -> categoryIndex.size()),
+                            merchantIndex.computeIfAbsent(rs.getString(3), k -> merchantIndex.size())});
+                    values.add(new long[]{rs.getLong(4), rs.getLong(5)});
+                },
+                userId);
+
+        int size = keys.size();
+        ByteBuffer cells = offHeap ? ByteBuffer.allocateDirect(size * CELL_BYTES) : ByteBuffer.allocate(size * CELL_BYTES);
+        for (int i = 0; i < size; i++) {
+            int[] key = keys.get(i);
+            long[] value = values.get(i);
+            cells.putInt(key[0]).putInt(key[1]).putInt(key[2]).putLong(value[0]).putLong(value[1]);
+        }
+        return new Slice(version, cells, size, dictionary(categoryIndex), dictionary(merchantIndex));
+    }
+
+    /**
+     * 将一张票据的金额按方向累加到立方体单元
+     *
+     * @param row  票据数据
+     * @param sign +1 表示计入，-1 表示扣除
+     */
+    private void apply(InvoiceData row, int sign) {
+        String month = MonthlyStatsService.monthOf(row);
+        if (month == null || row.getAmountCents() == null) return;
+
+        String merchant = row.getMerchantName();
+        spendCubeRepository.upsertDelta(
+                row.getUserId(),
+                month,
+                MonthlyStatsService.categoryOf(row),
+                merchant == null || merchant.isEmpty() ? UNKNOWN_MERCHANT : merchant,
+                sign * row.getAmountCents(),
+                (long) sign
+        );
+    }
+
+    /**
+     * "yyyy-MM" → 自公元 0 年 1 月起的月份序号
+     */
+    private static int monthIndex(String month) {
+        YearMonth ym = YearMonth.parse(month);
+        return ym.getYear() * 12 + ym.getMonthValue() - 1;
+    }
+
+    private static String periodLabel(TimeLevel time, int period) {
+        return switch (time) {
+            case ALL -> ALL;
+            case YEAR -> String.format("%04d", period);
+            case MONTH -> String.format("%04d-%02d", period / 12, period % 12 + 1);
+        };
+    }
+
+    private static String[] dictionary(Map<String, Integer> index) {
+        String[] dictionary = new String[index.size()];
+        index.forEach((value, id) -> dictionary[id] = value);
+        return dictionary;
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int i = 0; i < dictionary.length; i++) {
+            if (value.equals(dictionary[i])) return i;
+        }
+        return -1;
+    }
+}
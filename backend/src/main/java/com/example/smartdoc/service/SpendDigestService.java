@@ -0,0 +1,279 @@
+package com.example.smartdoc.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.repository.SpendDigestRepository;
+import com.example.smartdoc.utils.MoneyUtil;
+import com.example.smartdoc.utils.TDigest;
+
+/**
+ * 消费分布服务 - 维护 (用户, 月份, 分类) 的 t-digest 草图并提供分位数统计
+ *
+ * <p>{@link com.example.smartdoc.utils.AnomalyDetectionUtil} 只计算均值和标准差，
+ * 少数大额票据就会把均值拉高。本服务提供中位数、p90 等分位数，更能代表 "一般花多少"。</p>
+ *
+ * <h3>草图维护 (作为 {@link InvoiceChangeListener}，在票据写入的同一事务内):</h3>
+ * <pre>
+ * 票据进入有效状态: touch (不存在则插入空草图，并锁定该行) → 读出草图 → 加入金额 → 写回
+ * 票据离开有效状态: 标记 stale (t-digest 不支持删除数据点)
+ * stale 的草图由 rebuild-delay-ms 定时任务或下一次查询从票据明细重建，
+ * 重建结果只在 revision 未变化时写回
+ * </pre>
+ * <p>只统计有开票日期 (invoice_date) 和金额的票据，与日消费索引的口径一致。</p>
+ *
+ * <h3>查询:</h3>
+ * <p>读出范围内的草图按分类合并 (管理员视图再跨用户合并)，合并与求分位数的代价只与草图数和
+ * 草图大小有关，与票据数无关。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.digest.rebuild-delay-ms=60000   (默认值)
+ * smartdoc.digest.rebuild-batch=500        (默认值，每批重建的草图数)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see TDigest
+ * @see com.example.smartdoc.model.SpendDigest
+ */
+@Service
+public class SpendDigestService implements InvoiceChangeListener {
+
+    /** 返回的分位点 */
+    private static final double[] QUANTILES = {0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+
+    /** 分位点在返回数据中的名称 */
+    private static final String[] QUANTILE_NAMES = {"p25", "p50", "p75", "p90", "p95", "p99"};
+
+    /** 全部分类合并后的名称 */
+    private static final String ALL = "全部";
+
+    /** 空草图的序列化结果 */
+    private static final byte[] EMPTY = new TDigest().toBytes();
+
+    /** 定时重建时每批读取的草图数 */
+    @Value("${smartdoc.digest.rebuild-batch:500}")
+    private int rebuildBatch;
+
+    /** 分布草图仓库 */
+    @Autowired
+    private SpendDigestRepository spendDigestRepository;
+
+    /** JDBC 模板 - 读写草图与重建 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 已锁定的草图行
+     */
+    private record Current(long id, byte[] digest, boolean stale) {
+    }
+
+    /**
+     * 需要重建的草图行
+     */
+    private record Row(long id, long userId, String month, String category, long revision) {
+    }
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        if (row.getDate() == null || row.getAmountCents() == null) return;
+        String month = MonthlyStatsService.monthOf(row);
+        String category = MonthlyStatsService.categoryOf(row);
+
+        spendDigestRepository.touch(row.getUserId(), month, category, EMPTY);
+        Current current = jdbcTemplate.queryForObject(
+                "SELECT id, digest, stale FROM stat_spend_digest WHERE user_id = ? AND month = ? AND category = ? FOR UPDATE",
+                (rs, i) -> new Current(rs.getLong("id"), rs.getBytes("digest"), rs.getBoolean("stale")),
+                row.getUserId(), month, category);
+        if (current.stale()) {
+            return;  // 等待重建，重建时会从明细读到这张票据
+        }
+        TDigest digest = TDigest.fromBytes(current.digest());
+        digest.add(row.getAmountCents());
+        jdbcTemplate.update(
+                "UPDATE stat_spend_digest SET digest = ?, sample_count = ?, update_time = NOW() WHERE id = ?",
+                digest.toBytes(), digest.count(), current.id());
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        if (row.getDate() == null || row.getAmountCents() == null) return;
+        spendDigestRepository.markStale(row.getUserId(), MonthlyStatsService.monthOf(row), MonthlyStatsService.categoryOf(row));
+    }
+
+    /**
+     * 用户的消费分布
+     *
+     * @param userId    用户 ID
+     * @param fromMonth 起始月份 "yyyy-MM" (含)，为 null 时不限
+     * @param toMonth   结束月份 "yyyy-MM" (含)，为 null 时不限
+     * @param category  只看某个分类，为 null 时返回全部分类及合计
+     * @return 各分类的分布统计 (按笔数降序，合计在最前)
+     */
+    public List<Map<String, Object>> distribution(Long userId, String fromMonth, String toMonth, String category) {
+        return summarize("user_id = ?", userId, fromMonth, toMonth, category);
+    }
+
+    /**
+     * 全库的消费分布 (合并所有用户的草图)
+     *
+     * @param fromMonth 起始月份 "yyyy-MM" (含)，为 null 时不限
+     * @param toMonth   结束月份 "yyyy-MM" (含)，为 null 时不限
+     * @param category  只看某个分类，为 null 时返回全部分类及合计
+     * @return 各分类的分布统计 (按笔数降序，合计在最前)
+     */
+    public List<Map<String, Object>> distributionOfAll(String fromMonth, String toMonth, String category) {
+        return summarize(null, null, fromMonth, toMonth, category);
+    }
+
+    /**
+     * 定时重建被标记为 stale 的草图
+     */
+    @Scheduled(initialDelayString = "${smartdoc.digest.rebuild-delay-ms:60000}",
+            fixedDelayString = "${smartdoc.digest.rebuild-delay-ms:60000}")
+    public void rebuildStale() {
+        try {
+            // 按主键分批，直到没有 stale 的草图 (迁移脚本回填的草图全部是 stale)
+            long lastId = 0;
+            int rebuilt = 0;
+            List<Row> rows;
+            do {
+                rows = jdbcTemplate.query(
+                        "SELECT id, user_id, month, category, revision FROM stat_spend_digest " +
+                        "WHERE stale = 1 AND id > ? ORDER BY id LIMIT ?",
+                        (rs, i) -> new Row(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4), rs.getLong(5)),
+                        lastId, rebuildBatch);
+                for (Row row : rows) {
+                    rebuild(row);
+                    lastId = row.id();
+                }
+                rebuilt += rows.size();
+            } while (rows.size() == rebuildBatch);
+            if (rebuilt > 0) {
+                System.out.println("📊 已重建消费分布草图: " + rebuilt + " 个");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 读出范围内的草图并按分类合并
+     *
+     * @param userFilter 用户过滤条件，为 null 时不过滤
+     * @param userId     userFilter 的参数
+     */
+    private List<Map<String, Object>> summarize(String userFilter, Long userId,
+                                                String fromMonth, String toMonth, String category) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (userFilter != null) {
+            conditions.add(userFilter);
+            args.add(userId);
+        }
+        if (fromMonth != null) {
+            conditions.add("month >= ?");
+            args.add(fromMonth);
+        }
+        if (toMonth != null) {
+            conditions.add("month <= ?");
+            args.add(toMonth);
+        }
+        if (category != null) {
+            conditions.add("category = ?");
+            args.add(category);
+        }
+        String sql = "SELECT id, user_id, month, category, digest, stale, revision FROM stat_spend_digest"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+
+        // 1. 流式合并有效草图，stale 的草图留到读完后重建
+        Map<String, TDigest> merged = new TreeMap<>();
+        List<Row> stale = new ArrayList<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            if (rs.getBoolean("stale")) {
+                stale.add(new Row(rs.getLong("id"), rs.getLong("user_id"), rs.getString("month"),
+                        rs.getString("category"), rs.getLong("revision")));
+                return;
+            }
+            merged.computeIfAbsent(rs.getString("category"), k -> new TDigest())
+                    .merge(TDigest.fromBytes(rs.getBytes("digest")));
+        }, args.toArray());
+
+        // 2. 重建 stale 草图后合并
+        for (Row row : stale) {
+            merged.computeIfAbsent(row.category(), k -> new TDigest()).merge(rebuild(row));
+        }
+
+        // 3. 合计 (只看一个分类时合计与该分类相同，不重复返回)
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (category == null) {
+            TDigest total = new TDigest();
+            merged.values().forEach(total::merge);
+            if (total.count() > 0) {
+                result.add(describe(ALL, total));
+            }
+        }
+        merged.entrySet().stream()
+                .filter(e -> e.getValue().count() > 0)
+                .sorted((a, b) -> Long.compare(b.getValue().count(), a.getValue().count()))
+                .forEach(e -> result.add(describe(e.getKey(), e.getValue())));
+        return result;
+    }
+
+    /**
+     * 从票据明细重建一个草图，revision 未变化时写回
+     *
+     * @return 重建后的草图
+     */
+    private TDigest rebuild(Row row) {
+        YearMonth month = YearMonth.parse(row.month());
+        StringBuilder sql = new StringBuilder(
+                "SELECT amount_cents FROM invoice_record WHERE user_id = ? AND is_deleted = 0 AND amount_cents IS NOT NULL " +
+                "AND invoice_date >= ? AND invoice_date < ?");
+        List<Object> args = new ArrayList<>(List.of(row.userId(), month.atDay(1), month.plusMonths(1).atDay(1)));
+        if ("其他".equals(row.category())) {
+            // 与 MonthlyStatsService.categoryOf 一致: 空分类归入 "其他"
+            sql.append(" AND (category IS NULL OR category = '' OR category = '其他')");
+        } else {
+            sql.append(" AND category = ?");
+            args.add(row.category());
+        }
+
+        TDigest digest = new TDigest();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> digest.add(rs.getLong(1)), args.toArray());
+        jdbcTemplate.update(
+                "UPDATE stat_spend_digest SET digest = ?, sample_count = ?, stale = 0, update_time = NOW() " +
+                "WHERE id = ? AND revision = ?",
+                digest.toBytes(), digest.count(), row.id(), row.revision());
+        return digest;
+    }
+
+    /**
+     * 组装一个分类的分布统计 (金额单位: 元)
+     */
+    private static Map<String, Object> describe(String category, TDigest digest) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("category", category);
+        item.put("count", digest.count());
+        item.put("min", MoneyUtil.toYuan(Math.round(digest.min())));
+        item.put("max", MoneyUtil.toYuan(Math.round(digest.max())));
+        item.put("mean", MoneyUtil.toYuan(Math.round(digest.mean())));
+        for (int i = 0; i < QUANTILES.length; i++) {
+            item.put(QUANTILE_NAMES[i], MoneyUtil.toYuan(Math.round(digest.quantile(QUANTILES[i]))));
+        }
+        return item;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.FenwickTree;
+import com.example.smartdoc.utils.TransactionUtil;
+
+/**
+ * 日消费索引服务 - 任意日期区间的消费额查询
+ *
+ * <p>月度汇总表只能回答整月的问题。本服务为每个用户在内存中维护按天的树状数组
+ * (位置 = 开票日期的 epochDay - 起始日)，全部分类合计一棵、每个分类一棵，
+ * 任意日期区间 [from, to) 的消费额都是 O(log 天数) 的两次前缀和之差。</p>
+ *
+ * <h3>生命周期:</h3>
+ * <ul>
+ *   <li>懒加载: 用户第一次查询时由用户快照 ({@link UserSnapshot}) 汇总到天，O(票据数 + 天数) 建树</li>
+ *   <li>增量维护: 作为 {@link InvoiceChangeListener}，事务提交后把票据金额加减到对应的日期位置</li>
+ *   <li>淘汰: 超过 idle-minutes 未被查询的用户索引由定时任务释放</li>
+ * </ul>
+ * <p>索引覆盖 [min(最早票据日期, 今天) - {@value #HEADROOM_DAYS} 天, max(最晚票据日期, 今天) + {@value #HEADROOM_DAYS} 天)，
+ * 并截断到今天前后 max-years 年的窗口内: 一张日期录错的票据 (如 0001 年或 9999 年) 不会让数组扩展到数百万天。
+ * 窗口外的票据按 (日期, 分类) 合并保存在旁路表中，查询时逐条比较，数量通常为零。
+ * 写入的日期在窗口内、但超出数组范围时直接丢弃索引，下次查询重新加载。
+ * 与月度汇总一致，只统计有开票日期 (invoice_date) 和金额的有效票据。</p>
+ *
+ * <h3>并发:</h3>
+ * <p>每个用户一个槽位，索引的读写都在 synchronized (槽位) 内进行。
+ * 写操作在事务内登记 pending、事务结束后撤销；加载索引时如果查询期间有未结束或已完成的写操作，
+ * 查询结果可能已经包含、也可能不包含这些写入，此时加载结果只用于本次请求、不发布，
+ * 避免之后的增量重复计入。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.spend-index.idle-minutes=30   (默认值)
+ * smartdoc.spend-index.sweep-ms=60000    (默认值，淘汰检查间隔)
+ * smartdoc.spend-index.max-years=10      (默认值，数组覆盖今天前后的年数)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see FenwickTree
+ * @see com.example.smartdoc.controller.StatsController#getRangeSpend
+ */
+@Service
+public class SpendIndexService implements InvoiceChangeListener {
+
+    /** 索引在数据范围两侧预留的天数 (补录历史票据、录入新票据时不必重建) */
+    static final int HEADROOM_DAYS = 366;
+
+    /** 数组覆盖今天前后的年数，窗口外的票据进入旁路表 */
+    @Value("${smartdoc.spend-index.max-years:10}")
+    private int maxYears;
+
+    /** 用户索引的空闲淘汰时间 (分钟) */
+    @Value("${smartdoc.spend-index.idle-minutes:30}")
+    private long idleMinutes;
+
+    /** 用户快照服务 - 加载索引时复用各统计接口共用的列式数据 */
+    @Autowired
+    private UserSnapshotService userSnapshotService;
+
+    /** 用户 ID → 槽位 */
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 区间消费额
+     *
+     * @param totalCents 合计 (分)
+     * @param categories 分类 → 金额 (分)，只包含金额不为 0 的分类
+     */
+    public record RangeSum(long totalCents, Map<String, Long> categories) {
+    }
+
+    /**
+     * 单个用户的槽位，所有字段在 synchronized (槽位) 内访问
+     */
+    private static final class Slot {
+        /** 已登记、尚未结束的写事务数 */
+        int pending;
+        /** 已提交的写操作数 */
+        long completed;
+        /** 索引，未加载或已淘汰时为 null */
+        UserIndex index;
+        /** 最近一次查询的时间 (毫秒) */
+        long lastAccess = System.currentTimeMillis();
+        /** 已从 slots 中移除 */
+        boolean removed;
+    }
+
+    /**
+     * 加载前记录的槽位状态
+     */
+    private record Ticket(Slot slot, boolean clean, long completed) {
+    }
+
+    /**
+     * 旁路表的键: 窗口外的 (epochDay, 分类)
+     */
+    private record Outlier(long day, String category) {
+    }
+
+    /**
+     * 单个用户的日消费索引
+     */
+    private static final class UserIndex {
+        /** 位置 0 对应的 epochDay */
+        final long baseDay;
+        /** 天数 */
+        final int days;
+        /** 窗口 [windowStart, windowEnd) (epochDay)，数组范围在窗口之内 */
+        final long windowStart;
+        final long windowEnd;
+        /** 全部分类合计 */
+        final FenwickTree total;
+        /** 分类 → 树状数组 */
+        final Map<String, FenwickTree> byCategory = new HashMap<>();
+        /** 窗口外的金额 (不为 0 的项) */
+        final Map<Outlier, Long> outliers;
+
+        UserIndex(long baseDay, int days, long windowStart, long windowEnd,
+                  long[] totals, Map<String, long[]> categories, Map<Outlier, Long> outliers) {
+            this.baseDay = baseDay;
+            this.days = days;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.total = FenwickTree.of(totals);
+            this.outliers = outliers;
+            categories.forEach((category, values) -> byCategory.put(category, FenwickTree.of(values)));
+        }
+
+        /**
+         * 累加一笔金额
+         *
+         * @return false 表示日期在窗口内但超出数组范围
+         */
+        boolean add(LocalDate date, String category, long cents) {
+            long epochDay = date.toEpochDay();
+            if (epochDay < windowStart || epochDay >= windowEnd) {
+                outliers.merge(new Outlier(epochDay, category), cents, (a, b) -> a + b == 0 ? null : a + b);
+                return true;
+            }
+            long day = epochDay - baseDay;
+            if (day < 0 || day >= days) {
+                return false;
+            }
+            total.add((int) day, cents);
+            byCategory.computeIfAbsent(category, c -> new FenwickTree(days)).add((int) day, cents);
+            return true;
+        }
+
+        RangeSum sum(LocalDate from, LocalDate to) {
+            int lo = position(from);
+            int hi = position(to);
+            long totalCents = total.rangeSum(lo, hi);
+            Map<String, Long> categories = new TreeMap<>();
+            byCategory.forEach((category, tree) -> categories.put(category, tree.rangeSum(lo, hi)));
+
+            long fromDay = from.toEpochDay();
+            long toDay = to.toEpochDay();
+            for (Map.Entry<Outlier, Long> e : outliers.entrySet()) {
+                long day = e.getKey().day();
+                if (day >= fromDay && day < toDay) {
+                    totalCents += e.getValue();
+                    categories.merge(e.getKey().category(), e.getValue(), Long::sum);
+                }
+            }
+            categories.values().removeIf(cents -> cents == 0);
+            return new RangeSum(totalCents, categories);
+        }
+
+        /**
+         * 日期 → 位置，截断到 [0, days]
+         */
+        private int position(LocalDate date) {
+            long day = date.toEpochDay() - baseDay;
+            return (int) Math.max(0, Math.min(days, day));
+        }
+    }
+
+    @Override
+    public void onInvoiceAdded(InvoiceData row) {
+        record(row, 1);
+    }
+
+    @Override
+    public void onInvoiceRemoved(InvoiceData row) {
+        record(row, -1);
+    }
+
+    /**
+     * 查询区间 [from, to) 的消费额，O(分类数 × log 天数)
+     *
+     * @param userId 用户 ID
+     * @param from   起始日期 (含)
+     * @param to     结束日期 (不含)
+     * @return 区间合计及各分类金额
+     */
+    public RangeSum rangeSum(Long userId, LocalDate from, LocalDate to) {
+        return query(userId, index -> index.sum(from, to));
+    }
+
+    /**
+     * 查询区间 [from, to) 与紧邻其前、长度相同的区间的消费额 (同一时刻的索引状态)
+     *
+     * @param userId 用户 ID
+     * @param from   本期起始日期 (含)
+     * @param to     本期结束日期 (不含)
+     * @return [本期, 上期]
+     */
+    public RangeSum[] compare(Long userId, LocalDate from, LocalDate to) {
+        LocalDate previousFrom = from.minusDays(to.toEpochDay() - from.toEpochDay());
+        return query(userId, index -> new RangeSum[]{index.sum(from, to), index.sum(previousFrom, from)});
+    }
+
+    /**
+     * 定时释放长时间未查询的索引
+     */
+    @Scheduled(fixedDelayString = "${smartdoc.spend-index.sweep-ms:60000}")
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleMinutes * 60_000;
+        for (Long userId : slots.keySet()) {
+            slots.computeIfPresent(userId, (id, slot) -> {
+                synchronized (slot) {
+                    if (slot.lastAccess < deadline) {
+                        slot.index = null;
+                    }
+                    if (slot.index == null && slot.pending == 0) {
+                        slot.removed = true;
+                        return null;
+                    }
+                    return slot;
+                }
+            });
+        }
+    }
+
+    /**
+     * 在索引上执行查询，索引不存在时先加载
+     */
+    private <T> T query(Long userId, Function<UserIndex, T> action) {
+        long now = System.currentTimeMillis();
+        Object hit = withSlot(userId, slot -> {
+            slot.lastAccess = now;
+            return slot.index != null ? action.apply(slot.index)
+                    : new Ticket(slot, slot.pending == 0, slot.completed);
+        });
+        if (!(hit instanceof Ticket ticket)) {
+            @SuppressWarnings("unchecked")
+            T result = (T) hit;
+            return result;
+        }
+
+        UserIndex loaded = load(userId);
+        return withSlot(userId, slot -> {
+            // 加载期间没有任何写操作时才发布，否则只用于本次请求
+            if (slot == ticket.slot() && ticket.clean() && slot.pending == 0 && slot.completed == ticket.completed()) {
+                slot.index = loaded;
+            }
+            return action.apply(loaded);
+        });
+    }
+
+    /**
+     * 在事务内登记写操作，事务提交后更新索引
+     */
+    private void record(InvoiceData row, int sign) {
+        if (row.getDate() == null || row.getAmountCents() == null) return;
+
+        LocalDate date = row.getDate();
+        String category = MonthlyStatsService.categoryOf(row);
+        long cents = sign * row.getAmountCents();
+
+        // pending > 0 的槽位不会被淘汰，事务结束前可以直接持有引用
+        Slot slot = withSlot(row.getUserId(), s -> {
+            s.pending++;
+            return s;
+        });
+        TransactionUtil.afterCompletion(committed -> {
+            synchronized (slot) {
+                slot.pending--;
+                if (!committed) return;
+                slot.completed++;
+                if (slot.index != null && !slot.index.add(date, category, cents)) {
+                    slot.index = null;  // 超出索引范围，下次查询重新加载
+                }
+            }
+        });
+    }
+
+    /**
+     * 在用户槽位的锁内执行操作 (槽位恰好被淘汰时重新获取)
+     */
+    private <T> T withSlot(Long userId, Function<Slot, T> action) {
+        while (true) {
+            Slot slot = slots.computeIfAbsent(userId, id -> new Slot());
+            synchronized (slot) {
+                if (!slot.removed) {
+                    return action.apply(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * 由用户快照构建日消费索引 (只统计有开票日期和金额的票据，空分类归入 "其他")
+     */
+    private UserIndex load(Long userId) {
+        UserSnapshot snapshot = userSnapshotService.get(userId);
+
+        LocalDate now = LocalDate.now();
+        long today = now.toEpochDay();
+        long windowStart = now.minusYears(maxYears).toEpochDay();
+        long windowEnd = now.plusYears(maxYears).toEpochDay() + 1;
+        long min = today;
+        long max = today;
+        for (int i = 0; i < snapshot.size; i++) {
+            int day = snapshot.days[i];
+            if (day == UserSnapshot.NO_DATE || day < windowStart || day >= windowEnd) continue;
+            min = Math.min(min, day);
+            max = Math.max(max, day);
+        }
+        long baseDay = Math.max(windowStart, min - HEADROOM_DAYS);
+        int size = (int) (Math.min(windowEnd, max + HEADROOM_DAYS) - baseDay);
+
+        long[] totals = new long[size];
+        long[][] byCategoryId = new long[snapshot.categories.length][];
+        Map<Outlier, Long> outliers = new HashMap<>();
+        for (int i = 0; i < snapshot.size; i++) {
+            if (snapshot.days[i] == UserSnapshot.NO_DATE || snapshot.amounts[i] == UserSnapshot.NO_AMOUNT) continue;
+            if (snapshot.days[i] < windowStart || snapshot.days[i] >= windowEnd) {
+                outliers.merge(new Outlier(snapshot.days[i], categoryName(snapshot.categories[snapshot.categoryIds[i]])),
+                        snapshot.amounts[i], (a, b) -> a + b == 0 ? null : a + b);
+                continue;
+            }
+            int pos = (int) (snapshot.days[i] - baseDay);
+            int c = snapshot.categoryIds[i];
+            if (byCategoryId[c] == null) byCategoryId[c] = new long[size];
+            totals[pos] += snapshot.amounts[i];
+            byCategoryId[c][pos] += snapshot.amounts[i];
+        }
+
+        // 按分类名合并 (null 与空字符串都归入 "其他")
+        Map<String, long[]> byCategory = new HashMap<>();
+        for (int c = 0; c < byCategoryId.length; c++) {
+            if (byCategoryId[c] == null) continue;
+            String name = categoryName(snapshot.categories[c]);
+            long[] values = byCategory.get(name);
+            if (values == null) {
+                byCategory.put(name, byCategoryId[c]);
+            } else {
+                for (int d = 0; d < size; d++) values[d] += byCategoryId[c][d];
+            }
+        }
+        return new UserIndex(baseDay, size, windowStart, windowEnd, totals, byCategory, outliers);
+    }
+
+    private static String categoryName(String category) {
+        return category == null || category.isEmpty() ? "其他" : category;
+    }
+}
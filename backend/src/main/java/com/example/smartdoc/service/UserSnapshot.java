@@ -0,0 +1,138 @@
+package com.example.smartdoc.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户票据的列式快照 - 各统计接口共用的只读内存数据
+ *
+ * <p>每张有效票据占一个下标 i，各列分别存放在原始数组中:</p>
+ * <pre>
+ * amounts[i]      金额 (分)，缺失时为 {@link #NO_AMOUNT}
+ * days[i]         开票日期的 epochDay，缺失时为 {@link #NO_DATE}
+ * categoryIds[i]  分类在 categories 字典中的下标
+ * merchantIds[i]  商户在 merchants 字典中的下标
+ * </pre>
+ * <p>分类与商户做字典编码，重复的字符串只保存一份，聚合时按 int 下标分组。
+ * 字典中可能包含 null (分类或商户为空的票据)。行按 (开票日期, id) 升序排列。</p>
+ *
+ * <p>快照构建后不再修改，可在多个请求和线程之间共享；调用方不得修改数组内容。</p>
+ *
+ * @author SmartDoc Team
+ * @see UserSnapshotService
+ */
+public final class UserSnapshot {
+
+    /** 开票日期缺失 */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** 金额缺失 */
+    public static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    /** 构建时读取的数据版本号 */
+    public final long version;
+
+    /** 票据数量 */
+    public final int size;
+
+    /** 金额 (分) */
+    public final long[] amounts;
+
+    /** 开票日期 (epochDay) */
+    public final int[] days;
+
+    /** 分类下标 */
+    public final int[] categoryIds;
+
+    /** 商户下标 */
+    public final int[] merchantIds;
+
+    /** 分类字典 */
+    public final String[] categories;
+
+    /** 商户字典 */
+    public final String[] merchants;
+
+    /** 估算的内存占用 (字节) */
+    public final long bytes;
+
+    private UserSnapshot(long version, int size, long[] amounts, int[] days, int[] categoryIds, int[] merchantIds,
+                         String[] categories, String[] merchants) {
+        this.version = version;
+        this.size = size;
+        this.amounts = amounts;
+        this.days = days;
+        this.categoryIds = categoryIds;
+        this.merchantIds = merchantIds;
+        this.categories = categories;
+        this.merchants = merchants;
+        this.bytes = 64 + (long) size * (8 + 4 + 4 + 4) + dictionaryBytes(categories) + dictionaryBytes(merchants);
+    }
+
+    /**
+     * 估算字典占用: 每个字符串约 40 字节对象头 + 每字符 2 字节 (按 UTF-16 保守估算)
+     */
+    private static long dictionaryBytes(String[] dictionary) {
+        long bytes = 16 + 8L * dictionary.length;
+        for (String s : dictionary) {
+            if (s != null) bytes += 40 + 2L * s.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * 逐行构建快照
+     */
+    static final class Builder {
+        private final long version;
+        private int size;
+        private long[] amounts = new long[64];
+        private int[] days = new int[64];
+        private int[] categoryIds = new int[64];
+        private int[] merchantIds = new int[64];
+        private final Map<String, Integer> categoryIndex = new HashMap<>();
+        private final Map<String, Integer> merchantIndex = new HashMap<>();
+
+        Builder(long version) {
+            this.version = version;
+        }
+
+        /**
+         * 追加一张票据
+         *
+         * @param date     开票日期，可为 null
+         * @param cents    金额 (分)，可为 null
+         * @param category 分类，可为 null
+         * @param merchant 商户，可为 null
+         */
+        void add(LocalDate date, Long cents, String category, String merchant) {
+            if (size == amounts.length) {
+                int capacity = size * 2;
+                amounts = Arrays.copyOf(amounts, capacity);
+                days = Arrays.copyOf(days, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                merchantIds = Arrays.copyOf(merchantIds, capacity);
+            }
+            amounts[size] = cents == null ? NO_AMOUNT : cents;
+            days[size] = date == null ? NO_DATE : (int) date.toEpochDay();
+            categoryIds[size] = categoryIndex.computeIfAbsent(category, k -> categoryIndex.size());
+            merchantIds[size] = merchantIndex.computeIfAbsent(merchant, k -> merchantIndex.size());
+            size++;
+        }
+
+        UserSnapshot build() {
+            return new UserSnapshot(version, size,
+                    Arrays.copyOf(amounts, size), Arrays.copyOf(days, size),
+                    Arrays.copyOf(categoryIds, size), Arrays.copyOf(merchantIds, size),
+                    dictionary(categoryIndex), dictionary(merchantIndex));
+        }
+
+        private static String[] dictionary(Map<String, Integer> index) {
+            String[] dictionary = new String[index.size()];
+            index.forEach((value, id) -> dictionary[id] = value);
+            return dictionary;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.smartdoc.service;
+
+import java.sql.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+/**
+ * 用户快照服务 - 一次查询构建用户的列式快照，供各统计接口共用
+ *
+ * <p>仪表盘一次加载会同时请求知识图谱、聚类、区间消费等接口。各接口不再各自查询票据，
+ * 而是读取同一份 {@link UserSnapshot}，每个用户的数据在变化之前只从数据库读取一次。</p>
+ *
+ * <h3>使用方:</h3>
+ * <ul>
+ *   <li>KnowledgeGraphService - 按 (分类, 商户) 聚合</li>
+ *   <li>ClusteringService - (几号, 金额) 数据点，/clustering 与 /analyze-clustering 共用</li>
+ *   <li>SpendIndexService - 按天建树状数组</li>
+ * </ul>
+ * <p>趋势预测读取的是按月预聚合的 stat_monthly_spend (只有 O(月份数) 行)，不经过快照。</p>
+ *
+ * <h3>失效:</h3>
+ * <p>快照带有构建时的数据版本号；票据写入使版本号前进后，下次读取自动重建。
+ * 同一用户的并发请求只构建一次。</p>
+ *
+ * <h3>内存上限:</h3>
+ * <p>所有快照按估算的字节数计入总量，超过 max-bytes 时按最近最少使用的顺序淘汰。
+ * 单个快照就超过上限时只返回给本次调用、不缓存。</p>
+ *
+ * <h3>配置项:</h3>
+ * <pre>
+ * smartdoc.snapshot.max-bytes=67108864  (默认值，64 MB)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see UserSnapshot
+ * @see DataVersionService
+ */
+@Service
+public class UserSnapshotService {
+
+    /** 缓存的快照总字节数上限 */
+    @Value("${smartdoc.snapshot.max-bytes:67108864}")
+    private long maxBytes;
+
+    /** JDBC 模板 - 只读取四列原始值，不加载实体 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** 数据版本服务 - 判断快照是否过期 */
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    /** 用户 ID → 快照，按访问顺序 (LRU)；所有访问都在 synchronized (cache) 内进行 */
+    private final LinkedHashMap<Long, UserSnapshot> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** 已缓存快照的字节数之和 (由 cache 的锁保护) */
+    private long cachedBytes = 0;
+
+    /** 正在构建的用户 → 结果 (合并同一用户的并发请求) */
+    private final ConcurrentHashMap<Long, CompletableFuture<UserSnapshot>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 获取用户的快照，数据未变化时直接返回缓存
+     *
+     * @param userId 用户 ID
+     * @return 快照 (只读)
+     */
+    public UserSnapshot get(Long userId) {
+        // 版本号在查询之前读取: 查询期间提交的写操作会让版本号前进，下次读取自然重建
+        long version = dataVersionService.getVersion(userId);
+        synchronized (cache) {
+            UserSnapshot cached = cache.get(userId);
+            if (cached != null) {
+                if (cached.version == version) {
+                    return cached;
+                }
+                remove(userId);
+            }
+        }
+
+        CompletableFuture<UserSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<UserSnapshot> running = inflight.putIfAbsent(userId, mine);
+        if (running != null) {
+            UserSnapshot shared = running.join();
+            if (shared.version >= version) {
+                return shared;
+            }
+            return build(userId, version);  // 正在构建的快照早于本次读取的版本，自行构建
+        }
+        try {
+            UserSnapshot snapshot = build(userId, version);
+            put(userId, snapshot);
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (Throwable e) {
+            // 包括 Error (如 OutOfMemoryError): 否则等待同一 future 的请求会一直阻塞
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(userId, mine);
+        }
+    }
+
+    /**
+     * 从数据库构建快照
+     */
+    private UserSnapshot build(Long userId, long version) {
+        UserSnapshot.Builder builder = new UserSnapshot.Builder(version);
+        jdbcTemplate.query(
+                "SELECT invoice_date, amount_cents, category, merchant_name FROM invoice_record " +
+                "WHERE user_id = ? AND is_deleted = 0 ORDER BY invoice_date, id",
+                (RowCallbackHandler) rs -> {
+                    Date date = rs.getDate(1);
+                    long cents = rs.getLong(2);
+                    Long amount = rs.wasNull() ? null : cents;
+                    builder.add(date == null ? null : date.toLocalDate(), amount, rs.getString(3), rs.getString(4));
+                },
+                userId);
+        return builder.build();
+    }
+
+    /**
+     * 放入缓存并按内存上限淘汰
+     */
+    private void put(Long userId, UserSnapshot snapshot) {
+        if (snapshot.bytes > maxBytes) {
+            return;
+        }
+        synchronized (cache) {
+            UserSnapshot old = cache.get(userId);
+            if (old != null && old.version > snapshot.version) {
+                return;  // 已有更新的快照
+            }
+            remove(userId);
+            cache.put(userId, snapshot);
+            cachedBytes += snapshot.bytes;
+
+            Iterator<Map.Entry<Long, UserSnapshot>> it = cache.entrySet().iterator();
+            while (cachedBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Long, UserSnapshot> eldest = it.next();
+                cachedBytes -= eldest.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 移除缓存 (调用方持有 cache 的锁)
+     */
+    private void remove(Long userId) {
+        UserSnapshot old = cache.remove(userId);
+        if (old != null) {
+            cachedBytes -= old.bytes;
+        }
+    }
+}
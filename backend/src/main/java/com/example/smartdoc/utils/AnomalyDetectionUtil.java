@@ -1,7 +1,5 @@
 package com.example.smartdoc.utils;
 
-import java.util.List;
-
 /**
  * 异常检测工具类 - 基于 Z-Score 算法的异常值检测
  * 
@@ -24,6 +22,10 @@ import java.util.List;
  * <p>在发票保存时，将新发票金额与历史同类别金额对比，
  * 自动标记异常高或低的发票，提醒用户关注。</p>
  * 
+ * <p>输入为以 "分" 为单位的 long 数组：求和是精确的整数运算，
+ * 循环中没有装箱拆箱和对象分配。求和与离差平方和由 {@link StatKernels} 计算，
+ * 运行环境支持时使用 SIMD 指令。</p>
+ * 
  * @author SmartDoc Team
  * @see com.example.smartdoc.controller.DocController#saveInvoice
  */
@@ -33,16 +35,12 @@ public class AnomalyDetectionUtil {
      * 计算均值 (Mean)
      * <p>均值是所有数据的算术平均，代表数据的"中心位置"。</p>
      * 
-     * @param data 数值列表
-     * @return 均值，空列表返回 0.0
+     * @param data 金额数组 (分)
+     * @return 均值 (分)，空数组返回 0.0
      */
-    public static double calculateMean(List<Double> data) {
-        if (data == null || data.isEmpty()) return 0.0;
-        double sum = 0.0;
-        for (Double num : data) {
-            sum += num;
-        }
-        return sum / data.size();
+    public static double calculateMean(long[] data) {
+        if (data == null || data.length == 0) return 0.0;
+        return (double) MoneyUtil.sum(data) / data.length;
     }
 
     /**
@@ -55,17 +53,13 @@ public class AnomalyDetectionUtil {
      * </pre>
      * <p>注意：这里使用样本标准差 (n-1)，而非总体标准差 (n)。</p>
      * 
-     * @param data 数值列表
+     * @param data 金额数组 (分)
      * @param mean 预先计算的均值
-     * @return 标准差，数据不足返回 0.0
+     * @return 标准差 (分)，数据不足返回 0.0
      */
-    public static double calculateStdDev(List<Double> data, double mean) {
-        if (data == null || data.size() < 2) return 0.0;
-        double temp = 0;
-        for (Double a : data) {
-            temp += (a - mean) * (a - mean);
-        }
-        return Math.sqrt(temp / (data.size() - 1));
+    public static double calculateStdDev(long[] data, double mean) {
+        if (data == null || data.length < 2) return 0.0;
+        return Math.sqrt(StatKernels.sumSquaredDeviations(data, mean) / (data.length - 1));
     }
 
     /**
@@ -0,0 +1,104 @@
+package com.example.smartdoc.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * 预算超支模拟 - 用历史日消费的自助重采样 (bootstrap) 估计月底超支概率
+ *
+ * <h3>模拟方法:</h3>
+ * <pre>
+ * 每条路径: 月底总额 = 本月已消费 + Σ (剩余每一天从历史日消费中有放回地随机抽取一天)
+ * 超支概率 = 月底总额 > 预算上限 的路径数 / 路径总数
+ * </pre>
+ * <p>历史日消费包含没有消费的日子 (金额为 0)，因此抽样同时反映了消费频率和单日金额；
+ * 各天独立抽样，不考虑星期几等季节性。</p>
+ *
+ * <h3>并行:</h3>
+ * <p>路径按 {@value #CHUNK_PATHS} 条一块，各块在调用方所在的 ForkJoinPool 中并行计算。
+ * 每块使用自己的 {@link SplittableRandom} (在提交之前由根生成器依次 split 得到)，
+ * 只写自己的结果区间，块之间没有共享的可变状态；
+ * 同一个种子的结果与线程数和调度顺序无关。</p>
+ *
+ * <p>标准误差 ≈ √(p(1-p) / 路径数)，10000 条路径时不超过 0.5 个百分点。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.BudgetRiskService
+ */
+public class BudgetSimulator {
+
+    /** 每个并行块的路径数 */
+    private static final int CHUNK_PATHS = 1024;
+
+    /**
+     * 模拟结果 (金额单位: 分)
+     *
+     * @param paths       路径数
+     * @param probability 超支概率 [0, 1]
+     * @param mean        月底总额的期望
+     * @param p50         月底总额的中位数
+     * @param p90         月底总额的 90% 分位数
+     * @param p95         月底总额的 95% 分位数
+     */
+    public record Result(int paths, double probability, long mean, long p50, long p90, long p95) {
+    }
+
+    /**
+     * 模拟剩余天数的消费并估计超支概率
+     *
+     * @param daily         历史日消费 (分)，每个元素是一天的合计，不能为空
+     * @param spent         本期已消费 (分)
+     * @param limit         预算上限 (分)
+     * @param remainingDays 剩余天数 (≥ 0)
+     * @param paths         路径数 (≥ 1)
+     * @param seed          随机种子
+     * @return 模拟结果
+     */
+    public static Result simulate(long[] daily, long spent, long limit, int remainingDays, int paths, long seed) {
+        if (daily.length == 0 || paths < 1 || remainingDays < 0) {
+            throw new IllegalArgumentException("历史数据为空或参数无效");
+        }
+
+        int chunks = (paths + CHUNK_PATHS - 1) / CHUNK_PATHS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            randoms[c] = root.split();
+        }
+
+        long[] totals = new long[paths];
+        int[] overruns = new int[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            SplittableRandom random = randoms[c];
+            int from = c * CHUNK_PATHS;
+            int to = Math.min(from + CHUNK_PATHS, paths);
+            int over = 0;
+            for (int p = from; p < to; p++) {
+                long total = spent;
+                for (int d = 0; d < remainingDays; d++) {
+                    total += daily[random.nextInt(daily.length)];
+                }
+                totals[p] = total;
+                if (total > limit) over++;
+            }
+            overruns[c] = over;
+        });
+
+        int over = 0;
+        for (int o : overruns) over += o;
+        double sum = 0;
+        for (long t : totals) sum += t;
+        Arrays.sort(totals);
+        return new Result(paths, (double) over / paths, Math.round(sum / paths),
+                quantile(totals, 0.5), quantile(totals, 0.9), quantile(totals, 0.95));
+    }
+
+    /**
+     * 已排序数组的分位数 (最近秩)
+     */
+    private static long quantile(long[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.smartdoc.utils;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 日期解析工具类 - 将 OCR 识别或历史数据中的各种日期写法规范为 {@link LocalDate}
+ * 
+ * <h3>支持的格式:</h3>
+ * <pre>
+ * 2024-01-15 / 2024-1-5
+ * 2024/01/15 / 2024.01.15
+ * 2024年01月15日
+ * 20240115
+ * 2024-01-15 10:30:00 (忽略时间部分)
+ * </pre>
+ *
+ * <p>{@link #parseIso} 只接受严格的 yyyy-MM-dd，与数据库脚本中
+ * {@code STR_TO_DATE(TRIM(date), '%Y-%m-%d')} 加正则过滤的结果完全一致，
+ * 用于汇总表在开票日期回填之前对旧数据的口径。</p>
+ * 
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.job.InvoiceDateBackfillJob
+ */
+public class DateParseUtil {
+
+    /** 年-月-日 (分隔符已统一为 "-") */
+    private static final Pattern YMD = Pattern.compile("(\\d{4})-(\\d{1,2})-(\\d{1,2})");
+
+    /** 紧凑格式 yyyyMMdd */
+    private static final Pattern COMPACT = Pattern.compile("^(\\d{4})(\\d{2})(\\d{2})$");
+
+    /** 严格的 yyyy-MM-dd (首尾空格与 MySQL TRIM 一致，只去掉空格) */
+    private static final Pattern ISO = Pattern.compile("^ *(\\d{4})-(\\d{2})-(\\d{2}) *$");
+
+    /**
+     * 解析日期字符串
+     * 
+     * @param text 原始日期字符串
+     * @return 解析结果，为空或无法识别 (包括 2月30日 这类非法日期) 时返回 null
+     */
+    public static LocalDate parse(String text) {
+        if (text == null) return null;
+        String s = text.trim();
+        if (s.isEmpty()) return null;
+
+        // 统一分隔符: 年/月/斜杠/点 → "-"，去掉 "日"
+        String normalized = s.replaceAll("[年月/.]", "-").replace("日", "");
+
+        Matcher m = YMD.matcher(normalized);
+        if (!m.find()) {
+            m = COMPACT.matcher(s);
+            if (!m.find()) return null;
+        }
+
+        return toDate(m);
+    }
+
+    /**
+     * 只解析严格的 yyyy-MM-dd (允许首尾空格)
+     *
+     * @param text 原始日期字符串
+     * @return 解析结果，格式不符或日期非法时返回 null
+     */
+    public static LocalDate parseIso(String text) {
+        if (text == null) return null;
+        Matcher m = ISO.matcher(text);
+        return m.find() ? toDate(m) : null;
+    }
+
+    /**
+     * 由 (年, 月, 日) 三个分组构造日期，非法日期返回 null
+     */
+    private static LocalDate toDate(Matcher m) {
+        try {
+            return LocalDate.of(
+                    Integer.parseInt(m.group(1)),
+                    Integer.parseInt(m.group(2)),
+                    Integer.parseInt(m.group(3)));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
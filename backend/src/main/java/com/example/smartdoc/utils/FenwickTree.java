@@ -0,0 +1,102 @@
+package com.example.smartdoc.utils;
+
+/**
+ * 树状数组 (Fenwick Tree / Binary Indexed Tree) - O(log n) 的单点修改与前缀求和
+ *
+ * <p>用一个长度为 n+1 的 long 数组表示 n 个位置上的数值。tree[i] 保存区间
+ * (i - lowbit(i), i] 的和，其中 lowbit(i) = i &amp; -i 是 i 的最低位 1:</p>
+ * <pre>
+ * 单点修改 add(i, d):  for (j = i+1; j ≤ n; j += lowbit(j)) tree[j] += d
+ * 前缀求和 prefix(i):  for (j = i;   j &gt; 0; j -= lowbit(j)) sum += tree[j]     (位置 [0, i) 之和)
+ * 区间求和 [l, r)   =  prefix(r) - prefix(l)
+ * </pre>
+ * <p>两种操作都只访问 O(log n) 个数组元素。金额以分为单位的 long 存储，求和是精确的整数运算。</p>
+ *
+ * <p>本类不是线程安全的，并发访问由调用方加锁。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.SpendIndexService
+ */
+public class FenwickTree {
+
+    /** tree[1..n]，tree[0] 不使用 */
+    private final long[] tree;
+
+    /**
+     * 创建全为 0 的树状数组
+     *
+     * @param size 位置数量 n
+     */
+    public FenwickTree(int size) {
+        this.tree = new long[size + 1];
+    }
+
+    /**
+     * 由各位置的初始值 O(n) 建树
+     *
+     * <p>每个节点把自己的值累加到父节点 (i + lowbit(i))，一次遍历完成，
+     * 比逐个调用 {@link #add} 的 O(n log n) 更快。</p>
+     *
+     * @param values 各位置的初始值 (不会被修改)
+     * @return 树状数组
+     */
+    public static FenwickTree of(long[] values) {
+        FenwickTree t = new FenwickTree(values.length);
+        long[] tree = t.tree;
+        System.arraycopy(values, 0, tree, 1, values.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @return 位置数量 n
+     */
+    public int size() {
+        return tree.length - 1;
+    }
+
+    /**
+     * 位置 index 的值加上 delta
+     *
+     * @param index 位置，取值 [0, n)
+     * @param delta 增量
+     */
+    public void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * 前缀和
+     *
+     * @param end 结束位置 (不含)，超出 [0, n] 时截断
+     * @return 位置 [0, end) 的和
+     */
+    public long prefixSum(int end) {
+        long sum = 0;
+        for (int i = Math.min(end, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 区间和
+     *
+     * @param from 起始位置 (含)
+     * @param to   结束位置 (不含)
+     * @return 位置 [from, to) 的和，from ≥ to 时为 0
+     */
+    public long rangeSum(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        return prefixSum(to) - prefixSum(Math.max(from, 0));
+    }
+}
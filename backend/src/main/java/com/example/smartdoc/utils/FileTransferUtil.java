@@ -0,0 +1,180 @@
+package com.example.smartdoc.utils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 文件传输工具类 - 支持 ETag 协商缓存和 Range 断点续传的文件下载
+ *
+ * <p>用于把磁盘上已生成好的文件直接发送给客户端，避免把整个文件读入堆内存。</p>
+ *
+ * <h3>传输方式:</h3>
+ * <ul>
+ *   <li>Tomcat 开启 sendfile 且调用方允许时: 交给容器用操作系统 sendfile 零拷贝发送</li>
+ *   <li>否则: 使用 {@link FileChannel#transferTo} 直接写入响应通道</li>
+ * </ul>
+ * <p>注意: 容器 sendfile 在 Servlet 返回之后 (包括 ServletRequestListener#requestDestroyed 之后)
+ * 才打开文件发送。发送期间可能被删除或替换的文件 (如带租约的缓存文件) 必须传
+ * {@code containerSendfile = false}，在调用返回前同步写完。</p>
+ *
+ * <h3>支持的请求头:</h3>
+ * <pre>
+ * If-None-Match: "etag"     → 命中返回 304 Not Modified
+ * Range: bytes=0-1023       → 返回 206 Partial Content
+ * Range: bytes=1024-        → 从 1024 字节到末尾
+ * Range: bytes=-500         → 最后 500 字节
+ * If-Range: "etag"          → ETag 不一致时忽略 Range，返回完整文件
+ * </pre>
+ * <p>多段 Range (如 bytes=0-10,20-30) 不支持，按规范忽略并返回完整文件。</p>
+ *
+ * @author SmartDoc Team
+ */
+public class FileTransferUtil {
+
+    /** Tomcat sendfile 相关的请求属性 */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 发送文件，容器支持时使用 sendfile (调用前需自行设置 Content-Type 和 Content-Disposition)
+     *
+     * @param request  HTTP 请求
+     * @param response HTTP 响应
+     * @param file     待发送的文件 (Servlet 返回后仍须保持存在)
+     * @param etag     强校验 ETag (带双引号)
+     * @throws IOException 读写失败
+     */
+    public static void sendFile(HttpServletRequest request, HttpServletResponse response,
+                                Path file, String etag) throws IOException {
+        sendFile(request, response, file, etag, true);
+    }
+
+    /**
+     * 发送文件 (调用前需自行设置 Content-Type 和 Content-Disposition)
+     *
+     * @param request           HTTP 请求
+     * @param response          HTTP 响应
+     * @param file              待发送的文件
+     * @param etag              强校验 ETag (带双引号)
+     * @param containerSendfile 是否允许交给容器 sendfile；false 时在本方法返回前写完全部内容
+     * @throws IOException 读写失败
+     */
+    public static void sendFile(HttpServletRequest request, HttpServletResponse response,
+                                Path file, String etag, boolean containerSendfile) throws IOException {
+        long length = Files.size(file);
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        // 1. 协商缓存: 客户端持有的版本与当前一致则无需传输
+        if (etagMatches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 2. 解析 Range (If-Range 与当前 ETag 不一致时按完整下载处理)
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader("Content-Range", "bytes */" + length);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count <= 0) return;
+
+        // 3. 零拷贝: 容器支持 sendfile 时由 Tomcat 直接从文件发送
+        if (containerSendfile && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);  // Tomcat 的 end 为开区间
+            return;
+        }
+
+        // 4. 兜底: FileChannel.transferTo 写入响应输出通道
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, out);
+                if (sent <= 0) break;
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+
+    /**
+     * 判断 If-None-Match 是否命中 (支持逗号分隔的多个 ETag 和 *)
+     */
+    private static boolean etagMatches(String header, String etag) {
+        if (header == null) return false;
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals("*") || c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解析单段 Range 请求头
+     *
+     * @param header Range 请求头
+     * @param length 文件总长度
+     * @return [start, end] (闭区间)；空数组表示忽略 Range 返回完整文件；null 表示范围无法满足 (416)
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=")) return new long[0];
+        String spec = header.substring("bytes=".length()).trim();
+        if (spec.contains(",")) return new long[0];  // 多段 Range 不支持
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // 后缀形式: bytes=-500 表示最后 500 字节
+                if (last.isEmpty()) return new long[0];
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];  // 格式错误按规范忽略
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.smartdoc.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 散点网格分箱工具类 - 把聚类散点聚合为二维网格
+ *
+ * <p>票据较多时逐点返回散点既占带宽、前端也画不清。本工具把 (日期, 金额) 平面划分为
+ * xBins × yBins 个格子，统计每个格子中各聚类的点数，以及不分聚类的总密度 (热力图)。
+ * 响应大小只与网格大小和 k 有关，与票据数无关。</p>
+ *
+ * <h3>计算过程:</h3>
+ * <pre>
+ * 1. 扫描一次得到金额的取值范围 (日期轴固定为 1 ~ 31 号)
+ * 2. 再扫描一次，按 (列, 行, 聚类) 在 int[] 计数器上累加，同时累加总密度
+ * 3. 只输出计数不为 0 的格子
+ * </pre>
+ * <p>全程只读写原始数组，不创建逐点对象。</p>
+ *
+ * <h3>返回结构 (直接绑定 ECharts heatmap / scatter):</h3>
+ * <pre>
+ * {
+ *   "grid":    {"xBins": 31, "yBins": 20, "xMin": 1, "xMax": 32, "yMin": 0.5, "yMax": 3200.0},
+ *   "bins":    [[列, 行, 聚类, 点数], ...],
+ *   "density": [[列, 行, 点数], ...]
+ * }
+ * </pre>
+ * <p>格子 (列 i, 行 j) 覆盖 [xMin + i·Δx, xMin + (i+1)·Δx) × [yMin + j·Δy, yMin + (j+1)·Δy)，
+ * 取值恰好等于 yMax 的点计入最后一行。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.StatsController#getClustering
+ */
+public class GridBinningUtil {
+
+    /** 日期轴范围 [1, 32)，即 1 ~ 31 号 */
+    private static final double DAY_MIN = 1;
+    private static final double DAY_MAX = 32;
+
+    /**
+     * 对二维聚类数据分箱
+     *
+     * @param data   数据点 [日期0, 金额0, 日期1, 金额1, ...]
+     * @param labels 每个点的聚类索引
+     * @param k      聚类数量
+     * @param xBins  日期轴格子数
+     * @param yBins  金额轴格子数
+     * @return 网格描述、各聚类的非空格子和总密度
+     */
+    public static Map<String, Object> bin(double[] data, int[] labels, int k, int xBins, int yBins) {
+        int n = labels.length;
+
+        // 1. 金额范围
+        double yMin = Double.POSITIVE_INFINITY;
+        double yMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double y = data[2 * i + 1];
+            if (y < yMin) yMin = y;
+            if (y > yMax) yMax = y;
+        }
+        if (n == 0) {
+            yMin = 0;
+            yMax = 0;
+        }
+
+        // 2. 分箱计数: counts[(行 * xBins + 列) * k + 聚类]
+        double xScale = xBins / (DAY_MAX - DAY_MIN);
+        double yScale = yMax > yMin ? yBins / (yMax - yMin) : 0;
+        int cells = xBins * yBins;
+        int[] counts = new int[cells * k];
+        int[] density = new int[cells];
+        for (int i = 0; i < n; i++) {
+            int col = clamp((int) ((data[2 * i] - DAY_MIN) * xScale), xBins);
+            int row = clamp((int) ((data[2 * i + 1] - yMin) * yScale), yBins);
+            int cell = row * xBins + col;
+            counts[cell * k + labels[i]]++;
+            density[cell]++;
+        }
+
+        // 3. 输出非空格子
+        List<int[]> bins = new ArrayList<>();
+        List<int[]> heat = new ArrayList<>();
+        for (int cell = 0; cell < cells; cell++) {
+            if (density[cell] == 0) continue;
+            int col = cell % xBins;
+            int row = cell / xBins;
+            heat.add(new int[]{col, row, density[cell]});
+            for (int c = 0; c < k; c++) {
+                int count = counts[cell * k + c];
+                if (count > 0) {
+                    bins.add(new int[]{col, row, c, count});
+                }
+            }
+        }
+
+        Map<String, Object> grid = new HashMap<>();
+        grid.put("xBins", xBins);
+        grid.put("yBins", yBins);
+        grid.put("xMin", DAY_MIN);
+        grid.put("xMax", DAY_MAX);
+        grid.put("yMin", yMin);
+        grid.put("yMax", yMax);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("grid", grid);
+        result.put("bins", bins);
+        result.put("density", heat);
+        return result;
+    }
+
+    /**
+     * 把格子下标限制在 [0, bins) 内 (越界的点归入边缘格子)
+     */
+    private static int clamp(int index, int bins) {
+        return index < 0 ? 0 : (index >= bins ? bins - 1 : index);
+    }
+}
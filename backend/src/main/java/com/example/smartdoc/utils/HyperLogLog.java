@@ -0,0 +1,265 @@
+package com.example.smartdoc.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog - 可合并的去重计数草图 (Flajolet 等, 2007)
+ *
+ * <p>把每个元素哈希为 64 位，高 p 位选择寄存器，其余位中第一个 1 出现的位置 ρ
+ * 与寄存器取最大值。去重计数由全部寄存器的调和平均估计，与元素个数无关，
+ * 内存固定为 m = 2^p 字节。</p>
+ *
+ * <h3>误差:</h3>
+ * <pre>
+ * 相对标准误差 ≈ 1.04 / √m
+ * p = 14 (m = 16384): ≈ 0.81%，约 95% 的估计落在真实值 ±1.6% 以内
+ * 估计值 ≤ 2.5m 且存在空寄存器时改用线性计数 m · ln(m / 空寄存器数)，小基数下几乎精确
+ * 两种估计的切换点附近 (约 2.5m ~ 5m) 原始估计有少量偏差，误差可能达到 2~3%
+ * </pre>
+ *
+ * <h3>合并:</h3>
+ * <p>两个草图逐个寄存器取最大值，结果与把两组元素加入同一个草图完全相同，
+ * 因此可以按月份、分类等维度分别维护，再合并出任意组合的去重计数。
+ * 加入已出现过的元素不会改变任何寄存器，重复加入是幂等的。</p>
+ *
+ * <p>序列化格式见 {@link #toBytes()}，非零寄存器较少时只保存非零寄存器。
+ * 草图不支持删除元素。</p>
+ *
+ * <p>本类不是线程安全的，并发访问由调用方加锁。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.DistinctCountService
+ */
+public class HyperLogLog {
+
+    /** 默认精度 p */
+    public static final int DEFAULT_PRECISION = 14;
+
+    /** 序列化格式版本号 */
+    private static final byte FORMAT = 1;
+
+    /** 序列化编码: 只保存非零寄存器 / 保存全部寄存器 */
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    /** 精度 p */
+    private final int precision;
+
+    /** 寄存器 (m = 2^p 个) */
+    private final byte[] registers;
+
+    /**
+     * 使用默认精度创建空草图
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * 创建空草图
+     *
+     * @param precision 精度 p [4, 18]，寄存器数 m = 2^p
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision 应在 [4, 18] 之间");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * 加入一个字符串元素
+     *
+     * @param value 元素
+     * @return 是否有寄存器发生变化 (未变化说明草图与加入前完全相同)
+     */
+    public boolean add(String value) {
+        // FNV-1a 逐字节累积后再做一次 64 位混合，保证高位分布均匀
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return addHash(mix(h));
+    }
+
+    /**
+     * 加入一个整数元素
+     *
+     * @param value 元素
+     * @return 是否有寄存器发生变化
+     */
+    public boolean add(long value) {
+        return addHash(mix(value * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L));
+    }
+
+    /**
+     * 加入一个已经哈希过的元素 (调用方负责保证 64 位哈希均匀分布)
+     *
+     * @param hash 64 位哈希
+     * @return 是否有寄存器发生变化
+     */
+    public boolean addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 低位补一个 1，ρ 最大为 64 - p + 1
+        byte rho = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rho > registers[index]) {
+            registers[index] = rho;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 合并另一个草图 (逐个寄存器取最大值)
+     *
+     * @param other 另一个草图 (精度必须相同)
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("精度不同的草图无法合并");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return 去重计数的估计值
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += Double.longBitsToDouble((1023L - r) << 52);  // 2^-r
+            if (r == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return 相对标准误差 1.04 / √m
+     */
+    public double relativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * @return 精度 p
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * 序列化
+     *
+     * <pre>
+     * [格式 byte][p byte][编码 byte]
+     * 稀疏: [非零寄存器数 varint]，每个: [与上一个寄存器编号的差 varint][值 byte]
+     * 稠密: m 个寄存器值
+     * </pre>
+     * <p>非零寄存器的稀疏编码每个约 2~3 字节，小于稠密编码时使用稀疏编码。</p>
+     *
+     * @return 字节数组
+     */
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte r : registers) {
+            if (r != 0) nonZero++;
+        }
+        if (nonZero * 3 >= registers.length) {
+            ByteBuffer buf = ByteBuffer.allocate(3 + registers.length);
+            buf.put(FORMAT).put((byte) precision).put(DENSE).put(registers);
+            return buf.array();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(3 + 5 + nonZero * 4);
+        buf.put(FORMAT).put((byte) precision).put(SPARSE);
+        putVarInt(buf, nonZero);
+        int last = 0;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                putVarInt(buf, i - last);
+                buf.put(registers[i]);
+                last = i;
+            }
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原草图
+     *
+     * @param bytes 字节数组
+     * @return 草图
+     * @throws IllegalArgumentException 格式无法识别或数据不完整
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            if (buf.get() != FORMAT) {
+                throw new IllegalArgumentException("无法识别的 HyperLogLog 格式");
+            }
+            HyperLogLog hll = new HyperLogLog(buf.get());
+            byte encoding = buf.get();
+            if (encoding == DENSE) {
+                buf.get(hll.registers);
+            } else if (encoding == SPARSE) {
+                int n = getVarInt(buf);
+                int index = 0;
+                for (int i = 0; i < n; i++) {
+                    index += getVarInt(buf);
+                    hll.registers[index] = buf.get();
+                }
+            } else {
+                throw new IllegalArgumentException("无法识别的 HyperLogLog 编码");
+            }
+            return hll;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("HyperLogLog 数据不完整", e);
+        }
+    }
+
+    /**
+     * 64 位混合函数 (MurmurHash3 fmix64)
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void putVarInt(ByteBuffer buf, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private static int getVarInt(ByteBuffer buf) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalArgumentException("varint 过长");
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.smartdoc.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * K-Means 计算引擎 - 基于原始数组的高性能实现
+ *
+ * <p>数据点以行优先方式存放在一个 double[] 中 (第 i 个点的第 j 维为 data[i * dim + j])，
+ * 迭代过程中不创建任何对象，也不调用 Math.pow。</p>
+ *
+ * <h3>关键优化:</h3>
+ * <ul>
+ *   <li><b>k-means++ 初始化</b>: 按与已选中心距离的平方加权抽样，
+ *       避免随机初始化陷入差的局部最优</li>
+ *   <li><b>Hamerly 剪枝</b>: 为每个点维护到所属中心距离的上界 u 和到其他中心距离的下界 l，
+ *       由三角不等式可知 u ≤ max(l, s/2) 时 (s 为所属中心到最近的其他中心的距离)
+ *       该点的归属不会改变，可以跳过全部 k 次距离计算</li>
+ *   <li><b>单趟 M 步</b>: 分配的同时把坐标累加到所属聚类，
+ *       新中心 = 累加和 / 计数，不再对每个中心重扫全部点</li>
+ *   <li><b>并行分配</b>: n ≥ {@value #PARALLEL_THRESHOLD} 时按块并行，
+ *       每块有独立的累加器，最后按块序合并，结果与串行执行一致</li>
+ * </ul>
+ *
+ * <h3>单次迭代:</h3>
+ * <pre>
+ * 1. 计算中心间距离，得到每个中心的 s[j] = 到最近其他中心距离的一半
+ * 2. 对每个点: 若 u &gt; max(s[a], l)，先收紧 u；仍不满足再扫描全部中心
+ *    同时把点累加进所属聚类的坐标和
+ * 3. 新中心 = 坐标和 / 计数 (空聚类保持原位)
+ * 4. 按中心移动距离放宽界: u += δ[a]，l -= max(δ)
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see KMeansUtil
+ */
+public class KMeansEngine {
+
+    /** 达到该点数时并行执行分配步骤 */
+    public static final int PARALLEL_THRESHOLD = 10_000;
+
+    /** 并行分块大小 */
+    private static final int CHUNK_SIZE = 4_096;
+
+    /**
+     * 聚类结果
+     */
+    public static class Result {
+        /** 聚类中心，行优先存放，长度 k * dim */
+        public final double[] centroids;
+        /** 每个点所属的聚类索引 */
+        public final int[] labels;
+        /** 每个聚类的点数 */
+        public final int[] counts;
+        /** 实际迭代次数 */
+        public final int iterations;
+        /** 簇内误差平方和 (SSE) */
+        public final double inertia;
+
+        Result(double[] centroids, int[] labels, int[] counts, int iterations, double inertia) {
+            this.centroids = centroids;
+            this.labels = labels;
+            this.counts = counts;
+            this.iterations = iterations;
+            this.inertia = inertia;
+        }
+    }
+
+    /**
+     * 执行 K-Means 聚类
+     *
+     * @param data          数据点，行优先存放，长度 n * dim
+     * @param dim           维度
+     * @param k             聚类数量
+     * @param maxIterations 最大迭代次数
+     * @param random        随机数源 (决定 k-means++ 的抽样，传入固定种子可复现结果)
+     * @return 聚类结果
+     */
+    public static Result fit(double[] data, int dim, int k, int maxIterations, SplittableRandom random) {
+        int n = data.length / dim;
+        if (k <= 0 || n < k) {
+            throw new IllegalArgumentException("数据点数量 (" + n + ") 少于聚类数量 (" + k + ")");
+        }
+        return fit(data, dim, seedPlusPlus(data, dim, k, random), maxIterations);
+    }
+
+    /**
+     * 从给定的初始中心开始执行 K-Means 聚类
+     *
+     * @param data          数据点，行优先存放，长度 n * dim
+     * @param dim           维度
+     * @param centroids     初始中心，行优先存放，长度 k * dim (会被原地更新)
+     * @param maxIterations 最大迭代次数
+     * @return 聚类结果
+     */
+    public static Result fit(double[] data, int dim, double[] centroids, int maxIterations) {
+        int n = data.length / dim;
+        int k = centroids.length / dim;
+
+        int[] labels = new int[n];
+        double[] upper = new double[n];   // 到所属中心距离的上界
+        double[] lower = new double[n];   // 到其他中心距离的下界
+        Arrays.fill(upper, Double.POSITIVE_INFINITY);  // 首轮强制全量扫描
+
+        double[] halfMinCenterDist = new double[k];
+        double[] shift = new double[k];
+        double[] sums = new double[k * dim];
+        int[] counts = new int[k];
+
+        int iter = 0;
+        boolean changed = true;
+        while (changed && iter < maxIterations) {
+            iter++;
+
+            // 1. 中心间距离 → s[j]
+            computeHalfMinCenterDist(centroids, dim, k, halfMinCenterDist);
+
+            // 2. 分配 + 累加 (E 步与 M 步的累加合并为一趟)
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            int moved = assign(data, dim, n, centroids, k, labels, upper, lower, halfMinCenterDist, sums, counts);
+
+            // 3. 更新中心，记录移动距离
+            double maxShift = 0;
+            double secondShift = 0;
+            int maxShiftIndex = -1;
+            for (int j = 0; j < k; j++) {
+                if (counts[j] == 0) {
+                    shift[j] = 0;  // 空聚类保持原位
+                    continue;
+                }
+                double d2 = 0;
+                int base = j * dim;
+                for (int t = 0; t < dim; t++) {
+                    double c = sums[base + t] / counts[j];
+                    double diff = c - centroids[base + t];
+                    d2 += diff * diff;
+                    centroids[base + t] = c;
+                }
+                shift[j] = Math.sqrt(d2);
+                if (shift[j] > maxShift) {
+                    secondShift = maxShift;
+                    maxShift = shift[j];
+                    maxShiftIndex = j;
+                } else if (shift[j] > secondShift) {
+                    secondShift = shift[j];
+                }
+            }
+
+            // 4. 放宽界 (所属中心恰好是移动最大的中心时，下界只需减去第二大的移动距离)
+            for (int i = 0; i < n; i++) {
+                int a = labels[i];
+                upper[i] += shift[a];
+                lower[i] -= (a == maxShiftIndex) ? secondShift : maxShift;
+            }
+
+            changed = moved > 0 || maxShift > 0;
+        }
+
+        return new Result(centroids, labels, counts, iter, inertia(data, dim, n, centroids, labels));
+    }
+
+    /**
+     * k-means++ 初始化
+     *
+     * <p>第一个中心均匀抽取；之后每个点被选中的概率正比于它到最近已选中心距离的平方。
+     * 所有点都与已选中心重合时 (不同的点少于 k 个) 退化为均匀抽取。</p>
+     *
+     * @param data   数据点
+     * @param dim    维度
+     * @param k      聚类数量
+     * @param random 随机数源
+     * @return 初始中心，长度 k * dim
+     */
+    public static double[] seedPlusPlus(double[] data, int dim, int k, SplittableRandom random) {
+        int n = data.length / dim;
+        double[] centroids = new double[k * dim];
+        double[] minDist2 = new double[n];
+
+        int first = random.nextInt(n);
+        System.arraycopy(data, first * dim, centroids, 0, dim);
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            minDist2[i] = dist2(data, i * dim, centroids, 0, dim);
+            total += minDist2[i];
+        }
+
+        for (int c = 1; c < k; c++) {
+            int pick;
+            if (total <= 0) {
+                pick = random.nextInt(n);
+            } else {
+                // 轮盘赌抽样；浮点累计误差导致没有命中时取最后一个权重为正的点
+                double r = random.nextDouble() * total;
+                pick = -1;
+                int lastPositive = 0;
+                for (int i = 0; i < n; i++) {
+                    if (minDist2[i] <= 0) continue;
+                    lastPositive = i;
+                    r -= minDist2[i];
+                    if (r < 0) {
+                        pick = i;
+                        break;
+                    }
+                }
+                if (pick < 0) pick = lastPositive;
+            }
+            System.arraycopy(data, pick * dim, centroids, c * dim, dim);
+
+            total = 0;
+            for (int i = 0; i < n; i++) {
+                double d = dist2(data, i * dim, centroids, c * dim, dim);
+                if (d < minDist2[i]) minDist2[i] = d;
+                total += minDist2[i];
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * 计算簇内误差平方和 (SSE)
+     */
+    public static double inertia(double[] data, int dim, int n, double[] centroids, int[] labels) {
+        double sse = 0;
+        for (int i = 0; i < n; i++) {
+            sse += dist2(data, i * dim, centroids, labels[i] * dim, dim);
+        }
+        return sse;
+    }
+
+    /**
+     * 分配步骤: 串行或按块并行
+     *
+     * @return 归属发生变化的点数
+     */
+    private static int assign(double[] data, int dim, int n, double[] centroids, int k, int[] labels,
+                              double[] upper, double[] lower, double[] halfMinCenterDist,
+                              double[] sums, int[] counts) {
+        if (n < PARALLEL_THRESHOLD) {
+            return assignRange(data, dim, 0, n, centroids, k, labels, upper, lower, halfMinCenterDist, sums, counts);
+        }
+
+        int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        double[][] chunkSums = new double[chunks][k * dim];
+        int[][] chunkCounts = new int[chunks][k];
+        int[] chunkMoved = new int[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, n);
+            chunkMoved[c] = assignRange(data, dim, from, to, centroids, k, labels, upper, lower,
+                    halfMinCenterDist, chunkSums[c], chunkCounts[c]);
+        });
+
+        // 按块序合并，浮点求和顺序固定，结果与线程调度无关
+        int moved = 0;
+        for (int c = 0; c < chunks; c++) {
+            moved += chunkMoved[c];
+            for (int t = 0; t < sums.length; t++) sums[t] += chunkSums[c][t];
+            for (int j = 0; j < k; j++) counts[j] += chunkCounts[c][j];
+        }
+        return moved;
+    }
+
+    /**
+     * 对 [from, to) 区间的点执行 Hamerly 分配，并累加坐标
+     */
+    private static int assignRange(double[] data, int dim, int from, int to, double[] centroids, int k,
+                                   int[] labels, double[] upper, double[] lower, double[] halfMinCenterDist,
+                                   double[] sums, int[] counts) {
+        int moved = 0;
+        for (int i = from; i < to; i++) {
+            int off = i * dim;
+            int a = labels[i];
+            double bound = Math.max(halfMinCenterDist[a], lower[i]);
+
+            if (upper[i] > bound) {
+                // 收紧上界后再判断一次
+                upper[i] = Math.sqrt(dist2(data, off, centroids, a * dim, dim));
+                if (upper[i] > bound) {
+                    // 全量扫描: 找最近和次近的中心 (比较时使用距离平方，只对结果开方)
+                    int best = 0;
+                    double best2 = Double.POSITIVE_INFINITY;
+                    double second2 = Double.POSITIVE_INFINITY;
+                    for (int j = 0; j < k; j++) {
+                        double d2 = dist2(data, off, centroids, j * dim, dim);
+                        if (d2 < best2) {
+                            second2 = best2;
+                            best2 = d2;
+                            best = j;
+                        } else if (d2 < second2) {
+                            second2 = d2;
+                        }
+                    }
+                    if (best != a) {
+                        labels[i] = best;
+                        a = best;
+                        moved++;
+                    }
+                    upper[i] = Math.sqrt(best2);
+                    lower[i] = Math.sqrt(second2);
+                }
+            }
+
+            int base = a * dim;
+            for (int t = 0; t < dim; t++) {
+                sums[base + t] += data[off + t];
+            }
+            counts[a]++;
+        }
+        return moved;
+    }
+
+    /**
+     * 计算每个中心到最近其他中心距离的一半
+     */
+    private static void computeHalfMinCenterDist(double[] centroids, int dim, int k, double[] out) {
+        Arrays.fill(out, Double.POSITIVE_INFINITY);
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                double half = Math.sqrt(dist2(centroids, a * dim, centroids, b * dim, dim)) / 2;
+                if (half < out[a]) out[a] = half;
+                if (half < out[b]) out[b] = half;
+            }
+        }
+    }
+
+    /**
+     * 两个向量之间的欧几里得距离平方
+     *
+     * <p>维度较高时交给 {@link StatKernels} 的 SIMD 实现；
+     * 常用的二维 (日期, 金额) 数据不足一个向量宽度，直接在这里展开计算。</p>
+     */
+    static double dist2(double[] x, int xOff, double[] y, int yOff, int dim) {
+        if (dim >= StatKernels.VECTOR_MIN_LENGTH) {
+            return StatKernels.dist2(x, xOff, y, yOff, dim);
+        }
+        double sum = 0;
+        for (int t = 0; t < dim; t++) {
+            double d = x[xOff + t] - y[yOff + t];
+            sum += d * d;
+        }
+        return sum;
+    }
+}
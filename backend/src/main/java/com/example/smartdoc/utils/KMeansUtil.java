@@ -6,7 +6,7 @@ import lombok.NoArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * K-Means 聚类算法工具类 - 无监督学习消费模式分析
@@ -16,11 +16,12 @@ import java.util.Random;
  * 
  * <h3>算法流程:</h3>
  * <pre>
- * 1. 随机初始化 K 个聚类中心
+ * 1. k-means++ 初始化 K 个聚类中心
  * 2. E步 (Expectation): 将每个数据点分配到最近的中心
  * 3. M步 (Maximization): 重新计算每个聚类的中心点
  * 4. 重复步骤 2-3 直到收敛或达到最大迭代次数
  * </pre>
+ * <p>本类保留面向 Point 列表的接口，具体计算由基于原始数组的 {@link KMeansEngine} 完成。</p>
  * 
  * <h3>数据维度:</h3>
  * <ul>
@@ -70,86 +71,75 @@ public class KMeansUtil {
     /**
      * 执行 K-Means 聚类
      * 
+     * <p>实际计算委托给 {@link KMeansEngine}: 数据点先拷贝为 double[]，
+     * 聚类完成后再把聚类标记写回各个 Point。</p>
+     * 
      * @param rawData       原始数据点列表
      * @param k             聚类数量 (推荐 3)
      * @param maxIterations 最大迭代次数 (推荐 50-100)
      * @return 聚类结果，包含分类后的点和中心点
      */
     public static ClusterResult fit(List<Point> rawData, int k, int maxIterations) {
+        return fit(rawData, k, maxIterations, new SplittableRandom());
+    }
+
+    /**
+     * 使用指定的随机数源执行 K-Means 聚类 (固定种子可复现结果)
+     * 
+     * @param rawData       原始数据点列表
+     * @param k             聚类数量
+     * @param maxIterations 最大迭代次数
+     * @param random        随机数源，用于 k-means++ 初始化
+     * @return 聚类结果，包含分类后的点和中心点
+     */
+    public static ClusterResult fit(List<Point> rawData, int k, int maxIterations, SplittableRandom random) {
         // 数据点数量不足时直接返回
         if (rawData.size() < k) return new ClusterResult(rawData, new ArrayList<>());
 
-        // 1. 随机初始化 K 个中心点 (从数据中随机选取)
-        List<Point> centroids = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < k; i++) {
-            Point randomPoint = rawData.get(random.nextInt(rawData.size()));
-            centroids.add(new Point(randomPoint.x, randomPoint.y, i));
-        }
-
-        boolean changed = true;  // 是否有点改变了所属聚类
-        int iter = 0;            // 当前迭代次数
-
-        // 迭代直到收敛或达到最大次数
-        while (changed && iter < maxIterations) {
-            changed = false;
-            iter++;
-
-            // 2. E步 (Expectation): 分配每个点到最近的中心
-            for (Point p : rawData) {
-                int nearestIndex = -1;
-                double minDist = Double.MAX_VALUE;
+        // 1. 拷贝为行优先的原始数组 [x0, y0, x1, y1, ...]
+        double[] data = toArray(rawData);
 
-                // 计算到每个中心的距离，找最近的
-                for (int i = 0; i < centroids.size(); i++) {
-                    double dist = calculateDistance(p, centroids.get(i));
-                    if (dist < minDist) {
-                        minDist = dist;
-                        nearestIndex = i;
-                    }
-                }
+        // 2. k-means++ 初始化 + Hamerly 剪枝迭代
+        KMeansEngine.Result model = KMeansEngine.fit(data, 2, k, maxIterations, random);
 
-                // 如果分配发生变化，标记为需要继续迭代
-                if (p.clusterIndex != nearestIndex) {
-                    p.clusterIndex = nearestIndex;
-                    changed = true;
-                }
-            }
+        // 3. 写回聚类标记，构建中心点列表
+        return toClusterResult(rawData, model);
+    }
 
-            // 3. M步 (Maximization): 重新计算每个聚类的中心点
-            for (int i = 0; i < k; i++) {
-                double sumX = 0, sumY = 0;
-                int count = 0;
-                
-                // 累加该聚类内所有点的坐标
-                for (Point p : rawData) {
-                    if (p.clusterIndex == i) {
-                        sumX += p.x;
-                        sumY += p.y;
-                        count++;
-                    }
-                }
-                
-                // 更新中心点为该聚类所有点的平均位置
-                if (count > 0) {
-                    centroids.get(i).x = sumX / count;
-                    centroids.get(i).y = sumY / count;
-                }
-            }
+    /**
+     * 将数据点拷贝为行优先的原始数组 [x0, y0, x1, y1, ...]
+     *
+     * @param points 数据点列表
+     * @return 长度为 2n 的数组
+     */
+    public static double[] toArray(List<Point> points) {
+        int n = points.size();
+        double[] data = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            Point p = points.get(i);
+            data[2 * i] = p.x;
+            data[2 * i + 1] = p.y;
         }
-
-        // 构建并返回结果
-        ClusterResult result = new ClusterResult();
-        result.points = rawData;
-        result.centroids = centroids;
-        return result;
+        return data;
     }
 
     /**
-     * 计算两点间的欧几里得距离
-     * <p>公式: d = √[(x1-x2)² + (y1-y2)²]</p>
+     * 把引擎的计算结果写回数据点，构建聚类结果
+     *
+     * @param points 数据点列表 (与计算时的数组顺序一致，聚类标记会被覆盖)
+     * @param model  {@link KMeansEngine} 的计算结果
+     * @return 聚类结果
      */
-    private static double calculateDistance(Point p1, Point p2) {
-        return Math.sqrt(Math.pow(p1.x - p2.x, 2) + Math.pow(p1.y - p2.y, 2));
+    public static ClusterResult toClusterResult(List<Point> points, KMeansEngine.Result model) {
+        int n = points.size();
+        for (int i = 0; i < n; i++) {
+            points.get(i).clusterIndex = model.labels[i];
+        }
+        int k = model.counts.length;
+        List<Point> centroids = new ArrayList<>(k);
+        for (int j = 0; j < k; j++) {
+            centroids.add(new Point(model.centroids[2 * j], model.centroids[2 * j + 1], j));
+        }
+        return new ClusterResult(points, centroids);
     }
-}
\ No newline at end of file
+}
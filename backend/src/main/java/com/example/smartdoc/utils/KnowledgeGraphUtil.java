@@ -0,0 +1,173 @@
+package com.example.smartdoc.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 知识图谱构建工具类 - 由聚合结果生成 "用户 → 分类 → 商户" 三层关系图
+ *
+ * <p>输入是按 (分类, 商户) 汇总后的结果，每个组合只有一行。汇总由
+ * {@link com.example.smartdoc.service.KnowledgeGraphService} 在内存中对用户快照的字典下标一次遍历完成 (O(n))，
+ * 本类的构建过程与票据条数无关，只与组合数 m 有关。</p>
+ *
+ * <h3>复杂度:</h3>
+ * <pre>
+ * 旧实现: 逐张票据遍历，用 ArrayList.contains 去重        → O(n · m)
+ * 快照汇总: 按 (分类下标, 商户下标) 遍历快照一次            → O(n)
+ * 本实现: 对聚合行遍历一次，用 HashMap 索引分类累计值，
+ *         每个分类用容量为 N 的小顶堆筛选商户          → O(m · log N)
+ * </pre>
+ *
+ * <h3>返回结构 (直接绑定 ECharts graph):</h3>
+ * <pre>
+ * {
+ *   "nodes": [{"id": "ROOT", "name": "张三", "symbolSize": 60, "category": 0}, ...],
+ *   "links": [{"source": "ROOT", "target": "CAT_餐饮美食"}, ...]
+ * }
+ * </pre>
+ * <p>同一商户出现在多个分类下时只生成一个商户节点，与每个入选的分类各连一条边。
+ * 未入选 Top-N 的商户折叠为每个分类一个 "其他商户" 节点 (id 为 "OTHER_" + 分类)。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.controller.StatsController#getKnowledgeGraph
+ */
+public class KnowledgeGraphUtil {
+
+    /**
+     * 构建知识图谱 (不裁剪，输出全部商户)
+     *
+     * @param rootName 根节点名称 (用户昵称)
+     * @param rows     聚合结果 [[分类, 商户, 金额(分)], ...]
+     * @return 包含 nodes 和 links 的图谱数据
+     */
+    public static Map<String, Object> build(String rootName, List<Object[]> rows) {
+        return build(rootName, rows, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 构建知识图谱，每个分类只保留消费额最高的 topN 个商户
+     *
+     * <p>每个分类用一个容量为 topN 的小顶堆筛选商户：堆满后新商户只有比堆顶大才入堆，
+     * 被挤出的商户计入该分类的 "其他商户" 节点。节点数上限为
+     * 1 + 分类数 × (topN + 2)，与用户的历史数据量无关。</p>
+     *
+     * @param rootName 根节点名称 (用户昵称)
+     * @param rows     聚合结果 [[分类, 商户, 金额(分)], ...]
+     * @param topN     每个分类保留的商户数 (≥ 1)
+     * @return 包含 nodes 和 links 的图谱数据
+     */
+    public static Map<String, Object> build(String rootName, List<Object[]> rows, int topN) {
+        int limit = Math.max(1, topN);
+
+        // 1. 按分类汇总，并用小顶堆筛选 Top-N 商户 (堆顶是当前入选者中金额最小的)
+        // LinkedHashMap 保留首次出现的顺序，节点输出顺序稳定
+        Map<String, long[]> categoryTotals = new LinkedHashMap<>();
+        Map<String, PriorityQueue<Object[]>> topMerchants = new HashMap<>();
+        Map<String, long[]> tails = new HashMap<>();  // 分类 → [长尾金额, 长尾商户数]
+        for (Object[] row : rows) {
+            String cat = (String) row[0];
+            long cents = centsOf(row);
+            categoryTotals.computeIfAbsent(cat, k -> new long[1])[0] += cents;
+
+            PriorityQueue<Object[]> heap = topMerchants.computeIfAbsent(cat,
+                    k -> new PriorityQueue<>(Comparator.comparingLong(KnowledgeGraphUtil::centsOf)));
+            Object[] evicted = row;
+            if (heap.size() < limit) {
+                heap.offer(row);
+                evicted = null;
+            } else if (cents > centsOf(heap.peek())) {
+                evicted = heap.poll();
+                heap.offer(row);
+            }
+            if (evicted != null) {
+                long[] tail = tails.computeIfAbsent(cat, k -> new long[2]);
+                tail[0] += centsOf(evicted);
+                tail[1]++;
+            }
+        }
+
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        List<Map<String, Object>> links = new ArrayList<>();
+
+        // 2. 根节点 (用户)
+        nodes.add(node("ROOT", rootName, 60, 0));
+
+        // 3. 分类节点: 基础值 + 对数缩放 (避免金额差异过大导致显示问题)，最大 50
+        for (Map.Entry<String, long[]> e : categoryTotals.entrySet()) {
+            String cat = e.getKey();
+            double size = 20 + Math.log(MoneyUtil.toYuanDouble(e.getValue()[0]) + 1) * 5;
+            nodes.add(node("CAT_" + cat, cat, Math.min(size, 50), 1));
+            links.add(link("ROOT", "CAT_" + cat));
+        }
+
+        // 4. 入选商户: 按金额从高到低输出；同一商户入选多个分类时只生成一个节点
+        Map<String, long[]> merchantTotals = new LinkedHashMap<>();
+        for (String cat : categoryTotals.keySet()) {
+            List<Object[]> top = new ArrayList<>(topMerchants.get(cat));
+            top.sort(Comparator.comparingLong(KnowledgeGraphUtil::centsOf).reversed());
+            for (Object[] row : top) {
+                merchantTotals.computeIfAbsent((String) row[1], k -> new long[1])[0] += centsOf(row);
+                links.add(link("CAT_" + cat, "MER_" + row[1]));
+            }
+        }
+        // 商户节点，最大 30
+        for (Map.Entry<String, long[]> e : merchantTotals.entrySet()) {
+            String merch = e.getKey();
+            double size = 10 + Math.log(MoneyUtil.toYuanDouble(e.getValue()[0]) + 1) * 3;
+            nodes.add(node("MER_" + merch, merch, Math.min(size, 30), 2));
+        }
+
+        // 5. 长尾: 每个分类折叠为一个 "其他商户" 节点
+        for (Map.Entry<String, long[]> e : tails.entrySet()) {
+            String cat = e.getKey();
+            long[] tail = e.getValue();
+            double size = 10 + Math.log(MoneyUtil.toYuanDouble(tail[0]) + 1) * 3;
+            Map<String, Object> other = node("OTHER_" + cat, "其他商户 (" + tail[1] + " 家)", Math.min(size, 30), 2);
+            other.put("merchantCount", tail[1]);
+            other.put("amountCents", tail[0]);
+            nodes.add(other);
+            links.add(link("CAT_" + cat, "OTHER_" + cat));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("nodes", nodes);
+        result.put("links", links);
+        return result;
+    }
+
+    /**
+     * 读取聚合行中的金额 (分)
+     */
+    private static long centsOf(Object[] row) {
+        return row[2] == null ? 0 : ((Number) row[2]).longValue();
+    }
+
+    /**
+     * 创建图谱节点
+     *
+     * @param category 节点类别: 0=用户, 1=分类, 2=商户
+     */
+    private static Map<String, Object> node(String id, String name, double symbolSize, int category) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("id", id);
+        node.put("name", name);
+        node.put("symbolSize", symbolSize);
+        node.put("category", category);
+        return node;
+    }
+
+    /**
+     * 创建图谱边
+     */
+    private static Map<String, Object> link(String source, String target) {
+        Map<String, Object> link = new HashMap<>();
+        link.put("source", source);
+        link.put("target", target);
+        return link;
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.smartdoc.utils;
 
-import java.util.List;
-
 /**
  * 线性回归工具类 - 基于最小二乘法的趋势预测
  * 
@@ -17,6 +15,7 @@ import java.util.List;
  * 
  * 预测: y_next = a * (n+1) + b
  * </pre>
+ * <p>{@link #forecast} 另外根据残差给出 95% 预测区间。</p>
  * 
  * <h3>应用场景:</h3>
  * <p>根据用户过去几个月的消费数据，预测下个月的消费趋势，
@@ -24,53 +23,115 @@ import java.util.List;
  * 
  * @author SmartDoc Team
  * @see com.example.smartdoc.controller.StatsController#getTrend
+ * @see com.example.smartdoc.job.ForecastJob
  */
 public class LinearRegressionUtil {
 
+    /** t 分布 97.5% 分位数，下标为自由度 1 ~ 30 (自由度更大时取正态分布的 1.96) */
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /**
+     * 预测结果 (单位: 分)
+     *
+     * @param prediction 预测值
+     * @param lower      95% 预测区间下限，数据少于 3 个点时为 null
+     * @param upper      95% 预测区间上限，数据少于 3 个点时为 null
+     */
+    public record Forecast(long prediction, Long lower, Long upper) {
+    }
+
     /**
      * 预测下一个月的消费金额
      * 
      * <p>将月份作为 X 轴 (1, 2, 3...)，金额作为 Y 轴，
      * 拟合直线后预测 X = n+1 时的 Y 值。</p>
      * 
-     * @param data 历史月度消费数据列表 (按时间顺序)
-     *             例如: [100.0, 120.0, 110.0, 130.0]
-     * @return 预测的下个月消费金额，数据不足时返回 0.0
+     * @param data 历史月度消费金额数组，单位: 分 (按时间顺序)
+     *             例如: [10000, 12000, 11000, 13000]
+     * @return 预测的下个月消费金额 (分)，数据不足时返回 0
      */
-    public static Double predictNext(List<Double> data) {
-        int n = data.size();
-        if (n < 2) return 0.0; // 数据太少无法预测
+    public static long predictNext(long[] data) {
+        int n = data.length;
+        if (n < 2) return 0; // 数据太少无法预测
 
-        // 初始化累加变量
-        double sumX = 0;   // Σx
-        double sumY = 0;   // Σy
-        double sumXY = 0;  // Σxy
-        double sumXX = 0;  // Σx²
+        double[] line = fit(data);
 
-        // 把月份看作 x 轴 (1, 2, 3...), 金额看作 y 轴
-        for (int i = 0; i < n; i++) {
-            double x = i + 1;      // 月份序号从 1 开始
-            double y = data.get(i); // 该月消费金额
+        // 预测下一个月 (x = n + 1) 的消费金额
+        return toCents(line[0] * (n + 1) + line[1]);
+    }
 
-            sumX += x;
-            sumY += y;
-            sumXY += x * y;
-            sumXX += x * x;
+    /**
+     * 预测下一个月的消费金额及其 95% 预测区间
+     *
+     * <pre>
+     * 残差标准差  s  = √(SSE / (n - 2))
+     * 预测标准误  se = s · √(1 + 1/n + (x₀ - x̄)² / Sxx)     x₀ = n + 1
+     * 预测区间       ŷ ± t(0.975, n - 2) · se
+     * </pre>
+     *
+     * @param data 历史月度消费金额数组，单位: 分 (按时间顺序)
+     * @return 预测结果，数据少于 2 个点时返回 null
+     */
+    public static Forecast forecast(long[] data) {
+        int n = data.length;
+        if (n < 2) return null;
+
+        double[] line = fit(data);
+        double nextX = n + 1;
+        double nextY = line[0] * nextX + line[1];
+        if (n < 3) {
+            return new Forecast(toCents(nextY), null, null);  // 两点确定一条直线，没有残差可估计误差
         }
 
+        // 残差平方和 SSE
+        double sse = 0;
+        for (int i = 0; i < n; i++) {
+            double residual = data[i] - (line[0] * (i + 1) + line[1]);
+            sse += residual * residual;
+        }
+        double meanX = (n + 1) / 2.0;
+        double sxx = (double) n * ((double) n * n - 1) / 12;       // Σ(x - x̄)²
+        double se = Math.sqrt(sse / (n - 2)) * Math.sqrt(1 + 1.0 / n + (nextX - meanX) * (nextX - meanX) / sxx);
+        double t = n - 2 <= T_975.length ? T_975[n - 3] : 1.96;
+
+        return new Forecast(toCents(nextY), toCents(nextY - t * se), toCents(nextY + t * se));
+    }
+
+    /**
+     * 最小二乘拟合
+     *
+     * @param data 按时间顺序的金额 (分)，至少 2 个点
+     * @return [斜率 a, 截距 b]
+     */
+    private static double[] fit(long[] data) {
+        int n = data.length;
+
+        // 把月份看作 x 轴 (1, 2, 3...), 金额看作 y 轴
+        // x 是连续整数，Σx 与 Σx² 直接用求和公式；Σy (精确整数) 和 Σxy 由 StatKernels 计算
+        long sumX = (long) n * (n + 1) / 2;                        // Σx
+        double sumXX = (double) n * (n + 1) * (2L * n + 1) / 6;    // Σx²
+        long sumY = StatKernels.sum(data);                         // Σy
+        double sumXY = StatKernels.indexWeightedSum(data);         // Σxy
+
         // 计算斜率 (Slope) a
         // a = (nΣxy - ΣxΣy) / (nΣx² - (Σx)²)
-        double a = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+        double a = (n * sumXY - (double) sumX * sumY) / (n * sumXX - (double) sumX * sumX);
 
         // 计算截距 (Intercept) b
         // b = (Σy - aΣx) / n
         double b = (sumY - a * sumX) / n;
 
-        // 预测下一个月 (x = n + 1) 的消费金额
-        double nextX = n + 1;
-        double nextY = a * nextX + b;
+        return new double[]{a, b};
+    }
 
-        // 金额不能为负
-        return nextY > 0 ? nextY : 0;
+    /**
+     * 金额不能为负，四舍五入到分
+     */
+    private static long toCents(double value) {
+        return value > 0 ? Math.round(value) : 0;
     }
-}
\ No newline at end of file
+}
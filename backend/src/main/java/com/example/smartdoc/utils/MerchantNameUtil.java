@@ -0,0 +1,54 @@
+package com.example.smartdoc.utils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 商户名称工具类 - 在 Java 中按数据库排序规则的口径判断两个商户名称是否相同
+ *
+ * <p>invoice_record.merchant_name 与各结果表的商户列使用 utf8mb4_general_ci，
+ * 比较时忽略大小写、重音和尾部空格。Java 侧按商户分组的地方 (重复支出识别、商户共现图)
+ * 都用 {@link #key} 的结果作为 HashMap 的键，保证同一个商户在各功能中的归并口径一致，
+ * 并且不会比数据库更严格 (否则写入带唯一键的结果表时会冲突)。</p>
+ *
+ * <h3>规范化步骤:</h3>
+ * <pre>
+ * 1. 去掉首尾空白
+ * 2. NFKD 分解 (全角字母数字转为半角，带重音的字母拆成基本字母 + 组合符号)
+ * 3. 去掉组合符号 (重音)
+ * 4. 按 Locale.ROOT 转小写
+ * </pre>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.job.RecurringPaymentJob
+ * @see com.example.smartdoc.service.MerchantGraphService
+ */
+public class MerchantNameUtil {
+
+    /** Unicode 组合符号 (重音、变音等) */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * 商户名称的分组键
+     *
+     * @param merchant 商户名称 (非 null)
+     * @return 规范化后的名称，两个名称的键相同即视为同一商户
+     */
+    public static String key(String merchant) {
+        String name = merchant.trim();
+        if (isAscii(name)) {
+            // 绝大多数英文名称: 不需要分解，直接转小写
+            return name.toLowerCase(Locale.ROOT);
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
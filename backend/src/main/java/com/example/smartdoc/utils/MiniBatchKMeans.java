@@ -0,0 +1,179 @@
+package com.example.smartdoc.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Mini-Batch K-Means - 分批增量更新聚类中心
+ *
+ * <p>适用于无法一次装入内存的数据集 (如全库票据)：数据按批次流式输入，
+ * 每批处理完即可丢弃，内存占用只与批大小和 k · dim 有关，与总数据量无关。</p>
+ *
+ * <h3>更新规则 (Sculley, 2010):</h3>
+ * <pre>
+ * 对每一批数据 B:
+ *   1. 用当前中心为 B 中每个点找到最近中心 c(x)
+ *   2. 逐点更新: counts[c]++，η = 1 / counts[c]，
+ *      center[c] = (1 - η) · center[c] + η · x
+ * </pre>
+ * <p>学习率 η 随聚类累计点数递减，每个中心等价于它所吸收的全部点的滑动平均，
+ * 多轮 (epoch) 扫描后逐渐收敛。首批数据用 k-means++ 选取初始中心。</p>
+ *
+ * <p>本类不是线程安全的：训练在单个线程中进行，训练完成后通过
+ * {@link #copy()} 发布不可变快照供并发调用 {@link #predict}。</p>
+ *
+ * @author SmartDoc Team
+ * @see KMeansEngine
+ */
+public class MiniBatchKMeans {
+
+    /** 聚类数量 */
+    private final int k;
+
+    /** 维度 */
+    private final int dim;
+
+    /** 聚类中心，行优先存放，长度 k * dim；首批数据到来前为 null */
+    private double[] centroids;
+
+    /** 每个聚类累计吸收的点数 */
+    private final long[] counts;
+
+    /**
+     * 创建未训练的模型
+     *
+     * @param k   聚类数量
+     * @param dim 维度
+     */
+    public MiniBatchKMeans(int k, int dim) {
+        if (k < 1 || dim < 1) {
+            throw new IllegalArgumentException("k 和 dim 必须为正数");
+        }
+        this.k = k;
+        this.dim = dim;
+        this.counts = new long[k];
+    }
+
+    /**
+     * 从已保存的状态恢复模型
+     *
+     * @param k         聚类数量
+     * @param dim       维度
+     * @param centroids 聚类中心，长度 k * dim
+     * @param counts    每个聚类累计的点数，长度 k
+     */
+    public MiniBatchKMeans(int k, int dim, double[] centroids, long[] counts) {
+        this(k, dim);
+        if (centroids.length != k * dim || counts.length != k) {
+            throw new IllegalArgumentException("模型参数长度与 k / dim 不匹配");
+        }
+        this.centroids = centroids.clone();
+        System.arraycopy(counts, 0, this.counts, 0, k);
+    }
+
+    /**
+     * 用一批数据更新聚类中心
+     *
+     * @param batch  数据点，行优先存放 (只读取前 n 个点)
+     * @param n      本批点数
+     * @param random 随机数源 (仅首批 k-means++ 初始化时使用)
+     * @throws IllegalArgumentException 首批点数少于 k 时
+     */
+    public void partialFit(double[] batch, int n, SplittableRandom random) {
+        if (n <= 0) {
+            return;
+        }
+        if (centroids == null) {
+            if (n < k) {
+                throw new IllegalArgumentException("首批数据点数 (" + n + ") 少于聚类数量 (" + k + ")");
+            }
+            centroids = KMeansEngine.seedPlusPlus(Arrays.copyOf(batch, n * dim), dim, k, random);
+        }
+
+        // 1. 先用本批开始时的中心完成整批分配，再统一更新中心
+        int[] labels = new int[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = nearest(batch, i * dim);
+        }
+
+        // 2. 逐点按 1 / count 的学习率把中心拉向样本
+        for (int i = 0; i < n; i++) {
+            int c = labels[i];
+            double eta = 1.0 / ++counts[c];
+            int cOff = c * dim;
+            int xOff = i * dim;
+            for (int t = 0; t < dim; t++) {
+                centroids[cOff + t] += eta * (batch[xOff + t] - centroids[cOff + t]);
+            }
+        }
+    }
+
+    /**
+     * 预测单个点所属的聚类，O(k · dim)
+     *
+     * @param point 数据点，长度 dim
+     * @return 聚类索引
+     * @throws IllegalStateException 模型尚未训练时
+     */
+    public int predict(double[] point) {
+        if (centroids == null) {
+            throw new IllegalStateException("模型尚未训练");
+        }
+        return nearest(point, 0);
+    }
+
+    /**
+     * 模型是否已完成初始化 (至少处理过一批数据)
+     */
+    public boolean isFitted() {
+        return centroids != null;
+    }
+
+    /**
+     * 复制当前模型
+     */
+    public MiniBatchKMeans copy() {
+        if (centroids == null) {
+            return new MiniBatchKMeans(k, dim);
+        }
+        return new MiniBatchKMeans(k, dim, centroids, counts);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * @return 聚类中心副本，行优先存放；未训练时为 null
+     */
+    public double[] getCentroids() {
+        return centroids == null ? null : centroids.clone();
+    }
+
+    /**
+     * @return 每个聚类累计点数的副本
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * 查找距离 data[off .. off + dim) 最近的中心
+     */
+    private int nearest(double[] data, int off) {
+        int best = 0;
+        double bestDist = Double.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            double d = KMeansEngine.dist2(data, off, centroids, c * dim, dim);
+            if (d < bestDist) {
+                bestDist = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
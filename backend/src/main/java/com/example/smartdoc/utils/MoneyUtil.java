@@ -0,0 +1,120 @@
+package com.example.smartdoc.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 金额工具类 - 以 "分" 为单位的整数金额换算与汇总
+ *
+ * <p>系统内部所有金额都以 long 类型的 "分" 存储和计算，避免 double 累加带来的精度误差
+ * (如 0.1 + 0.2 = 0.30000000000000004)。只在输入输出边界 (JSON、Excel、OCR) 与 "元" 互相换算。</p>
+ *
+ * <h3>换算规则:</h3>
+ * <pre>
+ * 元 → 分: 保留两位小数 (四舍五入) 后乘以 100，例: 12.345 → 1235
+ * 分 → 元: 精确的两位小数 BigDecimal，例: 1235 → 12.35
+ * 文本 → 分: 保留正负号，只去掉货币符号、千分位分隔符和空白，例: "-¥1,234.50" → -123450
+ * </pre>
+ *
+ * @author SmartDoc Team
+ */
+public class MoneyUtil {
+
+    /** 解析前去掉的字符: 货币符号、千分位分隔符 (半角/全角逗号)、空白 (含不换行空格和全角空格) */
+    private static final Pattern NOISE = Pattern.compile("[¥￥$元,，\\s\\u00A0\\u3000]|RMB|CNY", Pattern.CASE_INSENSITIVE);
+
+    /** 去掉上述字符后的合法金额: 可选的正负号 + 数字 + 可选的小数部分 */
+    private static final Pattern AMOUNT = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)");
+
+    /**
+     * 元 → 分
+     *
+     * @param yuan 以元为单位的金额
+     * @return 以分为单位的金额，输入为 null 返回 null
+     * @throws ArithmeticException 金额超出 long 范围
+     */
+    public static Long toCents(BigDecimal yuan) {
+        if (yuan == null) return null;
+        return yuan.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * 元 → 分 (兼容旧的 double 金额，按其十进制字面值换算)
+     *
+     * @param yuan 以元为单位的金额
+     * @return 以分为单位的金额，输入为 null 返回 null
+     */
+    public static Long toCents(Double yuan) {
+        if (yuan == null) return null;
+        return toCents(BigDecimal.valueOf(yuan));
+    }
+
+    /**
+     * 解析金额字符串为分
+     * <p>兼容 "¥1,234.50"、"1234.5元"、"RMB 88" 等写法；负号 (含 "−" U+2212、全角 "－")
+     * 可以写在货币符号前后，红字发票 / 退款解析为负数。
+     * 其他字符不会被忽略: "1.234.50"、"12a3" 这类无法确定含义的文本返回 null。</p>
+     *
+     * @param text 金额字符串
+     * @return 以分为单位的金额，无法解析返回 null
+     */
+    public static Long parseCents(String text) {
+        if (text == null) return null;
+        String num = NOISE.matcher(text.replace('\u2212', '-').replace('－', '-')).replaceAll("");
+        if (!AMOUNT.matcher(num).matches()) return null;
+        try {
+            return toCents(new BigDecimal(num));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 分 → 元 (精确的两位小数)
+     *
+     * @param cents 以分为单位的金额
+     * @return 以元为单位的金额，输入为 null 返回 null
+     */
+    public static BigDecimal toYuan(Long cents) {
+        if (cents == null) return null;
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * 分 → 元 (double，仅用于图表坐标、对数缩放等展示计算)
+     *
+     * @param cents 以分为单位的金额
+     * @return 以元为单位的金额
+     */
+    public static double toYuanDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * 将金额列表拆箱为原始数组 (跳过 null)
+     *
+     * @param cents 以分为单位的金额列表
+     * @return 原始 long 数组
+     */
+    public static long[] toArray(List<Long> cents) {
+        long[] result = new long[cents.size()];
+        int n = 0;
+        for (Long c : cents) {
+            if (c != null) result[n++] = c;
+        }
+        return n == result.length ? result : java.util.Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 精确求和 (数组较长时由 {@link StatKernels} 使用 SIMD 实现)
+     *
+     * @param cents 以分为单位的金额数组
+     * @return 总额 (分)
+     * @throws ArithmeticException 总额超出 long 范围
+     */
+    public static long sum(long[] cents) {
+        return StatKernels.sum(cents);
+    }
+}
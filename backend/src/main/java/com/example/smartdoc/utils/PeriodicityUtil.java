@@ -0,0 +1,190 @@
+package com.example.smartdoc.utils;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * 周期性检测工具类 - 判断一个商户的消费序列是否为固定周期的重复支出 (话费、房租、订阅等)
+ *
+ * <h3>间隔直方图:</h3>
+ * <pre>
+ * 1. 同一天的多笔消费合并为一次，计算相邻两次消费的间隔 (天)
+ * 2. 把间隔分到各候选周期 P 的桶中: 间隔 ≈ k·P (k = 1 ~ {@value #MAX_SKIP}，误差不超过容差) 即命中，
+ *    k > 1 表示中间漏了 k - 1 期 (例如某个月的账单没有上传)
+ * 3. 周期得分 = 命中间隔数 / (间隔数 + 漏掉的期数)，取得分最高的周期
+ * </pre>
+ * <p>按月及以上的周期按自然月计算 (名义天数 30.44)，容差为名义天数的 10% (至少 1 天)，
+ * 因此 28 ~ 31 天的月度间隔、顺延到工作日的扣款都能命中。
+ * 漏期会拉低得分，所以两月一次的序列在 "每两月" 桶中得分最高，而不会被误判为漏了一半的 "每月"。</p>
+ *
+ * <h3>置信度:</h3>
+ * <pre>
+ * 金额变异系数 cv = 标准差 / 均值
+ * 置信度 = 周期得分 × (1 - min(cv, 1) / 2)
+ * 周期得分 ≥ {@value #MIN_SCORE} 且置信度 ≥ {@value #MIN_CONFIDENCE} 才视为重复支出
+ * </pre>
+ * <p>金额稳定的订阅和房租置信度接近周期得分；金额随机的日常消费 (如超市) 即使间隔接近一周也会被压低。</p>
+ *
+ * <p>单个序列的计算为 O(n × 候选周期数)，多年的历史也只需一次线性扫描。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.job.RecurringPaymentJob
+ */
+public class PeriodicityUtil {
+
+    /** 至少需要的消费次数 */
+    public static final int MIN_OCCURRENCES = 3;
+
+    /** 单个间隔最多允许跨越的期数 */
+    private static final int MAX_SKIP = 3;
+
+    /** 周期得分下限 */
+    private static final double MIN_SCORE = 0.7;
+
+    /** 置信度下限 */
+    private static final double MIN_CONFIDENCE = 0.5;
+
+    /** 每月的平均天数 */
+    private static final double DAYS_PER_MONTH = 365.2425 / 12;
+
+    /**
+     * 候选周期
+     */
+    public enum Period {
+        WEEKLY("每周", 7, 0),
+        BIWEEKLY("每两周", 14, 0),
+        MONTHLY("每月", 0, 1),
+        BIMONTHLY("每两月", 0, 2),
+        QUARTERLY("每季度", 0, 3),
+        HALF_YEARLY("每半年", 0, 6),
+        YEARLY("每年", 0, 12);
+
+        private final String label;
+        private final int days;
+        private final int months;
+
+        Period(String label, int days, int months) {
+            this.label = label;
+            this.days = days;
+            this.months = months;
+        }
+
+        /**
+         * @return 中文名称
+         */
+        public String label() {
+            return label;
+        }
+
+        /**
+         * @return 名义天数 (按月的周期为月数 × 30.44)
+         */
+        public double nominalDays() {
+            return days > 0 ? days : months * DAYS_PER_MONTH;
+        }
+
+        /**
+         * @return 间隔允许的误差 (天)
+         */
+        public double toleranceDays() {
+            return Math.max(1, nominalDays() * 0.1);
+        }
+
+        /**
+         * 下一期的日期
+         *
+         * @param date 本期日期
+         * @return 按周期推算的下一期日期 (按月的周期按自然月推算)
+         */
+        public LocalDate next(LocalDate date) {
+            return days > 0 ? date.plusDays(days) : date.plusMonths(months);
+        }
+    }
+
+    /**
+     * 检测结果
+     *
+     * @param period          周期
+     * @param score           周期得分 [0, 1]
+     * @param confidence      置信度 [0, 1]
+     * @param occurrences     消费次数 (同一天合并后)
+     * @param typicalCents    典型金额 (单次金额的中位数，单位: 分)
+     * @param amountVariation 金额变异系数
+     * @param firstDate       第一次消费日期
+     * @param lastDate        最近一次消费日期
+     * @param nextDate        预计下一次消费日期
+     */
+    public record Result(Period period, double score, double confidence, int occurrences,
+                         long typicalCents, double amountVariation,
+                         LocalDate firstDate, LocalDate lastDate, LocalDate nextDate) {
+    }
+
+    /**
+     * 检测一个消费序列的周期
+     *
+     * @param dates   消费日期 (按时间升序，可以有同一天的多笔)
+     * @param amounts 对应的金额 (单位: 分)
+     * @return 检测结果，不是重复支出或数据不足时返回 null
+     */
+    public static Result detect(LocalDate[] dates, long[] amounts) {
+        // 1. 同一天的多笔合并
+        LocalDate[] days = new LocalDate[dates.length];
+        long[] sums = new long[dates.length];
+        int n = 0;
+        for (int i = 0; i < dates.length; i++) {
+            if (n > 0 && days[n - 1].equals(dates[i])) {
+                sums[n - 1] += amounts[i];
+            } else {
+                days[n] = dates[i];
+                sums[n++] = amounts[i];
+            }
+        }
+        if (n < MIN_OCCURRENCES) return null;
+
+        long[] intervals = new long[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            intervals[i] = ChronoUnit.DAYS.between(days[i], days[i + 1]);
+        }
+
+        // 2. 间隔直方图: 各候选周期的得分
+        Period best = null;
+        double bestScore = 0;
+        for (Period period : Period.values()) {
+            double nominal = period.nominalDays();
+            double tolerance = period.toleranceDays();
+            int matched = 0;
+            int missed = 0;
+            for (long interval : intervals) {
+                long k = Math.round(interval / nominal);
+                if (k >= 1 && k <= MAX_SKIP && Math.abs(interval - k * nominal) <= tolerance) {
+                    matched++;
+                    missed += (int) (k - 1);
+                }
+            }
+            double score = (double) matched / (intervals.length + missed);
+            if (score > bestScore) {
+                best = period;
+                bestScore = score;
+            }
+        }
+        if (best == null || bestScore < MIN_SCORE) return null;
+
+        // 3. 金额稳定性
+        double mean = 0;
+        for (int i = 0; i < n; i++) mean += sums[i];
+        mean /= n;
+        double variance = 0;
+        for (int i = 0; i < n; i++) variance += (sums[i] - mean) * (sums[i] - mean);
+        double cv = mean > 0 ? Math.sqrt(variance / n) / mean : 1;
+        double confidence = bestScore * (1 - Math.min(cv, 1) / 2);
+        if (confidence < MIN_CONFIDENCE) return null;
+
+        long[] sorted = Arrays.copyOf(sums, n);
+        Arrays.sort(sorted);
+        long median = n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+
+        return new Result(best, bestScore, confidence, n, median, cv,
+                days[0], days[n - 1], best.next(days[n - 1]));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.smartdoc.utils;
+
+/**
+ * 统计内核的标量实现 - 逐元素循环
+ *
+ * <p>作为 {@link VectorKernels} 的对照和回退实现：运行环境没有加载 jdk.incubator.vector 模块、
+ * 或数组太短不值得向量化时，{@link StatKernels} 使用本类。</p>
+ *
+ * @author SmartDoc Team
+ * @see StatKernels
+ */
+public final class ScalarKernels {
+
+    private ScalarKernels() {
+    }
+
+    /**
+     * 精确求和
+     *
+     * @throws ArithmeticException 总和超出 long 范围
+     */
+    public static long sum(long[] a) {
+        long total = 0;
+        for (long v : a) {
+            total = Math.addExact(total, v);
+        }
+        return total;
+    }
+
+    /**
+     * 离差平方和 Σ(a[i] - mean)²
+     */
+    public static double sumSquaredDeviations(long[] a, double mean) {
+        double total = 0;
+        for (long v : a) {
+            double d = v - mean;
+            total += d * d;
+        }
+        return total;
+    }
+
+    /**
+     * 按下标加权求和 Σ(i + 1) · a[i]
+     */
+    public static double indexWeightedSum(long[] a) {
+        double total = 0;
+        for (int i = 0; i < a.length; i++) {
+            total += (double) (i + 1) * a[i];
+        }
+        return total;
+    }
+
+    /**
+     * 欧几里得距离平方 Σ(x[xOff + t] - y[yOff + t])²，t ∈ [0, len)
+     */
+    public static double dist2(double[] x, int xOff, double[] y, int yOff, int len) {
+        double sum = 0;
+        for (int t = 0; t < len; t++) {
+            double d = x[xOff + t] - y[yOff + t];
+            sum += d * d;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.smartdoc.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 轮廓系数工具类 - 基于抽样的聚类质量评估
+ *
+ * <p>轮廓系数 (Silhouette) 衡量每个点与所属聚类的贴合程度:</p>
+ * <pre>
+ * a(i) = 点 i 到同聚类其他点的平均距离
+ * b(i) = 点 i 到最近的其他聚类中各点的平均距离
+ * s(i) = (b(i) - a(i)) / max(a(i), b(i))      取值 [-1, 1]，越大越好
+ * 整体得分 = 所有 s(i) 的平均值
+ * </pre>
+ *
+ * <p>精确计算需要全部点两两求距离，复杂度 O(n²)。这里只在一个固定大小 s 的随机样本内计算
+ * (a、b 也只用样本内的点估计)，复杂度 O(s² · dim)，与 n 无关。
+ * 同一批数据比较不同 k 时应使用同一个样本，保证得分可比。</p>
+ *
+ * @author SmartDoc Team
+ * @see KMeansEngine
+ */
+public class SilhouetteUtil {
+
+    /**
+     * 从 [0, n) 中不放回地均匀抽取 size 个下标 (部分 Fisher-Yates 洗牌)
+     *
+     * @param n      总点数
+     * @param size   样本大小 (大于 n 时取 n)
+     * @param random 随机数源
+     * @return 样本下标
+     */
+    public static int[] sample(int n, int size, SplittableRandom random) {
+        int s = Math.min(n, size);
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) index[i] = i;
+        for (int i = 0; i < s; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = index[i];
+            index[i] = index[j];
+            index[j] = tmp;
+        }
+        int[] result = new int[s];
+        System.arraycopy(index, 0, result, 0, s);
+        return result;
+    }
+
+    /**
+     * 计算样本上的平均轮廓系数
+     *
+     * <p>样本内只有自己一个点的聚类，其点的 s(i) 记为 0；只有一个聚类时整体得分为 0。</p>
+     *
+     * @param data   数据点，行优先存放
+     * @param dim    维度
+     * @param labels 每个点所属的聚类索引
+     * @param k      聚类数量
+     * @param sample 样本下标 (见 {@link #sample})
+     * @return 平均轮廓系数，取值 [-1, 1]
+     */
+    public static double score(double[] data, int dim, int[] labels, int k, int[] sample) {
+        int s = sample.length;
+        if (s < 2 || k < 2) {
+            return 0;
+        }
+        double[] sums = new double[k];
+        int[] counts = new int[k];
+        double total = 0;
+
+        for (int p = 0; p < s; p++) {
+            int i = sample[p];
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int q = 0; q < s; q++) {
+                if (q == p) continue;
+                int j = sample[q];
+                sums[labels[j]] += Math.sqrt(KMeansEngine.dist2(data, i * dim, data, j * dim, dim));
+                counts[labels[j]]++;
+            }
+
+            int own = labels[i];
+            if (counts[own] == 0) {
+                continue;  // 单点聚类 s(i) = 0
+            }
+            double a = sums[own] / counts[own];
+            double b = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                if (c != own && counts[c] > 0) {
+                    b = Math.min(b, sums[c] / counts[c]);
+                }
+            }
+            if (b == Double.POSITIVE_INFINITY) {
+                continue;  // 样本内没有其他聚类的点
+            }
+            double max = Math.max(a, b);
+            if (max > 0) {
+                total += (b - a) / max;
+            }
+        }
+        return total / s;
+    }
+}
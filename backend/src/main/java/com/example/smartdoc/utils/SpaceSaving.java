@@ -0,0 +1,283 @@
+package com.example.smartdoc.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 草图 - 在固定 m 个计数器内跟踪加权频数最高的键 (Metwally 等, 2005)
+ *
+ * <h3>更新规则:</h3>
+ * <pre>
+ * offer(key, w):
+ *   key 已被跟踪          → count[key] += w
+ *   未跟踪且计数器未满    → 新计数器 count = w, error = 0
+ *   未跟踪且计数器已满    → 替换计数最小的键 (最小值 c_min):
+ *                           count = c_min + w, error = c_min
+ * </pre>
+ *
+ * <h3>误差保证 (N 为总权重):</h3>
+ * <ul>
+ *   <li>被跟踪的键: count - error ≤ 真实值 ≤ count，且 error ≤ N / m</li>
+ *   <li>未被跟踪的键: 真实值 ≤ 当前最小计数 ≤ N / m</li>
+ *   <li>count_i - error_i ≥ 第 k+1 名的 count 时，第 i 个键一定属于真实的前 k 名</li>
+ * </ul>
+ *
+ * <p>计数器按 count 组织为带位置索引的最小堆，找最小值 O(1)，更新 O(log m)。
+ * 金额权重不是单位增量，无法使用原论文只支持 +1 的 Stream-Summary 链表结构。</p>
+ *
+ * <p>支持负权重 (撤销之前加入的金额): 只扣减已被跟踪的键，未被跟踪的键本来就计在误差内；
+ * 扣减不会破坏上面的上下界。</p>
+ *
+ * <p>本类不是线程安全的，并发访问由调用方加锁。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.HeavyHitterService
+ */
+public class SpaceSaving {
+
+    /** 序列化格式版本号 */
+    private static final byte FORMAT = 1;
+
+    /** 计数器数量 m */
+    private final int capacity;
+
+    /** 各计数器的键、计数、误差 (按计数器编号存放) */
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    /** 最小堆: heap[i] 为计数器编号，position[计数器编号] 为其在堆中的位置 */
+    private final int[] heap;
+    private final int[] position;
+
+    /** 键 → 计数器编号 */
+    private final Map<String, Integer> index;
+
+    /** 总权重 N */
+    private long total;
+
+    /**
+     * 一个被跟踪的键
+     *
+     * @param key        键
+     * @param count      计数 (真实值的上界)
+     * @param error      最大高估量 (count - error 为真实值的下界)
+     * @param guaranteed 是否一定属于真实的前 k 名
+     */
+    public record Entry(String key, long count, long error, boolean guaranteed) {
+    }
+
+    /**
+     * 创建空草图
+     *
+     * @param capacity 计数器数量 m
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity 必须 ≥ 1");
+        }
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.index = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 累加一个键的权重
+     *
+     * @param key    键
+     * @param weight 权重 (负数表示撤销)
+     */
+    public void offer(String key, long weight) {
+        if (weight == 0) return;
+        total += weight;
+        Integer slot = index.get(key);
+        if (slot != null) {
+            counts[slot] += weight;
+            if (weight > 0) siftDown(position[slot]); else siftUp(position[slot]);
+            return;
+        }
+        if (weight < 0) {
+            return;  // 未被跟踪，已计在误差内
+        }
+        if (size < capacity) {
+            int s = size++;
+            keys[s] = key;
+            counts[s] = weight;
+            errors[s] = 0;
+            index.put(key, s);
+            heap[s] = s;
+            position[s] = s;
+            siftUp(s);
+            return;
+        }
+        // 替换计数最小的键
+        int s = heap[0];
+        long min = Math.max(0, counts[s]);
+        index.remove(keys[s]);
+        keys[s] = key;
+        counts[s] = min + weight;
+        errors[s] = min;
+        index.put(key, s);
+        siftDown(0);
+    }
+
+    /**
+     * 计数最高的 k 个键
+     *
+     * @param k 数量
+     * @return 按计数降序 (计数 ≤ 0 的键不返回)
+     */
+    public List<Entry> top(int k) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        int n = 0;
+        while (n < Math.min(k, size) && counts[order[n]] > 0) n++;
+        // 第 k+1 名的计数；计数器未满时未跟踪的键真实值为 0
+        long next = n < size ? Math.max(0, counts[order[n]]) : minCount();
+
+        List<Entry> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int s = order[i];
+            result.add(new Entry(keys[s], counts[s], errors[s], counts[s] - errors[s] >= next));
+        }
+        return result;
+    }
+
+    /**
+     * 未被跟踪的键的真实值上界 (计数器未满时为 0)
+     *
+     * @return 当前最小计数
+     */
+    public long minCount() {
+        return size < capacity ? 0 : Math.max(0, counts[heap[0]]);
+    }
+
+    /**
+     * @return 总权重 N
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return 计数器数量 m
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 被跟踪的键数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 序列化
+     *
+     * <pre>
+     * [格式 byte][m int][N long][键数 int]
+     * 每个键: [键 UTF][计数 long][误差 long]
+     * </pre>
+     *
+     * @return 字节数组
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + size * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(capacity);
+            out.writeLong(total);
+            out.writeInt(size);
+            for (int s = 0; s < size; s++) {
+                out.writeUTF(keys[s]);
+                out.writeLong(counts[s]);
+                out.writeLong(errors[s]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原
+     *
+     * @param data 字节数组
+     * @return 草图
+     * @throws IllegalArgumentException 格式无法识别或数据不完整
+     */
+    public static SpaceSaving fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readByte() != FORMAT) {
+                throw new IllegalArgumentException("无法识别的 Space-Saving 格式");
+            }
+            SpaceSaving sketch = new SpaceSaving(in.readInt());
+            long total = in.readLong();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String key = in.readUTF();
+                long count = in.readLong();
+                long error = in.readLong();
+                sketch.offer(key, Math.max(1, count));
+                int s = sketch.index.get(key);
+                sketch.counts[s] = count;
+                sketch.errors[s] = error;
+            }
+            // 按实际计数重新建堆
+            for (int i = sketch.size / 2 - 1; i >= 0; i--) {
+                sketch.siftDown(i);
+            }
+            sketch.total = total;
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Space-Saving 数据不完整", e);
+        }
+    }
+
+    private void siftUp(int i) {
+        int s = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[s]) break;
+            place(i, heap[parent]);
+            i = parent;
+        }
+        place(i, s);
+    }
+
+    private void siftDown(int i) {
+        int s = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) child++;
+            if (counts[heap[child]] >= counts[s]) break;
+            place(i, heap[child]);
+            i = child;
+        }
+        place(i, s);
+    }
+
+    private void place(int i, int s) {
+        heap[i] = s;
+        position[s] = i;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.smartdoc.utils;
+
+/**
+ * 统计计算内核 - 求和、离差平方和、加权和、距离平方的统一入口
+ *
+ * <p>根据运行环境在两种实现之间选择:</p>
+ * <ul>
+ *   <li>{@link VectorKernels}: JDK Vector API 的 SIMD 实现，
+ *       需要启动参数 {@code --add-modules jdk.incubator.vector}</li>
+ *   <li>{@link ScalarKernels}: 逐元素循环，模块不可用、被禁用或数组太短时使用</li>
+ * </ul>
+ *
+ * <h3>启用条件:</h3>
+ * <pre>
+ * 1. jdk.incubator.vector 模块已加载 (mvn spring-boot:run 和 mvn test 已在 pom.xml 中配置；
+ *    直接运行 jar 时需要 java --add-modules jdk.incubator.vector -jar ...)
+ * 2. 系统属性 smartdoc.simd 不为 false (-Dsmartdoc.simd=false 可强制使用标量实现)
+ * 3. 数组长度 ≥ {@value #VECTOR_MIN_LENGTH}，更短的数组向量化的收益抵不过归约开销
+ * </pre>
+ *
+ * <h3>各调用方实际走的路径:</h3>
+ * <ul>
+ *   <li>{@link AnomalyDetectionUtil} 的标准差、{@link MoneyUtil} 的金额合计: 用户或全库的票据数组，通常达到阈值，走 SIMD</li>
+ *   <li>{@link LinearRegressionUtil}: 最多 12 个月份，低于阈值，始终走标量实现</li>
+ *   <li>{@link KMeansEngine} 的距离: 特征只有 2 维，低于阈值，始终走标量实现</li>
+ * </ul>
+ * <p>后两者统一经过本类只是为了调用方式一致，SIMD 对它们没有加速效果；
+ * 这么短的数组上向量归约的开销大于收益，因此不为它们降低阈值。</p>
+ *
+ * @author SmartDoc Team
+ * @see AnomalyDetectionUtil
+ * @see LinearRegressionUtil
+ * @see KMeansEngine
+ */
+public final class StatKernels {
+
+    /** 长度达到该值时才使用 SIMD 实现 */
+    public static final int VECTOR_MIN_LENGTH = 32;
+
+    /** 是否启用 SIMD 实现 (启动时确定) */
+    public static final boolean VECTOR_ENABLED = detect();
+
+    private StatKernels() {
+    }
+
+    /**
+     * 精确求和
+     *
+     * @param a 整数数组 (如以分为单位的金额)
+     * @return 总和
+     * @throws ArithmeticException 总和超出 long 范围
+     */
+    public static long sum(long[] a) {
+        return VECTOR_ENABLED && a.length >= VECTOR_MIN_LENGTH ? VectorKernels.sum(a) : ScalarKernels.sum(a);
+    }
+
+    /**
+     * 离差平方和 Σ(a[i] - mean)²
+     *
+     * @param a    整数数组
+     * @param mean 均值
+     * @return 离差平方和
+     */
+    public static double sumSquaredDeviations(long[] a, double mean) {
+        return VECTOR_ENABLED && a.length >= VECTOR_MIN_LENGTH
+                ? VectorKernels.sumSquaredDeviations(a, mean)
+                : ScalarKernels.sumSquaredDeviations(a, mean);
+    }
+
+    /**
+     * 按下标加权求和 Σ(i + 1) · a[i] (线性回归中的 Σxy，x 为 1, 2, 3 ...)
+     *
+     * @param a 整数数组
+     * @return 加权和
+     */
+    public static double indexWeightedSum(long[] a) {
+        return VECTOR_ENABLED && a.length >= VECTOR_MIN_LENGTH
+                ? VectorKernels.indexWeightedSum(a)
+                : ScalarKernels.indexWeightedSum(a);
+    }
+
+    /**
+     * 欧几里得距离平方
+     *
+     * @param x    向量 x 所在数组
+     * @param xOff x 的起始下标
+     * @param y    向量 y 所在数组
+     * @param yOff y 的起始下标
+     * @param len  维度
+     * @return Σ(x - y)²
+     */
+    public static double dist2(double[] x, int xOff, double[] y, int yOff, int len) {
+        return VECTOR_ENABLED && len >= VECTOR_MIN_LENGTH
+                ? VectorKernels.dist2(x, xOff, y, yOff, len)
+                : ScalarKernels.dist2(x, xOff, y, yOff, len);
+    }
+
+    /**
+     * 检测 SIMD 实现是否可用
+     */
+    private static boolean detect() {
+        if ("false".equalsIgnoreCase(System.getProperty("smartdoc.simd"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            // 只有一个通道 (CPU 不支持 SIMD) 时没有收益
+            return VectorKernels.lanes() > 1;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
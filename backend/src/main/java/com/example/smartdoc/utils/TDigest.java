@@ -0,0 +1,400 @@
+package com.example.smartdoc.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * t-digest - 可合并的分位数草图 (Dunning, 2019，合并式实现)
+ *
+ * <p>用若干个带权重的质心 (均值, 点数) 近似一组数值的分布。质心按均值有序，
+ * 两端 (q 接近 0 或 1) 的质心很小、中间的质心较大，因此中位数附近误差小、
+ * 尾部分位数 (p90 / p99) 也保持较高的相对精度。</p>
+ *
+ * <h3>压缩规则 (k1 尺度函数):</h3>
+ * <pre>
+ * k(q) = δ / 2π · asin(2q - 1)          δ = compression，k 的取值范围 [-δ/4, δ/4]
+ * 相邻质心按均值顺序合并，要求合并后的质心在 k 轴上跨度 ≤ 1
+ * 因此质心数 ≤ δ，与数据量无关
+ * </pre>
+ *
+ * <h3>复杂度:</h3>
+ * <pre>
+ * add:      均摊 O(log δ)，新数据先进入缓冲区，缓冲区满时排序并与已有质心归并压缩
+ * merge:    O(m log m)，m 为两个草图的质心数之和
+ * quantile: O(δ)，与数据量无关
+ * </pre>
+ *
+ * <p>数据量较少时每个点都是独立的质心，分位数结果与对排序后的原始数据线性插值相同
+ * (第 i 个点位于 (i - 0.5) / n 处)。
+ * 序列化格式见 {@link #toBytes()}，δ = 100 时单个草图不超过约 2 KB。</p>
+ *
+ * <p>本类不是线程安全的，并发访问由调用方加锁。</p>
+ *
+ * @author SmartDoc Team
+ * @see com.example.smartdoc.service.SpendDigestService
+ */
+public class TDigest {
+
+    /** 默认压缩参数 δ */
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    /** 序列化格式版本号 */
+    private static final byte FORMAT = 1;
+
+    /** 压缩参数 δ */
+    private final double compression;
+
+    /** 已压缩的质心 (按均值升序) */
+    private double[] means;
+    private long[] weights;
+    private int size;
+
+    /** 尚未压缩的新数据 */
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int bufferSize;
+
+    /** 总点数 */
+    private long count;
+
+    /** 最小值、最大值 (精确值，用于两端插值) */
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * 使用默认压缩参数创建空草图
+     */
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * 创建空草图
+     *
+     * @param compression 压缩参数 δ (越大越精确，质心数上限也越大)
+     */
+    public TDigest(double compression) {
+        if (!(compression >= 10)) {
+            throw new IllegalArgumentException("compression 不能小于 10");
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new long[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new long[capacity * 5];
+    }
+
+    /**
+     * 加入一个数值
+     *
+     * @param x 数值
+     */
+    public void add(double x) {
+        add(x, 1);
+    }
+
+    /**
+     * 加入一个带权重的数值 (等价于加入 w 个相同的数值)
+     *
+     * @param x 数值
+     * @param w 权重 (≥ 1)
+     */
+    public void add(double x, long w) {
+        if (Double.isNaN(x)) {
+            throw new IllegalArgumentException("不能加入 NaN");
+        }
+        if (x < min) min = x;
+        if (x > max) max = x;
+        addCentroid(x, w);
+    }
+
+    /**
+     * 合并另一个草图 (另一个草图不会被修改，但其缓冲区会被压缩)
+     *
+     * @param other 另一个草图
+     */
+    public void merge(TDigest other) {
+        if (other.count == 0) return;
+        other.compress();
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+        for (int i = 0; i < other.size; i++) {
+            addCentroid(other.means[i], other.weights[i]);
+        }
+    }
+
+    /**
+     * 估计分位数
+     *
+     * <p>分位点对应的位置为 q · count。每个质心的中心位于其累计权重的中点，相邻质心的中心之间线性插值；
+     * 第一个质心之前从最小值插值，最后一个质心之后插值到最大值。</p>
+     *
+     * @param q 分位点 [0, 1]
+     * @return 分位数估计值，草图为空时返回 NaN
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("分位点应在 [0, 1] 之间");
+        }
+        compress();
+        if (count == 0) return Double.NaN;
+        if (size == 1 && weights[0] == 1) return means[0];
+
+        double index = q * count;
+        // 第一个质心的中心之前: 在 [min, means[0]] 之间插值
+        double center = weights[0] / 2.0;
+        if (index < center) {
+            if (weights[0] == 1) return min;
+            return min + (means[0] - min) * index / center;
+        }
+
+        for (int i = 0; i < size - 1; i++) {
+            double next = center + (weights[i] + weights[i + 1]) / 2.0;
+            if (index < next) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (next - center);
+            }
+            center = next;
+        }
+
+        // 最后一个质心的中心之后: 在 [means[last], max] 之间插值
+        int last = size - 1;
+        if (weights[last] == 1 || count - center <= 0) return max;
+        return means[last] + (max - means[last]) * Math.min(1, (index - center) / (count - center));
+    }
+
+    /**
+     * @return 平均值 (由质心精确计算)，草图为空时返回 NaN
+     */
+    public double mean() {
+        compress();
+        if (count == 0) return Double.NaN;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += means[i] * weights[i];
+        }
+        return sum / count;
+    }
+
+    /**
+     * @return 总点数
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return 最小值，草图为空时返回 +∞
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return 最大值，草图为空时返回 -∞
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @return 压缩后的质心数
+     */
+    public int centroidCount() {
+        compress();
+        return size;
+    }
+
+    /**
+     * 序列化为紧凑的字节数组
+     *
+     * <pre>
+     * [格式 byte][δ double][最小值 double][最大值 double][质心数 varint]
+     * 每个质心: [均值 double][权重 varint]
+     * </pre>
+     *
+     * @return 字节数组
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buf = ByteBuffer.allocate(1 + 8 * 3 + 5 + size * (8 + 10));
+        buf.put(FORMAT);
+        buf.putDouble(compression);
+        buf.putDouble(min);
+        buf.putDouble(max);
+        putVarLong(buf, size);
+        for (int i = 0; i < size; i++) {
+            buf.putDouble(means[i]);
+            putVarLong(buf, weights[i]);
+        }
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原草图
+     *
+     * @param bytes 字节数组
+     * @return 草图
+     * @throws IllegalArgumentException 格式无法识别或数据不完整
+     */
+    public static TDigest fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            if (buf.get() != FORMAT) {
+                throw new IllegalArgumentException("无法识别的 t-digest 格式");
+            }
+            TDigest digest = new TDigest(buf.getDouble());
+            digest.min = buf.getDouble();
+            digest.max = buf.getDouble();
+            int n = (int) getVarLong(buf);
+            digest.ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                digest.means[i] = buf.getDouble();
+                digest.weights[i] = getVarLong(buf);
+                digest.count += digest.weights[i];
+            }
+            digest.size = n;
+            return digest;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("t-digest 数据不完整", e);
+        }
+    }
+
+    /**
+     * 质心放入缓冲区，缓冲区满时压缩
+     */
+    private void addCentroid(double mean, long w) {
+        if (w < 1) {
+            throw new IllegalArgumentException("权重必须 ≥ 1");
+        }
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferSize] = mean;
+        bufferWeights[bufferSize] = w;
+        bufferSize++;
+        count += w;
+    }
+
+    /**
+     * 把缓冲区排序后与已有质心归并，并按 k1 尺度函数合并相邻质心
+     */
+    private void compress() {
+        if (bufferSize == 0) return;
+        sort(bufferMeans, bufferWeights, 0, bufferSize - 1);
+
+        int total = size + bufferSize;
+        double[] newMeans = new double[Math.max(total, means.length)];
+        long[] newWeights = new long[newMeans.length];
+        int out = -1;
+        double weightSoFar = 0;   // 已完成质心的总权重
+        double weightLimit = 0;   // 当前质心合并后允许达到的累计权重
+        int i = 0;
+        int j = 0;
+        while (i < size || j < bufferSize) {
+            double m;
+            long w;
+            if (j >= bufferSize || (i < size && means[i] <= bufferMeans[j])) {
+                m = means[i];
+                w = weights[i++];
+            } else {
+                m = bufferMeans[j];
+                w = bufferWeights[j++];
+            }
+
+            if (out >= 0 && weightSoFar + newWeights[out] + w <= weightLimit) {
+                newWeights[out] += w;
+                newMeans[out] += (m - newMeans[out]) * w / newWeights[out];
+            } else {
+                if (out >= 0) {
+                    weightSoFar += newWeights[out];
+                }
+                out++;
+                newMeans[out] = m;
+                newWeights[out] = w;
+                weightLimit = count * qOfK(kOfQ(weightSoFar / count) + 1);
+            }
+        }
+
+        means = newMeans;
+        weights = newWeights;
+        size = out + 1;
+        bufferSize = 0;
+    }
+
+    private double kOfQ(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, q) - 1);
+    }
+
+    private double qOfK(double k) {
+        double limit = compression / 4;
+        if (k >= limit) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > means.length) {
+            means = new double[n];
+            weights = new long[n];
+        }
+    }
+
+    /**
+     * 按均值对并列数组快速排序 ([lo, hi] 闭区间)
+     */
+    private static void sort(double[] m, long[] w, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = m[(lo + hi) >>> 1];
+            int a = lo;
+            int b = hi;
+            while (a <= b) {
+                while (m[a] < pivot) a++;
+                while (m[b] > pivot) b--;
+                if (a <= b) {
+                    swap(m, w, a++, b--);
+                }
+            }
+            // 先递归较短的一侧，保证栈深度为 O(log n)
+            if (b - lo < hi - a) {
+                sort(m, w, lo, b);
+                lo = a;
+            } else {
+                sort(m, w, a, hi);
+                hi = b;
+            }
+        }
+        for (int a = lo + 1; a <= hi; a++) {
+            for (int b = a; b > lo && m[b - 1] > m[b]; b--) {
+                swap(m, w, b - 1, b);
+            }
+        }
+    }
+
+    private static void swap(double[] m, long[] w, int a, int b) {
+        double tm = m[a];
+        m[a] = m[b];
+        m[b] = tm;
+        long tw = w[a];
+        w[a] = w[b];
+        w[b] = tw;
+    }
+
+    private static void putVarLong(ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private static long getVarLong(ByteBuffer buf) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalArgumentException("varint 过长");
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.smartdoc.utils;
+
+import java.util.function.Consumer;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务工具类 - 在事务提交 (或结束) 后执行回调
+ * 
+ * <p>用于维护内存状态 (缓存版本号、内存索引等)：
+ * 如果在事务提交前就修改内存，并发读请求可能读到尚未提交的状态，
+ * 事务回滚时内存也无法随之撤销。</p>
+ * 
+ * @author SmartDoc Team
+ */
+public class TransactionUtil {
+
+    /**
+     * 在当前事务提交后执行任务；不在事务中时立即执行
+     * <p>事务回滚时任务不会执行。</p>
+     * 
+     * @param task 待执行的任务
+     */
+    public static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 在当前事务结束 (提交或回滚) 后执行任务；不在事务中时立即以 "已提交" 执行
+     * <p>用于在事务进行期间登记 "有未完成的写操作"、结束后再撤销登记的场景。</p>
+     * 
+     * @param task 待执行的任务，参数为 true 表示事务已提交
+     */
+    public static void afterCompletion(Consumer<Boolean> task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    task.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            task.accept(true);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.smartdoc.utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 统计内核的 SIMD 实现 - 基于 JDK Vector API (jdk.incubator.vector)
+ *
+ * <p>按 CPU 支持的最宽向量 (SPECIES_PREFERRED) 一次处理多个元素，
+ * 每条通道维护独立的累加器，循环结束后再把各通道归约为一个值，尾部不足一个向量的元素逐个处理。</p>
+ *
+ * <p>本类直接引用孵化模块中的类型，只能在启动参数包含 {@code --add-modules jdk.incubator.vector} 时加载。
+ * 业务代码应通过 {@link StatKernels} 调用，由它判断模块是否可用。</p>
+ *
+ * <h3>与标量实现的差异:</h3>
+ * <ul>
+ *   <li>整数求和结果完全一致 (溢出时同样抛出 ArithmeticException)</li>
+ *   <li>浮点累加的顺序不同，结果可能在最后几位有舍入差异</li>
+ * </ul>
+ *
+ * @author SmartDoc Team
+ * @see StatKernels
+ * @see ScalarKernels
+ */
+public final class VectorKernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * @return 每个向量包含的 long 通道数
+     */
+    public static int lanes() {
+        return LONGS.length();
+    }
+
+    /**
+     * 精确求和
+     *
+     * <p>向量加法在溢出时会静默回绕，因此同时统计各通道的最大值和最小值：
+     * 只要 n · max|a[i]| 不超出 long 范围，各通道的部分和及归约结果都不会溢出；
+     * 否则改用逐个 addExact 的标量实现，保证溢出时抛出异常而不是返回错误结果。</p>
+     *
+     * @throws ArithmeticException 总和超出 long 范围
+     */
+    public static long sum(long[] a) {
+        int n = a.length;
+        int bound = LONGS.loopBound(n);
+        LongVector acc = LongVector.zero(LONGS);
+        LongVector max = LongVector.zero(LONGS);
+        LongVector min = LongVector.zero(LONGS);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector v = LongVector.fromArray(LONGS, a, i);
+            acc = acc.add(v);
+            max = max.max(v);
+            min = min.min(v);
+        }
+
+        long lo = min.reduceLanes(VectorOperators.MIN);
+        long hi = max.reduceLanes(VectorOperators.MAX);
+        long limit = Long.MAX_VALUE / Math.max(1, bound);
+        if (lo == Long.MIN_VALUE || -lo > limit || hi > limit) {
+            return ScalarKernels.sum(a);
+        }
+
+        long total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            total = Math.addExact(total, a[i]);
+        }
+        return total;
+    }
+
+    /**
+     * 离差平方和 Σ(a[i] - mean)²
+     */
+    public static double sumSquaredDeviations(long[] a, double mean) {
+        int n = a.length;
+        int bound = LONGS.loopBound(n);
+        DoubleVector m = DoubleVector.broadcast(DOUBLES, mean);
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            DoubleVector d = toDoubles(LongVector.fromArray(LONGS, a, i)).sub(m);
+            acc = d.fma(d, acc);
+        }
+
+        double total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double d = a[i] - mean;
+            total += d * d;
+        }
+        return total;
+    }
+
+    /**
+     * 按下标加权求和 Σ(i + 1) · a[i]
+     */
+    public static double indexWeightedSum(long[] a) {
+        int n = a.length;
+        int bound = LONGS.loopBound(n);
+        // 各通道的权重 [1, 2, ..., L]，每轮整体加 L
+        DoubleVector weight = DoubleVector.zero(DOUBLES).addIndex(1).add(1.0);
+        DoubleVector step = DoubleVector.broadcast(DOUBLES, LONGS.length());
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            acc = toDoubles(LongVector.fromArray(LONGS, a, i)).fma(weight, acc);
+            weight = weight.add(step);
+        }
+
+        double total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            total += (double) (i + 1) * a[i];
+        }
+        return total;
+    }
+
+    /**
+     * 欧几里得距离平方 Σ(x[xOff + t] - y[yOff + t])²，t ∈ [0, len)
+     */
+    public static double dist2(double[] x, int xOff, double[] y, int yOff, int len) {
+        int bound = DOUBLES.loopBound(len);
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int t = 0;
+        for (; t < bound; t += DOUBLES.length()) {
+            DoubleVector d = DoubleVector.fromArray(DOUBLES, x, xOff + t)
+                    .sub(DoubleVector.fromArray(DOUBLES, y, yOff + t));
+            acc = d.fma(d, acc);
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; t < len; t++) {
+            double d = x[xOff + t] - y[yOff + t];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /**
+     * long 向量逐通道转换为 double 向量 (两者位宽相同，通道数一致)
+     */
+    private static DoubleVector toDoubles(LongVector v) {
+        return (DoubleVector) v.convertShape(VectorOperators.L2D, DOUBLES, 0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.smartdoc.utils.BudgetSimulator;
+
+/**
+ * 预算超支模拟基准测试
+ *
+ * <p>测量 {@link BudgetSimulator#simulate} 每秒能完成的路径数 (结果中的 ops/s 即 paths/s)。
+ * 每次调用模拟 {@value #PATHS} 条路径，历史为 90 天 (约 40% 的日子没有消费)，
+ * 分别在 1 个线程和全部处理器的 ForkJoinPool 中运行，对比并行的加速比。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn test-compile
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.example.smartdoc.benchmark.BudgetSimulatorBenchmark
+ * </pre>
+ *
+ * <h3>实测结果 (JDK 17.0.9, Intel Xeon, 仅 1 个可用处理器):</h3>
+ * <pre>
+ * Benchmark                          (remainingDays)  (threads)   Mode  Cnt         Score         Error  Units
+ * BudgetSimulatorBenchmark.simulate               15          1  thrpt    5   9774344.696 ± 1165334.136  ops/s
+ * BudgetSimulatorBenchmark.simulate               15          0  thrpt    5  10178141.064 ±  732739.244  ops/s
+ * BudgetSimulatorBenchmark.simulate               30          1  thrpt    5   7323013.140 ± 1566009.586  ops/s
+ * BudgetSimulatorBenchmark.simulate               30          0  thrpt    5   6797079.181 ± 4696152.060  ops/s
+ * </pre>
+ * <p>该环境下 threads=0 (全部处理器) 也只有 1 个线程，两组差异在误差范围内，
+ * 只说明并行分块本身没有额外开销；加速比需要在多核机器上重新测量。
+ * 剩余 30 天的路径步数是 15 天的 2 倍，吞吐约为 0.7 倍 (每次调用还有与天数无关的排序和汇总开销)。</p>
+ *
+ * @author SmartDoc Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BudgetSimulatorBenchmark {
+
+    /** 每次调用的路径数 (与线上默认值一致) */
+    private static final int PATHS = 10000;
+
+    /** 本月剩余天数 (月中 / 月初) */
+    @Param({"15", "30"})
+    public int remainingDays;
+
+    /** 线程数: 1 或全部处理器 */
+    @Param({"1", "0"})
+    public int threads;
+
+    /** 历史日消费 (分) */
+    private long[] daily;
+
+    private ForkJoinPool pool;
+
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        daily = new long[90];
+        for (int i = 0; i < daily.length; i++) {
+            daily[i] = random.nextInt(10) < 4 ? 0 : 2000 + random.nextInt(8000);
+        }
+        pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public BudgetSimulator.Result simulate() {
+        long s = seed++;
+        return pool.submit(() -> BudgetSimulator.simulate(daily, 150000, 240000, remainingDays, PATHS, s)).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BudgetSimulatorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
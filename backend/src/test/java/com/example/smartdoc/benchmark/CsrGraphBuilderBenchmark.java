@@ -0,0 +1,185 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.smartdoc.utils.CsrGraph;
+
+/**
+ * 商户共现图构建基准测试
+ *
+ * <p>对比旧实现 (HashMap&lt;Long, Integer&gt; 累加边权) 与
+ * 新实现 ({@link CsrGraph.Builder} 的基本类型开放寻址表) 从购物篮到 CSR 的耗时。
+ * 购物篮含 2~6 个商户，商户按近似 Zipf 分布抽取 (少数连锁商户出现在大量购物篮中)，
+ * 与 MerchantGraphService 的两两加边方式相同。</p>
+ *
+ * <p>旧实现只做到拆出 targets / weights 数组为止 (不计算顶点强度)，对旧实现略有利。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn test-compile
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.example.smartdoc.benchmark.CsrGraphBuilderBenchmark
+ * </pre>
+ *
+ * <h3>实测结果 (JDK 17.0.9, Intel Xeon, 1 个可用处理器, -Xmx2g, -prof gc):</h3>
+ * <pre>
+ * Benchmark                                           (baskets)  Mode  Cnt           Score      Error  Units
+ * CsrGraphBuilderBenchmark.boxed                         100000  avgt    5        1328.943 ±  144.492  ms/op
+ * CsrGraphBuilderBenchmark.boxed:gc.alloc.rate.norm      100000  avgt    5   135672856.000 ±    0.001   B/op
+ * CsrGraphBuilderBenchmark.boxed                        1000000  avgt    5       23672.676 ± 5790.670  ms/op
+ * CsrGraphBuilderBenchmark.boxed:gc.alloc.rate.norm     1000000  avgt    5  1432293630.400 ±   55.106   B/op
+ * CsrGraphBuilderBenchmark.primitive                     100000  avgt    5          96.815 ±    5.711  ms/op
+ * CsrGraphBuilderBenchmark.primitive:gc.alloc.rate.norm  100000  avgt    5    50726496.769 ±    4.356   B/op
+ * CsrGraphBuilderBenchmark.primitive                    1000000  avgt    5        1245.633 ±  200.544  ms/op
+ * CsrGraphBuilderBenchmark.primitive:gc.alloc.rate.norm 1000000  avgt    5   416116256.000 ±    0.001   B/op
+ * </pre>
+ * <p>旧实现的大部分时间花在 GC 上 (100 万购物篮时 5 轮测量的 gc.time 合计 28.5 s)，
+ * 单核环境下放大了差距；多核机器上并发 GC 会缩小耗时差，但分配量 (约 3.4 倍) 不受影响。</p>
+ *
+ * @author SmartDoc Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class CsrGraphBuilderBenchmark {
+
+    /** 商户数 */
+    private static final int MERCHANTS = 20000;
+
+    /** 购物篮数 */
+    @Param({"100000", "1000000"})
+    public int baskets;
+
+    /** 购物篮内的商户编号，相邻两个 offsets 之间为一个购物篮 */
+    private int[] members;
+
+    private int[] offsets;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        offsets = new int[baskets + 1];
+        int[] buffer = new int[baskets * 6];
+        int n = 0;
+        for (int i = 0; i < baskets; i++) {
+            int size = 2 + random.nextInt(5);
+            int start = n;
+            while (n - start < size) {
+                // 两个均匀数之积近似 Zipf: 小编号的商户更常见
+                int m = (int) ((long) random.nextInt(MERCHANTS) * (random.nextInt(MERCHANTS) + 1) / MERCHANTS);
+                boolean seen = false;
+                for (int j = start; j < n; j++) {
+                    if (buffer[j] == m) seen = true;
+                }
+                if (!seen) buffer[n++] = m;
+            }
+            offsets[i + 1] = n;
+        }
+        members = Arrays.copyOf(buffer, n);
+    }
+
+    @Benchmark
+    public CsrGraph primitive() {
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        for (int i = 0; i < baskets; i++) {
+            for (int x = offsets[i]; x < offsets[i + 1]; x++) {
+                for (int y = x + 1; y < offsets[i + 1]; y++) {
+                    builder.addEdge(members[x], members[y], 1);
+                }
+            }
+        }
+        return builder.build(2);
+    }
+
+    @Benchmark
+    public int[][] boxed() {
+        Map<Long, Integer> edges = new HashMap<>();
+        int vertices = 0;
+        for (int i = 0; i < baskets; i++) {
+            for (int x = offsets[i]; x < offsets[i + 1]; x++) {
+                for (int y = x + 1; y < offsets[i + 1]; y++) {
+                    int a = members[x];
+                    int b = members[y];
+                    if (a == b) continue;
+                    vertices = Math.max(vertices, Math.max(a, b) + 1);
+                    long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+                    edges.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        return boxedBuild(edges, vertices, 2);
+    }
+
+    /**
+     * 旧版 Builder.build 的转换过程 (遍历 HashMap 两次)
+     */
+    private static int[][] boxedBuild(Map<Long, Integer> edges, int vertices, int minWeight) {
+        int[] degree = new int[vertices];
+        edges.forEach((key, w) -> {
+            if (w < minWeight) return;
+            degree[(int) (key >>> 32)]++;
+            degree[(int) (long) key]++;
+        });
+        int[] remap = new int[vertices];
+        int n = 0;
+        for (int v = 0; v < vertices; v++) {
+            remap[v] = degree[v] > 0 ? n++ : -1;
+        }
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < vertices; v++) {
+            if (remap[v] < 0) continue;
+            offsets[remap[v] + 1] = offsets[remap[v]] + degree[v];
+        }
+        long[] packed = new long[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        edges.forEach((key, w) -> {
+            if (w < minWeight) return;
+            int a = remap[(int) (key >>> 32)];
+            int b = remap[(int) (long) key];
+            packed[fill[a]++] = ((long) w << 32) | b;
+            packed[fill[b]++] = ((long) w << 32) | a;
+        });
+        int[] targets = new int[packed.length];
+        int[] weights = new int[packed.length];
+        for (int v = 0; v < n; v++) {
+            int from = offsets[v];
+            int to = offsets[v + 1];
+            Arrays.sort(packed, from, to);
+            for (int e = from; e < to; e++) {
+                long p = packed[to - 1 - (e - from)];
+                targets[e] = (int) p;
+                weights[e] = (int) (p >>> 32);
+            }
+        }
+        return new int[][]{offsets, targets, weights};
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CsrGraphBuilderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
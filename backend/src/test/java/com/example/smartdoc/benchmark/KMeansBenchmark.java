@@ -0,0 +1,188 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.smartdoc.utils.KMeansEngine;
+import com.example.smartdoc.utils.KMeansUtil;
+
+/**
+ * K-Means 基准测试
+ *
+ * <p>对比三种实现在 (日期, 金额) 二维数据上的耗时，K=3，最多 100 次迭代:</p>
+ * <ul>
+ *   <li>legacyPointList: 重构前的实现 (List&lt;Point&gt; + 随机初始化 + Math.pow + 每个中心重扫全部点)</li>
+ *   <li>engineArrays: {@link KMeansEngine} 直接处理 double[] (k-means++ + Hamerly + 单趟 M 步)</li>
+ *   <li>utilFacade: 通过 {@link KMeansUtil#fit} 调用，包含 Point 列表与数组之间的拷贝开销</li>
+ * </ul>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn test-compile
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.example.smartdoc.benchmark.KMeansBenchmark
+ * </pre>
+ *
+ * <h3>实测结果 (JDK 17.0.9, Intel Xeon, 1 个可用处理器):</h3>
+ * <pre>
+ * Benchmark                           (n)  Mode  Cnt   Score   Error  Units
+ * KMeansBenchmark.engineArrays       1000  avgt    5   0.072 ± 0.023  ms/op
+ * KMeansBenchmark.engineArrays      10000  avgt    5   2.221 ± 1.464  ms/op
+ * KMeansBenchmark.engineArrays     100000  avgt    5  18.703 ± 3.622  ms/op
+ * KMeansBenchmark.legacyPointList    1000  avgt    5   0.086 ± 0.011  ms/op
+ * KMeansBenchmark.legacyPointList   10000  avgt    5   2.273 ± 0.128  ms/op
+ * KMeansBenchmark.legacyPointList  100000  avgt    5  25.362 ± 1.025  ms/op
+ * KMeansBenchmark.utilFacade         1000  avgt    5   0.103 ± 0.032  ms/op
+ * KMeansBenchmark.utilFacade        10000  avgt    5   2.467 ± 0.693  ms/op
+ * KMeansBenchmark.utilFacade       100000  avgt    5  26.009 ± 4.994  ms/op
+ * </pre>
+ * <p>三个分离明显的群体上旧实现的随机初始化也只需几轮就收敛，Hamerly 剪枝能省下的距离计算有限：
+ * 引擎在 10 万点时快约 1.35 倍，1 千 / 1 万点时与旧实现相差在误差范围内。
+ * 单核机器上并行分配没有收益 (1 万点的误差主要来自 ForkJoinPool 调度)；
+ * utilFacade 的 Point 与数组拷贝在 10 万点时约 7 ms，抵消了引擎的收益，因此 ClusteringService 直接构造 double[] 调用引擎。
+ * 引擎与朴素 Lloyd 结果一致性见 KMeansEngineTest。</p>
+ *
+ * @author SmartDoc Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KMeansBenchmark {
+
+    private static final int K = 3;
+    private static final int MAX_ITERATIONS = 100;
+
+    /** 数据点数量 (≥ 10000 时引擎走并行分配) */
+    @Param({"1000", "10000", "100000"})
+    public int n;
+
+    /** 行优先数据 [day0, amount0, day1, amount1, ...] */
+    private double[] data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 三个消费群体: 月初大额固定支出 / 全月小额日常 / 月末中额采购
+        SplittableRandom random = new SplittableRandom(42);
+        data = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    data[2 * i] = 1 + random.nextInt(5);
+                    data[2 * i + 1] = 3000 + random.nextGaussian() * 300;
+                }
+                case 1 -> {
+                    data[2 * i] = 1 + random.nextInt(31);
+                    data[2 * i + 1] = 30 + Math.abs(random.nextGaussian() * 15);
+                }
+                default -> {
+                    data[2 * i] = 25 + random.nextInt(7);
+                    data[2 * i + 1] = 600 + random.nextGaussian() * 120;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public KMeansEngine.Result engineArrays() {
+        return KMeansEngine.fit(data.clone(), 2, K, MAX_ITERATIONS, new SplittableRandom(7));
+    }
+
+    @Benchmark
+    public KMeansUtil.ClusterResult utilFacade() {
+        return KMeansUtil.fit(toPoints(), K, MAX_ITERATIONS, new SplittableRandom(7));
+    }
+
+    /**
+     * 重构前 KMeansUtil.fit 的逻辑
+     */
+    @Benchmark
+    public List<double[]> legacyPointList() {
+        List<KMeansUtil.Point> rawData = toPoints();
+        List<KMeansUtil.Point> centroids = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < K; i++) {
+            KMeansUtil.Point p = rawData.get(random.nextInt(rawData.size()));
+            centroids.add(new KMeansUtil.Point(p.getX(), p.getY(), i));
+        }
+
+        boolean changed = true;
+        int iter = 0;
+        while (changed && iter < MAX_ITERATIONS) {
+            changed = false;
+            iter++;
+            for (KMeansUtil.Point p : rawData) {
+                int nearest = -1;
+                double minDist = Double.MAX_VALUE;
+                for (int i = 0; i < centroids.size(); i++) {
+                    KMeansUtil.Point c = centroids.get(i);
+                    double dist = Math.sqrt(Math.pow(p.getX() - c.getX(), 2) + Math.pow(p.getY() - c.getY(), 2));
+                    if (dist < minDist) {
+                        minDist = dist;
+                        nearest = i;
+                    }
+                }
+                if (p.getClusterIndex() != nearest) {
+                    p.setClusterIndex(nearest);
+                    changed = true;
+                }
+            }
+            for (int i = 0; i < K; i++) {
+                double sumX = 0, sumY = 0;
+                int count = 0;
+                for (KMeansUtil.Point p : rawData) {
+                    if (p.getClusterIndex() == i) {
+                        sumX += p.getX();
+                        sumY += p.getY();
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    centroids.get(i).setX(sumX / count);
+                    centroids.get(i).setY(sumY / count);
+                }
+            }
+        }
+
+        List<double[]> result = new ArrayList<>(K);
+        for (KMeansUtil.Point c : centroids) {
+            result.add(new double[]{c.getX(), c.getY()});
+        }
+        return result;
+    }
+
+    private List<KMeansUtil.Point> toPoints() {
+        List<KMeansUtil.Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(new KMeansUtil.Point(data[2 * i], data[2 * i + 1], -1));
+        }
+        return points;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KMeansBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
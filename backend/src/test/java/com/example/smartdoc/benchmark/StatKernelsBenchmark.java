@@ -0,0 +1,188 @@
+package com.example.smartdoc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.smartdoc.utils.ScalarKernels;
+import com.example.smartdoc.utils.VectorKernels;
+
+/**
+ * 统计内核基准测试
+ *
+ * <p>对比三种实现在金额 (分) 数组上的耗时:</p>
+ * <ul>
+ *   <li>legacy*: 装箱的 List&lt;Double&gt; 逐个累加 (金额改为 long 分之前的写法)</li>
+ *   <li>scalar*: {@link ScalarKernels} 的原始数组标量循环</li>
+ *   <li>vector*: {@link VectorKernels} 的 SIMD 实现</li>
+ * </ul>
+ * <p>另外对比高维 (dim=64) 欧氏距离平方的标量与向量实现，
+ * 二维的 K-Means 距离不走向量路径 (一个向量寄存器都填不满)。</p>
+ *
+ * <h3>运行方式:</h3>
+ * <pre>
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector \
+ *      -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.example.smartdoc.benchmark.StatKernelsBenchmark
+ * </pre>
+ *
+ * <h3>实测结果 (JDK 17.0.9, Intel Xeon, AVX-512 即每个向量 8 个 long 通道, 1 个可用处理器):</h3>
+ * <pre>
+ * Benchmark                                            (n)  Mode  Cnt     Score     Error  Units
+ * StatKernelsBenchmark.legacySum                      1000  avgt    5     0.787 ±   0.087  us/op
+ * StatKernelsBenchmark.legacySum                   1000000  avgt    5  1303.916 ±  46.620  us/op
+ * StatKernelsBenchmark.legacySumSquaredDeviations     1000  avgt    5     0.973 ±   0.483  us/op
+ * StatKernelsBenchmark.legacySumSquaredDeviations  1000000  avgt    5  1500.257 ± 354.269  us/op
+ * StatKernelsBenchmark.scalarDist2                    1000  avgt    5     0.050 ±   0.004  us/op
+ * StatKernelsBenchmark.scalarDist2                 1000000  avgt    5     0.050 ±   0.006  us/op
+ * StatKernelsBenchmark.scalarIndexWeightedSum         1000  avgt    5     1.201 ±   0.141  us/op
+ * StatKernelsBenchmark.scalarIndexWeightedSum      1000000  avgt    5  1498.028 ± 194.457  us/op
+ * StatKernelsBenchmark.scalarSum                      1000  avgt    5     0.533 ±   0.108  us/op
+ * StatKernelsBenchmark.scalarSum                   1000000  avgt    5   647.958 ± 281.493  us/op
+ * StatKernelsBenchmark.scalarSumSquaredDeviations     1000  avgt    5     0.735 ±   0.050  us/op
+ * StatKernelsBenchmark.scalarSumSquaredDeviations  1000000  avgt    5   844.853 ±  30.416  us/op
+ * StatKernelsBenchmark.vectorDist2                    1000  avgt    5     0.011 ±   0.001  us/op
+ * StatKernelsBenchmark.vectorDist2                 1000000  avgt    5     0.012 ±   0.004  us/op
+ * StatKernelsBenchmark.vectorIndexWeightedSum         1000  avgt    5     0.194 ±   0.022  us/op
+ * StatKernelsBenchmark.vectorIndexWeightedSum      1000000  avgt    5   342.199 ±  15.710  us/op
+ * StatKernelsBenchmark.vectorSum                      1000  avgt    5     0.141 ±   0.008  us/op
+ * StatKernelsBenchmark.vectorSum                   1000000  avgt    5   365.323 ±  73.336  us/op
+ * StatKernelsBenchmark.vectorSumSquaredDeviations     1000  avgt    5     0.153 ±   0.015  us/op
+ * StatKernelsBenchmark.vectorSumSquaredDeviations  1000000  avgt    5   349.786 ±  26.676  us/op
+ * </pre>
+ * <p>n = 1000 时 SIMD 比标量快 3.8~6.2 倍；n = 1000000 时受内存带宽限制，为 1.8~4.4 倍。
+ * dist2 固定为 64 维，与 n 无关 (约 4.5 倍)。这些数字只说明内核本身，
+ * 线性回归 (≤ 12 点) 与二维 K-Means 距离低于 {@code StatKernels.VECTOR_MIN_LENGTH}，不走 SIMD 路径。</p>
+ *
+ * @author SmartDoc Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class StatKernelsBenchmark {
+
+    private static final int DIM = 64;
+
+    /** 数组长度 (1000 约为单个用户的票据数，1000000 为全库规模) */
+    @Param({"1000", "1000000"})
+    public int n;
+
+    /** 金额 (分) */
+    private long[] cents;
+
+    /** 同一批金额的装箱版本 (元) */
+    private List<Double> boxed;
+
+    private double mean;
+
+    /** 高维距离的两个向量 */
+    private double[] x;
+    private double[] y;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        cents = new long[n];
+        boxed = new ArrayList<>(n);
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            cents[i] = 100 + random.nextLong(500_000);
+            boxed.add(cents[i] / 100.0);
+            total += cents[i];
+        }
+        mean = (double) total / n;
+
+        x = new double[DIM];
+        y = new double[DIM];
+        for (int i = 0; i < DIM; i++) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public double legacySum() {
+        double sum = 0;
+        for (Double v : boxed) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scalarSum() {
+        return ScalarKernels.sum(cents);
+    }
+
+    @Benchmark
+    public long vectorSum() {
+        return VectorKernels.sum(cents);
+    }
+
+    @Benchmark
+    public double legacySumSquaredDeviations() {
+        double m = mean / 100.0;
+        double sum = 0;
+        for (Double v : boxed) {
+            sum += Math.pow(v - m, 2);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double scalarSumSquaredDeviations() {
+        return ScalarKernels.sumSquaredDeviations(cents, mean);
+    }
+
+    @Benchmark
+    public double vectorSumSquaredDeviations() {
+        return VectorKernels.sumSquaredDeviations(cents, mean);
+    }
+
+    @Benchmark
+    public double scalarIndexWeightedSum() {
+        return ScalarKernels.indexWeightedSum(cents);
+    }
+
+    @Benchmark
+    public double vectorIndexWeightedSum() {
+        return VectorKernels.indexWeightedSum(cents);
+    }
+
+    @Benchmark
+    public double scalarDist2() {
+        return ScalarKernels.dist2(x, 0, y, 0, DIM);
+    }
+
+    @Benchmark
+    public double vectorDist2() {
+        return VectorKernels.dist2(x, 0, y, 0, DIM);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StatKernelsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.smartdoc.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.example.smartdoc.model.InvoiceData;
+import com.example.smartdoc.utils.KnowledgeGraphUtil;
+
+/**
+ * 测试 / 基准测试用的快照入口 - 调用 service 包内可见的快照构建与汇总方法
+ *
+ * @author SmartDoc Team
+ */
+public final class SnapshotFixtures {
+
+    private SnapshotFixtures() {
+    }
+
+    /**
+     * 按给定顺序把票据构建为快照 (与 UserSnapshotService 的逐行构建相同)
+     */
+    public static UserSnapshot snapshot(List<InvoiceData> invoices) {
+        UserSnapshot.Builder builder = new UserSnapshot.Builder(0);
+        for (InvoiceData item : invoices) {
+            builder.add(item.getDate(), item.getAmountCents(), item.getCategory(), item.getMerchantName());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 与 KnowledgeGraphService.getGraph 未命中缓存时的路径相同: 快照汇总 + 图谱构建 (全部历史)
+     */
+    public static Map<String, Object> knowledgeGraph(UserSnapshot snapshot, String rootName, int topN) {
+        return KnowledgeGraphUtil.build(rootName, KnowledgeGraphService.sumByCategoryAndMerchant(snapshot, null, null), topN);
+    }
+}
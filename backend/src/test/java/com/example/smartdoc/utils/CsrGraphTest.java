@@ -0,0 +1,82 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * CsrGraph 构建器的边权累加 (含哈希表扩容) 与 CSR 转换
+ *
+ * @author SmartDoc Team
+ */
+class CsrGraphTest {
+
+    @Test
+    void accumulatesLikeAMap() {
+        SplittableRandom random = new SplittableRandom(7);
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        Map<Long, Integer> expected = new HashMap<>();
+        // 远超初始槽数，覆盖多次扩容
+        for (int i = 0; i < 200_000; i++) {
+            int a = random.nextInt(3000);
+            int b = random.nextInt(3000);
+            int w = 1 + random.nextInt(3);
+            builder.addEdge(a, b, w);
+            if (a != b) expected.merge(((long) Math.min(a, b) << 32) | Math.max(a, b), w, Integer::sum);
+        }
+        assertEquals(expected.size(), builder.edgeCount());
+
+        CsrGraph graph = builder.build(1);
+        assertEquals(expected.size(), graph.edges());
+        int checked = 0;
+        for (int v = 0; v < graph.vertices; v++) {
+            int a = graph.originalId(v);
+            long strength = 0;
+            for (int i = 0; i < graph.degree(v); i++) {
+                int b = graph.originalId(graph.neighbor(v, i));
+                long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                assertEquals(expected.get(key), graph.weight(v, i));
+                if (i > 0) assertTrue(graph.weight(v, i - 1) >= graph.weight(v, i), "每行按边权降序");
+                strength += graph.weight(v, i);
+                checked++;
+            }
+            assertEquals(strength, graph.strength(v));
+        }
+        assertEquals(2 * expected.size(), checked);
+    }
+
+    @Test
+    void dropsLightEdgesAndIsolatedVertices() {
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        builder.addEdge(0, 5, 1);
+        builder.addEdge(5, 0, 1);
+        builder.addEdge(5, 9, 1);
+        builder.addEdge(3, 3, 10);
+
+        CsrGraph graph = builder.build(2);
+        assertEquals(2, graph.vertices);
+        assertEquals(1, graph.edges());
+        assertEquals(0, graph.originalId(0));
+        assertEquals(5, graph.originalId(1));
+        assertEquals(2, graph.weight(0, 0));
+    }
+
+    @Test
+    void pageRankSumsToOne() {
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        for (int v = 1; v < 50; v++) {
+            builder.addEdge(0, v, v);
+            builder.addEdge(v, (v % 49) + 1, 1);
+        }
+        CsrGraph.PageRank result = builder.build(1).pageRank(0.85, 1e-10, 100);
+        double sum = 0;
+        for (double r : result.ranks()) sum += r;
+        assertEquals(1.0, sum, 1e-9);
+        assertTrue(result.ranks()[0] > result.ranks()[1], "中心顶点排名最高");
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * HyperLogLog 的序列化往返 (稀疏 / 稠密编码) 与估计精度
+ *
+ * <p>p = 14 时相对标准误差约 0.81%，测试使用 3 倍标准误差 (约 2.5%) 作为上限；
+ * 小基数走线性计数，要求误差在 1% 以内。</p>
+ *
+ * @author SmartDoc Team
+ */
+class HyperLogLogTest {
+
+    @Test
+    void sparseRoundTrip() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 200; i++) hll.add("merchant-" + i);
+
+        byte[] bytes = hll.toBytes();
+        assertTrue(bytes.length < 1000, "少量元素应使用稀疏编码, 实际 " + bytes.length + " 字节");
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertEquals(hll.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void denseRoundTrip() {
+        HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 100_000; i++) hll.add(i);
+
+        byte[] bytes = hll.toBytes();
+        assertEquals(3 + (1 << HyperLogLog.DEFAULT_PRECISION), bytes.length);
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertEquals(hll.estimate(), restored.estimate());
+        assertEquals(hll.precision(), restored.precision());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void emptyRoundTrip() {
+        HyperLogLog restored = HyperLogLog.fromBytes(new HyperLogLog().toBytes());
+        assertEquals(0, restored.estimate());
+    }
+
+    @Test
+    void rejectsCorruptBytes() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{9, 14, 0}));
+        byte[] bytes = dense(50_000).toBytes();
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(Arrays.copyOf(bytes, bytes.length / 2)));
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        for (int n : new int[]{1, 10, 100, 1000, 10_000}) {
+            HyperLogLog hll = new HyperLogLog();
+            for (int i = 0; i < n; i++) hll.add("user-" + i);
+            assertTrue(Math.abs(hll.estimate() - n) <= Math.max(1, n * 0.01), "n=" + n + " 估计 " + hll.estimate());
+        }
+    }
+
+    @Test
+    void largeCardinalitiesStayWithinThreeSigma() {
+        for (int n : new int[]{50_000, 200_000, 1_000_000}) {
+            HyperLogLog hll = dense(n);
+            double error = Math.abs(hll.estimate() - n) / (double) n;
+            assertTrue(error <= 3 * hll.relativeError(), "n=" + n + " 相对误差 " + error);
+        }
+    }
+
+    @Test
+    void mergeEqualsUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (long i = 0; i < 60_000; i++) left.add(i);
+        for (long i = 40_000; i < 100_000; i++) right.add(i);
+        for (long i = 0; i < 100_000; i++) all.add(i);
+
+        left.merge(HyperLogLog.fromBytes(right.toBytes()));
+        assertArrayEquals(all.toBytes(), left.toBytes());
+        assertThrows(IllegalArgumentException.class, () -> left.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void duplicatesDoNotChangeRegisters() {
+        HyperLogLog hll = new HyperLogLog();
+        assertTrue(hll.add("星巴克"));
+        assertFalse(hll.add("星巴克"));
+        for (long i = 0; i < 1000; i++) hll.add(i);
+        byte[] before = hll.toBytes();
+        for (long i = 0; i < 1000; i++) assertFalse(hll.add(i));
+        assertArrayEquals(before, hll.toBytes());
+    }
+
+    private static HyperLogLog dense(int n) {
+        HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < n; i++) hll.add(i * 31 + 7);
+        return hll;
+    }
+}
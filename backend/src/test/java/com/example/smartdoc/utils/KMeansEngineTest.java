@@ -0,0 +1,132 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KMeansEngine (Hamerly 剪枝) 与朴素 Lloyd 迭代的一致性
+ *
+ * <p>两者从同一组 k-means++ 初始中心出发。Hamerly 的界只用于跳过不可能改变归属的点，
+ * 每轮的分配结果与逐点扫描全部中心完全相同，因此最终标签应一致，中心在浮点误差内一致。
+ * 覆盖串行分配、并行分块分配 (n ≥ {@value KMeansEngine#PARALLEL_THRESHOLD}) 以及走 SIMD 距离的高维数据。</p>
+ *
+ * @author SmartDoc Team
+ */
+class KMeansEngineTest {
+
+    private static final int MAX_ITERATIONS = 300;
+
+    @Test
+    void serialFitMatchesLloyd() {
+        assertMatchesLloyd(blobs(2_000, 2, 4, 1), 2, 4, 11, true);
+    }
+
+    @Test
+    void parallelFitMatchesLloyd() {
+        assertMatchesLloyd(blobs(30_000, 2, 5, 2), 2, 5, 12, false);
+    }
+
+    @Test
+    void highDimensionalFitMatchesLloyd() {
+        assertMatchesLloyd(blobs(3_000, 40, 3, 3), 40, 3, 13, false);
+    }
+
+    @Test
+    void overlappingClustersMatchLloyd() {
+        // 无明显结构的均匀数据: 迭代次数多，剪枝边界反复放宽
+        SplittableRandom random = new SplittableRandom(4);
+        double[] data = new double[5_000 * 2];
+        for (int i = 0; i < data.length; i++) data[i] = random.nextDouble();
+        assertMatchesLloyd(data, 2, 8, 14, true);
+    }
+
+    private static void assertMatchesLloyd(double[] data, int dim, int k, long seed, boolean sameIterations) {
+        double[] init = KMeansEngine.seedPlusPlus(data, dim, k, new SplittableRandom(seed));
+        KMeansEngine.Result expected = lloyd(data, dim, init.clone(), MAX_ITERATIONS);
+        KMeansEngine.Result actual = KMeansEngine.fit(data, dim, init.clone(), MAX_ITERATIONS);
+
+        assertTrue(actual.iterations < MAX_ITERATIONS, "应在迭代上限内收敛");
+        assertArrayEquals(expected.labels, actual.labels);
+        assertArrayEquals(expected.counts, actual.counts);
+        assertArrayEquals(expected.centroids, actual.centroids, 1e-9);
+        assertEquals(expected.inertia, actual.inertia, Math.abs(expected.inertia) * 1e-12);
+        if (sameIterations) {
+            assertEquals(expected.iterations, actual.iterations);
+        }
+    }
+
+    /**
+     * 朴素 Lloyd: 每轮每个点扫描全部中心 (距离相等时取下标小的)，空聚类保持原位，
+     * 归属与中心都不再变化时停止，与 KMeansEngine 的收敛条件相同
+     */
+    private static KMeansEngine.Result lloyd(double[] data, int dim, double[] centroids, int maxIterations) {
+        int n = data.length / dim;
+        int k = centroids.length / dim;
+        int[] labels = new int[n];
+        int[] counts = new int[k];
+        int iter = 0;
+        boolean changed = true;
+        while (changed && iter < maxIterations) {
+            iter++;
+            int moved = 0;
+            double[] sums = new double[k * dim];
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                int best = 0;
+                double best2 = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < k; j++) {
+                    double d2 = ScalarKernels.dist2(data, i * dim, centroids, j * dim, dim);
+                    if (d2 < best2) {
+                        best2 = d2;
+                        best = j;
+                    }
+                }
+                if (iter == 1 || best != labels[i]) moved++;
+                labels[i] = best;
+                counts[best]++;
+                for (int t = 0; t < dim; t++) sums[best * dim + t] += data[i * dim + t];
+            }
+            boolean shifted = false;
+            for (int j = 0; j < k; j++) {
+                if (counts[j] == 0) continue;
+                for (int t = 0; t < dim; t++) {
+                    double c = sums[j * dim + t] / counts[j];
+                    if (c != centroids[j * dim + t]) shifted = true;
+                    centroids[j * dim + t] = c;
+                }
+            }
+            changed = moved > 0 || shifted;
+        }
+        return new KMeansEngine.Result(centroids, labels, counts, iter,
+                KMeansEngine.inertia(data, dim, n, centroids, labels));
+    }
+
+    /**
+     * k 个高斯团，中心在 [0, 100) 内随机，标准差 5
+     */
+    private static double[] blobs(int n, int dim, int k, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] centers = new double[k * dim];
+        for (int i = 0; i < centers.length; i++) centers[i] = random.nextDouble() * 100;
+        double[] data = new double[n * dim];
+        for (int i = 0; i < n; i++) {
+            int c = random.nextInt(k);
+            for (int t = 0; t < dim; t++) {
+                data[i * dim + t] = centers[c * dim + t] + gaussian(random) * 5;
+            }
+        }
+        return data;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
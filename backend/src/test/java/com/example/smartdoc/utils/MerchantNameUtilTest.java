@@ -0,0 +1,43 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * MerchantNameUtil.key 的归并口径 (至少与 utf8mb4_general_ci 一样宽松)
+ *
+ * @author SmartDoc Team
+ */
+class MerchantNameUtilTest {
+
+    @Test
+    void ignoresSurroundingWhitespaceAndCase() {
+        assertEquals("starbucks", MerchantNameUtil.key("  Starbucks "));
+        assertEquals(MerchantNameUtil.key("NETFLIX"), MerchantNameUtil.key("netflix"));
+        assertEquals("星巴克", MerchantNameUtil.key(" 星巴克\t"));
+    }
+
+    @Test
+    void ignoresAccents() {
+        // Café / CAFÉ / Cafe
+        assertEquals("cafe", MerchantNameUtil.key("Café"));
+        assertEquals("cafe", MerchantNameUtil.key("CAFÉ"));
+        // 组合形式 e + U+0301
+        assertEquals("cafe", MerchantNameUtil.key("Cafe\u0301"));
+        assertEquals("muller", MerchantNameUtil.key("Müller"));
+    }
+
+    @Test
+    void foldsFullWidthCharacters() {
+        // 全角 ＫＦＣ
+        assertEquals("kfc", MerchantNameUtil.key("ＫＦＣ"));
+    }
+
+    @Test
+    void keepsDifferentMerchantsApart() {
+        assertNotEquals(MerchantNameUtil.key("Cafe A"), MerchantNameUtil.key("Cafe B"));
+        assertNotEquals(MerchantNameUtil.key("星巴克"), MerchantNameUtil.key("瑞幸"));
+    }
+}
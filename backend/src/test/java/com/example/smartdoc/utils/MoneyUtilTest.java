@@ -0,0 +1,58 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * MoneyUtil.parseCents 的格式与正负号用例
+ *
+ * @author SmartDoc Team
+ */
+class MoneyUtilTest {
+
+    @Test
+    void parsesPlainAmounts() {
+        assertEquals(123450L, MoneyUtil.parseCents("1234.50"));
+        assertEquals(123450L, MoneyUtil.parseCents("1234.5"));
+        assertEquals(8800L, MoneyUtil.parseCents("88"));
+        assertEquals(50L, MoneyUtil.parseCents(".5"));
+        assertEquals(1235L, MoneyUtil.parseCents("12.345"));  // 四舍五入到分
+    }
+
+    @Test
+    void stripsCurrencySymbolsSeparatorsAndWhitespace() {
+        assertEquals(123450L, MoneyUtil.parseCents("¥1,234.50"));
+        assertEquals(123450L, MoneyUtil.parseCents("￥1，234.50"));
+        assertEquals(123450L, MoneyUtil.parseCents("1234.5元"));
+        assertEquals(8800L, MoneyUtil.parseCents("RMB 88"));
+        assertEquals(8800L, MoneyUtil.parseCents("cny88.00"));
+        assertEquals(100000L, MoneyUtil.parseCents(" $1 000.00 "));
+        assertEquals(100000L, MoneyUtil.parseCents("1　000"));
+    }
+
+    @Test
+    void keepsLeadingSign() {
+        assertEquals(-1250L, MoneyUtil.parseCents("-12.50"));
+        assertEquals(-1250L, MoneyUtil.parseCents("¥-12.50"));
+        assertEquals(-1250L, MoneyUtil.parseCents("-¥12.50"));
+        assertEquals(-1250L, MoneyUtil.parseCents("−12.50"));  // − (U+2212)
+        assertEquals(-1250L, MoneyUtil.parseCents("－12.50"));  // 全角负号
+        assertEquals(-123450L, MoneyUtil.parseCents("- 1,234.50 元"));
+        assertEquals(1250L, MoneyUtil.parseCents("+12.50"));
+    }
+
+    @Test
+    void rejectsAmbiguousText() {
+        assertNull(MoneyUtil.parseCents(null));
+        assertNull(MoneyUtil.parseCents(""));
+        assertNull(MoneyUtil.parseCents("¥"));
+        assertNull(MoneyUtil.parseCents("-"));
+        assertNull(MoneyUtil.parseCents("1.234.50"));
+        assertNull(MoneyUtil.parseCents("12a3"));
+        assertNull(MoneyUtil.parseCents("12.50-"));
+        assertNull(MoneyUtil.parseCents("--12"));
+        assertNull(MoneyUtil.parseCents("99999999999999999999"));  // 超出 long 范围
+    }
+}
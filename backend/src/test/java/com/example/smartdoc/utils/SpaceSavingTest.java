@@ -0,0 +1,173 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SpaceSaving 的序列化往返与误差保证
+ *
+ * <p>在偏斜的商户金额流上与精确计数比较:
+ * 被跟踪的键 count - error ≤ 真实值 ≤ count 且 error ≤ N / m，
+ * 未被跟踪的键真实值 ≤ minCount，标记为 guaranteed 的键一定属于真实的前 k 名。</p>
+ *
+ * @author SmartDoc Team
+ */
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 50;
+
+    @Test
+    void roundTripPreservesCounters() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        feed(sketch, new HashMap<>(), 20_000, 1);
+
+        byte[] bytes = sketch.toBytes();
+        SpaceSaving restored = SpaceSaving.fromBytes(bytes);
+
+        assertEquals(sketch.capacity(), restored.capacity());
+        assertEquals(sketch.size(), restored.size());
+        assertEquals(sketch.total(), restored.total());
+        assertEquals(sketch.minCount(), restored.minCount());
+        assertEquals(sketch.top(CAPACITY), restored.top(CAPACITY));
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void restoredSketchKeepsErrorBounds() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        feed(sketch, exact, 20_000, 2);
+
+        // 还原后继续写入 (模拟重启后的增量)，误差保证仍然成立
+        SpaceSaving restored = SpaceSaving.fromBytes(sketch.toBytes());
+        feed(restored, exact, 20_000, 3);
+        assertBounds(restored, exact);
+    }
+
+    @Test
+    void rejectsCorruptBytes() {
+        assertThrows(IllegalArgumentException.class, () -> SpaceSaving.fromBytes(new byte[]{99}));
+        byte[] bytes = new SpaceSaving(4).toBytes();
+        assertThrows(IllegalArgumentException.class, () -> SpaceSaving.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test
+    void exactWhileNotFull() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            String key = "m" + i;
+            sketch.offer(key, (i + 1) * 100L);
+            exact.put(key, (i + 1) * 100L);
+        }
+        for (SpaceSaving.Entry e : sketch.top(CAPACITY)) {
+            assertEquals(exact.get(e.key()), e.count());
+            assertEquals(0, e.error());
+            assertTrue(e.guaranteed());
+        }
+        assertEquals(0, sketch.minCount());
+    }
+
+    @Test
+    void boundsHoldOnSkewedStream() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        feed(sketch, exact, 100_000, 4);
+        assertBounds(sketch, exact);
+    }
+
+    @Test
+    void boundsHoldWithRetractions() {
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(5);
+        List<String> keys = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            String key = merchant(random);
+            long cents = 100 + random.nextInt(50_000);
+            sketch.offer(key, cents);
+            exact.merge(key, cents, Long::sum);
+            keys.add(key);
+            amounts.add(cents);
+            // 删除一部分之前的票据
+            if (i % 10 == 9) {
+                int j = random.nextInt(keys.size());
+                sketch.offer(keys.get(j), -amounts.get(j));
+                exact.merge(keys.get(j), -amounts.get(j), Long::sum);
+                keys.set(j, keys.get(keys.size() - 1));
+                amounts.set(j, amounts.get(amounts.size() - 1));
+                keys.remove(keys.size() - 1);
+                amounts.remove(amounts.size() - 1);
+            }
+        }
+        assertBounds(sketch, exact);
+    }
+
+    private static void assertBounds(SpaceSaving sketch, Map<String, Long> exact) {
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, sketch.total());
+
+        List<SpaceSaving.Entry> entries = sketch.top(CAPACITY);
+        Set<String> tracked = new HashSet<>();
+        for (SpaceSaving.Entry e : entries) {
+            long truth = exact.getOrDefault(e.key(), 0L);
+            assertTrue(e.count() - e.error() <= truth && truth <= e.count(), e + " 真实值 " + truth);
+            assertTrue(e.error() <= total / CAPACITY + 1, e + " 误差超过 N/m");
+            tracked.add(e.key());
+        }
+        for (Map.Entry<String, Long> e : exact.entrySet()) {
+            if (!tracked.contains(e.getKey())) {
+                assertTrue(e.getValue() <= sketch.minCount(), e + " 超过 minCount " + sketch.minCount());
+            }
+        }
+
+        int k = 10;
+        Set<String> trueTop = exact.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                .limit(k).map(Map.Entry::getKey).collect(Collectors.toSet());
+        long guaranteed = 0;
+        for (SpaceSaving.Entry e : sketch.top(k)) {
+            if (e.guaranteed()) {
+                guaranteed++;
+                assertTrue(trueTop.contains(e.key()), e + " 不在真实的前 " + k + " 名");
+            }
+        }
+        assertTrue(guaranteed > 0, "偏斜数据上应至少有一个确定的前 k 名");
+    }
+
+    /**
+     * 写入 n 张票据: 商户名称服从 Zipf 式分布，金额随机
+     */
+    private static void feed(SpaceSaving sketch, Map<String, Long> exact, int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < n; i++) {
+            String key = merchant(random);
+            long cents = 100 + random.nextInt(50_000);
+            sketch.offer(key, cents);
+            exact.merge(key, cents, Long::sum);
+        }
+    }
+
+    /**
+     * 约 5000 个商户，排名 r 的商户出现概率约与 1/r 成正比
+     */
+    private static String merchant(SplittableRandom random) {
+        int rank = (int) Math.floor(Math.exp(random.nextDouble() * Math.log(5000)));
+        return "merchant-" + rank;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SIMD 内核与标量内核的一致性
+ *
+ * <p>长度覆盖 0 到数个向量宽度 (含不是通道数整数倍的尾部)，以及较长的数组。
+ * 整数求和要求完全相等；浮点累加顺序不同，按相对误差 1e-12 比较。
+ * surefire 已加载 jdk.incubator.vector 模块，本测试直接调用 {@link VectorKernels}。</p>
+ *
+ * @author SmartDoc Team
+ */
+class StatKernelsTest {
+
+    private static final double RELATIVE = 1e-12;
+
+    @Test
+    void longKernelsMatchScalarForAllTailLengths() {
+        SplittableRandom random = new SplittableRandom(42);
+        int maxLength = VectorKernels.lanes() * 4 + 3;
+        for (int n = 0; n <= maxLength; n++) {
+            assertLongKernels(randomCents(random, n));
+        }
+        for (int n : new int[]{999, 1000, 4097}) {
+            assertLongKernels(randomCents(random, n));
+        }
+    }
+
+    @Test
+    void dist2MatchesScalarWithOffsetsAndTails() {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] x = new double[300];
+        double[] y = new double[300];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextDouble() * 100 - 50;
+            y[i] = random.nextDouble() * 100 - 50;
+        }
+        for (int len = 0; len <= 130; len++) {
+            for (int off : new int[]{0, 1, 3}) {
+                double expected = ScalarKernels.dist2(x, off, y, off + 5, len);
+                assertClose(expected, VectorKernels.dist2(x, off, y, off + 5, len), "len=" + len + ", off=" + off);
+            }
+        }
+    }
+
+    @Test
+    void sumOverflowThrowsLikeScalar() {
+        for (int n : new int[]{VectorKernels.lanes() * 2, VectorKernels.lanes() * 2 + 1, 100}) {
+            long[] a = new long[n];
+            Arrays.fill(a, Long.MAX_VALUE / 2 + 1);
+            assertThrows(ArithmeticException.class, () -> ScalarKernels.sum(a));
+            assertThrows(ArithmeticException.class, () -> VectorKernels.sum(a), "n=" + n);
+        }
+
+        // 只有尾部元素导致溢出
+        int bound = VectorKernels.lanes() * 2;
+        long[] tail = new long[bound + 1];
+        tail[0] = Long.MAX_VALUE - 10;
+        tail[bound] = 11;
+        assertThrows(ArithmeticException.class, () -> VectorKernels.sum(tail));
+    }
+
+    @Test
+    void sumOfLargeValuesWithoutOverflowIsExact() {
+        // 单个元素很大但总和不溢出: 超过安全界限时回退标量实现，结果仍然精确
+        int n = VectorKernels.lanes() * 8 + 1;
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = (i % 2 == 0 ? 1 : -1) * (Long.MAX_VALUE / 3);
+        }
+        a[n - 1] = Long.MIN_VALUE / 3;
+        assertEquals(ScalarKernels.sum(a), VectorKernels.sum(a));
+
+        long[] extremes = new long[n];
+        extremes[0] = Long.MIN_VALUE;
+        extremes[1] = Long.MAX_VALUE;
+        assertEquals(-1L, VectorKernels.sum(extremes));
+    }
+
+    private static long[] randomCents(SplittableRandom random, int n) {
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = random.nextLong(-50_000, 5_000_000);
+        }
+        return a;
+    }
+
+    private static void assertLongKernels(long[] a) {
+        String where = "n=" + a.length;
+        assertEquals(ScalarKernels.sum(a), VectorKernels.sum(a), where);
+        double mean = a.length == 0 ? 0 : (double) ScalarKernels.sum(a) / a.length;
+        assertClose(ScalarKernels.sumSquaredDeviations(a, mean), VectorKernels.sumSquaredDeviations(a, mean), where);
+        assertClose(ScalarKernels.indexWeightedSum(a), VectorKernels.indexWeightedSum(a), where);
+    }
+
+    private static void assertClose(double expected, double actual, String where) {
+        assertEquals(expected, actual, Math.max(1e-9, Math.abs(expected) * RELATIVE), where);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.smartdoc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TDigest 的序列化往返与分位数精度
+ *
+ * <p>精度以秩误差衡量: 估计值在原始数据中的实际分位 F(x) 与目标分位 q 之差。
+ * δ = 100 时中间分位的秩误差约为 1/δ 量级，两端更小。</p>
+ *
+ * @author SmartDoc Team
+ */
+class TDigestTest {
+
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    @Test
+    void roundTripPreservesDigest() {
+        TDigest digest = new TDigest();
+        double[] values = skewed(50_000, 1);
+        for (double v : values) digest.add(v);
+
+        byte[] bytes = digest.toBytes();
+        TDigest restored = TDigest.fromBytes(bytes);
+
+        assertEquals(digest.count(), restored.count());
+        assertEquals(digest.min(), restored.min());
+        assertEquals(digest.max(), restored.max());
+        assertEquals(digest.centroidCount(), restored.centroidCount());
+        assertEquals(digest.mean(), restored.mean(), 1e-9 * Math.abs(digest.mean()));
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), restored.quantile(q), "q=" + q);
+        }
+        assertArrayEquals(bytes, restored.toBytes());
+        assertTrue(bytes.length < 2100, "δ=100 的草图应不超过约 2 KB, 实际 " + bytes.length);
+    }
+
+    @Test
+    void roundTripEmptyDigest() {
+        TDigest restored = TDigest.fromBytes(new TDigest().toBytes());
+        assertEquals(0, restored.count());
+        assertTrue(Double.isNaN(restored.quantile(0.5)));
+    }
+
+    @Test
+    void rejectsCorruptBytes() {
+        assertThrows(IllegalArgumentException.class, () -> TDigest.fromBytes(new byte[0]));
+        byte[] bytes = skewedDigest(1000).toBytes();
+        assertThrows(IllegalArgumentException.class, () -> TDigest.fromBytes(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    void smallInputsAreExact() {
+        TDigest digest = new TDigest();
+        for (int i = 1; i <= 9; i++) digest.add(i);
+        assertEquals(5.0, digest.quantile(0.5));
+        assertEquals(1.0, digest.quantile(0));
+        assertEquals(9.0, digest.quantile(1));
+        assertEquals(5.0, digest.mean(), 1e-12);
+    }
+
+    @Test
+    void quantilesStayWithinRankErrorBound() {
+        double[] values = skewed(200_000, 2);
+        TDigest digest = new TDigest();
+        for (double v : values) digest.add(v);
+        assertRankError(digest, values);
+        assertEquals(mean(values), digest.mean(), 1e-9 * mean(values));
+        assertTrue(digest.centroidCount() <= TDigest.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    void mergedDigestMatchesWholeInput() {
+        double[] values = skewed(100_000, 3);
+        TDigest left = new TDigest();
+        TDigest right = new TDigest();
+        for (int i = 0; i < values.length; i++) {
+            (i % 2 == 0 ? left : right).add(values[i]);
+        }
+        left.merge(TDigest.fromBytes(right.toBytes()));
+        assertEquals(values.length, left.count());
+        assertRankError(left, values);
+    }
+
+    /**
+     * 各分位的秩误差: 两端 ≤ 0.002，中间 ≤ 0.01
+     */
+    private static void assertRankError(TDigest digest, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double estimate = digest.quantile(q);
+            double rank = rank(sorted, estimate);
+            double bound = q <= 0.01 || q >= 0.99 ? 0.002 : 0.01;
+            assertTrue(Math.abs(rank - q) <= bound,
+                    "q=" + q + " 估计值 " + estimate + " 的实际分位为 " + rank);
+        }
+    }
+
+    /**
+     * x 在有序数据中的分位 (≤ x 与 < x 的个数取中点)
+     */
+    private static double rank(double[] sorted, double x) {
+        int below = 0;
+        int atOrBelow = 0;
+        for (double v : sorted) {
+            if (v < x) below++;
+            if (v <= x) atOrBelow++;
+        }
+        return (below + atOrBelow) / 2.0 / sorted.length;
+    }
+
+    /**
+     * 偏态数据 (对数正态，近似单笔消费金额的分布)，单位: 分
+     */
+    private static double[] skewed(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            double u1 = random.nextDouble();
+            double u2 = random.nextDouble();
+            double gaussian = Math.sqrt(-2 * Math.log(1 - u1)) * Math.cos(2 * Math.PI * u2);
+            values[i] = Math.round(Math.exp(8 + 1.2 * gaussian));
+        }
+        return values;
+    }
+
+    private static TDigest skewedDigest(int n) {
+        TDigest digest = new TDigest();
+        for (double v : skewed(n, 4)) digest.add(v);
+        return digest;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+}